@@ -6,7 +6,9 @@ import org.javasimon.Simon;
 import org.javasimon.Stopwatch;
 import org.javasimon.callback.quantiles.BucketSample;
 import org.javasimon.callback.quantiles.BucketsSample;
+import org.javasimon.callback.quantiles.Buckets;
 import org.javasimon.callback.quantiles.QuantilesCallback;
+import org.javasimon.callback.quantiles.WindowedBuckets;
 import org.javasimon.console.ActionContext;
 import org.javasimon.console.SimonCallbacks;
 import org.javasimon.console.action.DetailHtmlBuilder;
@@ -29,6 +31,10 @@ public class QuantilesDetailPlugin extends DetailPlugin {
 	 * Message: Data not found in Simon
 	 */
 	private static final String NO_DATA_MESSAGE = "No data available";
+	/**
+	 * Recent window displayed for {@link WindowedBuckets} in addition to the whole window
+	 */
+	private static final long RECENT_WINDOW_MILLIS = 60000;
 
 	public QuantilesDetailPlugin() {
 		super("quantiles", "Distribution and Quantiles");
@@ -58,6 +64,14 @@ public class QuantilesDetailPlugin extends DetailPlugin {
 		return QuantilesCallback.sampleBuckets((Stopwatch) simon);
 	}
 
+	/**
+	 * Get quantiles data for the recent window from Simon, null if buckets are not windowed
+	 */
+	private BucketsSample getRecentData(Simon simon) {
+		Buckets buckets = QuantilesCallback.getBuckets((Stopwatch) simon);
+		return buckets instanceof WindowedBuckets ? ((WindowedBuckets) buckets).sampleWindow(RECENT_WINDOW_MILLIS) : null;
+	}
+
 	/**
 	 * Generate an HTML message row
 	 */
@@ -79,6 +93,15 @@ public class QuantilesDetailPlugin extends DetailPlugin {
 					.labelCell("90%")
 					.valueCell(htmlStringifierFactory.toString(bucketsSample.getPercentile90(), "Time"))
 					.endRow();
+				BucketsSample recentSample = getRecentData(simon);
+				if (recentSample != null) {
+					htmlBuilder.beginRow()
+						.labelCell("Median (1 min)")
+						.valueCell(htmlStringifierFactory.toString(recentSample.getMedian(), "Time"))
+						.labelCell("90% (1 min)")
+						.valueCell(htmlStringifierFactory.toString(recentSample.getPercentile90(), "Time"))
+						.endRow();
+				}
 				htmlBuilder.beginRow().labelCell("Distribution").beginValueCell();
 				htmlBuilder.begin("table")
 					.beginRow().labelCell("Min").labelCell("Max").labelCell("Counter").endRow();				
@@ -120,6 +143,10 @@ public class QuantilesDetailPlugin extends DetailPlugin {
 			} else {
 				bucketsJS = ObjectJS.create(bucketsSample, jsonStringifierFactory);
 				bucketsJS.setAttribute("buckets", ArrayJS.create(bucketsSample.getBuckets(), jsonStringifierFactory));
+				BucketsSample recentSample = getRecentData(simon);
+				if (recentSample != null) {
+					bucketsJS.setAttribute("recent", ObjectJS.create(recentSample, jsonStringifierFactory));
+				}
 			}
 		} else {
 			bucketsJS = jsonMessage(NO_CALLBACK_MESSAGE, jsonStringifierFactory);
@@ -2,8 +2,10 @@ package org.javasimon.console.plugin;
 
 import java.io.IOException;
 
+import org.javasimon.Counter;
 import org.javasimon.Simon;
 import org.javasimon.Stopwatch;
+import org.javasimon.callback.timeline.CounterTimeRange;
 import org.javasimon.callback.timeline.StopwatchTimeRange;
 import org.javasimon.callback.timeline.TimeRange;
 import org.javasimon.callback.timeline.Timeline;
@@ -50,11 +52,11 @@ public class TimelineDetailPlugin extends DetailPlugin {
 	}
 
 	/**
-	 * Indicate that this plugin only applies on Stopwatches.
+	 * Indicate that this plugin only applies on Stopwatches and Counters.
 	 */
 	@Override
 	public boolean supports(Simon simon) {
-		return simon instanceof Stopwatch;
+		return simon instanceof Stopwatch || simon instanceof Counter;
 	}
 
 	/**
@@ -88,11 +90,24 @@ public class TimelineDetailPlugin extends DetailPlugin {
 					.labelCell("Width")
 					.valueCell(htmlStringifierFactory.toString(timelineSample.getWidth()* SimonClock.NANOS_IN_MILLIS,"Time"))
 					.endRow();
+				htmlBuilder.beginRow()
+					.labelCell("Rate (1 min)")
+					.valueCell(htmlStringifierFactory.toString(timelineSample.getOneMinuteRate()) + "/s")
+					.labelCell("Rate (5 min)")
+					.valueCell(htmlStringifierFactory.toString(timelineSample.getFiveMinuteRate()) + "/s")
+					.endRow();
+				htmlBuilder.beginRow()
+					.labelCell("Rate (15 min)")
+					.valueCell(" colspan=\"3\"", htmlStringifierFactory.toString(timelineSample.getFifteenMinuteRate()) + "/s")
+					.endRow();
 				htmlBuilder.beginRow().labelCell("Evolution").beginValueCell(" colspan=\"3\"");
 				htmlBuilder.begin("table").begin("thead")
 					.beginRow().labelCell("Start").labelCell("End");
 				if (simon instanceof Stopwatch) {
-					htmlBuilder.labelCell("Counter").labelCell("Total").labelCell("Min").labelCell("Mean").labelCell("Last").labelCell("Max").labelCell("Std. Dev.");
+					htmlBuilder.labelCell("Counter").labelCell("Total").labelCell("Min").labelCell("Mean").labelCell("Last").labelCell("Max").labelCell("Std. Dev.")
+						.labelCell("50%").labelCell("95%").labelCell("99%");
+				} else if (simon instanceof Counter) {
+					htmlBuilder.labelCell("Increment").labelCell("Decrement").labelCell("Min").labelCell("Last").labelCell("Max");
 				}
 				htmlBuilder.endRow().end("thead").begin("tbody");
 				for(TimeRange timeRange:timelineSample.getTimeRanges()) {
@@ -108,7 +123,18 @@ public class TimelineDetailPlugin extends DetailPlugin {
 							.valueCell(htmlStringifierFactory.toString(sTimeRange.getMean(),"Time"))
 							.valueCell(htmlStringifierFactory.toString(sTimeRange.getLast(),"Time"))
 							.valueCell(htmlStringifierFactory.toString(sTimeRange.getMax(),"Time"))
-							.valueCell(htmlStringifierFactory.toString(sTimeRange.getStandardDeviation(),"Time"));
+							.valueCell(htmlStringifierFactory.toString(sTimeRange.getStandardDeviation(),"Time"))
+							.valueCell(htmlStringifierFactory.toString(sTimeRange.getPercentile50(),"Time"))
+							.valueCell(htmlStringifierFactory.toString(sTimeRange.getPercentile95(),"Time"))
+							.valueCell(htmlStringifierFactory.toString(sTimeRange.getPercentile99(),"Time"));
+					} else if (timeRange instanceof CounterTimeRange) {
+						CounterTimeRange cTimeRange=(CounterTimeRange) timeRange;
+						htmlBuilder
+							.valueCell(htmlStringifierFactory.toString(cTimeRange.getIncrement()))
+							.valueCell(htmlStringifierFactory.toString(cTimeRange.getDecrement()))
+							.valueCell(htmlStringifierFactory.toString(cTimeRange.getMin()))
+							.valueCell(htmlStringifierFactory.toString(cTimeRange.getLast()))
+							.valueCell(htmlStringifierFactory.toString(cTimeRange.getMax()));
 					}
 					htmlBuilder.endRow();
 				}
@@ -13,6 +13,11 @@ if (javasimon) {
 			row=this.fnAppendRow(eTableBody);
 			this.fnAppendLabelValueCell(row, "Median", oQuantiles.median);
 			this.fnAppendLabelValueCell(row, "90%", oQuantiles.percentile90);
+			if (oQuantiles.recent) {
+				row=this.fnAppendRow(eTableBody);
+				this.fnAppendLabelValueCell(row, "Median (1 min)", oQuantiles.recent.median);
+				this.fnAppendLabelValueCell(row, "90% (1 min)", oQuantiles.recent.percentile90);
+			}
 
 			row=this.fnAppendRow(eTableBody);
 			this.fnAppendLabelCell(row,"Distribution");
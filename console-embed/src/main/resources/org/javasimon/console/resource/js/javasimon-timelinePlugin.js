@@ -4,7 +4,8 @@ if (javasimon) {
 	(function(domUtil, viewPluginMgr) {
 		viewPluginMgr.fnAddPluginRenderer("timeline",function(eTableBody, oTimeline) {
 			var row=this.fnAppendRow(eTableBody), cell,
-				subTable, oDataTable, googleChartDiv;
+				subTable, oDataTable, googleChartDiv, aoColumns,
+				bCounter=oTimeline.timeRanges && oTimeline.timeRanges.length>0 && oTimeline.timeRanges[0].increment!==undefined;
 			if (oTimeline.message) {
 				this.fnAppendLabelValueCell(row,"Message", oTimeline.message, 3);
 			}
@@ -14,14 +15,23 @@ if (javasimon) {
 			this.fnAppendLabelValueCell(row, "Width", oTimeline.width);
 
 			row=this.fnAppendRow(eTableBody);
-			this.fnAppendLabelCell(row,"Table");
-			subTable=domUtil.fnAppendChildElement(this.fnAppendValueCell(row, " ", 3),"table");
-			oDataTable=$(subTable).dataTable( {
-				bJQueryUI: true,
-				bProcessing: true,
-				bPaginate:false,bLengthChange:false,
-				bFilter:false,bInfo:false,
-				aoColumns: [
+			this.fnAppendLabelValueCell(row, "Rate (1 min)", oTimeline.oneMinuteRate+"/s");
+			this.fnAppendLabelValueCell(row, "Rate (5 min)", oTimeline.fiveMinuteRate+"/s");
+			row=this.fnAppendRow(eTableBody);
+			this.fnAppendLabelValueCell(row, "Rate (15 min)", oTimeline.fifteenMinuteRate+"/s", 3);
+
+			if (bCounter) {
+				aoColumns=[
+					{sTitle:"Start", mDataProp: "startTimestamp",bSearchable: false,sWidth: "10%",sClass:"numeric" },
+					{sTitle:"End", mDataProp: "endTimestamp",bSearchable: false,sWidth: "10%",sClass:"numeric",asSorting: ["desc","asc" ] },
+					{sTitle:"Increment", mDataProp: "increment",bSearchable: false,sType:"numeric",sWidth: "5%",sClass:"numeric",asSorting: ["desc","asc" ] },
+					{sTitle:"Decrement", mDataProp: "decrement",bSearchable: false,sType:"numeric",sWidth: "5%",sClass:"numeric",asSorting: ["desc","asc" ] },
+					{sTitle:"Min", mDataProp: "min",bSearchable: false,sType:"numeric",sWidth: "5%",sClass:"numeric",asSorting: ["desc","asc" ] },
+					{sTitle:"Last", mDataProp: "last",bSearchable: false,sType:"numeric",sWidth: "5%",sClass:"numeric",asSorting: ["desc","asc" ] },
+					{sTitle:"Max", mDataProp: "max",bSearchable: false,sType:"numeric",sWidth: "5%",sClass:"numeric",asSorting: ["desc","asc" ] }
+				];
+			} else {
+				aoColumns=[
 					{sTitle:"Start", mDataProp: "startTimestamp",bSearchable: false,sWidth: "10%",sClass:"numeric" },
 					{sTitle:"End", mDataProp: "endTimestamp",bSearchable: false,sWidth: "10%",sClass:"numeric",asSorting: ["desc","asc" ] },
 					{sTitle:"Count", mDataProp: "counter",bSearchable: false,sType:"numeric",sWidth: "5%",sClass:"numeric",asSorting: ["desc","asc" ] },
@@ -30,8 +40,22 @@ if (javasimon) {
 					{sTitle:"Mean", mDataProp: "mean",bSearchable: false,sType:"numeric",sWidth: "5%",sClass:"numeric",asSorting: ["desc","asc" ] },
 					{sTitle:"Last", mDataProp: "last",bSearchable: false,sType:"numeric",sWidth: "5%",sClass:"numeric",asSorting: ["desc","asc" ] },
 					{sTitle:"Max", mDataProp: "max",bSearchable: false,sType:"numeric",sWidth: "5%",sClass:"numeric",asSorting: ["desc","asc" ] },
-					{sTitle:"StdDev", mDataProp: "standardDeviation",bSearchable: false,sType:"numeric",sWidth: "5%",sClass:"numeric",asSorting: ["desc","asc" ] }
-				],
+					{sTitle:"StdDev", mDataProp: "standardDeviation",bSearchable: false,sType:"numeric",sWidth: "5%",sClass:"numeric",asSorting: ["desc","asc" ] },
+					{sTitle:"50%", mDataProp: "percentile50",bSearchable: false,sType:"numeric",sWidth: "5%",sClass:"numeric",asSorting: ["desc","asc" ] },
+					{sTitle:"95%", mDataProp: "percentile95",bSearchable: false,sType:"numeric",sWidth: "5%",sClass:"numeric",asSorting: ["desc","asc" ] },
+					{sTitle:"99%", mDataProp: "percentile99",bSearchable: false,sType:"numeric",sWidth: "5%",sClass:"numeric",asSorting: ["desc","asc" ] }
+				];
+			}
+
+			row=this.fnAppendRow(eTableBody);
+			this.fnAppendLabelCell(row,"Table");
+			subTable=domUtil.fnAppendChildElement(this.fnAppendValueCell(row, " ", 3),"table");
+			oDataTable=$(subTable).dataTable( {
+				bJQueryUI: true,
+				bProcessing: true,
+				bPaginate:false,bLengthChange:false,
+				bFilter:false,bInfo:false,
+				aoColumns: aoColumns,
 				aaSorting: [[ 0, "asc" ]]
 			});
 			oDataTable.fnAddData(oTimeline.timeRanges);
@@ -47,12 +71,12 @@ if (javasimon) {
                         // Prepare data for Google Chart
                         var googleData=[], googleChart,
                             aTimeRanges=oTimeline.timeRanges;
-                        googleData.push(["Timestamp","Min","Mean","Max"]);
+                        googleData.push(["Timestamp","Min",bCounter?"Last":"Mean","Max"]);
                         for(var i=0;i<aTimeRanges.length;i++) {
                             googleData.push([
                                 aTimeRanges[i].startTimestamp,
                                 aTimeRanges[i].min,
-                                aTimeRanges[i].mean,
+                                bCounter?aTimeRanges[i].last:aTimeRanges[i].mean,
                                 aTimeRanges[i].max
                             ]);
                         }
@@ -1,11 +1,12 @@
 package org.javasimon;
 
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * AbstractSimon implements basic enable/disable and hierarchy functionality.
@@ -31,15 +32,27 @@ abstract class AbstractSimon implements Simon {
 
 	private SimonState state = SimonState.INHERIT;
 
-	private Simon parent;
+	/** Parent Simon, volatile because the Manager reads it before it locks the parent when the hierarchy is changed. */
+	private volatile Simon parent;
 
-	private final List<Simon> children = new CopyOnWriteArrayList<>();
+	/**
+	 * Children mapped by their names in the order of addition. Map is guarded by its own monitor - Simon's monitor
+	 * is used for Simon's values and even very wide parents are not copied on every child added.
+	 */
+	private final Map<String, Simon> children = new LinkedHashMap<>();
+
+	/** Snapshot returned from {@link #getChildren()}, null when children changed since the last snapshot. */
+	private volatile List<Simon> childrenSnapshot = Collections.emptyList();
 
 	private String note;
 
 	private AttributesSupport attributesSupport = new AttributesSupport();
 
-	private Map<Object, Simon> incrementalSimons;
+	/** Current interval of incremental sampling, null if no incremental sampling is in progress. */
+	private volatile IncrementInterval incrementInterval;
+
+	/** Bases of incremental sampling keys, guarded by the monitor of the Simon. */
+	private Map<Object, IncrementBase> incrementBases;
 
 	/**
 	 * Constructor of the abstract Simon is used internally by subclasses.
@@ -63,7 +76,29 @@ abstract class AbstractSimon implements Simon {
 
 	@Override
 	public final List<Simon> getChildren() {
-		return children;
+		List<Simon> snapshot = childrenSnapshot;
+		if (snapshot == null) {
+			synchronized (children) {
+				snapshot = childrenSnapshot;
+				if (snapshot == null) {
+					snapshot = Collections.unmodifiableList(new ArrayList<>(children.values()));
+					childrenSnapshot = snapshot;
+				}
+			}
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Returns true if this Simon has any children - unlike {@link #getChildren()} no snapshot is created.
+	 * Used only internally.
+	 *
+	 * @return true if this Simon has children
+	 */
+	final boolean hasChildren() {
+		synchronized (children) {
+			return !children.isEmpty();
+		}
 	}
 
 	/**
@@ -81,7 +116,10 @@ abstract class AbstractSimon implements Simon {
 	 * @param simon future child of this Simon
 	 */
 	final synchronized void addChild(AbstractSimon simon) {
-		children.add(simon);
+		synchronized (children) {
+			children.put(simon.getName(), simon);
+			childrenSnapshot = null;
+		}
 		simon.setParent(this);
 		simon.enabled = enabled;
 	}
@@ -119,7 +157,7 @@ abstract class AbstractSimon implements Simon {
 
 	private synchronized void updateAndPropagateEffectiveState(boolean enabled, boolean overrule) {
 		this.enabled = enabled;
-		for (Simon child : children) {
+		for (Simon child : getChildren()) {
 			if (overrule) {
 				((AbstractSimon) child).state = SimonState.INHERIT;
 			}
@@ -178,9 +216,14 @@ abstract class AbstractSimon implements Simon {
 	 * @param newSimon new Simon
 	 */
 	void replaceChild(Simon simon, AbstractSimon newSimon) {
-		children.remove(simon);
+		synchronized (children) {
+			children.remove(simon.getName());
+			if (newSimon != null) {
+				children.put(newSimon.getName(), newSimon);
+			}
+			childrenSnapshot = null;
+		}
 		if (newSimon != null) {
-			children.add(newSimon);
 			newSimon.setParent(this);
 		}
 	}
@@ -258,47 +301,82 @@ abstract class AbstractSimon implements Simon {
 		sample.setLastUsage(lastUsage);
 	}
 
-	// incremental Simons methods
-	Collection<Simon> incrementalSimons() {
-		return incrementalSimons != null ? incrementalSimons.values() : null;
+	// incremental sampling methods
+
+	/**
+	 * Returns current interval of incremental sampling that must be updated on every change of the Simon,
+	 * or {@code null} if no incremental sampling is in progress.
+	 *
+	 * @return current increment interval or null
+	 */
+	final IncrementInterval incrementInterval() {
+		return incrementInterval;
 	}
 
-	Simon getAndResetSampleKey(Object key, Simon newSimon) {
-		if (incrementalSimons == null) {
-			incrementalSimons = new HashMap<>();
-		}
-		Simon simon = incrementalSimons.get(key);
-		incrementalSimons.put(key, newSimon);
-		return simon;
+	/**
+	 * Returns the interval that replaced the updated interval or {@code null} if it is still the current one
+	 * (or incremental sampling stopped). Used by lock-free Simons after updating the interval: sampling may close
+	 * the interval after it was read by the updating thread, the update would be lost if it was not repeated in the
+	 * following interval. Repeated update is harmless (extremes and usages are idempotent), at worst the value
+	 * is reported in two consecutive increments.
+	 *
+	 * @param updated interval just updated by the caller
+	 * @return following interval that must be updated as well or null
+	 */
+	final IncrementInterval incrementIntervalAfter(IncrementInterval updated) {
+		IncrementInterval current = incrementInterval;
+		return current != updated ? current : null;
 	}
 
-	Sample sampleIncrementHelper(Object key, Simon newSimon) {
-		Simon simon = getAndResetSampleKey(key, newSimon);
-		if (simon != null) {
-			return simon.sample();
-		} else {
-			return sample();
+	/**
+	 * Closes the current interval of incremental sampling, accumulates it into the bases of all keys and
+	 * replaces the base of the sampled key with the current sample. Must be called under the monitor
+	 * of the Simon. Interval is replaced before it is accumulated, so lock-free updates missed by the accumulation
+	 * find the new interval (see {@link #incrementIntervalAfter(IncrementInterval)}).
+	 *
+	 * @param key sampling key
+	 * @param current current cumulative sample
+	 * @param initialMax initial max value of new intervals
+	 * @param active current active value (initial max active)
+	 * @return previous base of the key with all the intervals accumulated, null for the first sampling of the key
+	 */
+	final IncrementBase nextIncrementInterval(Object key, Sample current, long initialMax, long active) {
+		IncrementInterval closed = incrementInterval;
+		incrementInterval = new IncrementInterval(initialMax, active);
+		if (incrementBases == null) {
+			incrementBases = new HashMap<>();
+		} else if (closed != null) {
+			for (IncrementBase base : incrementBases.values()) {
+				base.accumulate(closed);
+			}
 		}
+		return incrementBases.put(key, new IncrementBase(current, new IncrementInterval(initialMax, active), manager.milliTime()));
 	}
 
 	@Override
 	public synchronized boolean stopIncrementalSampling(Object key) {
-		return incrementalSimons != null && incrementalSimons.remove(key) != null;
+		boolean removed = incrementBases != null && incrementBases.remove(key) != null;
+		stopIncrementIntervalIfUnused();
+		return removed;
 	}
 
 	synchronized void purgeIncrementalSimonsOlderThan(long thresholdMs) {
-		if (incrementalSimons == null) {
+		if (incrementBases == null) {
 			return;
 		}
-		Iterator<Map.Entry<Object, Simon>> iterator = incrementalSimons.entrySet().iterator();
+		Iterator<IncrementBase> iterator = incrementBases.values().iterator();
 		while (iterator.hasNext()) {
-			Map.Entry<Object, Simon> entry = iterator.next();
-			if (entry.getValue().getLastUsage() < thresholdMs) {
+			if (iterator.next().getSampled() < thresholdMs) {
 				iterator.remove();
 			}
 		}
-		if (incrementalSimons.isEmpty()) {
-			incrementalSimons = null;
+		stopIncrementIntervalIfUnused();
+	}
+
+	private void stopIncrementIntervalIfUnused() {
+		if (incrementBases != null && incrementBases.isEmpty()) {
+			incrementBases = null;
+			incrementInterval = null;
 		}
 	}
 
@@ -0,0 +1,69 @@
+package org.javasimon;
+
+/**
+ * Common predecessor of Stopwatch implementations, provides the entry point used by {@link Split#stop(String)}.
+ *
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ * @since 4.0
+ */
+abstract class AbstractStopwatch extends AbstractSimon implements Stopwatch {
+
+	/**
+	 * Constructs Stopwatch Simon with a specified name and for the specified manager.
+	 *
+	 * @param name Simon's name
+	 * @param manager owning manager
+	 */
+	AbstractStopwatch(String name, Manager manager) {
+		super(name, manager);
+	}
+
+	/**
+	 * Method doing the stop work based on provided start nano-time.
+	 *
+	 * @param split Split object that has been stopped
+	 * @param start start nano-time of the split
+	 * @param nowNanos current nano time
+	 * @param subSimon name of the sub-stopwatch (hierarchy delimiter is added automatically), may be {@code null}
+	 */
+	abstract void stop(Split split, long start, long nowNanos, String subSimon);
+
+	/**
+	 * Returns nano-time when the split stopped - computed from the split start if possible, otherwise current
+	 * nano-time is used.
+	 *
+	 * @param split added split
+	 * @param splitNs split time in ns
+	 * @return nano-time of the split end
+	 */
+	final long nanoTimeFromSplit(Split split, long splitNs) {
+		if (split.getStopwatch() != null) {
+			return split.getStart() + splitNs;
+		} else {
+			return manager.nanoTime();
+		}
+	}
+
+	/**
+	 * Adds the split to the sub-stopwatch named relatively to this stopwatch and stores it as
+	 * {@link Split#ATTR_EFFECTIVE_STOPWATCH} attribute of the split.
+	 *
+	 * @param split stopped split
+	 * @param subSimon name of the sub-stopwatch
+	 */
+	final void addSplitToSubStopwatch(Split split, String subSimon) {
+		Stopwatch effectiveStopwatch = manager.getStopwatch(getName() + Manager.HIERARCHY_DELIMITER + subSimon);
+		split.setAttribute(Split.ATTR_EFFECTIVE_STOPWATCH, effectiveStopwatch);
+		effectiveStopwatch.addSplit(split);
+	}
+
+	/**
+	 * Updates usage statistics without using {@link System#currentTimeMillis()} if client code already has
+	 * current nano timer value.
+	 *
+	 * @param nowNanos current value of nano timer
+	 */
+	final void updateUsagesNanos(long nowNanos) {
+		updateUsages(manager.millisForNano(nowNanos));
+	}
+}
@@ -132,5 +132,13 @@ public interface Counter extends Simon {
 	@Override
 	CounterSample sample();
 
+	/**
+	 * {@inheritDoc}
+	 * <p/>
+	 * Counter value and extremes of the incremental sample are relative to the counter value of the previous
+	 * sampling for the key. If the Counter was {@link #set(long) set} meanwhile, they are absolute, the same
+	 * as the values of the Counter.
+	 */
+	@Override
 	CounterSample sampleIncrement(Object key);
 }
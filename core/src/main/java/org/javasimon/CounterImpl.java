@@ -2,8 +2,6 @@ package org.javasimon;
 
 import org.javasimon.utils.SimonUtils;
 
-import java.util.Collection;
-
 /**
  * Class implements {@link org.javasimon.Counter} interface - see there for how to use Counter.
  *
@@ -51,8 +49,12 @@ final class CounterImpl extends AbstractSimon implements Counter {
 		CounterSample sample;
 		synchronized (this) {
 			setPrivate(val, now);
-			updateIncrementalSimonsSet(val, now);
-			sample = sampleIfCallbacksNotEmpty();
+			IncrementInterval interval = incrementInterval();
+			if (interval != null) {
+				interval.usage(now);
+				interval.counterSet(val, now);
+			}
+			sample = sampleIfRequired();
 		}
 		manager.callback().onCounterSet(this, val, sample);
 		return this;
@@ -65,15 +67,6 @@ final class CounterImpl extends AbstractSimon implements Counter {
 		updateMin();
 	}
 
-	private void updateIncrementalSimonsSet(long val, long now) {
-		Collection<Simon> simons = incrementalSimons();
-		if (simons != null) {
-			for (Simon simon : simons) {
-				((CounterImpl) simon).setPrivate(val, now);
-			}
-		}
-	}
-
 	private void updateMin() {
 		if (counter <= min) {
 			min = counter;
@@ -103,8 +96,8 @@ final class CounterImpl extends AbstractSimon implements Counter {
 		CounterSample sample;
 		synchronized (this) {
 			increasePrivate(inc, now);
-			updateIncrementalSimonsIncrease(inc, now);
-			sample = sampleIfCallbacksNotEmpty();
+			updateIncrementInterval(inc > 0, inc <= 0, now);
+			sample = sampleIfRequired();
 		}
 		manager.callback().onCounterIncrease(this, inc, sample);
 		return this;
@@ -121,22 +114,13 @@ final class CounterImpl extends AbstractSimon implements Counter {
 		}
 	}
 
-	private void updateIncrementalSimonsIncrease(long inc, long now) {
-		Collection<Simon> simons = incrementalSimons();
-		if (simons != null) {
-			for (Simon simon : simons) {
-				((CounterImpl) simon).increasePrivate(inc, now);
-			}
-		}
-	}
-
 	@Override
 	public Counter decrease() {
 		return decrease(1);
 	}
 
 	@Override
-	public synchronized Counter decrease(long dec) {
+	public Counter decrease(long dec) {
 		if (!enabled) {
 			return this;
 		}
@@ -145,8 +129,8 @@ final class CounterImpl extends AbstractSimon implements Counter {
 		CounterSample sample;
 		synchronized (this) {
 			decreasePrivate(dec, now);
-			sample = sampleIfCallbacksNotEmpty();
-			updateIncrementalSimonsDecrease(dec, now);
+			sample = sampleIfRequired();
+			updateIncrementInterval(dec <= 0, dec > 0, now);
 		}
 		manager.callback().onCounterDecrease(this, dec, sample);
 		return this;
@@ -163,17 +147,22 @@ final class CounterImpl extends AbstractSimon implements Counter {
 		}
 	}
 
-	private void updateIncrementalSimonsDecrease(long dec, long now) {
-		Collection<Simon> simons = incrementalSimons();
-		if (simons != null) {
-			for (Simon simon : simons) {
-				((CounterImpl) simon).decreasePrivate(dec, now);
+	// must be called after the counter and usages update
+	private void updateIncrementInterval(boolean maxChange, boolean minChange, long now) {
+		IncrementInterval interval = incrementInterval();
+		if (interval != null) {
+			interval.usage(now);
+			if (maxChange) {
+				interval.updateMax(counter, now);
+			}
+			if (minChange) {
+				interval.updateMin(counter, now);
 			}
 		}
 	}
 
-	private CounterSample sampleIfCallbacksNotEmpty() {
-		if (!manager.callback().callbacks().isEmpty()) {
+	private CounterSample sampleIfRequired() {
+		if (manager.callback().isSampleRequired()) {
 			return sample();
 		}
 		return null;
@@ -229,8 +218,10 @@ final class CounterImpl extends AbstractSimon implements Counter {
 	}
 
 	@Override
-	public CounterSample sampleIncrement(Object key) {
-		return (CounterSample) sampleIncrementHelper(key, new CounterImpl(null, manager));
+	public synchronized CounterSample sampleIncrement(Object key) {
+		CounterSample sample = sample();
+		IncrementBase previous = nextIncrementInterval(key, sample, Long.MIN_VALUE, 0);
+		return previous != null ? previous.counterIncrement(sample) : sample;
 	}
 
 	/**
@@ -5,25 +5,92 @@ import org.javasimon.callback.CompositeCallbackImpl;
 import org.javasimon.clock.SimonClock;
 import org.javasimon.utils.SimonUtils;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Map;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Implements fully functional {@link Manager} in the enabled state. Does not support
  * {@link #enable()}/{@link #disable()} - for this use {@link SwitchingManager}.
+ * <p/>
+ * Existing Simons are returned without any locking. New Simons are created under the monitor of their parent
+ * Simon only, hence Simons in different parts of the hierarchy are created concurrently. Monitors are always
+ * taken from the ancestor to the descendant, the same order is used by {@link Simon#setState(SimonState, boolean)}.
+ * Only {@link #clear()} blocks the whole hierarchy. Simons must not be obtained from the manager while holding
+ * the monitor of any Simon, because creation of a Simon may evict other Simons (see
+ * {@link ManagerConfiguration#setMaxSimons(int)}) under the monitors of their parents.
  *
  * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
  */
 public final class EnabledManager implements Manager {
 
-	private UnknownSimon rootSimon;
+	/** Creates Simons of particular implementation without reflection. */
+	private interface SimonFactory {
+		AbstractSimon create(String name, Manager manager);
+	}
+
+	/** Percentage of {@link ManagerConfiguration#getMaxSimons()} evicted over the limit to amortize the eviction scan. */
+	private static final int EVICTION_BATCH_PERCENT = 10;
+
+	/** Orders Simons from the most recently used, head of the queue is the most recently used Simon. */
+	private static final Comparator<Simon> MOST_RECENTLY_USED_FIRST = new Comparator<Simon>() {
+		@Override
+		public int compare(Simon s1, Simon s2) {
+			return Long.compare(s2.getLastUsage(), s1.getLastUsage());
+		}
+	};
 
-	private final Map<String, AbstractSimon> allSimons = new ConcurrentHashMap<>();
+	private static final SimonFactory UNKNOWN_SIMON_FACTORY = new SimonFactory() {
+		@Override
+		public AbstractSimon create(String name, Manager manager) {
+			return new UnknownSimon(name, manager);
+		}
+	};
+
+	private static final SimonFactory STOPWATCH_FACTORY = new SimonFactory() {
+		@Override
+		public AbstractSimon create(String name, Manager manager) {
+			return new StopwatchImpl(name, manager);
+		}
+	};
+
+	private static final SimonFactory STRIPED_STOPWATCH_FACTORY = new SimonFactory() {
+		@Override
+		public AbstractSimon create(String name, Manager manager) {
+			return new StripedStopwatchImpl(name, manager);
+		}
+	};
+
+	private static final SimonFactory COUNTER_FACTORY = new SimonFactory() {
+		@Override
+		public AbstractSimon create(String name, Manager manager) {
+			return new CounterImpl(name, manager);
+		}
+	};
+
+	private static final SimonFactory STRIPED_COUNTER_FACTORY = new SimonFactory() {
+		@Override
+		public AbstractSimon create(String name, Manager manager) {
+			return new StripedCounterImpl(name, manager);
+		}
+	};
+
+	private volatile UnknownSimon rootSimon;
+
+	/** Serializes eviction scans, creation of Simons never waits for it. */
+	private final Lock evictionLock = new ReentrantLock();
+
+	private final ConcurrentMap<String, AbstractSimon> allSimons = new ConcurrentHashMap<>();
+
+	/** Sorted index of all Simons for pattern lookups, updated together with {@link #allSimons}. */
+	private final SimonNameIndex nameIndex = new SimonNameIndex();
 
 	private final CompositeCallback callback = new CompositeCallbackImpl();
 
@@ -31,6 +98,10 @@ public final class EnabledManager implements Manager {
 
 	private final SimonClock clock;
 
+	private volatile boolean stripedStopwatches;
+
+	private volatile boolean stripedCounters;
+
 	/** Creates new enabled manager. */
 	public EnabledManager() {
 		this(SimonClock.SYSTEM);
@@ -39,7 +110,7 @@ public final class EnabledManager implements Manager {
 	public EnabledManager(SimonClock clock) {
 		this.clock = clock;
 		rootSimon = new UnknownSimon(ROOT_SIMON_NAME, this);
-		allSimons.put(ROOT_SIMON_NAME, rootSimon);
+		putSimon(rootSimon);
 		configuration = new ManagerConfiguration(this);
 		callback.initialize(this);
 	}
@@ -50,35 +121,110 @@ public final class EnabledManager implements Manager {
 	}
 
 	@Override
-	public synchronized void destroySimon(String name) {
+	public void destroySimon(String name) {
 		if (name.equals(ROOT_SIMON_NAME)) {
 			throw new SimonException("Root Simon cannot be destroyed!");
 		}
-		AbstractSimon simon = allSimons.remove(name);
-		if (simon.getChildren().size() > 0) {
-			replaceUnknownSimon(simon, UnknownSimon.class);
-		} else {
-			((AbstractSimon) simon.getParent()).replaceChild(simon, null);
+		while (true) {
+			AbstractSimon simon = allSimons.get(name);
+			if (simon == null) {
+				return;
+			}
+			AbstractSimon parent = (AbstractSimon) simon.getParent();
+			synchronized (parent) {
+				synchronized (simon) {
+					if (!isAttached(simon, parent)) {
+						continue; // parent was replaced meanwhile
+					}
+					removeSimon(simon);
+					if (simon.hasChildren()) {
+						replaceUnknownSimon(simon, UNKNOWN_SIMON_FACTORY);
+					} else {
+						parent.replaceChild(simon, null);
+					}
+				}
+			}
+			callback.onSimonDestroyed(simon);
+			return;
 		}
-		callback.onSimonDestroyed(simon);
 	}
 
 	@Override
-	public synchronized void clear() {
-		allSimons.clear();
-		rootSimon = new UnknownSimon(ROOT_SIMON_NAME, this);
-		allSimons.put(ROOT_SIMON_NAME, rootSimon);
+	public void clear() {
+		UnknownSimon oldRoot = rootSimon;
+		synchronized (oldRoot) {
+			removeSubtree(oldRoot);
+			rootSimon = new UnknownSimon(ROOT_SIMON_NAME, this);
+			putSimon(rootSimon);
+		}
 		callback.onManagerClear();
 	}
 
+	// monitors are taken from the ancestor to the descendant, hence no Simon can be attached to the removed subtree
+	private void removeSubtree(AbstractSimon simon) {
+		synchronized (simon) {
+			for (Simon child : simon.getChildren()) {
+				removeSubtree((AbstractSimon) child);
+			}
+			removeSimon(simon);
+		}
+	}
+
 	@Override
 	public Counter getCounter(String name) {
-		return (Counter) getOrCreateSimon(name, CounterImpl.class);
+		return (Counter) getOrCreateSimon(name, Counter.class, stripedCounters ? STRIPED_COUNTER_FACTORY : COUNTER_FACTORY);
 	}
 
 	@Override
 	public Stopwatch getStopwatch(String name) {
-		return (Stopwatch) getOrCreateSimon(name, StopwatchImpl.class);
+		return (Stopwatch) getOrCreateSimon(name, Stopwatch.class, stripedStopwatches ? STRIPED_STOPWATCH_FACTORY : STOPWATCH_FACTORY);
+	}
+
+	/**
+	 * Returns true if newly created Stopwatches use striped implementation.
+	 *
+	 * @return true if Stopwatches are striped
+	 * @see #setStripedStopwatches(boolean)
+	 * @since 4.0
+	 */
+	public boolean isStripedStopwatches() {
+		return stripedStopwatches;
+	}
+
+	/**
+	 * Sets whether newly created Stopwatches use striped implementation that does not lock the Stopwatch
+	 * when the split is added. This is recommended for Stopwatches heavily used by many concurrent threads,
+	 * reading of the Stopwatch values (getters and sampling) is more expensive on the other hand.
+	 * Already existing Stopwatches are not affected.
+	 *
+	 * @param stripedStopwatches true for striped Stopwatches, false for default (synchronized) ones
+	 * @since 4.0
+	 */
+	public void setStripedStopwatches(boolean stripedStopwatches) {
+		this.stripedStopwatches = stripedStopwatches;
+	}
+
+	/**
+	 * Returns true if newly created Counters use striped implementation.
+	 *
+	 * @return true if Counters are striped
+	 * @see #setStripedCounters(boolean)
+	 * @since 4.0
+	 */
+	public boolean isStripedCounters() {
+		return stripedCounters;
+	}
+
+	/**
+	 * Sets whether newly created Counters use striped implementation that does not lock the Counter
+	 * on increase, decrease or set. This is recommended for Counters changed by many concurrent threads
+	 * (active sessions, queue depths, etc.). Already existing Counters are not affected.
+	 *
+	 * @param stripedCounters true for striped Counters, false for default (synchronized) ones
+	 * @since 4.0
+	 */
+	public void setStripedCounters(boolean stripedCounters) {
+		this.stripedCounters = stripedCounters;
 	}
 
 	@Override
@@ -97,8 +243,11 @@ public final class EnabledManager implements Manager {
 		if (simonFilter == null) {
 			return Collections.unmodifiableCollection((Collection) allSimons.values());
 		}
+		Collection<AbstractSimon> candidates = simonFilter instanceof SimonPattern
+			? nameIndex.candidates((SimonPattern) simonFilter)
+			: allSimons.values();
 		Collection<Simon> simons = new ArrayList<>();
-		for (AbstractSimon simon : allSimons.values()) {
+		for (AbstractSimon simon : candidates) {
 			if (simonFilter.accept(simon)) {
 				simons.add(simon);
 			}
@@ -106,98 +255,215 @@ public final class EnabledManager implements Manager {
 		return simons;
 	}
 
-	private Simon getOrCreateSimon(String name, Class<? extends AbstractSimon> simonClass) {
+	private Simon getOrCreateSimon(String name, Class<? extends Simon> simonType, SimonFactory factory) {
 		if (name == null) {
 			// create an "anonymous" Simon - Manager does not care about it anymore
-			return instantiateSimon(null, simonClass);
+			return factory.create(null, this);
 		}
 		if (name.equals(ROOT_SIMON_NAME)) {
 			throw new SimonException("Root Simon cannot be replaced or recreated!");
 		}
 		AbstractSimon simon = allSimons.get(name);
-		if (simon != null && simonClass.isInstance(simon)) {
+		if (simon != null && simonType.isInstance(simon)) {
 			return simon;
 		}
-		return createOrReplaceUnknownSimon(name, simonClass);
+		return createOrReplaceUnknownSimon(name, simonType, factory);
 	}
 
-	private synchronized AbstractSimon createOrReplaceUnknownSimon(String name, Class<? extends AbstractSimon> simonClass) {
-		// we will rather check the map in synchronized block before we try to create/replace the Simon
-		AbstractSimon simon = allSimons.get(name);
-		if (simon != null && simonClass.isInstance(simon)) {
-			return simon; // the same return like in non-synchronized getOrCreateSimon - you just never know
+	private AbstractSimon createOrReplaceUnknownSimon(String name, Class<? extends Simon> simonType, SimonFactory factory) {
+		if (!SimonUtils.checkName(name)) {
+			throw new SimonException("Simon name must match following pattern: '" + SimonUtils.NAME_PATTERN.pattern() + "', used name: " + name);
 		}
-
-		if (simon == null) {
-			if (name != null && !SimonUtils.checkName(name)) {
-				throw new SimonException("Simon name must match following pattern: '" + SimonUtils.NAME_PATTERN.pattern() + "', used name: " + name);
+		if (!allSimons.containsKey(name) && isLimitReached(name)) {
+			if (configuration.getOverflowPolicy() == ManagerConfiguration.OverflowPolicy.OVERFLOW_SIMON) {
+				return (AbstractSimon) getOrCreateSimon(overflowSimonName(simonType), simonType, factory);
 			}
-			simon = newSimon(name, simonClass);
-		} else if (simon instanceof UnknownSimon) {
-			simon = replaceUnknownSimon(simon, simonClass);
-		} else {
-			throw new SimonException("Simon named '" + name + "' already exists and its type is '" + simon.getClass().getName() + "' while requested type is '" + simonClass.getName() + "'.");
+			evictIdleSimons(name);
+		}
+		// configuration is resolved before any monitor is taken
+		SimonState state = configuration.getConfig(name).getState();
+		AbstractSimon simon = attachSimon(name, simonType, factory, state);
+		if (simon == null) {
+			// Simon was created by another thread meanwhile
+			return (AbstractSimon) getOrCreateSimon(name, simonType, factory);
 		}
 		callback.onSimonCreated(simon);
 		return simon;
 	}
 
-	// called from synchronized method
-	private AbstractSimon replaceUnknownSimon(AbstractSimon simon, Class<? extends AbstractSimon> simonClass) {
-		AbstractSimon newSimon = instantiateSimon(simon.getName(), simonClass);
-		newSimon.enabled = simon.enabled;
-
-		// fixes parent link and parent's children list
-		((AbstractSimon) simon.getParent()).replaceChild(simon, newSimon);
+	/**
+	 * Creates the Simon under its parent or replaces the Unknown Simon of the same name. Map of Simons and children
+	 * of the parent are changed only under the monitor of the parent, missing parents are created before the monitor
+	 * is taken.
+	 *
+	 * @return new Simon or null if the Simon of the requested type already exists
+	 */
+	private AbstractSimon attachSimon(String name, Class<? extends Simon> simonType, SimonFactory factory, SimonState state) {
+		while (true) {
+			AbstractSimon parent = parentOf(name);
+			synchronized (parent) {
+				if (allSimons.get(parent.getName()) != parent) {
+					continue; // parent was replaced, evicted or cleared meanwhile
+				}
+				AbstractSimon simon = allSimons.get(name);
+				if (simon == null) {
+					simon = factory.create(name, this);
+					parent.addChild(simon);
+					if (state != null) {
+						simon.setState(state, false);
+					}
+					putSimon(simon);
+					return simon;
+				}
+				if (simonType.isInstance(simon)) {
+					return null;
+				}
+				if (simon instanceof UnknownSimon) {
+					return replaceUnknownSimon(simon, factory);
+				}
+				throw new SimonException("Simon named '" + name + "' already exists and its type is '" + simon.getClass().getName() + "' while requested type is '" + simonType.getName() + "'.");
+			}
+		}
+	}
 
-		// fixes children list and all children's parent link
-		for (Simon child : simon.getChildren()) {
-			newSimon.addChild((AbstractSimon) child);
-			((AbstractSimon) child).setParent(newSimon);
+	// returns existing parent or creates Unknown one
+	private AbstractSimon parentOf(String name) {
+		int ix = name.lastIndexOf(HIERARCHY_DELIMITER);
+		if (ix == -1) {
+			return rootSimon;
 		}
+		String parentName = name.substring(0, ix);
+		AbstractSimon parent = allSimons.get(parentName);
+		while (parent == null) {
+			parent = attachSimon(parentName, Simon.class, UNKNOWN_SIMON_FACTORY, null);
+			if (parent == null) {
+				parent = allSimons.get(parentName);
+			}
+		}
+		return parent;
+	}
 
-		allSimons.put(simon.getName(), newSimon);
-		return newSimon;
+	private boolean isLimitReached(String name) {
+		int maxSimons = configuration.getMaxSimons();
+		return maxSimons > 0 && allSimons.size() >= maxSimons && !isOverflowSimon(name);
+	}
+
+	private boolean isOverflowSimon(String name) {
+		String overflowName = configuration.getOverflowSimonName();
+		return name.equals(overflowName) || name.startsWith(overflowName + HIERARCHY_DELIMITER);
+	}
+
+	private String overflowSimonName(Class<? extends Simon> simonType) {
+		return configuration.getOverflowSimonName() + HIERARCHY_DELIMITER + simonType.getSimpleName();
 	}
 
-	// called from synchronized method
-	private AbstractSimon newSimon(String name, Class<? extends AbstractSimon> simonClass) {
-		AbstractSimon simon = instantiateSimon(name, simonClass);
-		if (name != null) {
-			addToHierarchy(simon, name);
-			SimonConfiguration config = configuration.getConfig(name);
-			if (config.getState() != null) {
-				simon.setState(config.getState(), false);
+	/**
+	 * Destroys least recently used Simons without children and active splits to get below the limit with some
+	 * reserve ({@link #EVICTION_BATCH_PERCENT}), so that the scan is not repeated for every new Simon. Unknown Simons
+	 * left without children are destroyed as well. {@link org.javasimon.callback.Callback#onSimonDestroyed(Simon)}
+	 * is called for every destroyed Simon. If other thread is already evicting, the Simon is created over the limit
+	 * rather than waiting for the eviction. Caller must not hold the monitor of any Simon, otherwise the order
+	 * of monitors (from the ancestor to the descendant) would be violated - that is why the split for
+	 * a sub-stopwatch is added only after the monitor of the stopped Stopwatch is released.
+	 */
+	private void evictIdleSimons(String requestedName) {
+		if (!evictionLock.tryLock()) {
+			return;
+		}
+		int maxSimons = configuration.getMaxSimons();
+		List<AbstractSimon> evicted = new ArrayList<>();
+		try {
+			if (!isLimitReached(requestedName)) {
+				return; // evicted by another thread meanwhile
+			}
+			int batchSize = allSimons.size() - maxSimons + 1 + maxSimons * EVICTION_BATCH_PERCENT / 100;
+			PriorityQueue<AbstractSimon> leastRecentlyUsed = new PriorityQueue<>(batchSize + 1, MOST_RECENTLY_USED_FIRST);
+			for (AbstractSimon simon : allSimons.values()) {
+				if (isEvictable(simon)) {
+					leastRecentlyUsed.add(simon);
+					if (leastRecentlyUsed.size() > batchSize) {
+						leastRecentlyUsed.poll();
+					}
+				}
 			}
-			allSimons.put(name, simon);
+			for (AbstractSimon simon : leastRecentlyUsed) {
+				evictSimon(simon, evicted);
+			}
+		} finally {
+			evictionLock.unlock();
+		}
+		if (evicted.isEmpty()) {
+			callback.onManagerWarning("Limit of " + maxSimons +
+				" Simons reached and no idle Simon can be evicted, creating Simon over the limit: " + requestedName, null);
+		}
+		for (AbstractSimon simon : evicted) {
+			callback.onSimonDestroyed(simon);
 		}
-		return simon;
 	}
 
-	private AbstractSimon instantiateSimon(String name, Class<? extends AbstractSimon> simonClass) {
-		AbstractSimon simon;
-		try {
-			Constructor<? extends AbstractSimon> constructor = simonClass.getDeclaredConstructor(String.class, Manager.class);
-			simon = constructor.newInstance(name, this);
-		} catch (NoSuchMethodException | InvocationTargetException | IllegalAccessException | InstantiationException e) {
-			throw new SimonException(e);
+	private boolean isEvictable(AbstractSimon simon) {
+		return !(simon instanceof UnknownSimon)
+			&& !simon.hasChildren()
+			&& !hasActiveSplits(simon)
+			&& !isOverflowSimon(simon.getName());
+	}
+
+	private boolean hasActiveSplits(AbstractSimon simon) {
+		return simon instanceof Stopwatch && ((Stopwatch) simon).getActive() > 0;
+	}
+
+	private void evictSimon(AbstractSimon simon, List<AbstractSimon> evicted) {
+		AbstractSimon parent = (AbstractSimon) simon.getParent();
+		synchronized (parent) {
+			synchronized (simon) {
+				// Simon might have got children or active splits since the scan
+				if (!isAttached(simon, parent) || simon.hasChildren() || hasActiveSplits(simon)) {
+					return;
+				}
+				removeSimon(simon);
+				parent.replaceChild(simon, null);
+			}
+		}
+		evicted.add(simon);
+		if (parent instanceof UnknownSimon && parent != rootSimon && !parent.hasChildren()) {
+			evictSimon(parent, evicted);
 		}
-		return simon;
 	}
 
-	private void addToHierarchy(AbstractSimon simon, String name) {
-		int ix = name.lastIndexOf(HIERARCHY_DELIMITER);
-		AbstractSimon parent = rootSimon;
-		if (ix != -1) {
-			String parentName = name.substring(0, ix);
-			parent = allSimons.get(parentName);
-			if (parent == null) {
-				parent = new UnknownSimon(parentName, this);
-				addToHierarchy(parent, parentName);
-				allSimons.put(parentName, parent);
+	// called with the monitor of the parent held
+	private AbstractSimon replaceUnknownSimon(AbstractSimon simon, SimonFactory factory) {
+		AbstractSimon newSimon = factory.create(simon.getName(), this);
+		// no child can be added to the replaced Simon meanwhile
+		synchronized (simon) {
+			newSimon.enabled = simon.enabled;
+
+			// fixes parent link and parent's children list
+			((AbstractSimon) simon.getParent()).replaceChild(simon, newSimon);
+
+			// fixes children list and all children's parent link
+			for (Simon child : simon.getChildren()) {
+				newSimon.addChild((AbstractSimon) child);
+				((AbstractSimon) child).setParent(newSimon);
 			}
+
+			putSimon(newSimon);
 		}
-		parent.addChild(simon);
+		return newSimon;
+	}
+
+	private boolean isAttached(AbstractSimon simon, AbstractSimon parent) {
+		return allSimons.get(simon.getName()) == simon && simon.getParent() == parent;
+	}
+
+	private void putSimon(AbstractSimon simon) {
+		allSimons.put(simon.getName(), simon);
+		nameIndex.put(simon);
+	}
+
+	// removes only this very Simon, not a Simon of the same name that replaced it
+	private void removeSimon(AbstractSimon simon) {
+		allSimons.remove(simon.getName(), simon);
+		nameIndex.remove(simon);
 	}
 
 	@Override
@@ -257,7 +523,7 @@ public final class EnabledManager implements Manager {
 		return clock.millisForNano(nanos);
 	}
 
-	synchronized void purgeIncrementalSimonsOlderThan(long thresholdMs) {
+	void purgeIncrementalSimonsOlderThan(long thresholdMs) {
 		for (Simon simon : allSimons.values()) {
 			if (simon instanceof AbstractSimon) {
 				AbstractSimon abstractSimon = (AbstractSimon) simon;
@@ -0,0 +1,116 @@
+package org.javasimon;
+
+/**
+ * State of a single incremental sampling key - cumulative sample from the previous sampling and values
+ * of all the {@link IncrementInterval}s closed since then. Incremental sample is computed as a difference
+ * between the current cumulative sample and the base sample, extremes are taken from the accumulated intervals.
+ * Instances are accessed only under the monitor of the owning Simon.
+ *
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ * @since 4.0
+ */
+final class IncrementBase {
+
+	private final Sample base;
+	private final IncrementInterval accumulated;
+	private final long sampled;
+
+	/**
+	 * Creates the base for the sampling key.
+	 *
+	 * @param base cumulative sample returned to the key
+	 * @param accumulated empty interval that will accumulate closed intervals
+	 * @param sampled millis timestamp of the sampling
+	 */
+	IncrementBase(Sample base, IncrementInterval accumulated, long sampled) {
+		this.base = base;
+		this.accumulated = accumulated;
+		this.sampled = sampled;
+	}
+
+	void accumulate(IncrementInterval closed) {
+		accumulated.merge(closed);
+	}
+
+	long getSampled() {
+		return sampled;
+	}
+
+	/**
+	 * Returns the increment of the Stopwatch since the base sample. Mean and variance of the increment are derived
+	 * from the difference of cumulative moments, active is the current value (it is not a cumulative value).
+	 *
+	 * @param current current cumulative sample
+	 * @return incremental sample
+	 */
+	StopwatchSample stopwatchIncrement(StopwatchSample current) {
+		StopwatchSample previous = (StopwatchSample) base;
+		long counter = current.getCounter() - previous.getCounter();
+		long total = current.getTotal() - previous.getTotal();
+
+		StopwatchSample sample = new StopwatchSample();
+		sample.setCounter(counter);
+		sample.setTotal(total);
+		sample.setMax(accumulated.max);
+		sample.setMaxTimestamp(accumulated.maxTimestamp);
+		sample.setMin(accumulated.min);
+		sample.setMinTimestamp(accumulated.minTimestamp);
+		sample.setActive(current.getActive());
+		sample.setMaxActive(accumulated.maxActive);
+		sample.setMaxActiveTimestamp(accumulated.maxActiveTimestamp);
+		if (counter > 0) {
+			sample.setLast(current.getLast());
+			double mean = (double) total / counter;
+			// Chan's parallel formula for the second moment solved for the increment part
+			double delta = mean - previous.getMean();
+			double mean2 = moment2(current) - moment2(previous)
+				- delta * delta * previous.getCounter() * counter / current.getCounter();
+			mean2 = Math.max(mean2, 0);
+			sample.setMean(mean);
+			sample.setVarianceN(counter == 1 ? 0d : mean2 / counter);
+			sample.setVariance(counter == 1 ? 0d : mean2 / (counter - 1));
+			sample.setStandardDeviation(Math.sqrt(sample.getVariance()));
+		} else {
+			sample.setVarianceN(Double.NaN);
+			sample.setVariance(Double.NaN);
+			sample.setStandardDeviation(Double.NaN);
+		}
+		sampleCommon(sample, current);
+		return sample;
+	}
+
+	private static double moment2(StopwatchSample sample) {
+		return sample.getCounter() > 1 ? sample.getVarianceN() * sample.getCounter() : 0d;
+	}
+
+	/**
+	 * Returns the increment of the Counter since the base sample. Counter value and extremes are relative
+	 * to the counter value of the base sample. If the Counter was set since the base sample, counter value
+	 * and extremes are absolute - as if the incremental Counter was set to the same value.
+	 *
+	 * @param current current cumulative sample
+	 * @return incremental sample
+	 */
+	CounterSample counterIncrement(CounterSample current) {
+		CounterSample previous = (CounterSample) base;
+		long baseCounter = accumulated.set ? 0 : previous.getCounter();
+
+		CounterSample sample = new CounterSample();
+		sample.setCounter(current.getCounter() - baseCounter);
+		sample.setIncrementSum(current.getIncrementSum() - previous.getIncrementSum());
+		sample.setDecrementSum(current.getDecrementSum() - previous.getDecrementSum());
+		sample.setMax(accumulated.max != Long.MIN_VALUE ? accumulated.max - baseCounter : Long.MIN_VALUE);
+		sample.setMaxTimestamp(accumulated.maxTimestamp);
+		sample.setMin(accumulated.min != Long.MAX_VALUE ? accumulated.min - baseCounter : Long.MAX_VALUE);
+		sample.setMinTimestamp(accumulated.minTimestamp);
+		sampleCommon(sample, current);
+		return sample;
+	}
+
+	private void sampleCommon(Sample sample, Sample current) {
+		sample.setName(current.getName());
+		sample.setNote(current.getNote());
+		sample.setFirstUsage(accumulated.firstUsage);
+		sample.setLastUsage(accumulated.lastUsage);
+	}
+}
@@ -0,0 +1,148 @@
+package org.javasimon;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Accumulates values for incremental sampling ({@link Simon#sampleIncrement(Object)}) that can't be computed
+ * as a difference of two cumulative samples - extremes with their timestamps, max active and usages.
+ * Simon updates only the single current interval on every change, regardless of the number of sampling keys.
+ * The interval is closed when any key is sampled and its values are {@link #merge(IncrementInterval) merged}
+ * into {@link IncrementBase} of every other key.
+ * <p/>
+ * Updates use CAS so that lock-free Simons can update the interval concurrently. Timestamps are written
+ * after the value and may belong to a different value when updated concurrently with the same extreme.
+ *
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ * @since 4.0
+ */
+final class IncrementInterval {
+
+	private static final AtomicLongFieldUpdater<IncrementInterval> MAX =
+		AtomicLongFieldUpdater.newUpdater(IncrementInterval.class, "max");
+
+	private static final AtomicLongFieldUpdater<IncrementInterval> MIN =
+		AtomicLongFieldUpdater.newUpdater(IncrementInterval.class, "min");
+
+	private static final AtomicLongFieldUpdater<IncrementInterval> MAX_ACTIVE =
+		AtomicLongFieldUpdater.newUpdater(IncrementInterval.class, "maxActive");
+
+	private static final AtomicLongFieldUpdater<IncrementInterval> FIRST_USAGE =
+		AtomicLongFieldUpdater.newUpdater(IncrementInterval.class, "firstUsage");
+
+	volatile long max;
+	volatile long maxTimestamp;
+	volatile long min = Long.MAX_VALUE;
+	volatile long minTimestamp;
+	volatile long maxActive;
+	volatile long maxActiveTimestamp;
+	volatile long firstUsage;
+	volatile long lastUsage;
+	/** True if the Counter was set in this interval, Counter values reported since then are absolute. */
+	volatile boolean set;
+
+	/**
+	 * Creates new interval.
+	 *
+	 * @param initialMax initial value of max (0 for Stopwatch, {@code Long.MIN_VALUE} for Counter)
+	 * @param initialMaxActive initial value of max active - current active splits
+	 */
+	IncrementInterval(long initialMax, long initialMaxActive) {
+		max = initialMax;
+		maxActive = initialMaxActive;
+	}
+
+	/**
+	 * Marks the usage of the Simon in this interval.
+	 *
+	 * @param now current millis
+	 */
+	void usage(long now) {
+		if (firstUsage == 0) {
+			FIRST_USAGE.compareAndSet(this, 0, now);
+		}
+		if (lastUsage != now) {
+			lastUsage = now;
+		}
+	}
+
+	/**
+	 * Marks the Counter set and updates both extremes with the value.
+	 *
+	 * @param value new value
+	 * @param now current millis
+	 */
+	void counterSet(long value, long now) {
+		set = true;
+		update(value, now);
+	}
+
+	/**
+	 * Updates both extremes with the value - used for Stopwatch splits and Counter set.
+	 *
+	 * @param value new value
+	 * @param now current millis
+	 */
+	void update(long value, long now) {
+		updateMax(value, now);
+		updateMin(value, now);
+	}
+
+	void updateMax(long value, long now) {
+		long current;
+		while (value > (current = max)) {
+			if (MAX.compareAndSet(this, current, value)) {
+				maxTimestamp = now;
+				return;
+			}
+		}
+	}
+
+	void updateMin(long value, long now) {
+		long current;
+		while (value < (current = min)) {
+			if (MIN.compareAndSet(this, current, value)) {
+				minTimestamp = now;
+				return;
+			}
+		}
+	}
+
+	void updateMaxActive(long active, long now) {
+		long current;
+		while (active > (current = maxActive)) {
+			if (MAX_ACTIVE.compareAndSet(this, current, active)) {
+				maxActiveTimestamp = now;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Merges the closed interval into this one - used only for intervals not updated by Simons anymore.
+	 *
+	 * @param closed closed interval following this interval
+	 */
+	void merge(IncrementInterval closed) {
+		if (closed.max > max) {
+			max = closed.max;
+			maxTimestamp = closed.maxTimestamp;
+		}
+		if (closed.min < min) {
+			min = closed.min;
+			minTimestamp = closed.minTimestamp;
+		}
+		if (closed.maxActive > maxActive) {
+			maxActive = closed.maxActive;
+			maxActiveTimestamp = closed.maxActiveTimestamp;
+		}
+		if (firstUsage == 0) {
+			firstUsage = closed.firstUsage;
+		}
+		if (closed.lastUsage != 0) {
+			lastUsage = closed.lastUsage;
+		}
+		if (closed.set) {
+			set = true;
+		}
+	}
+}
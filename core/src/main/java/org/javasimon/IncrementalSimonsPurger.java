@@ -6,8 +6,12 @@ import org.slf4j.LoggerFactory;
 import java.util.concurrent.*;
 
 /**
- * This class implements periodical removing of old incremental Simons for specified Manager.
- * Unused incremental samples can cause memory leaks and performance degradation and should be purged regularly.
+ * This class implements periodical removing of old incremental sampling keys for specified Manager.
+ * Keys not sampled since the purge period started are removed as if {@link Simon#stopIncrementalSampling(Object)}
+ * was called for them.
+ * <p/>
+ * Since 4.0 the cost of Simon updates doesn't depend on the number of incremental sampling keys and state kept
+ * for every key is small, so purging is not necessary unless clients create many keys and abandon them.
  *
  * Purger can be in one of two states: stopped or started. When an instance of the class is create it is in the
  * stopped stated. Method {@link IncrementalSimonsPurger#start(long, java.util.concurrent.TimeUnit)}
@@ -28,7 +32,10 @@ import java.util.concurrent.*;
  * </pre>
  *
  * @author <a href="mailto:ivan.mushketyk@gmail.com">Ivan Mushketyk</a>
+ * @deprecated incremental sampling keys don't affect the performance of Simons anymore,
+ * use {@link Simon#stopIncrementalSampling(Object)} when the key is not needed
  */
+@Deprecated
 public final class IncrementalSimonsPurger {
 
 	/** Manager where old incremental Simons will be purged */
@@ -6,6 +6,8 @@ import org.javasimon.callback.CompositeCallbackImpl;
 import org.javasimon.callback.CompositeFilterCallback;
 import org.javasimon.callback.FilterCallback;
 import org.javasimon.callback.FilterRule;
+import org.javasimon.callback.SamplingCallback;
+import org.javasimon.utils.SimonUtils;
 import org.javasimon.utils.bean.SimonBeanUtils;
 
 import java.io.IOException;
@@ -36,6 +38,11 @@ import javax.xml.stream.XMLStreamReader;
  * <pre>{@code
  * <simon-configuration>
  * ... TODO
+ * <sampling-callback>
+ *   <sample pattern="org.app.*" one-in="10" probability="0.5" max-per-second="100"/>
+ *   <callback class="..."/>
+ * </sampling-callback>
+ * <cardinality max="10000" overflow="evict-idle|overflow-simon" overflow-simon="overflow"/>
  * </simon-configuration>}</pre>
  *
  * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
@@ -44,8 +51,23 @@ import javax.xml.stream.XMLStreamReader;
 // of the config - so it can be set up by Spring for instance
 public final class ManagerConfiguration {
 
+	/** Default name of the Simon collecting Simons over the limit for {@link OverflowPolicy#OVERFLOW_SIMON}. */
+	public static final String DEFAULT_OVERFLOW_SIMON_NAME = "overflow";
+
+	/** Configuration returned for Simons not matching any pattern with some configuration. */
+	private static final SimonConfiguration NO_CONFIGURATION = new SimonConfiguration(null);
+
 	private Map<SimonPattern, SimonConfiguration> configs;
 
+	/** Compiled {@link #configs}, rebuilt whenever the configuration changes. */
+	private volatile SimonPatternMatcher<SimonConfiguration> configMatcher;
+
+	private volatile int maxSimons;
+
+	private volatile OverflowPolicy overflowPolicy;
+
+	private volatile String overflowSimonName;
+
 	private final Manager manager;
 
 	/**
@@ -61,6 +83,82 @@ public final class ManagerConfiguration {
 	/** Clears any previously loaded configuration. */
 	public void clear() {
 		configs = new LinkedHashMap<>();
+		compileConfigs();
+		maxSimons = 0;
+		overflowPolicy = OverflowPolicy.EVICT_IDLE;
+		overflowSimonName = DEFAULT_OVERFLOW_SIMON_NAME;
+	}
+
+	/**
+	 * Returns maximal number of Simons held by the manager (including unknown Simons in the hierarchy),
+	 * 0 means no limit. When the limit is reached {@link #getOverflowPolicy()} is applied.
+	 *
+	 * @return maximal number of Simons or 0 for unlimited
+	 * @since 4.0
+	 */
+	public int getMaxSimons() {
+		return maxSimons;
+	}
+
+	/**
+	 * Sets maximal number of Simons held by the manager, 0 means no limit. Existing Simons over the limit
+	 * are not destroyed until new Simon is requested.
+	 *
+	 * @param maxSimons maximal number of Simons or 0 for unlimited
+	 * @since 4.0
+	 */
+	public void setMaxSimons(int maxSimons) {
+		if (maxSimons < 0) {
+			throw new IllegalArgumentException("Max Simons must not be negative: " + maxSimons);
+		}
+		this.maxSimons = maxSimons;
+	}
+
+	/**
+	 * Returns policy applied when new Simon is requested and the manager already holds {@link #getMaxSimons()} Simons.
+	 *
+	 * @return overflow policy
+	 * @since 4.0
+	 */
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	/**
+	 * Sets policy applied when new Simon is requested and the manager already holds {@link #getMaxSimons()} Simons.
+	 *
+	 * @param overflowPolicy overflow policy
+	 * @since 4.0
+	 */
+	public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+		if (overflowPolicy == null) {
+			throw new IllegalArgumentException("Overflow policy must not be null");
+		}
+		this.overflowPolicy = overflowPolicy;
+	}
+
+	/**
+	 * Returns name of the Simon used for {@link OverflowPolicy#OVERFLOW_SIMON}. Overflow Simons are created
+	 * under this name for each requested Simon type - e.g. {@code overflow.Stopwatch}.
+	 *
+	 * @return name of the overflow Simon
+	 * @since 4.0
+	 */
+	public String getOverflowSimonName() {
+		return overflowSimonName;
+	}
+
+	/**
+	 * Sets name of the Simon used for {@link OverflowPolicy#OVERFLOW_SIMON}.
+	 *
+	 * @param overflowSimonName name of the overflow Simon
+	 * @since 4.0
+	 */
+	public void setOverflowSimonName(String overflowSimonName) {
+		if (overflowSimonName == null || !SimonUtils.checkName(overflowSimonName)) {
+			throw new IllegalArgumentException("Invalid overflow Simon name: " + overflowSimonName);
+		}
+		this.overflowSimonName = overflowSimonName;
 	}
 
 	/**
@@ -82,8 +180,12 @@ public final class ManagerConfiguration {
 						manager.callback().addCallback(processCallback(xr));
 					} else if (isStartTag(xr, "filter-callback")) {
 						manager.callback().addCallback(processFilterCallback(xr));
+					} else if (isStartTag(xr, "sampling-callback")) {
+						manager.callback().addCallback(processSamplingCallback(xr));
 					} else if (isStartTag(xr, "simon")) {
 						processSimon(xr);
+					} else if (isStartTag(xr, "cardinality")) {
+						processCardinality(xr);
 					} else {
 						break;
 					}
@@ -138,6 +240,39 @@ public final class ManagerConfiguration {
 		return callback;
 	}
 
+	private Callback processSamplingCallback(XMLStreamReader xr) throws XMLStreamException {
+		processStartElement(xr, "sampling-callback");
+		SamplingCallback callback = new SamplingCallback();
+		while (isStartTag(xr, "sample")) {
+			processSample(xr, callback);
+		}
+		processSetAndCallbacks(xr, callback);
+		processEndElement(xr, "sampling-callback");
+		return callback;
+	}
+
+	private void processSample(XMLStreamReader xr, SamplingCallback callback) throws XMLStreamException {
+		Map<String, String> attrs = processStartElement(xr, "sample");
+		long oneIn = 1;
+		double probability = 1;
+		double maxPerSecond = 0;
+		try {
+			if (attrs.get("one-in") != null) {
+				oneIn = Long.parseLong(attrs.get("one-in"));
+			}
+			if (attrs.get("probability") != null) {
+				probability = Double.parseDouble(attrs.get("probability"));
+			}
+			if (attrs.get("max-per-second") != null) {
+				maxPerSecond = Double.parseDouble(attrs.get("max-per-second"));
+			}
+			callback.addRule(attrs.get("pattern"), oneIn, probability, maxPerSecond);
+		} catch (IllegalArgumentException e) {
+			throw new SimonException(e);
+		}
+		processEndElement(xr, "sample");
+	}
+
 	private void processSetAndCallbacks(XMLStreamReader xr, Callback callback) throws XMLStreamException {
 		while (isStartTag(xr, "set")) {
 			processSet(xr, callback);
@@ -147,6 +282,8 @@ public final class ManagerConfiguration {
 				((CompositeCallback) callback).addCallback(processCallback(xr));
 			} else if (isStartTag(xr, "filter-callback")) {
 				((CompositeCallback) callback).addCallback(processFilterCallback(xr));
+			} else if (isStartTag(xr, "sampling-callback")) {
+				((CompositeCallback) callback).addCallback(processSamplingCallback(xr));
 			} else {
 				break;
 			}
@@ -218,27 +355,43 @@ public final class ManagerConfiguration {
 		String pattern = attrs.get("pattern");
 		SimonState state = attrs.get("state") != null ? SimonState.valueOf(toEnum(attrs.get("state"))) : null;
 		configs.put(new SimonPattern(pattern), new SimonConfiguration(state));
+		compileConfigs();
 		processEndElement(xr, "simon");
 	}
 
+	// patterns without state don't change the result and are not compiled at all
+	private void compileConfigs() {
+		Map<SimonPattern, SimonConfiguration> statefulConfigs = new LinkedHashMap<>();
+		for (Map.Entry<SimonPattern, SimonConfiguration> entry : configs.entrySet()) {
+			if (entry.getValue().getState() != null) {
+				statefulConfigs.put(entry.getKey(), entry.getValue());
+			}
+		}
+		configMatcher = new SimonPatternMatcher<>(statefulConfigs);
+	}
+
+	private void processCardinality(XMLStreamReader xr) throws XMLStreamException {
+		Map<String, String> attrs = processStartElement(xr, "cardinality", "max");
+		setMaxSimons(Integer.parseInt(attrs.get("max").trim()));
+		if (attrs.get("overflow") != null) {
+			setOverflowPolicy(OverflowPolicy.valueOf(toEnum(attrs.get("overflow"))));
+		}
+		if (attrs.get("overflow-simon") != null) {
+			setOverflowSimonName(attrs.get("overflow-simon").trim());
+		}
+		processEndElement(xr, "cardinality");
+	}
+
 	/**
-	 * Returns configuration for the Simon with the specified name.
+	 * Returns configuration for the Simon with the specified name. If more patterns match the name,
+	 * the last one with the state specified wins.
 	 *
 	 * @param name Simon name
 	 * @return configuration for that particular Simon
 	 */
 	SimonConfiguration getConfig(String name) {
-		SimonState state = null;
-
-		for (SimonPattern pattern : configs.keySet()) {
-			if (pattern.matches(name)) {
-				SimonConfiguration config = configs.get(pattern);
-				if (config.getState() != null) {
-					state = config.getState();
-				}
-			}
-		}
-		return new SimonConfiguration(state);
+		SimonConfiguration config = configMatcher.match(name);
+		return config != null ? config : NO_CONFIGURATION;
 	}
 
 	private String toEnum(String enumVal) {
@@ -314,4 +467,24 @@ public final class ManagerConfiguration {
 		}
 		return sb.toString().trim();
 	}
+
+	/**
+	 * Policy applied when new Simon is requested and the manager already holds {@link #getMaxSimons()} Simons.
+	 *
+	 * @since 4.0
+	 */
+	public enum OverflowPolicy {
+		/**
+		 * Least recently used Simons (see {@link Simon#getLastUsage()}) without children and active splits
+		 * are destroyed to make room for the new Simon. If no Simon can be destroyed, new Simon is created
+		 * over the limit and manager warning is reported.
+		 */
+		EVICT_IDLE,
+
+		/**
+		 * New Simon is not created, overflow Simon of the requested type (see {@link #getOverflowSimonName()})
+		 * is returned instead.
+		 */
+		OVERFLOW_SIMON
+	}
 }
\ No newline at end of file
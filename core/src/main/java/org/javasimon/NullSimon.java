@@ -232,6 +232,16 @@ final class NullStopwatch extends NullSimon implements Stopwatch {
 		return NULL_SPLIT;
 	}
 
+	@Override
+	public long startNanos() {
+		return DISABLED_NANOS;
+	}
+
+	@Override
+	public long stopNanos(long start) {
+		return 0;
+	}
+
 	@Override
 	public long getTotal() {
 		return 0;
@@ -31,7 +31,8 @@ public interface Simon extends HasAttributes {
 	Simon getParent();
 
 	/**
-	 * Returns list of children - direct sub-simons.
+	 * Returns list of children - direct sub-simons. List is an unmodifiable snapshot that doesn't reflect
+	 * later changes of the hierarchy.
 	 *
 	 * @return list of children
 	 */
@@ -121,6 +122,11 @@ public interface Simon extends HasAttributes {
 	 * Clients can use any sampling key (any Object) which enables safe access to their own increments.
 	 * Using String does not guarantee this as any client can potentially guess the key. This
 	 * may or may not be an issue.
+	 * <p/>
+	 * Incremental sampling doesn't slow down Simon updates with the number of keys - values are computed
+	 * as a difference from the sample taken for the key previously, extremes (min, max, max active) and usages
+	 * are accumulated for all keys in a single interval closed on every call of this method. Counter and its
+	 * min/max in Counter's incremental sample are relative to the counter value of the previous sample.
 	 *
 	 * @param key sampling key used to access incremental sample
 	 * @return {@link org.javasimon.Sample} with value increments
@@ -0,0 +1,65 @@
+package org.javasimon;
+
+import java.util.Collection;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Sorted index of Simons used by {@link EnabledManager#getSimons(SimonFilter)} to resolve {@link SimonPattern}
+ * without scanning all Simons. Simons are indexed by their names and by reversed names, hence exact and prefix
+ * patterns are resolved by the first index and suffix patterns by the second one. Pattern with both prefix
+ * and suffix uses the prefix range, only patterns with the wildcard on both ends require full scan.
+ * <p/>
+ * Index is updated by the Manager together with its hash map of Simons, reads are lock-free.
+ *
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ * @since 4.0
+ */
+final class SimonNameIndex {
+
+	/** Upper bound of characters allowed in Simon names (see {@link org.javasimon.utils.SimonUtils#checkName}). */
+	private static final char RANGE_END = Character.MAX_VALUE;
+
+	private final ConcurrentNavigableMap<String, AbstractSimon> byName = new ConcurrentSkipListMap<>();
+
+	private final ConcurrentNavigableMap<String, AbstractSimon> byReversedName = new ConcurrentSkipListMap<>();
+
+	void put(AbstractSimon simon) {
+		byName.put(simon.getName(), simon);
+		byReversedName.put(reverse(simon.getName()), simon);
+	}
+
+	void remove(AbstractSimon simon) {
+		byName.remove(simon.getName(), simon);
+		byReversedName.remove(reverse(simon.getName()), simon);
+	}
+
+	/**
+	 * Returns Simons that may match the pattern - Simons that are certainly not matching are not returned.
+	 * Returned collection is a live view, pattern must be still applied to the returned Simons.
+	 *
+	 * @param pattern Simon pattern
+	 * @return candidate Simons sorted by name (or by reversed name for suffix patterns)
+	 */
+	Collection<AbstractSimon> candidates(SimonPattern pattern) {
+		if (pattern.getAll() != null) {
+			return byName.subMap(pattern.getAll(), true, pattern.getAll(), true).values();
+		}
+		if (pattern.getStart() != null) {
+			return prefixRange(byName, pattern.getStart());
+		}
+		if (pattern.getEnd() != null) {
+			return prefixRange(byReversedName, reverse(pattern.getEnd()));
+		}
+		return byName.values();
+	}
+
+	private static Collection<AbstractSimon> prefixRange(NavigableMap<String, AbstractSimon> index, String prefix) {
+		return index.subMap(prefix, true, prefix + RANGE_END, true).values();
+	}
+
+	private static String reverse(String name) {
+		return new StringBuilder(name).reverse().toString();
+	}
+}
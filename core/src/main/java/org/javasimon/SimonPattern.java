@@ -181,6 +181,45 @@ public final class SimonPattern implements SimonFilter {
 		return end == null || name.endsWith(end);
 	}
 
+	/**
+	 * Returns the complete name for the pattern without wildcard, null otherwise - used by {@link SimonNameIndex}.
+	 *
+	 * @return complete name or null
+	 */
+	String getAll() {
+		return all;
+	}
+
+	/**
+	 * Returns the part of the pattern before the wildcard, null if the pattern starts with wildcard or
+	 * has no wildcard - used by {@link SimonNameIndex}.
+	 *
+	 * @return start of the pattern or null
+	 */
+	String getStart() {
+		return start;
+	}
+
+	/**
+	 * Returns the part of the pattern after the wildcard, null if the pattern ends with wildcard or
+	 * has no wildcard - used by {@link SimonNameIndex}.
+	 *
+	 * @return end of the pattern or null
+	 */
+	String getEnd() {
+		return end;
+	}
+
+	/**
+	 * Returns the part of the pattern between wildcards (empty for {@code *}), null if the pattern does not
+	 * start and end with wildcard - used by {@link SimonPatternMatcher}.
+	 *
+	 * @return middle of the pattern or null
+	 */
+	String getMiddle() {
+		return middle;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) {
@@ -0,0 +1,155 @@
+package org.javasimon;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ordered set of {@link SimonPattern}s compiled for matching of Simon names, value of the last matching
+ * pattern wins. Exact patterns are resolved by a hash map, prefix patterns by a trie of names and suffix patterns
+ * by a trie of reversed names, hence the lookup cost depends on the length of the name and not on the number
+ * of patterns. Patterns with both prefix and suffix are kept in the prefix trie and only those sharing the prefix
+ * with the name are checked for the suffix. Only patterns with wildcards on both ends (anywhere inside) are checked
+ * one by one. Pattern types are not considered, only names are matched.
+ * <p/>
+ * Matcher is immutable and can be used concurrently, lookup does not allocate any objects for Simon names.
+ *
+ * @param <T> type of values mapped to patterns
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ * @since 4.0
+ */
+final class SimonPatternMatcher<T> {
+
+	private final Map<String, Rule<T>> exact = new HashMap<>();
+
+	private final Node<T> prefixes = new Node<>();
+
+	private final Node<T> suffixes = new Node<>();
+
+	private final List<Rule<T>> inside = new ArrayList<>();
+
+	/**
+	 * Compiles the patterns, iteration order of the map is the order of patterns - later pattern wins.
+	 *
+	 * @param patterns patterns with their values
+	 */
+	SimonPatternMatcher(Map<SimonPattern, T> patterns) {
+		int index = 0;
+		for (Map.Entry<SimonPattern, T> entry : patterns.entrySet()) {
+			SimonPattern pattern = entry.getKey();
+			Rule<T> rule = new Rule<>(index++, entry.getValue(), pattern);
+			if (pattern.getAll() != null) {
+				exact.put(pattern.getAll(), rule);
+			} else if (pattern.getStart() != null) {
+				prefixes.node(pattern.getStart(), false).add(rule, pattern.getEnd());
+			} else if (pattern.getEnd() != null) {
+				suffixes.node(pattern.getEnd(), true).add(rule, null);
+			} else if (pattern.getMiddle().isEmpty()) {
+				prefixes.add(rule, null); // '*' is a prefix of everything
+			} else {
+				inside.add(rule);
+			}
+		}
+	}
+
+	/**
+	 * Returns the value of the last pattern matching the name.
+	 *
+	 * @param name Simon name
+	 * @return value of the last matching pattern or null if no pattern matches
+	 */
+	T match(String name) {
+		Rule<T> best = exact.get(name);
+		best = prefixes.match(name, best, false);
+		best = suffixes.match(name, best, true);
+		for (int i = 0; i < inside.size(); i++) {
+			Rule<T> rule = inside.get(i);
+			if (isLater(rule, best) && rule.pattern.matches(name)) {
+				best = rule;
+			}
+		}
+		return best != null ? best.value : null;
+	}
+
+	private static boolean isLater(Rule<?> rule, Rule<?> best) {
+		return best == null || rule.index > best.index;
+	}
+
+	private static final class Rule<T> {
+		private final int index;
+		private final T value;
+		private final SimonPattern pattern;
+
+		Rule(int index, T value, SimonPattern pattern) {
+			this.index = index;
+			this.value = value;
+			this.pattern = pattern;
+		}
+	}
+
+	/** Trie node, characters of Simon names are ASCII, hence {@link Character} keys are cached and not allocated. */
+	private static final class Node<T> {
+		private final Map<Character, Node<T>> children = new HashMap<>();
+
+		/** Pattern ending with the wildcard right after this node. */
+		private Rule<T> rule;
+
+		/** Patterns with this prefix and some suffix after the wildcard in the order of patterns. */
+		private List<Rule<T>> bounded;
+
+		Node<T> node(String path, boolean reversed) {
+			Node<T> node = this;
+			int length = path.length();
+			for (int i = 0; i < length; i++) {
+				Character c = path.charAt(reversed ? length - 1 - i : i);
+				Node<T> child = node.children.get(c);
+				if (child == null) {
+					child = new Node<>();
+					node.children.put(c, child);
+				}
+				node = child;
+			}
+			return node;
+		}
+
+		void add(Rule<T> rule, String end) {
+			if (end == null) {
+				this.rule = rule;
+				return;
+			}
+			if (bounded == null) {
+				bounded = new ArrayList<>();
+			}
+			bounded.add(rule);
+		}
+
+		Rule<T> match(String name, Rule<T> best, boolean reversed) {
+			Node<T> node = this;
+			int length = name.length();
+			for (int i = 0; node != null; i++) {
+				if (node.rule != null && isLater(node.rule, best)) {
+					best = node.rule;
+				}
+				if (node.bounded != null) {
+					// from the last pattern, the first match wins
+					for (int r = node.bounded.size() - 1; r >= 0; r--) {
+						Rule<T> rule = node.bounded.get(r);
+						if (!isLater(rule, best)) {
+							break;
+						}
+						if (rule.pattern.matches(name)) {
+							best = rule;
+							break;
+						}
+					}
+				}
+				if (i == length) {
+					break;
+				}
+				node = node.children.get(name.charAt(reversed ? length - 1 - i : i));
+			}
+			return best;
+		}
+	}
+}
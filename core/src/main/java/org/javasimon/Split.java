@@ -1,7 +1,9 @@
 package org.javasimon;
 
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.TreeMap;
 
 import org.javasimon.clock.SimonClock;
 import org.javasimon.utils.SimonUtils;
@@ -38,7 +40,8 @@ public final class Split implements HasAttributes, AutoCloseable {
 	private volatile long start;
 	private volatile long total;
 
-	private AttributesSupport attributesSupport = new AttributesSupport();
+	/** Created lazily, because most Splits never get any attribute. */
+	private volatile AttributesSupport attributesSupport;
 
 	private Split() {
 		enabled = false;
@@ -59,8 +62,6 @@ public final class Split implements HasAttributes, AutoCloseable {
 	 * @param start start timestamp in nanoseconds
 	 */
 	Split(Stopwatch stopwatch, SimonClock clock, long start) {
-		assert start > 0 : "start ns value should not be 0 in this constructor!";
-
 		this.stopwatch = stopwatch;
 		this.start = start;
 		this.clock = clock;
@@ -68,6 +69,23 @@ public final class Split implements HasAttributes, AutoCloseable {
 		running = true;
 	}
 
+	/**
+	 * Creates a new stopped Split for an enabled Stopwatch - <b>called internally only</b>. Used for callbacks
+	 * when the time was measured with {@link Stopwatch#startNanos()} and {@link Stopwatch#stopNanos(long)}.
+	 *
+	 * @param stopwatch owning Stopwatch (enabled)
+	 * @param clock Clock for this Split
+	 * @param start start timestamp in nanoseconds
+	 * @param stop stop timestamp in nanoseconds
+	 */
+	Split(Stopwatch stopwatch, SimonClock clock, long start, long stop) {
+		this.stopwatch = stopwatch;
+		this.start = start;
+		this.clock = clock;
+		total = stop - start;
+		enabled = true;
+	}
+
 	/**
 	 * Creates a new Split for a disabled Stopwatch - <b>called internally only</b>.
 	 *
@@ -190,7 +208,7 @@ public final class Split implements HasAttributes, AutoCloseable {
 		long nowNanos = clock.nanoTime();
 		total = nowNanos - start; // we update total before calling the stop so that callbacks can use it
 		if (stopwatch != null) {
-			((StopwatchImpl) stopwatch).stop(this, start, nowNanos, subSimon);
+			((AbstractStopwatch) stopwatch).stop(this, start, nowNanos, subSimon);
 		}
 		return this;
 	}
@@ -270,7 +288,7 @@ public final class Split implements HasAttributes, AutoCloseable {
 	 */
 	@Override
 	public void setAttribute(String name, Object value) {
-		attributesSupport.setAttribute(name, value);
+		attributesSupport().setAttribute(name, value);
 	}
 
 	/**
@@ -283,7 +301,8 @@ public final class Split implements HasAttributes, AutoCloseable {
 	 */
 	@Override
 	public Object getAttribute(String name) {
-		return attributesSupport.getAttribute(name);
+		AttributesSupport attributes = attributesSupport;
+		return attributes != null ? attributes.getAttribute(name) : null;
 	}
 
 	/**
@@ -297,7 +316,8 @@ public final class Split implements HasAttributes, AutoCloseable {
 	@SuppressWarnings("unchecked")
 	@Override
 	public <T> T getAttribute(String name, Class<T> clazz) {
-		return attributesSupport.getAttribute(name, clazz);
+		AttributesSupport attributes = attributesSupport;
+		return attributes != null ? attributes.getAttribute(name, clazz) : null;
 	}
 
 	/**
@@ -308,7 +328,10 @@ public final class Split implements HasAttributes, AutoCloseable {
 	 */
 	@Override
 	public void removeAttribute(String name) {
-		attributesSupport.removeAttribute(name);
+		AttributesSupport attributes = attributesSupport;
+		if (attributes != null) {
+			attributes.removeAttribute(name);
+		}
 	}
 
 	/**
@@ -320,12 +343,28 @@ public final class Split implements HasAttributes, AutoCloseable {
 	 */
 	@Override
 	public Iterator<String> getAttributeNames() {
-		return attributesSupport.getAttributeNames();
+		AttributesSupport attributes = attributesSupport;
+		return attributes != null ? attributes.getAttributeNames() : Collections.<String>emptySet().iterator();
 	}
 
 	@Override
 	public Map<String, Object> getCopyAsSortedMap() {
-		return attributesSupport.getCopyAsSortedMap();
+		AttributesSupport attributes = attributesSupport;
+		return attributes != null ? attributes.getCopyAsSortedMap() : new TreeMap<String, Object>();
+	}
+
+	private AttributesSupport attributesSupport() {
+		AttributesSupport attributes = attributesSupport;
+		if (attributes == null) {
+			synchronized (this) {
+				attributes = attributesSupport;
+				if (attributes == null) {
+					attributes = new AttributesSupport();
+					attributesSupport = attributes;
+				}
+			}
+		}
+		return attributes;
 	}
 
 	/**
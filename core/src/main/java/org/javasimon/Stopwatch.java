@@ -24,6 +24,15 @@ package org.javasimon;
  * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
  */
 public interface Stopwatch extends Simon {
+
+	/**
+	 * Token returned by {@link #startNanos()} when the stopwatch is disabled. Nano-time itself can be any value
+	 * including 0, hence the minimal long value is used.
+	 *
+	 * @since 4.0
+	 */
+	long DISABLED_NANOS = Long.MIN_VALUE;
+
 	/**
 	 * Starts the new split for this stopwatch. This action does not hold any resources and
 	 * if {@link Split} object is collected, no leak occurs. However, active count is increased
@@ -35,6 +44,37 @@ public interface Stopwatch extends Simon {
 	 */
 	Split start();
 
+	/**
+	 * Starts the measurement without allocating the {@link Split} object and returns the start nano-time that
+	 * must be passed to {@link #stopNanos(long)} later. Statistics (usages, active counter) are updated the same
+	 * way like with {@link #start()}. Split object is created only if there are any callbacks registered, because
+	 * {@link org.javasimon.callback.Callback#onStopwatchStart(Split)} requires it.
+	 * <p/>
+	 * Usage:
+	 * <pre>long token = stopwatch.startNanos();
+	 * ...
+	 * stopwatch.stopNanos(token);</pre>
+	 * Note that callbacks get different Split instances on start and stop, so callbacks that need to pair start
+	 * and stop using the Split (e.g. storing Split attributes on start) should be used only with {@link #start()}.
+	 *
+	 * @return start nano-time used as a token for {@link #stopNanos(long)}, {@link #DISABLED_NANOS} if the stopwatch
+	 * is disabled
+	 * @since 4.0
+	 */
+	long startNanos();
+
+	/**
+	 * Stops the measurement started with {@link #startNanos()} and updates the stopwatch like {@link Split#stop()}.
+	 * Split object is created only if there are any callbacks registered, because
+	 * {@link org.javasimon.callback.Callback#onStopwatchStop(Split, StopwatchSample)} requires it.
+	 * If the token is {@link #DISABLED_NANOS} (stopwatch was disabled on start) nothing happens.
+	 *
+	 * @param start token returned from {@link #startNanos()}
+	 * @return split time in nanoseconds, or 0 if the token is {@link #DISABLED_NANOS}
+	 * @since 4.0
+	 */
+	long stopNanos(long start);
+
 	/**
 	 * Adds {@link Split} to the stopwatch which is useful for aggregation of splits created for other stopwatch.
 	 * Split object should be stopped. Main difference is the callback method called as
@@ -1,16 +1,15 @@
 package org.javasimon;
 
+import org.javasimon.callback.Callback;
 import org.javasimon.utils.SimonUtils;
 
-import java.util.Collection;
-
 /**
  * Class implements {@link org.javasimon.Stopwatch} interface - see there for how to use Stopwatch.
  *
  * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
  * @see org.javasimon.Stopwatch
  */
-final class StopwatchImpl extends AbstractSimon implements Stopwatch {
+final class StopwatchImpl extends AbstractStopwatch {
 
 	private long total;
 	private long counter;
@@ -49,76 +48,100 @@ final class StopwatchImpl extends AbstractSimon implements Stopwatch {
 			// using parameter version saves one currentTimeMillis call
 			updateUsagesNanos(nowNanos);
 			addSplit(splitNs);
-			if (!manager.callback().callbacks().isEmpty()) {
+			if (manager.callback().isSampleRequired()) {
 				sample = sample();
 			}
-			updateIncrementalSimons(splitNs, nowNanos);
+			updateIncrementInterval(splitNs);
 		}
 		manager.callback().onStopwatchAdd(this, split, sample);
 		return this;
 	}
 
-	private long nanoTimeFromSplit(Split split, long splitNs) {
-		if (split.getStopwatch() != null) {
-			return split.getStart() + splitNs;
-		} else {
-			return manager.nanoTime();
+	// must be called after usages update
+	private void updateIncrementInterval(long splitNs) {
+		IncrementInterval interval = incrementInterval();
+		if (interval != null) {
+			interval.usage(getLastUsage());
+			interval.update(splitNs, getLastUsage());
 		}
 	}
 
-	private void updateIncrementalSimons(long splitNs, long nowNanos) {
-		Collection<Simon> simons = incrementalSimons();
-		if (simons != null) {
-			for (Simon simon : simons) {
-				StopwatchImpl stopwatch = (StopwatchImpl) simon;
-				stopwatch.addSplit(splitNs);
-				stopwatch.updateUsagesNanos(nowNanos);
-			}
+	@Override
+	public Split start() {
+		if (!enabled) {
+			return new Split(this, manager);
 		}
+
+		long nowNanos = startPrivate();
+		Split split = new Split(this, manager, nowNanos);
+		manager.callback().onStopwatchStart(split);
+		return split;
 	}
 
 	@Override
-	public Split start() {
+	public long startNanos() {
 		if (!enabled) {
-			return new Split(this, manager);
+			return DISABLED_NANOS;
 		}
 
+		long nowNanos = startPrivate();
+		if (manager.callback().isSubscribed(Callback.Event.STOPWATCH_START)) {
+			manager.callback().onStopwatchStart(new Split(this, manager, nowNanos));
+		}
+		return nowNanos;
+	}
+
+	private long startPrivate() {
 		long nowNanos = manager.nanoTime();
-		Split split;
 		synchronized (this) {
 			updateUsagesNanos(nowNanos);
 			activeStart();
 		}
-		split = new Split(this, manager, nowNanos);
-		manager.callback().onStopwatchStart(split);
-		return split;
+		return nowNanos;
 	}
 
-	/**
-	 * Protected method doing the stop work based on provided start nano-time.
-	 *
-	 * @param split Split object that has been stopped
-	 * @param start start nano-time of the split @return split time in ns
-	 * @param nowNanos current nano time
-	 * @param subSimon name of the sub-stopwatch (hierarchy delimiter is added automatically), may be {@code null}
-	 */
+	@Override
+	public long stopNanos(long start) {
+		if (start == DISABLED_NANOS) {
+			return 0;
+		}
+
+		long nowNanos = manager.nanoTime();
+		long splitNs = nowNanos - start;
+		if (!manager.callback().isSubscribed(Callback.Event.STOPWATCH_STOP)) {
+			synchronized (this) {
+				active--;
+				updateUsagesNanos(nowNanos);
+				addSplit(splitNs);
+				updateIncrementInterval(splitNs);
+			}
+		} else {
+			stop(new Split(this, manager, start, nowNanos), start, nowNanos, null);
+		}
+		return splitNs;
+	}
+
+	@Override
 	void stop(final Split split, final long start, final long nowNanos, final String subSimon) {
 		StopwatchSample sample = null;
+		if (subSimon != null) {
+			synchronized (this) {
+				active--;
+				updateUsagesNanos(nowNanos);
+			}
+			// sub-stopwatch may be created (and other Simons evicted), no monitor can be held here
+			addSplitToSubStopwatch(split, subSimon);
+			return;
+		}
 		synchronized (this) {
 			active--;
 			updateUsagesNanos(nowNanos);
-			if (subSimon != null) {
-				Stopwatch effectiveStopwatch = manager.getStopwatch(getName() + Manager.HIERARCHY_DELIMITER + subSimon);
-				split.setAttribute(Split.ATTR_EFFECTIVE_STOPWATCH, effectiveStopwatch);
-				effectiveStopwatch.addSplit(split);
-				return;
-			}
 			long splitNs = nowNanos - start;
 			addSplit(splitNs);
-			if (!manager.callback().callbacks().isEmpty()) {
+			if (manager.callback().isSampleRequired()) {
 				sample = sample();
 			}
-			updateIncrementalSimons(splitNs, nowNanos);
+			updateIncrementInterval(splitNs);
 		}
 		manager.callback().onStopwatchStop(split, sample);
 	}
@@ -131,6 +154,10 @@ final class StopwatchImpl extends AbstractSimon implements Stopwatch {
 			maxActive = active;
 			maxActiveTimestamp = getLastUsage();
 		}
+		IncrementInterval interval = incrementInterval();
+		if (interval != null) {
+			interval.updateMaxActive(active, getLastUsage());
+		}
 	}
 
 	private long addSplit(long split) {
@@ -258,17 +285,9 @@ final class StopwatchImpl extends AbstractSimon implements Stopwatch {
 
 	@Override
 	public synchronized StopwatchSample sampleIncrement(Object key) {
-		return (StopwatchSample) sampleIncrementHelper(key, new StopwatchImpl(null, manager));
-	}
-
-	/**
-	 * Updates usage statistics without using {@link System#currentTimeMillis()} if client code already has
-	 * current nano timer value.
-	 *
-	 * @param nowNanos current value of nano timer
-	 */
-	private void updateUsagesNanos(long nowNanos) {
-		updateUsages(manager.millisForNano(nowNanos));
+		StopwatchSample sample = sample();
+		IncrementBase previous = nextIncrementInterval(key, sample, 0, active);
+		return previous != null ? previous.stopwatchIncrement(sample) : sample;
 	}
 
 	/**
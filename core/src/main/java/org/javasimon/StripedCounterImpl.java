@@ -0,0 +1,301 @@
+package org.javasimon;
+
+import org.javasimon.internal.Striped;
+import org.javasimon.utils.SimonUtils;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Counter implementation intended for Counters updated by many concurrent threads. Increment and decrement sums
+ * are accumulated in striped cells (see {@link Striped}), current value is a single atomic value (it must be known
+ * after every change to track extremes) and min/max are maintained with CAS loops together with their timestamps.
+ * Counter is never locked on update, incremental sampling ({@link #sampleIncrement(Object)}) uses lock-free
+ * {@link IncrementInterval} as well - update of the interval closed meanwhile is repeated in the following one.
+ * <p/>
+ * Use {@link EnabledManager#setStripedCounters(boolean)} to create Counters of this type.
+ *
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ * @see org.javasimon.Counter
+ * @since 4.0
+ */
+final class StripedCounterImpl extends AbstractSimon implements Counter {
+
+	private static final AtomicLongFieldUpdater<StripedCounterImpl> COUNTER =
+		AtomicLongFieldUpdater.newUpdater(StripedCounterImpl.class, "counter");
+
+	private static final AtomicReferenceFieldUpdater<StripedCounterImpl, Extreme> MAX =
+		AtomicReferenceFieldUpdater.newUpdater(StripedCounterImpl.class, Extreme.class, "max");
+
+	private static final AtomicReferenceFieldUpdater<StripedCounterImpl, Extreme> MIN =
+		AtomicReferenceFieldUpdater.newUpdater(StripedCounterImpl.class, Extreme.class, "min");
+
+	private final Striped<SumCell> sums = new Striped<SumCell>() {
+		@Override
+		protected SumCell newCell() {
+			return new SumCell();
+		}
+	};
+
+	/** An internal counter. */
+	private volatile long counter;
+
+	/** A maximum tracker. */
+	private volatile Extreme max = new Extreme(Long.MIN_VALUE, 0);
+
+	/** A minimum tracker - only negative values. */
+	private volatile Extreme min = new Extreme(Long.MAX_VALUE, 0);
+
+	/**
+	 * Constructs striped Counter Simon with a specified name and for the specified manager.
+	 *
+	 * @param name Simon's name
+	 * @param manager owning manager
+	 */
+	StripedCounterImpl(String name, Manager manager) {
+		super(name, manager);
+	}
+
+	@Override
+	public Counter set(long val) {
+		if (!enabled) {
+			return this;
+		}
+
+		long now = manager.milliTime();
+		setPrivate(val, now);
+		manager.callback().onCounterSet(this, val, sampleIfRequired());
+		return this;
+	}
+
+	@Override
+	public Counter increase() {
+		return increase(1);
+	}
+
+	@Override
+	public Counter increase(long inc) {
+		if (!enabled) {
+			return this;
+		}
+
+		long now = manager.milliTime();
+		increasePrivate(inc, now);
+		manager.callback().onCounterIncrease(this, inc, sampleIfRequired());
+		return this;
+	}
+
+	private void increasePrivate(long inc, long now) {
+		touchUsages(now);
+		addToSums(inc, 0);
+		long value = COUNTER.addAndGet(this, inc);
+		if (inc > 0) {
+			updateMax(value, now);
+		} else {
+			updateMin(value, now);
+		}
+		updateIncrementInterval(value, inc > 0, inc <= 0, now);
+	}
+
+	@Override
+	public Counter decrease() {
+		return decrease(1);
+	}
+
+	@Override
+	public Counter decrease(long dec) {
+		if (!enabled) {
+			return this;
+		}
+
+		long now = manager.milliTime();
+		decreasePrivate(dec, now);
+		manager.callback().onCounterDecrease(this, dec, sampleIfRequired());
+		return this;
+	}
+
+	private void decreasePrivate(long dec, long now) {
+		touchUsages(now);
+		addToSums(0, dec);
+		long value = COUNTER.addAndGet(this, -dec);
+		if (dec > 0) {
+			updateMin(value, now);
+		} else {
+			updateMax(value, now);
+		}
+		updateIncrementInterval(value, dec <= 0, dec > 0, now);
+	}
+
+	private void setPrivate(long val, long now) {
+		touchUsages(now);
+		counter = val;
+		updateMax(val, now);
+		updateMin(val, now);
+		for (IncrementInterval interval = incrementInterval(); interval != null; interval = incrementIntervalAfter(interval)) {
+			interval.usage(now);
+			interval.counterSet(val, now);
+		}
+	}
+
+	/** Updates usages only when the millisecond changed - this avoids writing into the shared fields on every change. */
+	private void touchUsages(long now) {
+		if (lastUsage != now) {
+			updateUsages(now);
+		}
+	}
+
+	private void addToSums(long inc, long dec) {
+		SumCell cell = sums.claim();
+		try {
+			cell.incrementSum += inc;
+			cell.decrementSum += dec;
+		} finally {
+			cell.release();
+		}
+	}
+
+	private void updateMax(long value, long now) {
+		Extreme current;
+		while (value >= (current = max).value) {
+			if (current.value == value && current.timestamp == now) {
+				return;
+			}
+			if (MAX.compareAndSet(this, current, new Extreme(value, now))) {
+				return;
+			}
+		}
+	}
+
+	private void updateMin(long value, long now) {
+		Extreme current;
+		while (value <= (current = min).value) {
+			if (current.value == value && current.timestamp == now) {
+				return;
+			}
+			if (MIN.compareAndSet(this, current, new Extreme(value, now))) {
+				return;
+			}
+		}
+	}
+
+	private void updateIncrementInterval(long value, boolean maxChange, boolean minChange, long now) {
+		for (IncrementInterval interval = incrementInterval(); interval != null; interval = incrementIntervalAfter(interval)) {
+			interval.usage(now);
+			if (maxChange) {
+				interval.updateMax(value, now);
+			}
+			if (minChange) {
+				interval.updateMin(value, now);
+			}
+		}
+	}
+
+	private CounterSample sampleIfRequired() {
+		if (manager.callback().isSampleRequired()) {
+			return sample();
+		}
+		return null;
+	}
+
+	private SumCell mergedSums() {
+		final SumCell result = new SumCell();
+		sums.mergeInto(new Striped.Merger<SumCell>() {
+			@Override
+			public void merge(SumCell cell) {
+				result.incrementSum += cell.incrementSum;
+				result.decrementSum += cell.decrementSum;
+			}
+		});
+		return result;
+	}
+
+	@Override
+	public long getCounter() {
+		return counter;
+	}
+
+	@Override
+	public long getMin() {
+		return min.value;
+	}
+
+	@Override
+	public long getMinTimestamp() {
+		return min.timestamp;
+	}
+
+	@Override
+	public long getMax() {
+		return max.value;
+	}
+
+	@Override
+	public long getMaxTimestamp() {
+		return max.timestamp;
+	}
+
+	@Override
+	public long getIncrementSum() {
+		return mergedSums().incrementSum;
+	}
+
+	@Override
+	public long getDecrementSum() {
+		return mergedSums().decrementSum;
+	}
+
+	@Override
+	public CounterSample sample() {
+		Extreme currentMin = min;
+		Extreme currentMax = max;
+		SumCell currentSums = mergedSums();
+		CounterSample sample = new CounterSample();
+		sample.setCounter(counter);
+		sample.setMin(currentMin.value);
+		sample.setMax(currentMax.value);
+		sample.setMinTimestamp(currentMin.timestamp);
+		sample.setMaxTimestamp(currentMax.timestamp);
+		sample.setIncrementSum(currentSums.incrementSum);
+		sample.setDecrementSum(currentSums.decrementSum);
+		sampleCommon(sample);
+		return sample;
+	}
+
+	@Override
+	public synchronized CounterSample sampleIncrement(Object key) {
+		CounterSample sample = sample();
+		IncrementBase previous = nextIncrementInterval(key, sample, Long.MIN_VALUE, 0);
+		return previous != null ? previous.counterIncrement(sample) : sample;
+	}
+
+	/**
+	 * Returns Simon basic information, counter, max value and min value as a human readable string.
+	 *
+	 * @return basic information, counter, max and min values
+	 * @see AbstractSimon#toString()
+	 */
+	@Override
+	public String toString() {
+		return "Simon Counter: counter=" + counter +
+			", max=" + SimonUtils.presentMinMaxCount(max.value) +
+			", min=" + SimonUtils.presentMinMaxCount(min.value) +
+			super.toString();
+	}
+
+	/** Immutable pair of extreme value and its timestamp, replaced by CAS as a whole. */
+	private static final class Extreme {
+		private final long value;
+		private final long timestamp;
+
+		private Extreme(long value, long timestamp) {
+			this.value = value;
+			this.timestamp = timestamp;
+		}
+	}
+
+	/** Cell holding increment and decrement sums of one stripe. */
+	static final class SumCell extends Striped.Cell {
+		private long incrementSum;
+		private long decrementSum;
+	}
+}
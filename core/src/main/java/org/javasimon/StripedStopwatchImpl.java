@@ -0,0 +1,390 @@
+package org.javasimon;
+
+import org.javasimon.callback.Callback;
+import org.javasimon.internal.Striped;
+import org.javasimon.utils.SimonUtils;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Stopwatch implementation intended for heavily contended Stopwatches. Split statistics (total, counter, min, max,
+ * last and mean/variance moments) are accumulated in striped cells (see {@link Striped}) so that concurrent
+ * splits don't serialize on the Stopwatch monitor. Getters and {@link #sample()} merge the cells on read and
+ * provide the same values as {@link StopwatchImpl} would.
+ * <p/>
+ * Active split counter stays a single atomic value because max active must be tracked against the global value.
+ * Incremental samples ({@link #sampleIncrement(Object)}) are computed from the difference of cumulative samples
+ * and extremes of the current {@link IncrementInterval}, which is updated with CAS as well. If the interval
+ * is closed by the sampling meanwhile, the update is repeated in the following interval.
+ * <p/>
+ * Use {@link EnabledManager#setStripedStopwatches(boolean)} to create Stopwatches of this type.
+ *
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ * @see org.javasimon.Stopwatch
+ * @since 4.0
+ */
+final class StripedStopwatchImpl extends AbstractStopwatch {
+
+	private static final AtomicLongFieldUpdater<StripedStopwatchImpl> ACTIVE =
+		AtomicLongFieldUpdater.newUpdater(StripedStopwatchImpl.class, "active");
+
+	private static final AtomicLongFieldUpdater<StripedStopwatchImpl> MAX_ACTIVE =
+		AtomicLongFieldUpdater.newUpdater(StripedStopwatchImpl.class, "maxActive");
+
+	private final Striped<StopwatchCell> cells = new Striped<StopwatchCell>() {
+		@Override
+		protected StopwatchCell newCell() {
+			return new StopwatchCell();
+		}
+	};
+
+	private volatile long active;
+	private volatile long maxActive;
+	private volatile long maxActiveTimestamp;
+
+	/**
+	 * Constructs striped Stopwatch Simon with a specified name and for the specified manager.
+	 *
+	 * @param name Simon's name
+	 * @param manager owning manager
+	 */
+	StripedStopwatchImpl(String name, Manager manager) {
+		super(name, manager);
+	}
+
+	@Override
+	public Stopwatch addSplit(Split split) {
+		if (!enabled) {
+			return this;
+		}
+
+		long splitNs = split.runningFor();
+		long nowNanos = nanoTimeFromSplit(split, splitNs);
+		long nowMillis = manager.millisForNano(nowNanos);
+		touchUsages(nowMillis);
+		addSplit(splitNs, nowNanos, nowMillis);
+		StopwatchSample sample = sampleIfRequired();
+		manager.callback().onStopwatchAdd(this, split, sample);
+		return this;
+	}
+
+	@Override
+	public Split start() {
+		if (!enabled) {
+			return new Split(this, manager);
+		}
+
+		long nowNanos = startPrivate();
+		Split split = new Split(this, manager, nowNanos);
+		manager.callback().onStopwatchStart(split);
+		return split;
+	}
+
+	@Override
+	public long startNanos() {
+		if (!enabled) {
+			return DISABLED_NANOS;
+		}
+
+		long nowNanos = startPrivate();
+		if (manager.callback().isSubscribed(Callback.Event.STOPWATCH_START)) {
+			manager.callback().onStopwatchStart(new Split(this, manager, nowNanos));
+		}
+		return nowNanos;
+	}
+
+	private long startPrivate() {
+		long nowNanos = manager.nanoTime();
+		long nowMillis = manager.millisForNano(nowNanos);
+		touchUsages(nowMillis);
+		activeStart(nowMillis);
+		return nowNanos;
+	}
+
+	@Override
+	public long stopNanos(long start) {
+		if (start == DISABLED_NANOS) {
+			return 0;
+		}
+
+		long nowNanos = manager.nanoTime();
+		if (!manager.callback().isSubscribed(Callback.Event.STOPWATCH_STOP)) {
+			stopPrivate(start, nowNanos);
+		} else {
+			stop(new Split(this, manager, start, nowNanos), start, nowNanos, null);
+		}
+		return nowNanos - start;
+	}
+
+	@Override
+	void stop(Split split, long start, long nowNanos, String subSimon) {
+		if (subSimon != null) {
+			ACTIVE.decrementAndGet(this);
+			touchUsages(manager.millisForNano(nowNanos));
+			addSplitToSubStopwatch(split, subSimon);
+			return;
+		}
+		stopPrivate(start, nowNanos);
+		manager.callback().onStopwatchStop(split, sampleIfRequired());
+	}
+
+	private void stopPrivate(long start, long nowNanos) {
+		ACTIVE.decrementAndGet(this);
+		long nowMillis = manager.millisForNano(nowNanos);
+		touchUsages(nowMillis);
+		long splitNs = nowNanos - start;
+		addSplit(splitNs, nowNanos, nowMillis);
+	}
+
+	/**
+	 * Updates usages only when the millisecond changed - this avoids writing into the shared fields
+	 * on every split.
+	 */
+	private void touchUsages(long nowMillis) {
+		if (lastUsage != nowMillis) {
+			updateUsages(nowMillis);
+		}
+	}
+
+	private void activeStart(long nowMillis) {
+		long current = ACTIVE.incrementAndGet(this);
+		long max;
+		while (current >= (max = maxActive)) {
+			if (MAX_ACTIVE.compareAndSet(this, max, current)) {
+				maxActiveTimestamp = nowMillis;
+				break;
+			}
+		}
+		for (IncrementInterval interval = incrementInterval(); interval != null; interval = incrementIntervalAfter(interval)) {
+			interval.updateMaxActive(current, nowMillis);
+		}
+	}
+
+	private void addSplit(long splitNs, long nowNanos, long nowMillis) {
+		StopwatchCell cell = cells.claim();
+		try {
+			cell.add(splitNs, nowNanos, nowMillis);
+		} finally {
+			cell.release();
+		}
+		for (IncrementInterval interval = incrementInterval(); interval != null; interval = incrementIntervalAfter(interval)) {
+			interval.usage(nowMillis);
+			interval.update(splitNs, nowMillis);
+		}
+	}
+
+	private StopwatchSample sampleIfRequired() {
+		if (manager.callback().isSampleRequired()) {
+			return sample();
+		}
+		return null;
+	}
+
+	/**
+	 * Merges all the cells into a single cell not shared with any writer.
+	 *
+	 * @return merged values of all the cells
+	 */
+	private StopwatchCell merged() {
+		final StopwatchCell result = new StopwatchCell();
+		cells.mergeInto(new Striped.Merger<StopwatchCell>() {
+			@Override
+			public void merge(StopwatchCell cell) {
+				result.merge(cell);
+			}
+		});
+		return result;
+	}
+
+	@Override
+	public double getMean() {
+		return merged().mean;
+	}
+
+	@Override
+	public double getVarianceN() {
+		return merged().varianceN();
+	}
+
+	@Override
+	public double getVariance() {
+		return merged().variance();
+	}
+
+	@Override
+	public double getStandardDeviation() {
+		return Math.sqrt(getVariance());
+	}
+
+	@Override
+	public long getTotal() {
+		return merged().total;
+	}
+
+	@Override
+	public long getLast() {
+		return merged().last;
+	}
+
+	@Override
+	public long getCounter() {
+		return merged().counter;
+	}
+
+	@Override
+	public long getMax() {
+		return merged().max;
+	}
+
+	@Override
+	public long getMin() {
+		return merged().min;
+	}
+
+	@Override
+	public long getMaxTimestamp() {
+		return merged().maxTimestamp;
+	}
+
+	@Override
+	public long getMinTimestamp() {
+		return merged().minTimestamp;
+	}
+
+	@Override
+	public long getActive() {
+		return active;
+	}
+
+	@Override
+	public long getMaxActive() {
+		return maxActive;
+	}
+
+	@Override
+	public long getMaxActiveTimestamp() {
+		return maxActiveTimestamp;
+	}
+
+	@Override
+	public StopwatchSample sample() {
+		StopwatchCell merged = merged();
+		StopwatchSample sample = new StopwatchSample();
+		sample.setTotal(merged.total);
+		sample.setCounter(merged.counter);
+		sample.setMin(merged.min);
+		sample.setMax(merged.max);
+		sample.setMinTimestamp(merged.minTimestamp);
+		sample.setMaxTimestamp(merged.maxTimestamp);
+		sample.setActive(active);
+		sample.setMaxActive(maxActive);
+		sample.setMaxActiveTimestamp(maxActiveTimestamp);
+		sample.setMean(merged.mean);
+		sample.setVariance(merged.variance());
+		sample.setVarianceN(merged.varianceN());
+		sample.setStandardDeviation(Math.sqrt(merged.variance()));
+		sample.setLast(merged.last);
+		sampleCommon(sample);
+		return sample;
+	}
+
+	@Override
+	public synchronized StopwatchSample sampleIncrement(Object key) {
+		StopwatchSample sample = sample();
+		IncrementBase previous = nextIncrementInterval(key, sample, 0, active);
+		return previous != null ? previous.stopwatchIncrement(sample) : sample;
+	}
+
+	/**
+	 * Returns Simon basic information, total time, counter, max value and min value as a human readable string.
+	 *
+	 * @return basic information, total time, counter, max and min values
+	 * @see AbstractSimon#toString()
+	 */
+	@Override
+	public String toString() {
+		StopwatchCell merged = merged();
+		return "Simon Stopwatch: total " + SimonUtils.presentNanoTime(merged.total) +
+			", counter " + merged.counter +
+			", max " + SimonUtils.presentNanoTime(merged.max) +
+			", min " + SimonUtils.presentNanoTime(merged.min) +
+			", mean " + SimonUtils.presentNanoTime((long) merged.mean) +
+			super.toString();
+	}
+
+	/** Cell holding split statistics of one stripe, moments are mergeable (Chan et al. parallel variance). */
+	static final class StopwatchCell extends Striped.Cell {
+		private long total;
+		private long counter;
+		private long max;
+		private long maxTimestamp;
+		private long min = Long.MAX_VALUE;
+		private long minTimestamp;
+		private long last;
+		private long lastNanos = Long.MIN_VALUE;
+		private double mean;
+		private double mean2;
+
+		void add(long split, long nowNanos, long nowMillis) {
+			last = split;
+			lastNanos = nowNanos;
+			total += split;
+			counter++;
+			if (split > max) {
+				max = split;
+				maxTimestamp = nowMillis;
+			}
+			if (split < min) {
+				min = split;
+				minTimestamp = nowMillis;
+			}
+			double delta = split - mean;
+			mean = ((double) total) / counter;
+			mean2 += delta * (split - mean);
+		}
+
+		void merge(StopwatchCell cell) {
+			if (cell.counter == 0) {
+				return;
+			}
+			if (counter == 0 || cell.lastNanos - lastNanos >= 0) {
+				last = cell.last;
+				lastNanos = cell.lastNanos;
+			}
+			if (cell.max > max || (cell.max == max && cell.maxTimestamp < maxTimestamp)) {
+				max = cell.max;
+				maxTimestamp = cell.maxTimestamp;
+			}
+			if (cell.min < min || (cell.min == min && cell.minTimestamp < minTimestamp)) {
+				min = cell.min;
+				minTimestamp = cell.minTimestamp;
+			}
+			double delta = cell.mean - mean;
+			long newCounter = counter + cell.counter;
+			mean2 += cell.mean2 + delta * delta * ((double) counter * cell.counter / newCounter);
+			counter = newCounter;
+			total += cell.total;
+			mean = ((double) total) / counter;
+		}
+
+		double varianceN() {
+			if (counter == 0) {
+				return Double.NaN;
+			}
+			if (counter == 1) {
+				return 0d;
+			}
+			return mean2 / counter;
+		}
+
+		double variance() {
+			if (counter == 0) {
+				return Double.NaN;
+			}
+			if (counter == 1) {
+				return 0d;
+			}
+			return mean2 / (counter - 1);
+		}
+	}
+}
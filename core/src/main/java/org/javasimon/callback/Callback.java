@@ -22,6 +22,10 @@ import java.util.Map;
  * <p/>
  * Callbacks can be configured via Manager configuration facility. (Configuration part is still rather WIP.)
  * <p/>
+ * Samples provided to the event methods are created only if any callback in the tree requires them,
+ * callbacks that do not use samples should implement {@link SampleAwareCallback} (or override
+ * {@link CallbackSkeleton#isSampleRequired()}) - sample argument may be {@code null} then.
+ * <p/>
  * Callback can have a lifecycle supported with methods {@link #initialize(Manager)} and {@link #cleanup()}.
  * Callback is initialized when it is attached to the manager (anywhere in the callback tree) and
  * deinitialized when the callback is removed from the callback tree.
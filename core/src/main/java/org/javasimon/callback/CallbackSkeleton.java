@@ -8,13 +8,76 @@ import org.javasimon.Split;
 import org.javasimon.Stopwatch;
 import org.javasimon.StopwatchSample;
 
+import java.lang.reflect.Method;
+
 /**
  * Implements {@link Callback} interface so that it does nothing - intended for extension by simple (non-composite)
  * callbacks. This class is to be subclassed when just a few methods need to be implemented instead of the whole Callback interface.
+ * Callback is subscribed only to the events with overridden methods, see {@link #isSubscribed(Callback.Event)}.
  *
  * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
  */
-public class CallbackSkeleton implements Callback {
+public class CallbackSkeleton implements SampleAwareCallback, EventAwareCallback {
+
+	/**
+	 * Returns true - subclasses not using the sample arguments should override this to return false,
+	 * which allows Simons to skip sampling on every event.
+	 *
+	 * @return true
+	 */
+	@Override
+	public boolean isSampleRequired() {
+		return true;
+	}
+
+	/**
+	 * Returns true if the subclass overrides the method called for the event. Subclasses dispatching
+	 * events dynamically (e.g. to other callbacks) should override this.
+	 *
+	 * @param event callback event
+	 * @return true if the method for the event is overridden
+	 * @since 4.0
+	 */
+	@Override
+	public boolean isSubscribed(Event event) {
+		try {
+			Method method = eventMethod(event);
+			return method == null
+				|| getClass().getMethod(method.getName(), method.getParameterTypes()).getDeclaringClass() != CallbackSkeleton.class;
+		} catch (NoSuchMethodException | SecurityException e) {
+			return true;
+		}
+	}
+
+	private static Method eventMethod(Event event) throws NoSuchMethodException {
+		switch (event) {
+			case STOPWATCH_START:
+				return CallbackSkeleton.class.getMethod("onStopwatchStart", Split.class);
+			case STOPWATCH_STOP:
+				return CallbackSkeleton.class.getMethod("onStopwatchStop", Split.class, StopwatchSample.class);
+			case STOPWATCH_ADD:
+				return CallbackSkeleton.class.getMethod("onStopwatchAdd", Stopwatch.class, Split.class, StopwatchSample.class);
+			case COUNTER_INCREASE:
+				return CallbackSkeleton.class.getMethod("onCounterIncrease", Counter.class, long.class, CounterSample.class);
+			case COUNTER_DECREASE:
+				return CallbackSkeleton.class.getMethod("onCounterDecrease", Counter.class, long.class, CounterSample.class);
+			case COUNTER_SET:
+				return CallbackSkeleton.class.getMethod("onCounterSet", Counter.class, long.class, CounterSample.class);
+			case CREATED:
+				return CallbackSkeleton.class.getMethod("onSimonCreated", Simon.class);
+			case DESTROYED:
+				return CallbackSkeleton.class.getMethod("onSimonDestroyed", Simon.class);
+			case MANAGER_CLEAR:
+				return CallbackSkeleton.class.getMethod("onManagerClear");
+			case MESSAGE:
+				return CallbackSkeleton.class.getMethod("onManagerMessage", String.class);
+			case WARNING:
+				return CallbackSkeleton.class.getMethod("onManagerWarning", String.class, Exception.class);
+			default:
+				return null;
+		}
+	}
+
 	@Override
 	public void initialize(Manager manager) {
 	}
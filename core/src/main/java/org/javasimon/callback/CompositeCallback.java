@@ -13,7 +13,7 @@ import java.util.List;
  * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
  * @since 3.2
  */
-public interface CompositeCallback extends Callback {
+public interface CompositeCallback extends SampleAwareCallback, EventAwareCallback {
 
 	/**
 	 * Returns the list of all child-callbacks.
@@ -38,4 +38,25 @@ public interface CompositeCallback extends Callback {
 
 	/** Removes all callbacks from this callback. */
 	void removeAllCallbacks();
+
+	/**
+	 * Returns true if any of the child-callbacks requires the sample - that is, it does not implement
+	 * {@link SampleAwareCallback} or its {@link SampleAwareCallback#isSampleRequired()} returns true.
+	 *
+	 * @return true if the sample is required by any child-callback
+	 * @since 4.0
+	 */
+	@Override
+	boolean isSampleRequired();
+
+	/**
+	 * Returns true if any of the child-callbacks is subscribed to the event. Simons can skip preparation
+	 * of the event if no callback is interested in it.
+	 *
+	 * @param event callback event
+	 * @return true if any child-callback is subscribed to the event
+	 * @since 4.0
+	 */
+	@Override
+	boolean isSubscribed(Event event);
 }
@@ -7,13 +7,20 @@ import org.javasimon.Simon;
 import org.javasimon.Split;
 import org.javasimon.Stopwatch;
 import org.javasimon.StopwatchSample;
+import org.javasimon.proxy.Delegating;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Composite callbacks holds child-callbacks and delegates any operations to all of them.
  * It implements {@link #callbacks()}, {@link #addCallback(Callback)} and {@link #removeCallback(Callback)}.
+ * <p/>
+ * Events are delegated only to child-callbacks subscribed to them (see {@link EventAwareCallback}), subscribers
+ * of every event are resolved when the children change. Composite children are always subscribed to all events,
+ * because their children may change later. Whether samples are required is resolved when the children change
+ * as well, only composite and delegating children are asked on every event.
  *
  * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
  */
@@ -21,8 +28,22 @@ public final class CompositeCallbackImpl implements CompositeCallback {
 
 	private List<Callback> callbacks = new CopyOnWriteArrayList<>();
 
+	/** Child-callbacks subscribed to the event indexed by {@link Event#ordinal()}. */
+	private volatile Callback[][] subscribers;
+
+	/** True if any simple child requires samples, resolved together with subscribers. */
+	private volatile boolean sampleRequired;
+
+	/** Composite and delegating children, their requirement may change later, hence they are asked on every event. */
+	private volatile SampleAwareCallback[] dynamicSampleAwareCallbacks;
+
 	private Manager manager; // not null indicates, that this callback is initialized (joined to manager)
 
+	/** Creates composite callback without children. */
+	public CompositeCallbackImpl() {
+		updateSubscribers();
+	}
+
 	/** Calls initialize on all children. */
 	@Override
 	public synchronized void initialize(Manager manager) {
@@ -60,6 +81,7 @@ public final class CompositeCallbackImpl implements CompositeCallback {
 			callback.initialize(manager);
 		}
 		callbacks.add(callback);
+		updateSubscribers();
 	}
 
 	/**
@@ -70,6 +92,7 @@ public final class CompositeCallbackImpl implements CompositeCallback {
 	@Override
 	public void removeCallback(Callback callback) {
 		callbacks.remove(callback);
+		updateSubscribers();
 		if (manager != null) {
 			callback.cleanup();
 		}
@@ -83,6 +106,59 @@ public final class CompositeCallbackImpl implements CompositeCallback {
 		}
 	}
 
+	private synchronized void updateSubscribers() {
+		boolean newSampleRequired = false;
+		List<SampleAwareCallback> dynamic = new ArrayList<>();
+		for (Callback callback : callbacks) {
+			if (!(callback instanceof SampleAwareCallback)) {
+				newSampleRequired = true;
+			} else if (callback instanceof CompositeCallback || callback instanceof Delegating) {
+				dynamic.add((SampleAwareCallback) callback);
+			} else if (((SampleAwareCallback) callback).isSampleRequired()) {
+				newSampleRequired = true;
+			}
+		}
+		sampleRequired = newSampleRequired;
+		dynamicSampleAwareCallbacks = dynamic.toArray(new SampleAwareCallback[dynamic.size()]);
+
+		Event[] events = Event.values();
+		Callback[][] newSubscribers = new Callback[events.length][];
+		for (Event event : events) {
+			List<Callback> subscribed = new ArrayList<>();
+			for (Callback callback : callbacks) {
+				if (isSubscribed(callback, event)) {
+					subscribed.add(callback);
+				}
+			}
+			newSubscribers[event.ordinal()] = subscribed.toArray(new Callback[subscribed.size()]);
+		}
+		subscribers = newSubscribers;
+	}
+
+	private static boolean isSubscribed(Callback callback, Event event) {
+		return !(callback instanceof EventAwareCallback)
+			|| callback instanceof CompositeCallback
+			|| ((EventAwareCallback) callback).isSubscribed(event);
+	}
+
+	@Override
+	public boolean isSubscribed(Event event) {
+		return subscribers[event.ordinal()].length > 0;
+	}
+
+	@Override
+	public boolean isSampleRequired() {
+		if (sampleRequired) {
+			return true;
+		}
+		for (SampleAwareCallback callback : dynamicSampleAwareCallbacks) {
+			if (callback.isSampleRequired()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	/** Calls deactivate on all children. */
 	@Override
 	public void cleanup() {
@@ -98,77 +174,77 @@ public final class CompositeCallbackImpl implements CompositeCallback {
 
 	@Override
 	public void onStopwatchAdd(Stopwatch stopwatch, Split split, StopwatchSample sample) {
-		for (Callback callback : callbacks) {
+		for (Callback callback : subscribers[Event.STOPWATCH_ADD.ordinal()]) {
 			callback.onStopwatchAdd(stopwatch, split, sample);
 		}
 	}
 
 	@Override
 	public void onStopwatchStart(Split split) {
-		for (Callback callback : callbacks) {
+		for (Callback callback : subscribers[Event.STOPWATCH_START.ordinal()]) {
 			callback.onStopwatchStart(split);
 		}
 	}
 
 	@Override
 	public void onStopwatchStop(Split split, StopwatchSample sample) {
-		for (Callback callback : callbacks) {
+		for (Callback callback : subscribers[Event.STOPWATCH_STOP.ordinal()]) {
 			callback.onStopwatchStop(split, sample);
 		}
 	}
 
 	@Override
 	public void onCounterDecrease(Counter counter, long dec, CounterSample sample) {
-		for (Callback callback : callbacks) {
+		for (Callback callback : subscribers[Event.COUNTER_DECREASE.ordinal()]) {
 			callback.onCounterDecrease(counter, dec, sample);
 		}
 	}
 
 	@Override
 	public void onCounterIncrease(Counter counter, long inc, CounterSample sample) {
-		for (Callback callback : callbacks) {
+		for (Callback callback : subscribers[Event.COUNTER_INCREASE.ordinal()]) {
 			callback.onCounterIncrease(counter, inc, sample);
 		}
 	}
 
 	@Override
 	public void onCounterSet(Counter counter, long val, CounterSample sample) {
-		for (Callback callback : callbacks) {
+		for (Callback callback : subscribers[Event.COUNTER_SET.ordinal()]) {
 			callback.onCounterSet(counter, val, sample);
 		}
 	}
 
 	@Override
 	public void onSimonCreated(Simon simon) {
-		for (Callback callback : callbacks) {
+		for (Callback callback : subscribers[Event.CREATED.ordinal()]) {
 			callback.onSimonCreated(simon);
 		}
 	}
 
 	@Override
 	public void onSimonDestroyed(Simon simon) {
-		for (Callback callback : callbacks) {
+		for (Callback callback : subscribers[Event.DESTROYED.ordinal()]) {
 			callback.onSimonDestroyed(simon);
 		}
 	}
 
 	@Override
 	public void onManagerClear() {
-		for (Callback callback : callbacks) {
+		for (Callback callback : subscribers[Event.MANAGER_CLEAR.ordinal()]) {
 			callback.onManagerClear();
 		}
 	}
 
 	@Override
 	public void onManagerMessage(String message) {
-		for (Callback callback : callbacks) {
+		for (Callback callback : subscribers[Event.MESSAGE.ordinal()]) {
 			callback.onManagerMessage(message);
 		}
 	}
 
 	@Override
 	public void onManagerWarning(String warning, Exception cause) {
-		for (Callback callback : callbacks) {
+		for (Callback callback : subscribers[Event.WARNING.ordinal()]) {
 			callback.onManagerWarning(warning, cause);
 		}
 	}
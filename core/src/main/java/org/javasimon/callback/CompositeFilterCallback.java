@@ -65,6 +65,16 @@ public final class CompositeFilterCallback implements FilterCallback, CompositeC
 		this.callback.removeAllCallbacks();
 	}
 
+	@Override
+	public boolean isSampleRequired() {
+		return callback.isSampleRequired();
+	}
+
+	@Override
+	public boolean isSubscribed(Event event) {
+		return callback.isSubscribed(event);
+	}
+
 	@Override
 	public void initialize(Manager manager) {
 		callback.initialize(manager);
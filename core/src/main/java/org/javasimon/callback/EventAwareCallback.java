@@ -0,0 +1,24 @@
+package org.javasimon.callback;
+
+/**
+ * Callback that declares which events it handles. {@link CompositeCallbackImpl} dispatches the event only
+ * to the callbacks subscribed to it, callbacks not implementing this interface receive all events.
+ * {@link CallbackSkeleton} implements this interface and subscribes to events with overridden methods,
+ * so most callbacks don't need to implement it explicitly.
+ * <p/>
+ * Subscriptions are read when the callback is added to the composite callback and must not change afterwards.
+ *
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ * @since 4.0
+ */
+public interface EventAwareCallback extends Callback {
+
+	/**
+	 * Returns true if the callback handles the event, false if the event method would do nothing.
+	 * {@link Callback.Event#ALL} is never asked for.
+	 *
+	 * @param event callback event
+	 * @return true if the callback is subscribed to the event
+	 */
+	boolean isSubscribed(Event event);
+}
@@ -0,0 +1,496 @@
+package org.javasimon.callback;
+
+import org.javasimon.Counter;
+import org.javasimon.Simon;
+import org.javasimon.SimonException;
+import org.javasimon.Split;
+import org.javasimon.Stopwatch;
+
+import java.util.Locale;
+
+/**
+ * Condition of the {@link FilterRule} compiled into a tree of immutable nodes. Evaluation does not allocate
+ * and the condition can be evaluated concurrently. Values of variables are read from the Simon (or from event
+ * parameters for {@link FilterRule#VAR_SPLIT} and {@link FilterRule#VAR_VALUE}) only when the variable is used.
+ * Variables not applicable for the Simon type evaluate to 0.
+ * <p/>
+ * Supported syntax (case insensitive):
+ * <ul>
+ * <li>logical operators {@code and}/{@code &&}, {@code or}/{@code ||}, {@code not}/{@code !} and parentheses;</li>
+ * <li>comparison operators {@code <}/{@code lt}, {@code <=}/{@code le}, {@code ==}/{@code eq}, {@code !=}/{@code ne},
+ * {@code >}/{@code gt}, {@code >=}/{@code ge};</li>
+ * <li>arithmetic operators {@code +}, {@code -}, {@code *}, {@code /} evaluated in floating point, division by zero
+ * is rejected when the condition is compiled (literal zero) or evaluated;</li>
+ * <li>integer literals with optional time unit suffix {@code s}, {@code ms}, {@code us} or {@code ns} converted
+ * to nanoseconds, e.g. {@code 5ms};</li>
+ * <li>variables {@code split}, {@code active}, {@code maxactive}, {@code counter}, {@code max}, {@code min},
+ * {@code total} and {@code value}.</li>
+ * </ul>
+ *
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ * @since 4.0
+ */
+final class FilterCondition {
+
+	private final Predicate predicate;
+
+	private FilterCondition(Predicate predicate) {
+		this.predicate = predicate;
+	}
+
+	/**
+	 * Compiles the condition.
+	 *
+	 * @param condition condition expression
+	 * @return compiled condition
+	 * @throws SimonException if the condition is not valid or does not return boolean
+	 */
+	static FilterCondition compile(String condition) {
+		Parser parser = new Parser(condition.toLowerCase(Locale.ENGLISH));
+		Object node = parser.parseOr();
+		if (parser.hasNext()) {
+			throw parser.error("unexpected '" + parser.next() + "'");
+		}
+		if (!(node instanceof Predicate)) {
+			throw new SimonException("Expression '" + condition + "' does not return boolean.");
+		}
+		return new FilterCondition((Predicate) node);
+	}
+
+	/**
+	 * Evaluates the condition for the Simon and event parameters.
+	 *
+	 * @param simon related Simon
+	 * @param params event parameters - {@link Split} for {@code split} variable or {@link Long} for {@code value}
+	 * @return result of the condition
+	 * @throws ArithmeticException if the condition divides by zero
+	 */
+	boolean evaluate(Simon simon, Object[] params) {
+		return predicate.test(simon, params);
+	}
+
+	private interface Operand {
+		double value(Simon simon, Object[] params);
+	}
+
+	private interface Predicate {
+		boolean test(Simon simon, Object[] params);
+	}
+
+	private enum Variable implements Operand {
+		SPLIT(FilterRule.VAR_SPLIT) {
+			@Override
+			public double value(Simon simon, Object[] params) {
+				for (Object param : params) {
+					if (param instanceof Split) {
+						return ((Split) param).runningFor();
+					}
+				}
+				return 0;
+			}
+		},
+		VALUE(FilterRule.VAR_VALUE) {
+			@Override
+			public double value(Simon simon, Object[] params) {
+				for (Object param : params) {
+					if (param instanceof Long) {
+						return (Long) param;
+					}
+				}
+				return 0;
+			}
+		},
+		ACTIVE(FilterRule.VAR_ACTIVE) {
+			@Override
+			public double value(Simon simon, Object[] params) {
+				return simon instanceof Stopwatch ? ((Stopwatch) simon).getActive() : 0;
+			}
+		},
+		MAX_ACTIVE(FilterRule.VAR_MAX_ACTIVE) {
+			@Override
+			public double value(Simon simon, Object[] params) {
+				return simon instanceof Stopwatch ? ((Stopwatch) simon).getMaxActive() : 0;
+			}
+		},
+		TOTAL(FilterRule.VAR_TOTAL) {
+			@Override
+			public double value(Simon simon, Object[] params) {
+				return simon instanceof Stopwatch ? ((Stopwatch) simon).getTotal() : 0;
+			}
+		},
+		COUNTER(FilterRule.VAR_COUNTER) {
+			@Override
+			public double value(Simon simon, Object[] params) {
+				if (simon instanceof Stopwatch) {
+					return ((Stopwatch) simon).getCounter();
+				}
+				return simon instanceof Counter ? ((Counter) simon).getCounter() : 0;
+			}
+		},
+		MAX(FilterRule.VAR_MAX) {
+			@Override
+			public double value(Simon simon, Object[] params) {
+				if (simon instanceof Stopwatch) {
+					return ((Stopwatch) simon).getMax();
+				}
+				return simon instanceof Counter ? ((Counter) simon).getMax() : 0;
+			}
+		},
+		MIN(FilterRule.VAR_MIN) {
+			@Override
+			public double value(Simon simon, Object[] params) {
+				if (simon instanceof Stopwatch) {
+					return ((Stopwatch) simon).getMin();
+				}
+				return simon instanceof Counter ? ((Counter) simon).getMin() : 0;
+			}
+		};
+
+		private final String name;
+
+		Variable(String name) {
+			this.name = name;
+		}
+
+		static Variable forName(String name) {
+			for (Variable variable : values()) {
+				if (variable.name.equals(name)) {
+					return variable;
+				}
+			}
+			return null;
+		}
+	}
+
+	private static final class Constant implements Operand {
+		private final double value;
+
+		Constant(double value) {
+			this.value = value;
+		}
+
+		@Override
+		public double value(Simon simon, Object[] params) {
+			return value;
+		}
+	}
+
+	private static final class Arithmetic implements Operand {
+		private final char operator;
+		private final Operand left;
+		private final Operand right;
+
+		Arithmetic(char operator, Operand left, Operand right) {
+			this.operator = operator;
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		public double value(Simon simon, Object[] params) {
+			double l = left.value(simon, params);
+			double r = right.value(simon, params);
+			switch (operator) {
+				case '+':
+					return l + r;
+				case '-':
+					return l - r;
+				case '*':
+					return l * r;
+				default:
+					if (r == 0) {
+						throw new ArithmeticException("division by zero");
+					}
+					return l / r;
+			}
+		}
+	}
+
+	private enum Comparison {
+		LT("<", "lt"),
+		LE("<=", "le"),
+		EQ("==", "eq"),
+		NE("!=", "ne"),
+		GT(">", "gt"),
+		GE(">=", "ge");
+
+		private final String symbol;
+		private final String word;
+
+		Comparison(String symbol, String word) {
+			this.symbol = symbol;
+			this.word = word;
+		}
+
+		static Comparison forToken(String token) {
+			for (Comparison comparison : values()) {
+				if (comparison.symbol.equals(token) || comparison.word.equals(token)) {
+					return comparison;
+				}
+			}
+			return null;
+		}
+	}
+
+	private static final class Compare implements Predicate {
+		private final Comparison comparison;
+		private final Operand left;
+		private final Operand right;
+
+		Compare(Comparison comparison, Operand left, Operand right) {
+			this.comparison = comparison;
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		public boolean test(Simon simon, Object[] params) {
+			double l = left.value(simon, params);
+			double r = right.value(simon, params);
+			switch (comparison) {
+				case LT:
+					return l < r;
+				case LE:
+					return l <= r;
+				case EQ:
+					return l == r;
+				case NE:
+					return l != r;
+				case GT:
+					return l > r;
+				default:
+					return l >= r;
+			}
+		}
+	}
+
+	private static final class And implements Predicate {
+		private final Predicate left;
+		private final Predicate right;
+
+		And(Predicate left, Predicate right) {
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		public boolean test(Simon simon, Object[] params) {
+			return left.test(simon, params) && right.test(simon, params);
+		}
+	}
+
+	private static final class Or implements Predicate {
+		private final Predicate left;
+		private final Predicate right;
+
+		Or(Predicate left, Predicate right) {
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		public boolean test(Simon simon, Object[] params) {
+			return left.test(simon, params) || right.test(simon, params);
+		}
+	}
+
+	private static final class Not implements Predicate {
+		private final Predicate predicate;
+
+		Not(Predicate predicate) {
+			this.predicate = predicate;
+		}
+
+		@Override
+		public boolean test(Simon simon, Object[] params) {
+			return !predicate.test(simon, params);
+		}
+	}
+
+	/** Recursive descent parser, nodes are either {@link Predicate}s or {@link Operand}s. */
+	private static final class Parser {
+		private final String expression;
+		private int position;
+		private String token;
+
+		Parser(String expression) {
+			this.expression = expression;
+			advance();
+		}
+
+		boolean hasNext() {
+			return token != null;
+		}
+
+		String next() {
+			return token;
+		}
+
+		Object parseOr() {
+			Object left = parseAnd();
+			while (accept("or") || accept("||")) {
+				left = new Or(predicate(left), predicate(parseAnd()));
+			}
+			return left;
+		}
+
+		private Object parseAnd() {
+			Object left = parseNot();
+			while (accept("and") || accept("&&")) {
+				left = new And(predicate(left), predicate(parseNot()));
+			}
+			return left;
+		}
+
+		private Object parseNot() {
+			if (accept("not") || accept("!")) {
+				return new Not(predicate(parseNot()));
+			}
+			Object left = parseSum();
+			Comparison comparison = token != null ? Comparison.forToken(token) : null;
+			if (comparison != null) {
+				advance();
+				return new Compare(comparison, operand(left), operand(parseSum()));
+			}
+			return left;
+		}
+
+		private Object parseSum() {
+			Object left = parseProduct();
+			while ("+".equals(token) || "-".equals(token)) {
+				char operator = token.charAt(0);
+				advance();
+				left = new Arithmetic(operator, operand(left), operand(parseProduct()));
+			}
+			return left;
+		}
+
+		private Object parseProduct() {
+			Object left = parsePrimary();
+			while ("*".equals(token) || "/".equals(token)) {
+				char operator = token.charAt(0);
+				advance();
+				Operand right = operand(parsePrimary());
+				if (operator == '/' && right instanceof Constant && ((Constant) right).value == 0) {
+					throw error("division by zero");
+				}
+				left = new Arithmetic(operator, operand(left), right);
+			}
+			return left;
+		}
+
+		private Object parsePrimary() {
+			if (token == null) {
+				throw error("unexpected end");
+			}
+			if (accept("(")) {
+				Object node = parseOr();
+				if (!accept(")")) {
+					throw error("')' expected");
+				}
+				return node;
+			}
+			if (accept("-")) {
+				return new Arithmetic('-', new Constant(0), operand(parsePrimary()));
+			}
+			String current = token;
+			advance();
+			if (Character.isDigit(current.charAt(0))) {
+				return new Constant(number(current));
+			}
+			Variable variable = Variable.forName(current);
+			if (variable == null) {
+				throw error("unknown variable '" + current + "'");
+			}
+			return variable;
+		}
+
+		private long number(String literal) {
+			int unitStart = 0;
+			while (unitStart < literal.length() && Character.isDigit(literal.charAt(unitStart))) {
+				unitStart++;
+			}
+			long value;
+			try {
+				value = Long.parseLong(literal.substring(0, unitStart));
+			} catch (NumberFormatException e) {
+				throw error("number out of range");
+			}
+			String unit = literal.substring(unitStart);
+			switch (unit) {
+				case "":
+				case "ns":
+					return value;
+				case "us":
+					return inUnits(value, 1000L);
+				case "ms":
+					return inUnits(value, 1000000L);
+				case "s":
+					return inUnits(value, 1000000000L);
+				default:
+					throw error("unknown unit '" + unit + "'");
+			}
+		}
+
+		// value is never negative here (literal consists of digits only)
+		private long inUnits(long value, long unit) {
+			if (value > Long.MAX_VALUE / unit) {
+				throw error("number out of range");
+			}
+			return value * unit;
+		}
+
+		private boolean accept(String expected) {
+			if (expected.equals(token)) {
+				advance();
+				return true;
+			}
+			return false;
+		}
+
+		private void advance() {
+			while (position < expression.length() && Character.isWhitespace(expression.charAt(position))) {
+				position++;
+			}
+			if (position == expression.length()) {
+				token = null;
+				return;
+			}
+			int start = position;
+			char c = expression.charAt(position);
+			if (Character.isLetterOrDigit(c)) {
+				while (position < expression.length() && Character.isLetterOrDigit(expression.charAt(position))) {
+					position++;
+				}
+			} else if (position + 1 < expression.length() && isTwoCharOperator(expression.substring(position, position + 2))) {
+				position += 2;
+			} else {
+				position++;
+			}
+			token = expression.substring(start, position);
+		}
+
+		private boolean isTwoCharOperator(String candidate) {
+			return candidate.equals("<=") || candidate.equals(">=") || candidate.equals("==") || candidate.equals("!=")
+				|| candidate.equals("&&") || candidate.equals("||");
+		}
+
+		private Predicate predicate(Object node) {
+			if (!(node instanceof Predicate)) {
+				throw error("boolean expression expected");
+			}
+			return (Predicate) node;
+		}
+
+		private Operand operand(Object node) {
+			if (!(node instanceof Operand)) {
+				throw error("numeric expression expected");
+			}
+			return (Operand) node;
+		}
+
+		SimonException error(String message) {
+			return new SimonException("Invalid condition '" + expression + "': " + message + " at " + position);
+		}
+	}
+}
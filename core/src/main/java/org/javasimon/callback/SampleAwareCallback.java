@@ -0,0 +1,22 @@
+package org.javasimon.callback;
+
+/**
+ * Callback that declares whether it uses {@link org.javasimon.StopwatchSample} and {@link org.javasimon.CounterSample}
+ * provided to event methods like {@link Callback#onStopwatchStop(org.javasimon.Split, org.javasimon.StopwatchSample)}.
+ * Simons create the sample on every event only if some callback in the callback tree requires it,
+ * otherwise {@code null} is provided instead. Callbacks not implementing this interface are considered to require
+ * the sample.
+ *
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ * @since 4.0
+ */
+public interface SampleAwareCallback extends Callback {
+
+	/**
+	 * Returns true if the callback uses the sample argument of the event methods. If false is returned,
+	 * the callback must be prepared to get {@code null} sample.
+	 *
+	 * @return true if the sample is required by this callback
+	 */
+	boolean isSampleRequired();
+}
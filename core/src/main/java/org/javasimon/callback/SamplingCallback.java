@@ -0,0 +1,271 @@
+package org.javasimon.callback;
+
+import org.javasimon.Counter;
+import org.javasimon.CounterSample;
+import org.javasimon.Manager;
+import org.javasimon.Simon;
+import org.javasimon.SimonPattern;
+import org.javasimon.Split;
+import org.javasimon.Stopwatch;
+import org.javasimon.StopwatchSample;
+import org.javasimon.clock.SimonClock;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Composite callback propagating only a sample of Simon events to its children, this allows to keep expensive
+ * callbacks (call trees, last splits, logging...) enabled with a bounded overhead. Sampling is driven by
+ * {@link SamplingRule}s added via {@link #addRule(String, long, double, double)}, the last rule with the pattern
+ * matching the Simon applies. Events of Simons without any matching rule are always propagated. XML facility
+ * for configuration is provided via {@link org.javasimon.ManagerConfiguration#readConfig(java.io.Reader)}:
+ * <pre>{@code
+ * <sampling-callback>
+ *   <sample pattern="org.app.*" one-in="10"/>
+ *   <sample pattern="org.app.sql.*" probability="0.05" max-per-second="100"/>
+ *   <callback class="org.javasimon.callback.calltree.CallTreeCallback"/>
+ * </sampling-callback>}</pre>
+ * <p/>
+ * Only the events are sampled, Simons themselves are updated by every event, so their statistics stay exact.
+ * Stop of the split is propagated if and only if its start was propagated, so children see complete splits.
+ * If no child is interested in the start of the split, stop is sampled on its own. Simon creation and destruction
+ * and manager events are not sampled. Maximal rates of the rules are measured by the clock of the {@link Manager}
+ * the callback is attached to.
+ *
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ * @since 4.0
+ */
+public final class SamplingCallback implements CompositeCallback, SampleAwareCallback {
+
+	/** Rule for Simons not matching any pattern - every event is sampled. */
+	private static final SamplingRule SAMPLE_ALL = new SamplingRule(null, 1, 1, 0);
+
+	private static final AtomicInteger instanceCounter = new AtomicInteger();
+
+	private final CompositeCallbackImpl callback = new CompositeCallbackImpl();
+
+	private final List<SamplingRule> rules = new CopyOnWriteArrayList<>();
+
+	/** Resolved rules per Simon name, cleared when the rules change. */
+	private final ConcurrentMap<String, SamplingRule> simonRules = new ConcurrentHashMap<>();
+
+	/** Incremented before the resolved rules are cleared, lookup racing with the change does not keep stale rule. */
+	private final AtomicInteger rulesGeneration = new AtomicInteger();
+
+	/** Attribute marking sampled splits, unique for every instance in case more sampling callbacks are used. */
+	private final String sampledAttribute = SamplingCallback.class.getName() + ".sampled" + instanceCounter.incrementAndGet();
+
+	/** Clock of the manager. */
+	private volatile SimonClock clock = SimonClock.SYSTEM;
+
+	/**
+	 * Adds the sampling rule.
+	 *
+	 * @param pattern Simon pattern, null applies to all Simons
+	 * @param oneIn accept only every N-th event, 1 or less to accept all
+	 * @param probability probability of the event acceptance, 1 to accept all
+	 * @param maxPerSecond maximal number of accepted events per second, 0 or less for no limit
+	 * @see SamplingRule
+	 */
+	public void addRule(String pattern, long oneIn, double probability, double maxPerSecond) {
+		addRule(new SamplingRule(pattern != null ? SimonPattern.create(pattern) : null, oneIn, probability, maxPerSecond));
+	}
+
+	/**
+	 * Adds the sampling rule.
+	 *
+	 * @param rule sampling rule
+	 */
+	public void addRule(SamplingRule rule) {
+		rules.add(rule);
+		invalidateSimonRules();
+	}
+
+	/**
+	 * Removes the sampling rule.
+	 *
+	 * @param rule sampling rule
+	 * @return true if the rule was removed
+	 */
+	public boolean removeRule(SamplingRule rule) {
+		boolean removed = rules.remove(rule);
+		if (removed) {
+			invalidateSimonRules();
+		}
+		return removed;
+	}
+
+	/**
+	 * Returns unmodifiable list of the sampling rules in the order they were added,
+	 * use {@link #addRule(SamplingRule)} and {@link #removeRule(SamplingRule)} to change them.
+	 *
+	 * @return list of sampling rules
+	 */
+	public List<SamplingRule> getRules() {
+		return Collections.unmodifiableList(rules);
+	}
+
+	@Override
+	public List<Callback> callbacks() {
+		return callback.callbacks();
+	}
+
+	@Override
+	public void addCallback(Callback callback) {
+		this.callback.addCallback(callback);
+	}
+
+	@Override
+	public void removeCallback(Callback callback) {
+		this.callback.removeCallback(callback);
+	}
+
+	@Override
+	public void removeAllCallbacks() {
+		callback.removeAllCallbacks();
+	}
+
+	@Override
+	public boolean isSampleRequired() {
+		return callback.isSampleRequired();
+	}
+
+	@Override
+	public boolean isSubscribed(Event event) {
+		return callback.isSubscribed(event);
+	}
+
+	/** Uses the manager as the clock for maximal rates of the rules. */
+	@Override
+	public void initialize(Manager manager) {
+		clock = manager;
+		callback.initialize(manager);
+	}
+
+	@Override
+	public void cleanup() {
+		callback.cleanup();
+	}
+
+	@Override
+	public void onStopwatchStart(Split split) {
+		Stopwatch stopwatch = split.getStopwatch();
+		if (stopwatch != null && sample(stopwatch)) {
+			split.setAttribute(sampledAttribute, Boolean.TRUE);
+			callback.onStopwatchStart(split);
+		}
+	}
+
+	@Override
+	public void onStopwatchStop(Split split, StopwatchSample sample) {
+		Stopwatch stopwatch = split.getStopwatch();
+		if (stopwatch == null) {
+			return;
+		}
+		boolean sampled = callback.isSubscribed(Event.STOPWATCH_START)
+			? split.getAttribute(sampledAttribute) != null
+			: sample(stopwatch);
+		if (sampled) {
+			callback.onStopwatchStop(split, sample);
+		}
+	}
+
+	@Override
+	public void onStopwatchAdd(Stopwatch stopwatch, Split split, StopwatchSample sample) {
+		if (sample(stopwatch)) {
+			callback.onStopwatchAdd(stopwatch, split, sample);
+		}
+	}
+
+	@Override
+	public void onCounterDecrease(Counter counter, long dec, CounterSample sample) {
+		if (sample(counter)) {
+			callback.onCounterDecrease(counter, dec, sample);
+		}
+	}
+
+	@Override
+	public void onCounterIncrease(Counter counter, long inc, CounterSample sample) {
+		if (sample(counter)) {
+			callback.onCounterIncrease(counter, inc, sample);
+		}
+	}
+
+	@Override
+	public void onCounterSet(Counter counter, long val, CounterSample sample) {
+		if (sample(counter)) {
+			callback.onCounterSet(counter, val, sample);
+		}
+	}
+
+	@Override
+	public void onSimonCreated(Simon simon) {
+		callback.onSimonCreated(simon);
+	}
+
+	@Override
+	public void onSimonDestroyed(Simon simon) {
+		if (simon.getName() != null) {
+			simonRules.remove(simon.getName());
+		}
+		callback.onSimonDestroyed(simon);
+	}
+
+	@Override
+	public void onManagerClear() {
+		invalidateSimonRules();
+		callback.onManagerClear();
+	}
+
+	@Override
+	public void onManagerMessage(String message) {
+		callback.onManagerMessage(message);
+	}
+
+	@Override
+	public void onManagerWarning(String warning, Exception cause) {
+		callback.onManagerWarning(warning, cause);
+	}
+
+	private boolean sample(Simon simon) {
+		return ruleFor(simon).sample(clock.nanoTime());
+	}
+
+	private SamplingRule ruleFor(Simon simon) {
+		String name = simon.getName();
+		if (name == null) {
+			return findRule(simon);
+		}
+		SamplingRule rule = simonRules.get(name);
+		if (rule == null) {
+			int generation = rulesGeneration.get();
+			rule = findRule(simon);
+			simonRules.put(name, rule);
+			// rules changed meanwhile - either the clear follows this put or the rule must be removed here
+			if (rulesGeneration.get() != generation) {
+				simonRules.remove(name, rule);
+			}
+		}
+		return rule;
+	}
+
+	private SamplingRule findRule(Simon simon) {
+		SamplingRule[] snapshot = rules.toArray(new SamplingRule[rules.size()]);
+		for (int i = snapshot.length - 1; i >= 0; i--) {
+			SamplingRule rule = snapshot[i];
+			if (rule.getPattern() == null || rule.getPattern().accept(simon)) {
+				return rule;
+			}
+		}
+		return SAMPLE_ALL;
+	}
+
+	private void invalidateSimonRules() {
+		rulesGeneration.incrementAndGet();
+		simonRules.clear();
+	}
+}
@@ -0,0 +1,141 @@
+package org.javasimon.callback;
+
+import org.javasimon.SimonPattern;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rule of the {@link SamplingCallback} deciding which events of Simons matching the pattern are propagated.
+ * Rule combines three optional limits, event must pass all of them to be sampled:
+ * <ul>
+ * <li>{@code oneIn} - only every N-th event is accepted (1 or less disables the limit);</li>
+ * <li>{@code probability} - event is accepted with the probability from 0 to 1, random numbers are generated
+ * by {@link ThreadLocalRandom} without any contention (1 or more disables the limit);</li>
+ * <li>{@code maxPerSecond} - token bucket with the capacity of one second worth of events refilled continuously
+ * with the specified rate (0 or less disables the limit).</li>
+ * </ul>
+ * Limits are checked in this order and the token is consumed only by events that passed the other limits.
+ * Rule is thread-safe and does not block.
+ *
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ * @since 4.0
+ */
+public final class SamplingRule {
+
+	private static final long NANOS_IN_SECOND = 1000000000L;
+
+	private final SimonPattern pattern;
+
+	private final long oneIn;
+
+	private final double probability;
+
+	private final double maxPerSecond;
+
+	private final AtomicLong counter = new AtomicLong();
+
+	/** Nanos between two tokens, 0 if the rate is not limited. */
+	private final long tokenInterval;
+
+	/** Tokens may be taken up to this many nanos in advance, this makes the capacity of the bucket. */
+	private final long burstNanos;
+
+	/**
+	 * Time when the bucket will be full again (aka theoretical arrival time). Bucket is empty if it is
+	 * {@link #burstNanos} or more in the future - this way the whole bucket is a single number.
+	 */
+	private final AtomicLong bucketFullAt = new AtomicLong(Long.MIN_VALUE);
+
+	/**
+	 * Creates the sampling rule.
+	 *
+	 * @param pattern Simon pattern this rule applies to, null applies to all Simons
+	 * @param oneIn accept only every N-th event, 1 or less to accept all
+	 * @param probability probability of the event acceptance, 1 to accept all
+	 * @param maxPerSecond maximal number of accepted events per second, 0 or less for no limit
+	 * @throws IllegalArgumentException if the probability is not between 0 and 1
+	 */
+	public SamplingRule(SimonPattern pattern, long oneIn, double probability, double maxPerSecond) {
+		if (!(probability >= 0 && probability <= 1)) {
+			throw new IllegalArgumentException("Probability must be between 0 and 1, was: " + probability);
+		}
+		this.pattern = pattern;
+		this.oneIn = Math.max(oneIn, 1);
+		this.probability = probability;
+		this.maxPerSecond = Math.max(maxPerSecond, 0);
+		if (maxPerSecond > 0) {
+			tokenInterval = Math.max((long) (NANOS_IN_SECOND / maxPerSecond), 1);
+			burstNanos = Math.max((long) (NANOS_IN_SECOND / maxPerSecond * Math.floor(maxPerSecond - 1)), 0);
+		} else {
+			tokenInterval = 0;
+			burstNanos = 0;
+		}
+	}
+
+	/**
+	 * Returns the Simon pattern of this rule.
+	 *
+	 * @return Simon pattern of this rule, null if the rule applies to all Simons
+	 */
+	public SimonPattern getPattern() {
+		return pattern;
+	}
+
+	/**
+	 * Returns the N from "one in N" limit - 1 means all events.
+	 *
+	 * @return every which event is accepted
+	 */
+	public long getOneIn() {
+		return oneIn;
+	}
+
+	/**
+	 * Returns the probability of the event acceptance.
+	 *
+	 * @return probability of the event acceptance
+	 */
+	public double getProbability() {
+		return probability;
+	}
+
+	/**
+	 * Returns the maximal number of accepted events per second - 0 means unlimited.
+	 *
+	 * @return maximal number of accepted events per second
+	 */
+	public double getMaxPerSecond() {
+		return maxPerSecond;
+	}
+
+	/**
+	 * Decides whether the event should be sampled.
+	 *
+	 * @param nowNanos current time in nanoseconds (as returned by {@link org.javasimon.clock.SimonClock#nanoTime()})
+	 * @return true if the event is sampled
+	 */
+	public boolean sample(long nowNanos) {
+		if (oneIn > 1 && counter.getAndIncrement() % oneIn != 0) {
+			return false;
+		}
+		if (probability < 1 && ThreadLocalRandom.current().nextDouble() >= probability) {
+			return false;
+		}
+		return tokenInterval == 0 || takeToken(nowNanos);
+	}
+
+	private boolean takeToken(long nowNanos) {
+		while (true) {
+			long fullAt = bucketFullAt.get();
+			// bucket was full since then, tokens over the capacity are lost
+			long base = fullAt == Long.MIN_VALUE || fullAt - nowNanos < 0 ? nowNanos : fullAt;
+			if (base - nowNanos > burstNanos) {
+				return false;
+			}
+			if (bucketFullAt.compareAndSet(fullAt, base + tokenInterval)) {
+				return true;
+			}
+		}
+	}
+}
@@ -0,0 +1,554 @@
+package org.javasimon.callback.async;
+
+import org.javasimon.Counter;
+import org.javasimon.CounterSample;
+import org.javasimon.Manager;
+import org.javasimon.Sample;
+import org.javasimon.Simon;
+import org.javasimon.Split;
+import org.javasimon.Stopwatch;
+import org.javasimon.StopwatchSample;
+import org.javasimon.callback.Callback;
+import org.javasimon.callback.CompositeCallback;
+import org.javasimon.callback.EventAwareCallback;
+import org.javasimon.callback.SampleAwareCallback;
+import org.javasimon.proxy.Delegating;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Callback wrapper that passes events to the wrapped callback on dedicated consumer threads. Unlike
+ * {@link AsyncCallbackProxyFactory} it does not use reflection and it does not allocate anything per event -
+ * events are written into preallocated slots of a bounded lock-free ring buffer and consumer threads drain
+ * them in batches. When the buffer is full (or almost full for {@link OverflowPolicy#SAMPLE}) the event is
+ * handled according to the {@link #setOverflowPolicy(OverflowPolicy) overflow policy}.
+ * <p/>
+ * Example: {@code manager.callback().addCallback(new AsyncCallback(myCallback));}
+ * <p/>
+ * Consumer threads are started when the callback is initialized (added to the initialized composite callback)
+ * and stopped on cleanup after the buffer is drained. With more consumer threads events are processed
+ * concurrently and not necessarily in order, the wrapped callback must be thread-safe then. Exceptions thrown
+ * by the wrapped callback are reported back to it as {@link #onManagerWarning(String, Exception) warnings} (from the
+ * consumer thread, exception thrown while handling a warning is ignored).
+ * <p/>
+ * Idle consumers (and producers blocked by {@link OverflowPolicy#BLOCK}) spin for a while, then yield and finally
+ * park until they are unparked by the other side - idle callback does not wake up its threads periodically.
+ *
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ * @since 4.0
+ */
+public final class AsyncCallback implements EventAwareCallback, SampleAwareCallback, Delegating<Callback> {
+
+	/** Default capacity of the ring buffer. */
+	public static final int DEFAULT_CAPACITY = 8192;
+
+	/** Default number of events taken by the consumer at once. */
+	public static final int DEFAULT_BATCH_SIZE = 64;
+
+	/** Default rate of {@link OverflowPolicy#SAMPLE} - every 10th event is accepted when the buffer is almost full. */
+	public static final int DEFAULT_SAMPLE_RATE = 10;
+
+	private static final int SPINS = 100;
+
+	private static final int SPINS_AND_YIELDS = 200;
+
+	private final Callback delegate;
+
+	private final Slot[] slots;
+
+	private final int mask;
+
+	private final int consumerCount;
+
+	private final int batchSize;
+
+	/** Next sequence claimed by producers. */
+	private final AtomicLong tail = new AtomicLong();
+
+	/** Next sequence claimed by consumers. */
+	private final AtomicLong head = new AtomicLong();
+
+	private final AtomicLong dropped = new AtomicLong();
+
+	private final AtomicLong sampled = new AtomicLong();
+
+	/** Consumers parked while the buffer is empty, unparked by producers. */
+	private final Queue<Thread> parkedConsumers = new ConcurrentLinkedQueue<>();
+
+	/** Producers parked while the buffer is full, unparked by consumers. */
+	private final Queue<Thread> parkedProducers = new ConcurrentLinkedQueue<>();
+
+	private volatile OverflowPolicy overflowPolicy = OverflowPolicy.DROP;
+
+	private volatile int sampleRate = DEFAULT_SAMPLE_RATE;
+
+	private volatile boolean running;
+
+	private List<Thread> consumers;
+
+	/**
+	 * Creates asynchronous callback with the default capacity, one consumer thread and {@link OverflowPolicy#DROP}.
+	 *
+	 * @param delegate wrapped callback
+	 */
+	public AsyncCallback(Callback delegate) {
+		this(delegate, DEFAULT_CAPACITY, 1, DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * Creates asynchronous callback.
+	 *
+	 * @param delegate wrapped callback
+	 * @param capacity capacity of the ring buffer, rounded up to the power of two
+	 * @param consumerCount number of consumer threads
+	 * @param batchSize maximal number of events taken by the consumer at once
+	 */
+	public AsyncCallback(Callback delegate, int capacity, int consumerCount, int batchSize) {
+		if (capacity < 2 || capacity > 1 << 30) {
+			throw new IllegalArgumentException("Capacity must be between 2 and 2^30: " + capacity);
+		}
+		if (consumerCount < 1 || batchSize < 1) {
+			throw new IllegalArgumentException("Consumer count and batch size must be positive");
+		}
+		this.delegate = delegate;
+		this.consumerCount = consumerCount;
+		this.batchSize = batchSize;
+		int size = Integer.highestOneBit(capacity - 1) << 1;
+		slots = new Slot[size];
+		for (int i = 0; i < size; i++) {
+			slots[i] = new Slot(i);
+		}
+		mask = size - 1;
+	}
+
+	@Override
+	public Callback getDelegate() {
+		return delegate;
+	}
+
+	/**
+	 * Returns capacity of the ring buffer.
+	 *
+	 * @return capacity of the ring buffer
+	 */
+	public int getCapacity() {
+		return slots.length;
+	}
+
+	/**
+	 * Returns the policy applied when the event does not fit into the buffer.
+	 *
+	 * @return overflow policy
+	 */
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	/**
+	 * Sets the policy applied when the event does not fit into the buffer, default is {@link OverflowPolicy#DROP}.
+	 *
+	 * @param overflowPolicy overflow policy
+	 */
+	public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+		if (overflowPolicy == null) {
+			throw new IllegalArgumentException("Overflow policy must not be null");
+		}
+		this.overflowPolicy = overflowPolicy;
+	}
+
+	/**
+	 * Returns the rate of {@link OverflowPolicy#SAMPLE} - every n-th event is accepted when the buffer is almost full.
+	 *
+	 * @return sample rate
+	 */
+	public int getSampleRate() {
+		return sampleRate;
+	}
+
+	/**
+	 * Sets the rate of {@link OverflowPolicy#SAMPLE} - every n-th event is accepted when the buffer is almost full.
+	 *
+	 * @param sampleRate sample rate, 1 means every event
+	 */
+	public void setSampleRate(int sampleRate) {
+		if (sampleRate < 1) {
+			throw new IllegalArgumentException("Sample rate must be positive: " + sampleRate);
+		}
+		this.sampleRate = sampleRate;
+	}
+
+	/**
+	 * Returns number of events accepted into the buffer since the creation of the callback.
+	 *
+	 * @return number of queued events
+	 */
+	public long getQueuedCount() {
+		return tail.get();
+	}
+
+	/**
+	 * Returns number of events dropped because of the overflow since the creation of the callback.
+	 *
+	 * @return number of dropped events
+	 */
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	/**
+	 * Returns number of events in the buffer waiting for the consumer.
+	 *
+	 * @return number of waiting events
+	 */
+	public int getQueueSize() {
+		return (int) Math.max(tail.get() - head.get(), 0);
+	}
+
+	/** Initializes the wrapped callback and starts consumer threads, does nothing if the callback is already running. */
+	@Override
+	public synchronized void initialize(Manager manager) {
+		if (running) {
+			return;
+		}
+		delegate.initialize(manager);
+		running = true;
+		consumers = new ArrayList<>();
+		for (int i = 0; i < consumerCount; i++) {
+			Thread thread = new Thread(new Consumer(), "javasimon-async-callback-" + i);
+			thread.setDaemon(true);
+			thread.start();
+			consumers.add(thread);
+		}
+	}
+
+	/** Stops consumer threads after the waiting events are processed and cleans up the wrapped callback. */
+	@Override
+	public synchronized void cleanup() {
+		running = false;
+		unparkAll(parkedProducers);
+		if (consumers != null) {
+			for (Thread consumer : consumers) {
+				LockSupport.unpark(consumer);
+				try {
+					consumer.join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			consumers = null;
+		}
+		delegate.cleanup();
+	}
+
+	// composite delegate may get more children after this callback is added, hence it is subscribed to all events
+	@Override
+	public boolean isSubscribed(Event event) {
+		return !(delegate instanceof EventAwareCallback)
+			|| delegate instanceof CompositeCallback
+			|| ((EventAwareCallback) delegate).isSubscribed(event);
+	}
+
+	@Override
+	public boolean isSampleRequired() {
+		return !(delegate instanceof SampleAwareCallback) || ((SampleAwareCallback) delegate).isSampleRequired();
+	}
+
+	@Override
+	public void onStopwatchAdd(Stopwatch stopwatch, Split split, StopwatchSample sample) {
+		publish(Event.STOPWATCH_ADD, stopwatch, split, sample, 0, null, null);
+	}
+
+	@Override
+	public void onStopwatchStart(Split split) {
+		publish(Event.STOPWATCH_START, null, split, null, 0, null, null);
+	}
+
+	@Override
+	public void onStopwatchStop(Split split, StopwatchSample sample) {
+		publish(Event.STOPWATCH_STOP, null, split, sample, 0, null, null);
+	}
+
+	@Override
+	public void onCounterDecrease(Counter counter, long dec, CounterSample sample) {
+		publish(Event.COUNTER_DECREASE, counter, null, sample, dec, null, null);
+	}
+
+	@Override
+	public void onCounterIncrease(Counter counter, long inc, CounterSample sample) {
+		publish(Event.COUNTER_INCREASE, counter, null, sample, inc, null, null);
+	}
+
+	@Override
+	public void onCounterSet(Counter counter, long val, CounterSample sample) {
+		publish(Event.COUNTER_SET, counter, null, sample, val, null, null);
+	}
+
+	@Override
+	public void onSimonCreated(Simon simon) {
+		publish(Event.CREATED, simon, null, null, 0, null, null);
+	}
+
+	@Override
+	public void onSimonDestroyed(Simon simon) {
+		publish(Event.DESTROYED, simon, null, null, 0, null, null);
+	}
+
+	@Override
+	public void onManagerClear() {
+		publish(Event.MANAGER_CLEAR, null, null, null, 0, null, null);
+	}
+
+	@Override
+	public void onManagerMessage(String message) {
+		publish(Event.MESSAGE, null, null, null, 0, message, null);
+	}
+
+	@Override
+	public void onManagerWarning(String warning, Exception cause) {
+		publish(Event.WARNING, null, null, null, 0, warning, cause);
+	}
+
+	private void publish(Event event, Simon simon, Split split, Sample sample, long value, String message, Exception cause) {
+		Slot slot = claimSlot();
+		if (slot == null) {
+			dropped.incrementAndGet();
+			return;
+		}
+		slot.event = event;
+		slot.simon = simon;
+		slot.split = split;
+		slot.sample = sample;
+		slot.value = value;
+		slot.message = message;
+		slot.cause = cause;
+		// slot is published for consumers when its sequence is one ahead of its position,
+		// volatile write is followed by the read of parked consumers (parking consumer does the opposite)
+		slot.sequence = slot.position + 1;
+		Thread consumer = parkedConsumers.poll();
+		if (consumer != null) {
+			LockSupport.unpark(consumer);
+		}
+	}
+
+	/** Claims the slot for the producer or returns null if the event is to be dropped. */
+	private Slot claimSlot() {
+		int spins = 0;
+		while (true) {
+			long position = tail.get();
+			Slot slot = slots[(int) position & mask];
+			long available = slot.sequence - position;
+			if (available == 0) {
+				// every event counts for sampling once - retries after a lost CAS are not counted
+				boolean sampling = overflowPolicy == OverflowPolicy.SAMPLE && almostFull(position);
+				if (sampling && (sampled.get() + 1) % sampleRate != 0) {
+					sampled.incrementAndGet();
+					return null;
+				}
+				if (tail.compareAndSet(position, position + 1)) {
+					if (sampling) {
+						sampled.incrementAndGet();
+					}
+					slot.position = position;
+					return slot;
+				}
+			} else if (available < 0) {
+				// buffer is full
+				if (overflowPolicy != OverflowPolicy.BLOCK || !running) {
+					return null;
+				}
+				if (++spins > SPINS_AND_YIELDS) {
+					parkProducer(position);
+				} else if (spins > SPINS) {
+					Thread.yield();
+				}
+			}
+		}
+	}
+
+	private void parkProducer(long position) {
+		Thread current = Thread.currentThread();
+		parkedProducers.add(current);
+		// re-checked after the registration, consumer frees the slot before it unparks producers
+		if (running && tail.get() == position && slots[(int) position & mask].sequence - position < 0) {
+			LockSupport.park(this);
+		}
+		parkedProducers.remove(current);
+	}
+
+	private void parkConsumer() {
+		Thread current = Thread.currentThread();
+		parkedConsumers.add(current);
+		// re-checked after the registration, producer publishes the slot before it unparks consumers
+		long first = head.get();
+		if (running && slots[(int) first & mask].sequence != first + 1) {
+			LockSupport.park(this);
+		}
+		parkedConsumers.remove(current);
+	}
+
+	private static void unparkAll(Queue<Thread> threads) {
+		Thread thread;
+		while ((thread = threads.poll()) != null) {
+			LockSupport.unpark(thread);
+		}
+	}
+
+	// above three quarters of the capacity only every n-th event is accepted
+	private boolean almostFull(long position) {
+		return position - head.get() >= slots.length - (slots.length >> 2);
+	}
+
+	/**
+	 * Takes up to the batch size of published events and passes them to the wrapped callback.
+	 *
+	 * @return number of processed events
+	 */
+	private int drain() {
+		while (true) {
+			long first = head.get();
+			int count = 0;
+			while (count < batchSize && slots[(int) (first + count) & mask].sequence == first + count + 1) {
+				count++;
+			}
+			if (count == 0) {
+				return 0;
+			}
+			if (head.compareAndSet(first, first + count)) {
+				for (int i = 0; i < count; i++) {
+					long position = first + i;
+					Slot slot = slots[(int) position & mask];
+					dispatch(slot);
+					slot.clear();
+					// slot is free for producers in the next round
+					slot.sequence = position + slots.length;
+				}
+				unparkAll(parkedProducers);
+				return count;
+			}
+		}
+	}
+
+	private void dispatch(Slot slot) {
+		try {
+			dispatchToDelegate(slot);
+		} catch (Throwable e) {
+			// consumer thread must survive any failure of the delegate
+			if (slot.event != Event.WARNING) {
+				try {
+					delegate.onManagerWarning("Async callback error on " + slot.event,
+						e instanceof Exception ? (Exception) e : new ExecutionException(e));
+				} catch (Throwable ignored) {
+					// nobody else to report it to
+				}
+			}
+		}
+	}
+
+	private void dispatchToDelegate(Slot slot) {
+		switch (slot.event) {
+			case STOPWATCH_ADD:
+				delegate.onStopwatchAdd((Stopwatch) slot.simon, slot.split, (StopwatchSample) slot.sample);
+				break;
+			case STOPWATCH_START:
+				delegate.onStopwatchStart(slot.split);
+				break;
+			case STOPWATCH_STOP:
+				delegate.onStopwatchStop(slot.split, (StopwatchSample) slot.sample);
+				break;
+			case COUNTER_DECREASE:
+				delegate.onCounterDecrease((Counter) slot.simon, slot.value, (CounterSample) slot.sample);
+				break;
+			case COUNTER_INCREASE:
+				delegate.onCounterIncrease((Counter) slot.simon, slot.value, (CounterSample) slot.sample);
+				break;
+			case COUNTER_SET:
+				delegate.onCounterSet((Counter) slot.simon, slot.value, (CounterSample) slot.sample);
+				break;
+			case CREATED:
+				delegate.onSimonCreated(slot.simon);
+				break;
+			case DESTROYED:
+				delegate.onSimonDestroyed(slot.simon);
+				break;
+			case MANAGER_CLEAR:
+				delegate.onManagerClear();
+				break;
+			case MESSAGE:
+				delegate.onManagerMessage(slot.message);
+				break;
+			case WARNING:
+				delegate.onManagerWarning(slot.message, slot.cause);
+				break;
+			default:
+				break;
+		}
+	}
+
+	/** Drains the buffer until the callback is stopped and the buffer is empty. */
+	private final class Consumer implements Runnable {
+		@Override
+		public void run() {
+			int idle = 0;
+			while (true) {
+				if (drain() > 0) {
+					idle = 0;
+				} else if (!running && tail.get() == head.get()) {
+					return;
+				} else if (++idle > SPINS_AND_YIELDS) {
+					parkConsumer();
+					idle = 0;
+				} else if (idle > SPINS) {
+					Thread.yield();
+				}
+			}
+		}
+	}
+
+	/** Preallocated event holder, sequence tells whether the slot is free or published for the given position. */
+	private static final class Slot {
+		private volatile long sequence;
+		private long position;
+		private Event event;
+		private Simon simon;
+		private Split split;
+		private Sample sample;
+		private long value;
+		private String message;
+		private Exception cause;
+
+		Slot(long sequence) {
+			this.sequence = sequence;
+		}
+
+		// releases references so that they are not retained until the slot is reused
+		void clear() {
+			simon = null;
+			split = null;
+			sample = null;
+			message = null;
+			cause = null;
+		}
+	}
+
+	/**
+	 * Policy applied when the event does not fit into the ring buffer.
+	 *
+	 * @since 4.0
+	 */
+	public enum OverflowPolicy {
+		/** Event is dropped when the buffer is full. */
+		DROP,
+
+		/** Only every {@link #getSampleRate() n-th} event is accepted when the buffer is three quarters full, the rest is dropped. */
+		SAMPLE,
+
+		/** Producer waits until there is a free slot in the buffer. Events are dropped if the consumers are not running. */
+		BLOCK
+	}
+}
@@ -18,6 +18,9 @@ import java.lang.reflect.Method;
  * <p/>
  * It can be used to disable/enable, at runtime, a callback without removing it from
  * the {@link SimonManager}: {@code asyncCallbackProxy.setExecutor(Executors.disabled);}
+ * <p/>
+ * Every event is invoked reflectively and submitted to the executor, for high event rates
+ * {@link AsyncCallback} with its bounded buffer is more suitable.
  *
  * @author gerald
  */
@@ -0,0 +1,100 @@
+package org.javasimon.callback.calltree;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+
+/**
+ * Call tree aggregating all call trees with the same root Stopwatch. Call trees are merged into
+ * long-lived {@link AggregateCallTreeNode}s which keep only counters per call path, hence the memory
+ * depends on the number of distinct paths, not on the number of calls.
+ * <p/>
+ * Aggregated tree can be exported in the collapsed stack format used by flame graph tools
+ * (e.g. {@code flamegraph.pl}): each line contains Simon names of a call path separated by semicolons,
+ * space and the self time of the last Simon of the path in nanoseconds:
+ * <pre>
+ * org.javasimon.web.Controller.execute 1200000
+ * org.javasimon.web.Controller.execute;org.javasimon.business.FirstService.work 3400000
+ * org.javasimon.web.Controller.execute;org.javasimon.business.FirstService.work;org.javasimon.data.FirstDAO.findAll 52000000
+ * </pre>
+ *
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ * @see CallTreeCallback#setAggregate(boolean)
+ * @since 4.0
+ */
+public class AggregateCallTree {
+
+	/** Root call tree node. */
+	private final AggregateCallTreeNode rootNode;
+
+	/**
+	 * Main constructor.
+	 *
+	 * @param rootName Name of the root Stopwatch
+	 */
+	public AggregateCallTree(String rootName) {
+		rootNode = new AggregateCallTreeNode(rootName, null);
+	}
+
+	/**
+	 * Merges finished call tree into this aggregate tree.
+	 *
+	 * @param callTree call tree with the same root
+	 */
+	public void merge(CallTree callTree) {
+		merge(callTree.getRootNode());
+	}
+
+	/**
+	 * Merges root node of a finished call tree into this aggregate tree.
+	 *
+	 * @param callTreeNode root call tree node with the same name
+	 */
+	public void merge(CallTreeNode callTreeNode) {
+		String rootName = rootNode.getName();
+		if (rootName == null ? callTreeNode.getName() != null : !rootName.equals(callTreeNode.getName())) {
+			throw new IllegalArgumentException("Call tree root " + callTreeNode.getName() + " does not match " + rootNode.getName());
+		}
+		rootNode.merge(callTreeNode);
+	}
+
+	public AggregateCallTreeNode getRootNode() {
+		return rootNode;
+	}
+
+	/**
+	 * Writes the tree in the collapsed stack format.
+	 *
+	 * @param writer Output writer
+	 */
+	public void writeCollapsedStacks(Writer writer) {
+		PrintWriter printWriter = new PrintWriter(writer);
+		rootNode.printCollapsedStacks(printWriter, null);
+		printWriter.flush();
+	}
+
+	/**
+	 * Returns the tree in the collapsed stack format.
+	 *
+	 * @return collapsed stacks, one line per call path
+	 */
+	public String getCollapsedStacks() {
+		StringWriter stringWriter = new StringWriter();
+		writeCollapsedStacks(stringWriter);
+		return stringWriter.toString();
+	}
+
+	/**
+	 * Returns a string representing the aggregated tree.
+	 *
+	 * @return String
+	 */
+	@Override
+	public String toString() {
+		StringWriter stringWriter = new StringWriter();
+		PrintWriter printWriter = new PrintWriter(stringWriter);
+		rootNode.print(printWriter, "");
+		printWriter.flush();
+		return stringWriter.toString();
+	}
+}
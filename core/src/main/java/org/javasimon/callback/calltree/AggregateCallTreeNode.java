@@ -0,0 +1,200 @@
+package org.javasimon.callback.calltree;
+
+import java.io.PrintWriter;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.javasimon.utils.SimonUtils;
+
+/**
+ * Node of the {@link AggregateCallTree}, aggregates all calls of one Simon on one call path.
+ * Unlike {@link CallTreeNode} no splits are kept, only primitive counters: number of calls,
+ * total time, self time (total time minus time of the children) and max time. Node is thread-safe,
+ * call trees from many threads are merged into it concurrently.
+ *
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ * @since 4.0
+ */
+public class AggregateCallTreeNode {
+
+	/** Name, used as a key. */
+	private final String name;
+
+	/** Parent tree node. {@code null} for root tree node. */
+	private final AggregateCallTreeNode parent;
+
+	/** Child tree nodes. */
+	private final ConcurrentMap<String, AggregateCallTreeNode> children = new ConcurrentHashMap<>(4);
+
+	private final AtomicLong count = new AtomicLong();
+
+	private final AtomicLong total = new AtomicLong();
+
+	private final AtomicLong self = new AtomicLong();
+
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Main constructor.
+	 *
+	 * @param name Simon name
+	 * @param parent Parent tree node, {@code null} for root
+	 */
+	AggregateCallTreeNode(String name, AggregateCallTreeNode parent) {
+		this.name = name;
+		this.parent = parent;
+	}
+
+	/**
+	 * Merges call tree node (and recursively its children) into this node.
+	 *
+	 * @param node call tree node with the same name
+	 */
+	void merge(CallTreeNode node) {
+		long nodeTotal = node.getTotal();
+		long childrenTotal = 0;
+		for (CallTreeNode child : node.getChildren()) {
+			childrenTotal += child.getTotal();
+			getOrAddChild(child.getName()).merge(child);
+		}
+		count.addAndGet(node.getSplitCount());
+		total.addAndGet(nodeTotal);
+		self.addAndGet(Math.max(nodeTotal - childrenTotal, 0));
+		long nodeMax = node.getMax();
+		long currentMax = max.get();
+		while (nodeMax > currentMax && !max.compareAndSet(currentMax, nodeMax)) {
+			currentMax = max.get();
+		}
+	}
+
+	private AggregateCallTreeNode getOrAddChild(String name) {
+		AggregateCallTreeNode child = children.get(name);
+		if (child == null) {
+			AggregateCallTreeNode newChild = new AggregateCallTreeNode(name, this);
+			child = children.putIfAbsent(name, newChild);
+			if (child == null) {
+				child = newChild;
+			}
+		}
+		return child;
+	}
+
+	/**
+	 * Returns Simon name.
+	 *
+	 * @return Name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns parent tree node.
+	 *
+	 * @return Parent tree node
+	 */
+	public AggregateCallTreeNode getParent() {
+		return parent;
+	}
+
+	/**
+	 * Returns the child node by Simon name.
+	 *
+	 * @param name Simon name
+	 * @return Child corresponding to given name, or null if any
+	 */
+	public AggregateCallTreeNode getChild(String name) {
+		return children.get(name);
+	}
+
+	/**
+	 * Returns all child nodes.
+	 *
+	 * @return children
+	 */
+	public Collection<AggregateCallTreeNode> getChildren() {
+		return children.values();
+	}
+
+	/**
+	 * Returns number of calls on this path.
+	 *
+	 * @return call count
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * Returns total time of calls on this path in nanoseconds.
+	 *
+	 * @return total time
+	 */
+	public long getTotal() {
+		return total.get();
+	}
+
+	/**
+	 * Returns time spent in this node itself (not in the child nodes) in nanoseconds.
+	 *
+	 * @return self time
+	 */
+	public long getSelf() {
+		return self.get();
+	}
+
+	/**
+	 * Returns the longest call on this path in nanoseconds.
+	 *
+	 * @return max time
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Recursively prints collapsed stacks of this tree node: one line per path with frames separated by
+	 * semicolon followed by the self time.
+	 *
+	 * @param printWriter Output print writer
+	 * @param prefix Frames of the parent path
+	 */
+	void printCollapsedStacks(PrintWriter printWriter, String prefix) {
+		String path = prefix == null ? name : prefix + ';' + name;
+		long selfTime = getSelf();
+		if (selfTime > 0) {
+			printWriter.print(path);
+			printWriter.print(' ');
+			printWriter.print(selfTime);
+			printWriter.print('\n');
+		}
+		for (AggregateCallTreeNode child : getChildren()) {
+			child.printCollapsedStacks(printWriter, path);
+		}
+	}
+
+	/**
+	 * Recursively prints this tree node to given print writer.
+	 *
+	 * @param printWriter Output print writer
+	 * @param prefix Line prefix (used internally for indentation)
+	 */
+	void print(PrintWriter printWriter, String prefix) {
+		printWriter.print(prefix);
+		printWriter.print(name);
+		printWriter.print(' ');
+		printWriter.print(SimonUtils.presentNanoTime(getTotal()));
+		printWriter.print(", self ");
+		printWriter.print(SimonUtils.presentNanoTime(getSelf()));
+		printWriter.print(", max ");
+		printWriter.print(SimonUtils.presentNanoTime(getMax()));
+		printWriter.print(", ");
+		printWriter.print(getCount());
+		printWriter.println();
+		for (AggregateCallTreeNode child : getChildren()) {
+			child.print(printWriter, prefix + "\t");
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package org.javasimon.callback.calltree;
 
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
 
 import org.javasimon.Split;
 import org.javasimon.callback.logging.LogMessageSource;
@@ -17,8 +18,14 @@ public class CallTree implements LogMessageSource<Split> {
 	/** Log threshold. */
 	private final Long logThreshold;
 
-	/** Call stack is the path (made of tree nodes) from root tree node to the current tree node. */
-	private final LinkedList<CallTreeNode> callStack = new LinkedList<>();
+	/**
+	 * Call stack is the path (made of tree nodes) from root tree node to the current tree node.
+	 * Array based stack, it grows when needed and push/pop do not allocate.
+	 */
+	private CallTreeNode[] callStack = new CallTreeNode[16];
+
+	/** Current depth of the call stack. */
+	private int callStackSize;
 
 	/** Root call tree node. */
 	private CallTreeNode rootNode;
@@ -42,16 +49,19 @@ public class CallTree implements LogMessageSource<Split> {
 	public CallTreeNode onStopwatchStart(Split split) {
 		final String name = split.getStopwatch().getName();
 		CallTreeNode currentNode;
-		if (callStack.isEmpty()) {
+		if (callStackSize == 0) {
 			// Root tree node
 			rootNode = new CallTreeNode(name);
 			currentNode = rootNode;
 			onRootStopwatchStart(currentNode, split);
 		} else {
 			// Child node
-			currentNode = callStack.getLast().getOrAddChild(name);
+			currentNode = callStack[callStackSize - 1].getOrAddChild(name);
 		}
-		callStack.addLast(currentNode);
+		if (callStackSize == callStack.length) {
+			callStack = Arrays.copyOf(callStack, callStackSize * 2);
+		}
+		callStack[callStackSize++] = currentNode;
 		return currentNode;
 	}
 
@@ -63,9 +73,13 @@ public class CallTree implements LogMessageSource<Split> {
 	 * @return Current (child) tree node
 	 */
 	public CallTreeNode onStopwatchStop(Split split) {
-		CallTreeNode currentNode = callStack.removeLast();
+		if (callStackSize == 0) {
+			throw new NoSuchElementException("Call stack is empty");
+		}
+		CallTreeNode currentNode = callStack[--callStackSize];
+		callStack[callStackSize] = null;
 		currentNode.addSplit(split);
-		if (callStack.isEmpty()) {
+		if (callStackSize == 0) {
 			onRootStopwatchStop(currentNode, split);
 		}
 		return currentNode;
@@ -24,6 +24,9 @@ import org.javasimon.callback.logging.SplitThresholdLogTemplate;
  * 		org.javasimon.data.SecondDAO.findByRelation 20ms, 10%, 3
  * 	org.javasimon.business.SecondService.do 10ms, 5%
  * </pre>
+ * In aggregate mode (see {@link #setAggregate(boolean)}) all call trees are also merged into
+ * an {@link AggregateCallTree} stored in the root Stopwatch, which gives a continuous profile
+ * of the instrumented call paths and can be exported for flame graph tools.
  *
  * @author gquintana
  * @see CallTree
@@ -40,9 +43,15 @@ public class CallTreeCallback extends CallbackSkeleton {
 	/** Simon attribute name used to store last significant call tree. */
 	public static final String ATTR_NAME_LAST = "lastCallTree";
 
+	/** Simon attribute name used to store aggregate call tree. */
+	public static final String ATTR_NAME_AGGREGATE = "aggregateCallTree";
+
 	/** Duration threshold used to trigger logging and remembering. */
 	private Long logThreshold;
 
+	/** Whether call trees are merged into the aggregate call tree. */
+	private volatile boolean aggregate;
+
 	/** Default constructor. */
 	public CallTreeCallback() {
 		initLogThreshold(500L);
@@ -90,6 +99,22 @@ public class CallTreeCallback extends CallbackSkeleton {
 		initLogThreshold(logThreshold);
 	}
 
+	/** Returns true if call trees are merged into the {@link AggregateCallTree} of the root Stopwatch. */
+	public boolean isAggregate() {
+		return aggregate;
+	}
+
+	/**
+	 * Sets aggregate mode, when enabled each finished call tree is merged into
+	 * the {@link AggregateCallTree} of the root Stopwatch.
+	 *
+	 * @param aggregate true to enable aggregate mode
+	 * @since 4.0
+	 */
+	public void setAggregate(boolean aggregate) {
+		this.aggregate = aggregate;
+	}
+
 	/**
 	 * Returns call tree for current thread.
 	 *
@@ -120,6 +145,16 @@ public class CallTreeCallback extends CallbackSkeleton {
 		threadCallTree.remove();
 	}
 
+	/**
+	 * Returns false - this callback does not use samples.
+	 *
+	 * @return false
+	 */
+	@Override
+	public boolean isSampleRequired() {
+		return false;
+	}
+
 	@Override
 	public void onStopwatchStart(Split split) {
 		CallTree callTree = getCallTree();
@@ -147,9 +182,28 @@ public class CallTreeCallback extends CallbackSkeleton {
 		if (logThreshold != null && split.runningFor() > logThreshold) {
 			split.getStopwatch().setAttribute(ATTR_NAME_LAST, callTree);
 		}
+		if (aggregate) {
+			getOrCreateAggregateCallTree(split.getStopwatch()).merge(callTree);
+		}
 		removeCallTree();
 	}
 
+	/** Returns aggregate call tree stored in stopwatch attributes, creates it if necessary. */
+	private AggregateCallTree getOrCreateAggregateCallTree(Stopwatch stopwatch) {
+		AggregateCallTree aggregateCallTree = getAggregateCallTree(stopwatch);
+		if (aggregateCallTree != null) {
+			return aggregateCallTree;
+		}
+		synchronized (stopwatch) {
+			aggregateCallTree = getAggregateCallTree(stopwatch);
+			if (aggregateCallTree == null) {
+				aggregateCallTree = new AggregateCallTree(stopwatch.getName());
+				stopwatch.setAttribute(ATTR_NAME_AGGREGATE, aggregateCallTree);
+			}
+			return aggregateCallTree;
+		}
+	}
+
 	/**
 	 * Returns last call tree stored in stopwatch attributes.
 	 *
@@ -159,4 +213,15 @@ public class CallTreeCallback extends CallbackSkeleton {
 	public static CallTree getLastCallTree(Stopwatch stopwatch) {
 		return (CallTree) stopwatch.getAttribute(ATTR_NAME_LAST);
 	}
+
+	/**
+	 * Returns aggregate call tree stored in stopwatch attributes.
+	 *
+	 * @param stopwatch Root Stopwatch
+	 * @return Aggregate call tree or {@code null} if aggregate mode is off or there was no call yet
+	 * @since 4.0
+	 */
+	public static AggregateCallTree getAggregateCallTree(Stopwatch stopwatch) {
+		return (AggregateCallTree) stopwatch.getAttribute(ATTR_NAME_AGGREGATE);
+	}
 }
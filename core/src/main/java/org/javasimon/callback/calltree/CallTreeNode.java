@@ -2,19 +2,20 @@ package org.javasimon.callback.calltree;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import org.javasimon.Split;
 import org.javasimon.utils.SimonUtils;
 
 /**
- * Call tree node is one Simon one for one call level, all splits for this
- * Simon+Level(+Thread) tuple are kept for later analysis.
+ * Call tree node is one Simon one for one call level, splits for this
+ * Simon+Level(+Thread) tuple are aggregated into primitive counters (count, total, max),
+ * split objects are not retained. Memory depends on the number of distinct call paths, not
+ * on the number of calls.
  * Simon name is unique within parent tree node. Said differently a tree node can
  * not have two children with same name.
  *
@@ -22,21 +23,51 @@ import org.javasimon.utils.SimonUtils;
  * @since 3.2
  */
 public class CallTreeNode {
+	/**
+	 * Number of children from which they are looked up in the map instead of the linear scan.
+	 */
+	private static final int CHILDREN_MAP_THRESHOLD = 8;
+
 	/**
 	 * Name, used as a key.
 	 */
 	private final String name;
 
 	/**
-	 * Splits.
-	 * Size defaults to 1, because most of the time there are no loops.
+	 * Number of splits.
+	 */
+	private int splitCount;
+
+	/**
+	 * Total time of splits.
+	 */
+	private long total;
+
+	/**
+	 * Longest split.
+	 */
+	private long max;
+
+	/**
+	 * Child tree nodes, array is larger than {@link #childCount}.
+	 * Most nodes have few children, linear scan is cheaper than hashing.
+	 */
+	private CallTreeNode[] children;
+
+	/**
+	 * Number of child tree nodes.
+	 */
+	private int childCount;
+
+	/**
+	 * Child tree nodes by name, {@code null} until the number of children reaches {@link #CHILDREN_MAP_THRESHOLD}.
 	 */
-	private final List<Split> splits = new ArrayList<>(1);
+	private Map<String, CallTreeNode> childrenByName;
 
 	/**
-	 * Child tree nodes.
+	 * Child returned by the last lookup, loops hit the same child repeatedly.
 	 */
-	private Map<String, CallTreeNode> children;
+	private CallTreeNode lastChild;
 
 	/**
 	 * Parent tree node. {@code null} for root tree node.
@@ -62,13 +93,28 @@ public class CallTreeNode {
 	}
 
 	/**
-	 * Adds a split to the current tree node.
+	 * Adds a split to the current tree node, only its duration ({@link org.javasimon.Split#runningFor()})
+	 * is aggregated, the split itself is not kept.
 	 * In case of loops, child nodes can have many splits.
 	 *
 	 * @param split Split
 	 */
 	public void addSplit(Split split) {
-		splits.add(split);
+		addSplit(split.runningFor());
+	}
+
+	/**
+	 * Adds a split duration to the current tree node.
+	 *
+	 * @param runningFor Split duration in nanoseconds
+	 * @since 4.0
+	 */
+	public void addSplit(long runningFor) {
+		splitCount++;
+		total += runningFor;
+		if (runningFor > max) {
+			max = runningFor;
+		}
 	}
 
 	/**
@@ -77,7 +123,7 @@ public class CallTreeNode {
 	 * @return Split count
 	 */
 	public int getSplitCount() {
-		return splits.size();
+		return splitCount;
 	}
 
 	/**
@@ -86,13 +132,19 @@ public class CallTreeNode {
 	 * @return total time of splits
 	 */
 	public long getTotal() {
-		long total = 0;
-		for (Split split : splits) {
-			total += split.runningFor();
-		}
 		return total;
 	}
 
+	/**
+	 * Returns the longest split using {@link org.javasimon.Split#runningFor()}.
+	 *
+	 * @return max time of splits
+	 * @since 4.0
+	 */
+	public long getMax() {
+		return max;
+	}
+
 	/**
 	 * Returns the part of time spent in this node compared to parent.
 	 *
@@ -116,11 +168,22 @@ public class CallTreeNode {
 	 */
 	public CallTreeNode addChild(String name) {
 		if (children == null) {
-			children = new HashMap<>();
+			children = new CallTreeNode[2];
+		} else if (childCount == children.length) {
+			children = Arrays.copyOf(children, childCount * 2);
 		}
 		CallTreeNode child = new CallTreeNode(name);
-		children.put(name, child);
+		children[childCount++] = child;
+		if (childrenByName != null) {
+			childrenByName.put(name, child);
+		} else if (childCount == CHILDREN_MAP_THRESHOLD) {
+			childrenByName = new HashMap<>();
+			for (int i = 0; i < childCount; i++) {
+				childrenByName.put(children[i].name, children[i]);
+			}
+		}
 		child.parent = this;
+		lastChild = child;
 		return child;
 	}
 
@@ -131,16 +194,38 @@ public class CallTreeNode {
 	 * @return Child corresponding to given name, or null if any
 	 */
 	public CallTreeNode getChild(String name) {
-		return (children == null) ? null : children.get(name);
+		// Simon returns the same name instance every time, identity check is usually enough
+		if (lastChild != null && lastChild.name == name) {
+			return lastChild;
+		}
+		if (childrenByName != null) {
+			CallTreeNode child = childrenByName.get(name);
+			if (child != null) {
+				lastChild = child;
+			}
+			return child;
+		}
+		for (int i = 0; i < childCount; i++) {
+			if (children[i].name == name) {
+				return lastChild = children[i];
+			}
+		}
+		for (int i = 0; i < childCount; i++) {
+			if (children[i].name.equals(name)) {
+				return lastChild = children[i];
+			}
+		}
+		return null;
 	}
 
 	/**
-	 * Returns all child nodes.
+	 * Returns all child nodes in the order they were added.
 	 *
-	 * @return children
+	 * @return unmodifiable view of children
 	 */
 	public Collection<CallTreeNode> getChildren() {
-		return children == null ? Collections.<CallTreeNode>emptyList() : children.values();
+		return children == null ? Collections.<CallTreeNode>emptyList()
+			: Collections.unmodifiableList(Arrays.asList(children).subList(0, childCount));
 	}
 
 	/**
@@ -3,23 +3,43 @@ package org.javasimon.callback.lastsplits;
 import static org.javasimon.callback.logging.LogTemplates.disabled;
 import static org.javasimon.utils.SimonUtils.presentNanoTime;
 
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
 import org.javasimon.Split;
 import org.javasimon.callback.logging.LogMessageSource;
 import org.javasimon.callback.logging.LogTemplate;
 
 /**
  * Object stored among Stopwatch's attributes in charge of <ul>
- * <li>Managing concurrent access to the inner ring buffer through synchronized blocks</li>
+ * <li>Managing concurrent access to the inner ring buffer without locking</li>
  * <li>Computing som statistics (min, max, mean, trend) based on retained values</li>
  * <li>Log retained values and statistics
  * </ul>
+ * Only the duration and the start of each split are retained in parallel primitive arrays, split objects
+ * are not kept. Each writer claims a sequence number from a counter and writes into the slot given by the sequence.
+ * Slot sequence is cleared before the values are written and set after, readers copy the values
+ * and accept them only if the slot sequence did not change meanwhile - this way statistics are always computed
+ * from a consistent snapshot of values (values being written at the moment are skipped).
  *
  * @author gquintana
  * @since 3.2
  */
 public class LastSplits implements LogMessageSource<Split> {
-	/** Ring buffer containing splits. */
-	private final CircularList<Split> splits;
+	/** Durations of the splits (ring buffer). */
+	private final AtomicLongArray durations;
+
+	/** Starts of the splits (ring buffer). */
+	private final AtomicLongArray starts;
+
+	/** Sequence number + 1 of the values in each slot, 0 while values are written. */
+	private final AtomicLongArray sequences;
+
+	/** Sequence number of the next split. */
+	private final AtomicLong nextSequence = new AtomicLong();
+
+	/** Sequence number of the first split after the last clear. */
+	private volatile long firstSequence;
 
 	/** Log template used to log this list of splits. */
 	private LogTemplate<Split> logTemplate = disabled();
@@ -30,7 +50,9 @@ public class LastSplits implements LogMessageSource<Split> {
 	 * @param capacity Buffer size
 	 */
 	public LastSplits(int capacity) {
-		this.splits = new CircularList<>(capacity);
+		durations = new AtomicLongArray(capacity);
+		starts = new AtomicLongArray(capacity);
+		sequences = new AtomicLongArray(capacity);
 	}
 
 	/**
@@ -39,16 +61,28 @@ public class LastSplits implements LogMessageSource<Split> {
 	 * @param split Split
 	 */
 	public void add(Split split) {
-		synchronized (splits) {
-			splits.add(split);
-		}
+		add(split.runningFor(), split.getStart());
+	}
+
+	/**
+	 * Adds split values to the buffer.
+	 *
+	 * @param runningFor Split duration
+	 * @param start Split start in nanoseconds
+	 * @since 4.0
+	 */
+	public void add(long runningFor, long start) {
+		long sequence = nextSequence.getAndIncrement();
+		int slot = (int) (sequence % durations.length());
+		sequences.set(slot, 0);
+		durations.set(slot, runningFor);
+		starts.set(slot, start);
+		sequences.set(slot, sequence + 1);
 	}
 
 	/** Removes all splits from buffer. */
 	public void clear() {
-		synchronized (splits) {
-			splits.clear();
-		}
+		firstSequence = nextSequence.get();
 	}
 
 	public LogTemplate<Split> getLogTemplate() {
@@ -65,84 +99,94 @@ public class LastSplits implements LogMessageSource<Split> {
 	 * @return Split number
 	 */
 	public int getCount() {
-		synchronized (splits) {
-			return splits.size();
-		}
+		return (int) Math.min(nextSequence.get() - firstSequence, durations.length());
 	}
 
 	/**
-	 * Evaluate a function over the list of splits.
+	 * Copies the retained values, oldest first.
 	 *
-	 * @param <T> Function result type
-	 * @param function Function to evaluate
-	 * @return Function result, null if no splits
+	 * @return Consistent snapshot of values
 	 */
-	private <T> T processFunction(SplitFunction<T> function) {
-		synchronized (splits) {
-			if (splits.isEmpty()) {
-				return null;
+	private Snapshot snapshot() {
+		long last = nextSequence.get();
+		long first = Math.max(firstSequence, last - durations.length());
+		Snapshot snapshot = new Snapshot((int) (last - first));
+		for (long sequence = first; sequence < last; sequence++) {
+			int slot = (int) (sequence % durations.length());
+			if (sequences.get(slot) != sequence + 1) {
+				continue; // being written or already overwritten
 			}
-			for (Split split : splits) {
-				function.evaluate(split);
+			long runningFor = durations.get(slot);
+			long start = starts.get(slot);
+			if (sequences.get(slot) == sequence + 1) {
+				snapshot.durations[snapshot.size] = runningFor;
+				snapshot.starts[snapshot.size] = start;
+				snapshot.size++;
 			}
-			return function.result();
 		}
+		return snapshot;
 	}
 
-	/**
-	 * Function.
-	 *
-	 * @param <T> Result type
-	 */
-	private static interface SplitFunction<T> {
-		/**
-		 * Called for each split.
-		 *
-		 * @param split Current split
-		 */
-		void evaluate(Split split);
-
-		/**
-		 * Called after all splits.
-		 *
-		 * @return Function result
-		 */
-		T result();
-	}
+	/** Copy of retained values. */
+	private static final class Snapshot {
+		private final long[] durations;
+		private final long[] starts;
+		private int size;
 
-	/**
-	 * Base implementation of functions.
-	 *
-	 * @param <T> Function return type
-	 */
-	private static abstract class AbstractSplitFunction<T> implements SplitFunction<T> {
-		/** Function result. */
-		protected T result;
+		private Snapshot(int capacity) {
+			durations = new long[capacity];
+			starts = new long[capacity];
+		}
 
-		/** Initial function result. */
-		public AbstractSplitFunction(T result) {
-			this.result = result;
+		private Double getMean() {
+			if (size == 0) {
+				return null;
+			}
+			double sum = 0;
+			for (int i = 0; i < size; i++) {
+				sum += durations[i];
+			}
+			return sum / size;
 		}
 
-		/**
-		 * Running for duration of the split.
-		 *
-		 * @param runningFor Running for
-		 */
-		public abstract void evaluate(long runningFor);
+		private Long getMin() {
+			if (size == 0) {
+				return null;
+			}
+			long min = Long.MAX_VALUE;
+			for (int i = 0; i < size; i++) {
+				min = Math.min(min, durations[i]);
+			}
+			return min;
+		}
 
-		/**
-		 * Calls evaluate with split running for duration.
-		 *
-		 * @param split Current split
-		 */
-		public final void evaluate(Split split) {
-			evaluate(split.runningFor());
+		private Long getMax() {
+			if (size == 0) {
+				return null;
+			}
+			long max = Long.MIN_VALUE;
+			for (int i = 0; i < size; i++) {
+				max = Math.max(max, durations[i]);
+			}
+			return max;
 		}
 
-		/** Final result. */
-		public T result() {
-			return result;
+		private Double getTrend(long timeDeltaThreshold) {
+			if (size == 0) {
+				return null;
+			}
+			int last = 0;
+			long result = 0;
+			int count = 0;
+			for (int i = 1; i < size; i++) {
+				long timeDelta = starts[i] - starts[last];
+				if (timeDelta > timeDeltaThreshold) {
+					result += durations[i] - durations[last];
+					count++;
+					last = i;
+				}
+			}
+			return count > 0 ? (result / ((double) count)) : null;
 		}
 	}
 
@@ -152,18 +196,7 @@ public class LastSplits implements LogMessageSource<Split> {
 	 * @return Mean or average
 	 */
 	public Double getMean() {
-		return processFunction(new AbstractSplitFunction<Double>(0.0D) {
-			@Override
-			public void evaluate(long runningFor) {
-				result += (double) runningFor;
-			}
-
-			@Override
-			public Double result() {
-				return result / (double) splits.size();
-			}
-
-		});
+		return snapshot().getMean();
 	}
 
 	/**
@@ -172,14 +205,7 @@ public class LastSplits implements LogMessageSource<Split> {
 	 * @return Minimum
 	 */
 	public Long getMin() {
-		return processFunction(new AbstractSplitFunction<Long>(Long.MAX_VALUE) {
-			@Override
-			public void evaluate(long runningFor) {
-				if (runningFor < result) {
-					result = runningFor;
-				}
-			}
-		});
+		return snapshot().getMin();
 	}
 
 	/**
@@ -188,14 +214,7 @@ public class LastSplits implements LogMessageSource<Split> {
 	 * @return Maximum
 	 */
 	public Long getMax() {
-		return processFunction(new AbstractSplitFunction<Long>(Long.MIN_VALUE) {
-			@Override
-			public void evaluate(long runningFor) {
-				if (runningFor > result) {
-					result = runningFor;
-				}
-			}
-		});
+		return snapshot().getMax();
 	}
 
 	/**
@@ -220,86 +239,36 @@ public class LastSplits implements LogMessageSource<Split> {
 	 * @return Trend, average delta of splits
 	 */
 	public Double getTrend(final long timeDeltaThreshold) {
-		return processFunction(new SplitFunction<Double>() {
-			Split lastSplit;
-			long result;
-			int count;
-
-			public void evaluate(Split split) {
-				if (lastSplit == null) {
-					lastSplit = split;
-				} else {
-					long timeDelta = split.getStart() - lastSplit.getStart();
-					if (timeDelta > timeDeltaThreshold) {
-						long durationDelta = split.runningFor() - lastSplit.runningFor();
-						result += durationDelta;
-						count++;
-						lastSplit = split;
-					}
-				}
-			}
-
-			public Double result() {
-				return count > 0 ? (result / ((double) count)) : null;
-			}
-		});
-	}
-
-	/**
-	 * Transforms split values into a String
-	 *
-	 * @return Splits presented in a String
-	 */
-	private String getSplitsAsString() {
-		return processFunction(new AbstractSplitFunction<StringBuilder>(new StringBuilder()) {
-			private boolean first = true;
-
-			@Override
-			public void evaluate(long runningFor) {
-				if (first) {
-					first = false;
-				} else {
-					result.append(',');
-				}
-				result.append(presentNanoTime(runningFor));
-			}
-		}).toString();
+		return snapshot().getTrend(timeDeltaThreshold);
 	}
 
 	/**
 	 * String containing: count, min, mean, max and trend(1ms).
-	 * This method can be expensive, because many computations are done.
+	 * All values are computed from one snapshot of the buffer.
 	 *
 	 * @return String
 	 */
 	@Override
 	public String toString() {
-		int count;
-		long min = 0, mean = 0, max = 0, trend = 0;
-		String values = null;
-		// First extract data
-		synchronized (splits) {
-			count = getCount();
-			if (count > 0) {
-				min = getMin();
-				mean = getMean().longValue();
-				max = getMax();
-				values = getSplitsAsString();
-				if (count > 1) {
-					trend = getTrend().longValue();
-				}
-			}
-		}
-		// Then free lock, and format data
+		Snapshot snapshot = snapshot();
+		int count = snapshot.size;
 		StringBuilder stringBuilder = new StringBuilder("LastSplits[size=");
 		stringBuilder.append(count);
 		if (count > 0) {
-			stringBuilder.append(",values=[").append(values).append("]")
-				.append(",min=").append(presentNanoTime(min))
-				.append(",mean=").append(presentNanoTime(mean))
-				.append(",max=").append(presentNanoTime(max));
+			stringBuilder.append(",values=[");
+			for (int i = 0; i < count; i++) {
+				if (i > 0) {
+					stringBuilder.append(',');
+				}
+				stringBuilder.append(presentNanoTime(snapshot.durations[i]));
+			}
+			stringBuilder.append("]")
+				.append(",min=").append(presentNanoTime(snapshot.getMin()))
+				.append(",mean=").append(presentNanoTime(snapshot.getMean().longValue()))
+				.append(",max=").append(presentNanoTime(snapshot.getMax()));
 			if (count > 1) {
-				stringBuilder.append(",trend=").append(presentNanoTime(trend));
+				Double trend = snapshot.getTrend(1000);
+				stringBuilder.append(",trend=").append(presentNanoTime(trend == null ? 0 : trend.longValue()));
 			}
 		}
 		stringBuilder.append("]");
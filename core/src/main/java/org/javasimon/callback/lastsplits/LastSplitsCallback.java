@@ -67,6 +67,16 @@ public class LastSplitsCallback extends CallbackSkeleton {
 		return (LastSplits) stopwatch.getAttribute(ATTR_NAME_LAST_SPLITS);
 	}
 
+	/**
+	 * Returns false - this callback does not use samples.
+	 *
+	 * @return false
+	 */
+	@Override
+	public boolean isSampleRequired() {
+		return false;
+	}
+
 	/**
 	 * When Stopwatch is created, a Last Splits attributes is added.
 	 */
@@ -87,6 +87,16 @@ public class LoggingCallback extends CallbackSkeleton {
 		return stopwatchLogTemplate;
 	}
 
+	/**
+	 * Returns false - this callback does not use samples.
+	 *
+	 * @return false
+	 */
+	@Override
+	public boolean isSampleRequired() {
+		return false;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * Split and stopwatch are logger to log template is enabled.
@@ -1,12 +1,18 @@
 package org.javasimon.callback.quantiles;
 
+import org.javasimon.Manager;
 import org.javasimon.Simon;
 import org.javasimon.Split;
 import org.javasimon.Stopwatch;
 import org.javasimon.clock.SimonClock;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Callback which stores data in buckets to compute quantiles.
@@ -16,18 +22,23 @@ import java.util.List;
  * <li><em>Warm up</em>:<ul>
  * <li>Buckets do not exist</li>
  * <li>Quantiles can not be computed</li>
- * <li>Splits are kept</li>
+ * <li>Split values are kept in a fixed size array, no lock is taken</li>
  * </ul>
- * <li><em>Trigger</em>: splits count >= warmup count threshold<ul>
+ * <li><em>Trigger</em>: warmup count of values is kept<ul>
  * <li>Buckets are created, configuration (min, max) is determined from kept splits, bucket number is constant</li>
  * <li>Buckets are filled with previously stored splits</li>
  * <li>Retained splits are removed</li>
- * <li>From now on, quantiles can not be computed and splits are not kept anymore</li>
+ * <li>From now on, quantiles can be computed and splits are not kept anymore</li>
  * </ul>
  * <li><em>Normal</em>: <ul>
  * <li>Buckets are filled/updated with new splits as they come</li>
  * <li>Quantiles can be computed (provided there is enough splits and buckets are properly configured)</li>
  * </ul>
+ * <li><em>Rebucketing</em> (optional, see {@link #startRebucketing(long, java.util.concurrent.TimeUnit)}):<ul>
+ * <li>Periodic background check finds buckets with too many values out of the min/max range</li>
+ * <li>Warm up starts again, old buckets are still available for quantiles until the new ones are created
+ * with the range determined from the newly kept splits</li>
+ * </ul>
  * </li></ol>
  *
  * @author gquintana
@@ -37,9 +48,12 @@ import java.util.List;
 @SuppressWarnings("UnusedDeclaration")
 public class AutoQuantilesCallback extends QuantilesCallback {
 
-	/** Simon attribute name of the list of split values stored in Simons before warmup time. */
+	/** Simon attribute name of the warmup values stored in Simons before buckets are created. */
 	public static final String ATTR_NAME_BUCKETS_VALUES = "bucketsValues";
 
+	/** Default ratio of values out of range which triggers rebucketing - 10 %. */
+	public static final double DEFAULT_REBUCKET_RATIO = 0.1D;
+
 	/**
 	 * Number of splits before buckets are initialized.
 	 * Default 10
@@ -49,6 +63,15 @@ public class AutoQuantilesCallback extends QuantilesCallback {
 	/** Number of buckets of data for each Simon. */
 	private final int bucketNb;
 
+	/** Ratio of values in the underflow and overflow buckets which triggers rebucketing. */
+	private volatile double rebucketRatio = DEFAULT_REBUCKET_RATIO;
+
+	/** Manager the callback is attached to, used by rebucketing. */
+	private volatile Manager manager;
+
+	/** Executor running the rebucketing, {@code null} if rebucketing is not started. */
+	private ScheduledExecutorService rebucketingExecutor;
+
 	/** Default constructor. */
 	public AutoQuantilesCallback() {
 		this.warmupCounter = 10;
@@ -74,28 +97,38 @@ public class AutoQuantilesCallback extends QuantilesCallback {
 		this.bucketNb = bucketNb;
 	}
 
-	/** Get the bucket values attribute or create it if it does not exist. */
+	public double getRebucketRatio() {
+		return rebucketRatio;
+	}
+
+	/**
+	 * Sets the ratio of values in the underflow and overflow buckets which triggers rebucketing.
+	 *
+	 * @param rebucketRatio ratio between 0 and 1
+	 */
+	public void setRebucketRatio(double rebucketRatio) {
+		if (rebucketRatio < 0D || rebucketRatio > 1D) {
+			throw new IllegalArgumentException("Expected ratio between 0 and 1: " + rebucketRatio);
+		}
+		this.rebucketRatio = rebucketRatio;
+	}
+
+	/** Get the warmup attribute or create it if neither warmup nor buckets exist. */
 	@SuppressWarnings("SynchronizationOnLocalVariableOrMethodParameter")
-	private List<Long> getOrCreateBucketsValues(final Stopwatch stopwatch) {
+	private Warmup getOrCreateWarmup(final Stopwatch stopwatch) {
 		synchronized (stopwatch) {
-			List<Long> values = getBucketsValues(stopwatch);
-			if (values == null) {
-				values = new ArrayList<>((int) warmupCounter);
-				stopwatch.setAttribute(ATTR_NAME_BUCKETS_VALUES, values);
+			Warmup warmup = getWarmup(stopwatch);
+			if (warmup == null && getBuckets(stopwatch) == null) {
+				warmup = new Warmup(warmupCounter, false);
+				stopwatch.setAttribute(ATTR_NAME_BUCKETS_VALUES, warmup);
 			}
-			return values;
+			return warmup;
 		}
 	}
 
-	/** Get the bucket values attribute. */
-	@SuppressWarnings("unchecked")
-	private List<Long> getBucketsValues(final Stopwatch stopwatch) {
-		return (List<Long>) stopwatch.getAttribute(ATTR_NAME_BUCKETS_VALUES);
-	}
-
-	/** Remove the bucket values attribute (after warmup). */
-	private void removeBucketsValues(final Stopwatch stopwatch) {
-		stopwatch.removeAttribute(ATTR_NAME_BUCKETS_VALUES);
+	/** Get the warmup attribute. */
+	private Warmup getWarmup(final Stopwatch stopwatch) {
+		return (Warmup) stopwatch.getAttribute(ATTR_NAME_BUCKETS_VALUES);
 	}
 
 	/**
@@ -110,55 +143,256 @@ public class AutoQuantilesCallback extends QuantilesCallback {
 	 * @return new Buckets objects
 	 */
 	protected Buckets createBucketsAfterWarmup(Stopwatch stopwatch) {
+		return createBucketsAfterWarmup(stopwatch, stopwatch.getMin(), stopwatch.getMax());
+	}
+
+	/**
+	 * Create the buckets for the range of values kept during warmup, used directly when rebucketing
+	 * (stopwatch min/max covers all the values, not just the recent ones).
+	 * By default min is decreased and max is increased by 10% and both are rounded to milliseconds.
+	 *
+	 * @param stopwatch Stopwatch (containing configuration)
+	 * @param minValue lowest value kept during warmup
+	 * @param maxValue highest value kept during warmup
+	 * @return new Buckets objects
+	 * @since 4.0
+	 */
+	protected Buckets createBucketsAfterWarmup(Stopwatch stopwatch, long minValue, long maxValue) {
 		// Compute min
-		long min = stopwatch.getMin() * 90L / 100L; // min -10%
+		long min = minValue * 90L / 100L; // min -10%
 		min = Math.max(0, min); // no negative mins
 		min = (min / SimonClock.NANOS_IN_MILLIS) * SimonClock.NANOS_IN_MILLIS; // round to lower millisecond
 		// Compute max
-		long max = (stopwatch.getMax() * 110L) / 100L; // max +10%
+		long max = (maxValue * 110L) / 100L; // max +10%
 		max = (max / SimonClock.NANOS_IN_MILLIS + 1) * SimonClock.NANOS_IN_MILLIS; // round to upper millisecond
 		return createBuckets(stopwatch, min, max, bucketNb);
 	}
 
-	/** When warmup ends, buckets are create and retained splits are sorted in the buckets. */
+	/**
+	 * Buckets are never created on demand, they are created when the warmup values are all stored,
+	 * see {@link #onStopwatchSplit(org.javasimon.Stopwatch, org.javasimon.Split)}.
+	 *
+	 * @return {@code null}
+	 */
 	protected final Buckets createBuckets(Stopwatch stopwatch) {
-		if (stopwatch.getCounter() > warmupCounter) {
-			Buckets buckets = createBucketsAfterWarmup(stopwatch);
+		return null;
+	}
+
+	/** When warmup ends, buckets are created and retained splits are sorted in the buckets. */
+	private Buckets finishWarmup(Stopwatch stopwatch, Warmup warmup) {
+		try {
+			long[] values = warmup.values;
+			Buckets buckets;
+			if (warmup.rebucketing) {
+				long min = Long.MAX_VALUE;
+				long max = Long.MIN_VALUE;
+				for (long value : values) {
+					min = Math.min(min, value);
+					max = Math.max(max, value);
+				}
+				buckets = createBucketsAfterWarmup(stopwatch, min, max);
+			} else {
+				buckets = createBucketsAfterWarmup(stopwatch);
+			}
 			// Add retained splits to buckets
-			buckets.addValues(getBucketsValues(stopwatch));
-			removeBucketsValues(stopwatch);
+			for (long value : values) {
+				buckets.addValue(value);
+			}
+			stopwatch.setAttribute(ATTR_NAME_BUCKETS, buckets);
 			return buckets;
-		} else {
-			return null;
+		} finally {
+			stopwatch.removeAttribute(ATTR_NAME_BUCKETS_VALUES);
+			warmup.finished();
 		}
 	}
 
-	/** When simon is created, the list containing Split values is added to stopwatch attributes. */
+	/** When simon is created, the warmup values are added to stopwatch attributes. */
 	@Override
 	public void onSimonCreated(Simon simon) {
 		if (simon instanceof Stopwatch) {
 			Stopwatch stopwatch = (Stopwatch) simon;
-			getOrCreateBucketsValues(stopwatch);
+			getOrCreateWarmup(stopwatch);
 		}
 	}
 
 	/**
 	 * Called when there is a new split on a Stopwatch, either
 	 * {@link #onStopwatchStop} or {@link #onStopwatchAdd}.
-	 * If buckets have been initialized, the value is added to appropriate bucket.
-	 * Else if stopwatch is warming up value is added to value list.
+	 * If stopwatch is warming up value is added to warmup values, the split storing the last warmup value
+	 * creates the buckets and is logged. Else the value is added to appropriate bucket.
 	 */
 	@Override
 	protected void onStopwatchSplit(Stopwatch stopwatch, Split split) {
-		Buckets buckets = getOrCreateBuckets(stopwatch);
 		long value = split.runningFor();
-		if (buckets == null) {
+		Warmup warmup = getWarmup(stopwatch);
+		if (warmup == null && getBuckets(stopwatch) == null) {
+			warmup = getOrCreateWarmup(stopwatch);
+		}
+		if (warmup != null) {
 			// Warming up
-			getOrCreateBucketsValues(stopwatch).add(value);
-		} else {
-			// Warm
+			int index = warmup.reserved.getAndIncrement();
+			if (index < warmup.values.length) {
+				warmup.values[index] = value;
+				if (warmup.stored.incrementAndGet() == warmup.values.length) {
+					finishWarmup(stopwatch, warmup).log(split);
+				}
+				return;
+			}
+			// warmup values are full, buckets are being created
+			warmup.awaitFinished();
+		}
+		// Warm
+		Buckets buckets = getBuckets(stopwatch);
+		if (buckets != null) {
 			buckets.addValue(value);
 			buckets.log(split);
 		}
 	}
+
+	/**
+	 * Starts warmup again for the stopwatch if too many values are out of its buckets range. Old buckets
+	 * are still used to compute quantiles until the warmup is over.
+	 *
+	 * @param stopwatch stopwatch to check
+	 * @return true if the warmup was started
+	 */
+	@SuppressWarnings("SynchronizationOnLocalVariableOrMethodParameter")
+	public boolean rebucket(Stopwatch stopwatch) {
+		Buckets buckets = getBuckets(stopwatch);
+		if (buckets == null) {
+			return false;
+		}
+		List<Bucket> bucketList = buckets.getBuckets();
+		long totalCount = 0;
+		for (Bucket bucket : bucketList) {
+			totalCount += bucket.getCount();
+		}
+		long outOfRangeCount = bucketList.get(0).getCount() + bucketList.get(bucketList.size() - 1).getCount();
+		if (totalCount < warmupCounter || outOfRangeCount <= totalCount * rebucketRatio) {
+			return false;
+		}
+		synchronized (stopwatch) {
+			if (getWarmup(stopwatch) != null) {
+				return false;
+			}
+			stopwatch.setAttribute(ATTR_NAME_BUCKETS_VALUES, new Warmup(warmupCounter, true));
+			return true;
+		}
+	}
+
+	/** Checks all the stopwatches of the manager and starts rebucketing where needed, see {@link #rebucket(Stopwatch)}. */
+	public void rebucket() {
+		Manager manager = this.manager;
+		if (manager == null) {
+			return;
+		}
+		for (Simon simon : manager.getSimons(null)) {
+			if (simon instanceof Stopwatch) {
+				rebucket((Stopwatch) simon);
+			}
+		}
+	}
+
+	/**
+	 * Starts periodical background check of all stopwatches for rebucketing, see {@link #rebucket()}.
+	 * Rebucketing is stopped when the callback is removed from the manager.
+	 *
+	 * @param period period of the check
+	 * @param timeUnit time unit of the period
+	 * @since 4.0
+	 */
+	public synchronized void startRebucketing(long period, TimeUnit timeUnit) {
+		if (rebucketingExecutor != null) {
+			throw new IllegalStateException("Rebucketing has already been started");
+		}
+		rebucketingExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "javasimon-rebucketing");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		rebucketingExecutor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				rebucket();
+			}
+		}, period, period, timeUnit);
+	}
+
+	/** Stops periodical rebucketing if it was started. */
+	public synchronized void stopRebucketing() {
+		if (rebucketingExecutor != null) {
+			rebucketingExecutor.shutdown();
+			rebucketingExecutor = null;
+		}
+	}
+
+	@Override
+	public void initialize(Manager manager) {
+		this.manager = manager;
+	}
+
+	@Override
+	public void cleanup() {
+		stopRebucketing();
+		manager = null;
+	}
+
+	/**
+	 * Values kept during warmup. Each split reserves an index in the array without locking, the split which stores
+	 * the last value creates the buckets. Splits that come while buckets are being created wait for them.
+	 * <p/>
+	 * Stored under {@link #ATTR_NAME_BUCKETS_VALUES}, hence it is the read-only list of the values stored so far.
+	 */
+	private static final class Warmup extends AbstractList<Long> {
+		private final long[] values;
+
+		private final AtomicInteger reserved = new AtomicInteger();
+
+		/** Incremented after value is stored, so that all values are visible to the thread creating buckets. */
+		private final AtomicInteger stored = new AtomicInteger();
+
+		private final boolean rebucketing;
+
+		private boolean finished;
+
+		private Warmup(long warmupCounter, boolean rebucketing) {
+			values = new long[(int) Math.max(1, Math.min(warmupCounter, Integer.MAX_VALUE))];
+			this.rebucketing = rebucketing;
+		}
+
+		@Override
+		public Long get(int index) {
+			if (index < 0 || index >= size()) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+			}
+			return values[index];
+		}
+
+		@Override
+		public int size() {
+			return Math.min(stored.get(), values.length);
+		}
+
+		private synchronized void finished() {
+			finished = true;
+			notifyAll();
+		}
+
+		private synchronized void awaitFinished() {
+			boolean interrupted = false;
+			while (!finished) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
 }
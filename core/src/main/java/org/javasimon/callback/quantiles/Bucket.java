@@ -1,19 +1,24 @@
 package org.javasimon.callback.quantiles;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
 /**
- * Bucket count the number of samples in the range min-max.
+ * Bucket count the number of samples in the range min-max. Counter is incremented atomically without locking.
  *
  * @author gquintana
  * @since 3.2
  */
 public final class Bucket {
 
+	private static final AtomicIntegerFieldUpdater<Bucket> COUNT_UPDATER =
+		AtomicIntegerFieldUpdater.newUpdater(Bucket.class, "count");
+
 	/** Minimal value. */
 	private final long min;
 	/** Maximal value. */
 	private final long max;
 	/** Number of values in the range min-max. */
-	private int count;
+	private volatile int count;
 
 	/**
 	 * Constructor with min/max value specified.
@@ -26,6 +31,18 @@ public final class Bucket {
 		this.max = max;
 	}
 
+	/**
+	 * Constructor of the bucket with initial count.
+	 *
+	 * @param min min value
+	 * @param max max value
+	 * @param count number of values
+	 */
+	Bucket(long min, long max, int count) {
+		this(min, max);
+		this.count = count;
+	}
+
 	/**
 	 * Get number of values in the range.
 	 *
@@ -64,10 +81,10 @@ public final class Bucket {
 	}
 
 	/**
-	 * Increment value number
+	 * Increment value number (atomically).
 	 */
 	public void incrementCount() {
-		count++;
+		COUNT_UPDATER.incrementAndGet(this);
 	}
 
 	/**
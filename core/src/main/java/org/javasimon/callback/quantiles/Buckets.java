@@ -15,6 +15,7 @@ import java.util.List;
 /**
  * List of buckets and quantiles computer.
  * Samples are not kept in buckets only the counter indicates their presence.
+ * Values are added without locking, quantiles are computed from the snapshot of bucket counters.
  * <br/>
  * Some details impact quantiles computation precision:
  * <ul><li><em>Not enough samples</em>: The more samples you have, the more precise interpolation are</li>
@@ -53,6 +54,22 @@ public abstract class Buckets implements LogMessageSource<Split> {
 	 * @param bucketNb Number of buckets
 	 */
 	public Buckets(long min, long max, int bucketNb) {
+		this(min, max, bucketNb, new Bucket[bucketNb + 2]);
+		buckets[0] = new Bucket(Long.MIN_VALUE, min);
+		buckets[bucketNb + 1] = new Bucket(max, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Constructor with the provided bucket array. Subclasses not keeping values in {@link Bucket}s may provide
+	 * an empty array and override all the methods working with buckets.
+	 *
+	 * @param min Min of all values
+	 * @param max Max of all values
+	 * @param bucketNb Number of buckets
+	 * @param buckets Array of buckets
+	 * @since 4.0
+	 */
+	protected Buckets(long min, long max, int bucketNb, Bucket[] buckets) {
 		// Check arguments
 		if (bucketNb < 3) {
 			throw new IllegalArgumentException("Expected at least 3 buckets: " + bucketNb);
@@ -64,24 +81,33 @@ public abstract class Buckets implements LogMessageSource<Split> {
 		this.min = min;
 		this.max = max;
 		this.bucketNb = bucketNb;
-		// Initialize bucket array
-		this.buckets = new Bucket[bucketNb + 2];
-		buckets[0] = new Bucket(Long.MIN_VALUE, min);
-		buckets[bucketNb + 1] = new Bucket(max, Long.MAX_VALUE);
+		this.buckets = buckets;
+	}
+
+	/**
+	 * Takes snapshot of all buckets, quantiles are computed from the snapshot, so they are consistent
+	 * even when values are added concurrently.
+	 */
+	private BucketSample[] sampleBuckets() {
+		BucketSample[] bucketSamples = new BucketSample[buckets.length];
+		for (int i = 0; i < buckets.length; i++) {
+			bucketSamples[i] = buckets[i].sample();
+		}
+		return bucketSamples;
 	}
 
 	/** Computes expected count and check used buckets number. */
-	private int checkAndGetTotalCount() throws IllegalStateException {
+	private int checkAndGetTotalCount(BucketSample[] bucketSamples) throws IllegalStateException {
 		int usedBuckets = 0;
-		int totalCount = buckets[0].getCount();
+		int totalCount = bucketSamples[0].getCount();
 		for (int i = 1; i <= bucketNb; i++) {
-			int bucketCount = buckets[i].getCount();
+			int bucketCount = bucketSamples[i].getCount();
 			totalCount += bucketCount;
 			if (bucketCount > 0) {
 				usedBuckets++;
 			}
 		}
-		totalCount += buckets[bucketNb + 1].getCount();
+		totalCount += bucketSamples[bucketNb + 1].getCount();
 		if (usedBuckets < 3) {
 			throw new IllegalStateException("Only " + usedBuckets + " buckets used, not enough for interpolation, consider reconfiguring min/max/nb");
 		}
@@ -91,6 +117,7 @@ public abstract class Buckets implements LogMessageSource<Split> {
 	/**
 	 * Computes given quantile.
 	 *
+	 * @param bucketSamples Snapshot of buckets
 	 * @param ration Nth quantile: 0.5 is median
 	 * @param totalCount Total count over all buckets
 	 * @return Quantile
@@ -98,7 +125,7 @@ public abstract class Buckets implements LogMessageSource<Split> {
 	 * quantile can not be computed
 	 * @throws IllegalArgumentException
 	 */
-	private double computeQuantile(double ration, int totalCount) throws IllegalStateException, IllegalArgumentException {
+	private double computeQuantile(BucketSample[] bucketSamples, double ration, int totalCount) throws IllegalStateException, IllegalArgumentException {
 		if (ration <= 0.0D || ration >= 1.0D) {
 			throw new IllegalArgumentException("Expected ratio between 0 and 1 excluded: " + ration);
 		}
@@ -106,8 +133,8 @@ public abstract class Buckets implements LogMessageSource<Split> {
 		// Search bucket corresponding to expected count
 		double lastCount = 0D, newCount;
 		int bucketIndex = 0;
-		for (int i = 0; i < buckets.length; i++) {
-			newCount = lastCount + buckets[i].getCount();
+		for (int i = 0; i < bucketSamples.length; i++) {
+			newCount = lastCount + bucketSamples[i].getCount();
 			if (expectedCount >= lastCount && expectedCount < newCount) {
 				bucketIndex = i;
 				break;
@@ -121,55 +148,61 @@ public abstract class Buckets implements LogMessageSource<Split> {
 			throw new IllegalStateException("Quantile out of bounds: increase max");
 		}
 		// Interpolation of value
-		final Bucket bucket = buckets[bucketIndex];
-		return estimateQuantile(bucket, expectedCount, lastCount);
+		return estimateQuantile(bucketSamples[bucketIndex], expectedCount, lastCount);
 	}
 
 	/**
 	 * Interpolate quantile located in given Bucket using linear regression.
 	 * <ul>
-	 * <li>Quantile is between {@link Bucket#min} and {@link Bucket#max}</li>
-	 * <li>Expected count is between last count and last count+{@link Bucket#count}</li>
+	 * <li>Quantile is between {@link BucketSample#getMin()} and {@link BucketSample#getMax()}</li>
+	 * <li>Expected count is between last count and last count+{@link BucketSample#getCount()}</li>
 	 * </ul>
 	 *
-	 * @param bucket Current bucket containing the quantile
+	 * @param bucket Sample of the current bucket containing the quantile
 	 * @param expectedCount Searched value
 	 * @param lastCount Value of the bucket lower bound
 	 * @return Compute quantile
 	 */
-	protected double estimateQuantile(Bucket bucket, double expectedCount, double lastCount) {
+	protected double estimateQuantile(BucketSample bucket, double expectedCount, double lastCount) {
 		return bucket.getMin() + (expectedCount - lastCount) * (bucket.getMax() - bucket.getMin()) / bucket.getCount();
 	}
 
 	/**
 	 * Get the bucket containing the given value.
 	 * Bucket should be sorted, the bucket whose min/max bounds are around the value is returned.
+	 * Buckets are searched using binary search, subclasses compute the bucket index directly.
 	 *
 	 * @param value Value
 	 * @return Bucket containing given value
 	 */
 	protected Bucket getBucketForValue(long value) {
-		for (Bucket bucket : buckets) {
-			if (bucket.contains(value)) {
-				return bucket;
+		int low = 0;
+		int high = buckets.length - 1;
+		// first bucket with max greater or equal to value, the last bucket ends with Long.MAX_VALUE
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (buckets[middle].getMax() < value) {
+				low = middle + 1;
+			} else {
+				high = middle;
 			}
 		}
-		throw new IllegalStateException("Non continuous buckets.");
+		Bucket bucket = buckets[low];
+		if (!bucket.contains(value)) {
+			throw new IllegalStateException("Non continuous buckets.");
+		}
+		return bucket;
 	}
 
-	/** Searches the appropriate bucket and add the value in it. */
+	/** Searches the appropriate bucket and add the value in it, this does not block. */
 	public void addValue(long value) {
-		synchronized (buckets) {
-			getBucketForValue(value).incrementCount();
-		}
+		getBucketForValue(value).incrementCount();
 	}
 
 	/** For each value, search the appropriate bucket and add the value in it. */
 	public void addValues(Collection<Long> values) {
-		synchronized (buckets) {
-			for (Long value : values) {
-				addValue(value);
-			}
+		for (Long value : values) {
+			addValue(value);
 		}
 	}
 
@@ -180,10 +213,9 @@ public abstract class Buckets implements LogMessageSource<Split> {
 	 * @return quantile
 	 */
 	public double getQuantile(double ratio) {
-		synchronized (buckets) {
-			int totalCount = checkAndGetTotalCount();
-			return computeQuantile(ratio, totalCount);
-		}
+		BucketSample[] bucketSamples = sampleBuckets();
+		int totalCount = checkAndGetTotalCount(bucketSamples);
+		return computeQuantile(bucketSamples, ratio, totalCount);
 	}
 
 	/**
@@ -206,22 +238,24 @@ public abstract class Buckets implements LogMessageSource<Split> {
 	 * @param ratios Nth quantiles, 0.5 is median. Expects values between 0 and 1.
 	 * @return quantiles or {@code null}, if computation failed
 	 */
-	@SuppressWarnings("EmptyCatchBlock")
 	public Double[] getQuantiles(double... ratios) {
-		synchronized (buckets) {
-			final Double[] quantiles = new Double[ratios.length];
-			try {
-				final int totalCount = checkAndGetTotalCount();
-				for (int i = 0; i < ratios.length; i++) {
-					try {
-						quantiles[i] = computeQuantile(ratios[i], totalCount);
-					} catch (IllegalStateException e) {
-					}
+		return getQuantiles(sampleBuckets(), ratios);
+	}
+
+	@SuppressWarnings("EmptyCatchBlock")
+	private Double[] getQuantiles(BucketSample[] bucketSamples, double... ratios) {
+		final Double[] quantiles = new Double[ratios.length];
+		try {
+			final int totalCount = checkAndGetTotalCount(bucketSamples);
+			for (int i = 0; i < ratios.length; i++) {
+				try {
+					quantiles[i] = computeQuantile(bucketSamples, ratios[i], totalCount);
+				} catch (IllegalStateException e) {
 				}
-			} catch (IllegalStateException e) {
 			}
-			return quantiles;
+		} catch (IllegalStateException e) {
 		}
+		return quantiles;
 	}
 
 	public LogTemplate<Split> getLogTemplate() {
@@ -234,14 +268,9 @@ public abstract class Buckets implements LogMessageSource<Split> {
 
 	/** Sample buckets and quantiles state. */
 	public BucketsSample sample() {
-		synchronized (buckets) {
-			BucketSample[] bucketSamples = new BucketSample[buckets.length];
-			for (int i = 0; i < buckets.length; i++) {
-				bucketSamples[i] = buckets[i].sample();
-			}
-			Double[] quantiles = getQuantiles(0.50D, 0.90D);
-			return new BucketsSample(bucketSamples, quantiles[0], quantiles[1]);
-		}
+		BucketSample[] bucketSamples = sampleBuckets();
+		Double[] quantiles = getQuantiles(bucketSamples, 0.50D, 0.90D);
+		return new BucketsSample(bucketSamples, quantiles[0], quantiles[1]);
 	}
 
 	/**
@@ -301,10 +330,8 @@ public abstract class Buckets implements LogMessageSource<Split> {
 
 	/** Clears all buckets. */
 	public void clear() {
-		synchronized (buckets) {
-			for (Bucket bucket : buckets) {
-				bucket.clear();
-			}
+		for (Bucket bucket : buckets) {
+			bucket.clear();
 		}
 	}
 
@@ -38,24 +38,24 @@ public class ExponentialBuckets extends Buckets {
 	/**
 	 * {@inheritDoc}
 	 * <p/>
-	 * Override the base method making it faster thanks to exponential regression.
+	 * Override the base method computing the bucket index in constant time thanks to logarithm.
 	 */
 	protected Bucket getBucketForValue(long value) {
-		Bucket bucket;
 		if (value >= max) {
-			bucket = buckets[bucketNb + 1];
-		} else {
-			if (value < min) {
-				bucket = buckets[0];
-			} else {
-				int idx = (int) Math.floor((Math.log(value) - logMin) / power) + 1;
-				bucket = buckets[idx];
-				if (value >= bucket.getMax()) {
-					bucket = buckets[idx + 1];
-				}
-			}
+			return buckets[bucketNb + 1];
 		}
-		return bucket;
+		if (value < min) {
+			return buckets[0];
+		}
+		int idx = Math.min((int) ((Math.log(value) - logMin) / power) + 1, bucketNb);
+		// bounds are rounded, the logarithm may miss the bucket slightly
+		while (idx > 1 && value < buckets[idx].getMin()) {
+			idx--;
+		}
+		while (idx <= bucketNb && value >= buckets[idx].getMax()) {
+			idx++;
+		}
+		return buckets[idx];
 	}
 
 	/**
@@ -63,7 +63,7 @@ public class ExponentialBuckets extends Buckets {
 	 * <p/>
 	 * Used during quantiles computation to do exponential regression over one bucket.
 	 */
-	protected double estimateQuantile(Bucket bucket, double expectedCount, double lastCount) {
+	protected double estimateQuantile(BucketSample bucket, double expectedCount, double lastCount) {
 		return bucket.getMin() + (bucket.getMax() - bucket.getMin()) * Math.exp(Math.log(expectedCount - lastCount) / Math.log(bucket.getCount()));
 	}
 }
@@ -63,20 +63,29 @@ package org.javasimon.callback.quantiles;
  * @author Alexej Vlasov
  */
 public class LinearBuckets extends Buckets {
+
+	/** Width of one bucket. */
+	private final long width;
+
 	/**
 	 * Constructor
 	 *
 	 * @param min Duration min (lower bound of all buckets)
 	 * @param max Duration max (upper bound of all buckets)
 	 * @param bucketNb Number of buckets between min and max
+	 * @throws IllegalArgumentException if the range is narrower than the number of buckets
 	 */
 	public LinearBuckets(long min, long max, int bucketNb) {
 		super(min, max, bucketNb);
-		long width = (max - min) / bucketNb;
+		width = (max - min) / bucketNb;
+		if (width == 0) {
+			throw new IllegalArgumentException("Expected range max-min at least the number of buckets: " + min + "/" + max + "/" + bucketNb);
+		}
 		long currentMin, currentMax = min;
 		for (int i = 1; i <= bucketNb; i++) {
 			currentMin = currentMax;
-			currentMax = currentMin + width;
+			// the last bucket takes the rest of the range if it is not divisible by the number of buckets
+			currentMax = i < bucketNb ? currentMin + width : max;
 			buckets[i] = new Bucket(currentMin, currentMax);
 		}
 	}
@@ -84,26 +93,17 @@ public class LinearBuckets extends Buckets {
 	/**
 	 * {@inheritDoc}
 	 * <p/>
-	 * Override the base method making it generally faster thanks to linear regression.
+	 * Override the base method computing the bucket index in constant time.
 	 */
 	protected Bucket getBucketForValue(long value) {
-		Bucket bucket;
-		if (value < min) {
-			bucket = buckets[0];
-		} else {
-			if (value >= max) {
-				bucket = buckets[bucketNb + 1];
-			} else {
-				// Linear interpolation
-				int bucketIndex = 1 + (int) ((value - min) * (bucketNb - 1) / (max - min));
-				bucket = buckets[bucketIndex];
-				// As the division above was round at floor, bucket may be the next one
-				if (value > bucket.getMax()) {
-					bucketIndex++;
-					bucket = buckets[bucketIndex];
-				}
-			}
+		if (value <= min) {
+			return buckets[0];
+		}
+		if (value > max) {
+			return buckets[bucketNb + 1];
 		}
-		return bucket;
+		// value equal to the upper bound belongs to the lower bucket, like with the search in the base class
+		int bucketIndex = (int) Math.min(1 + (value - min - 1) / width, bucketNb);
+		return buckets[bucketIndex];
 	}
 }
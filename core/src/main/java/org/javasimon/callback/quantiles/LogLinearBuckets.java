@@ -0,0 +1,175 @@
+package org.javasimon.callback.quantiles;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link Buckets} backed by {@link LogLinearHistogram}. Buckets cover range from 0 to the highest trackable value
+ * with a fixed relative error given by the number of significant digits, so there is no need to guess min/max
+ * or to warm up and values out of the range never prevent quantile computation. Recording is O(1) and lock-free.
+ * <p/>
+ * Quantiles are not interpolated, the middle of the histogram counter containing the quantile is returned,
+ * precise enough for tail quantiles like 99.9%. {@link #getBuckets()} and {@link #sample()} contain only
+ * non-empty buckets.
+ *
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ * @since 4.0
+ */
+public class LogLinearBuckets extends Buckets {
+
+	private final LogLinearHistogram histogram;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param significantDigits number of significant decimal digits, from 1 to 5
+	 * @param highestTrackableValue highest value that can be recorded
+	 */
+	public LogLinearBuckets(int significantDigits, long highestTrackableValue) {
+		this(new LogLinearHistogram(significantDigits, highestTrackableValue));
+	}
+
+	/**
+	 * Constructor using the provided histogram.
+	 *
+	 * @param histogram histogram holding the values
+	 */
+	public LogLinearBuckets(LogLinearHistogram histogram) {
+		super(0, histogram.getHighestTrackableValue(), histogram.getCountsLength(), new Bucket[0]);
+		this.histogram = histogram;
+	}
+
+	/**
+	 * Returns the underlying histogram.
+	 *
+	 * @return histogram holding the values
+	 */
+	public LogLinearHistogram getHistogram() {
+		return histogram;
+	}
+
+	/**
+	 * Adds all the values from other buckets with the same configuration.
+	 *
+	 * @param other buckets to merge into these buckets
+	 */
+	public void merge(LogLinearBuckets other) {
+		histogram.add(other.getHistogram());
+	}
+
+	@Override
+	public void addValue(long value) {
+		histogram.recordValue(value);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p/>
+	 * Returns a snapshot of the bucket, buckets are not kept as objects.
+	 */
+	@Override
+	protected Bucket getBucketForValue(long value) {
+		int index = histogram.countsIndex(value);
+		return bucket(index, getCount(index));
+	}
+
+	/**
+	 * Returns the value of one histogram counter without copying the others.
+	 *
+	 * @param index index of the counter
+	 * @return value of the counter
+	 */
+	protected long getCount(int index) {
+		return histogram.getCount(index);
+	}
+
+	/**
+	 * Returns copy of histogram counters used to compute quantiles and samples.
+	 *
+	 * @return array of counters
+	 */
+	protected long[] getCounts() {
+		return histogram.getCounts();
+	}
+
+	@Override
+	public double getQuantile(double ratio) {
+		Double quantile = histogram.getQuantile(getCounts(), ratio);
+		if (quantile == null) {
+			throw new IllegalStateException("No values recorded");
+		}
+		return quantile;
+	}
+
+	@Override
+	public Double[] getQuantiles(double... ratios) {
+		return getQuantiles(getCounts(), ratios);
+	}
+
+	/**
+	 * Computes quantiles from the provided counters.
+	 *
+	 * @param counts copy of counters
+	 * @param ratios Nth quantiles, 0.5 is median. Expects values between 0 and 1.
+	 * @return quantiles, {@code null} values if there are no values
+	 */
+	protected final Double[] getQuantiles(long[] counts, double... ratios) {
+		Double[] quantiles = new Double[ratios.length];
+		for (int i = 0; i < ratios.length; i++) {
+			quantiles[i] = histogram.getQuantile(counts, ratios[i]);
+		}
+		return quantiles;
+	}
+
+	@Override
+	public BucketsSample sample() {
+		return sample(getCounts());
+	}
+
+	/**
+	 * Samples buckets and quantiles from the provided counters.
+	 *
+	 * @param counts copy of counters
+	 * @return buckets sample
+	 */
+	protected final BucketsSample sample(long[] counts) {
+		List<Bucket> buckets = getBuckets(counts);
+		BucketSample[] bucketSamples = new BucketSample[buckets.size()];
+		for (int i = 0; i < bucketSamples.length; i++) {
+			bucketSamples[i] = buckets.get(i).sample();
+		}
+		Double[] quantiles = getQuantiles(counts, 0.50D, 0.90D);
+		return new BucketsSample(bucketSamples, quantiles[0], quantiles[1]);
+	}
+
+	@Override
+	public void clear() {
+		histogram.clear();
+	}
+
+	/**
+	 * Returns snapshot of non-empty buckets.
+	 *
+	 * @return list of non-empty buckets
+	 */
+	@Override
+	public List<Bucket> getBuckets() {
+		return Collections.unmodifiableList(getBuckets(getCounts()));
+	}
+
+	private List<Bucket> getBuckets(long[] counts) {
+		List<Bucket> buckets = new ArrayList<>();
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] > 0) {
+				buckets.add(bucket(i, counts[i]));
+			}
+		}
+		return buckets;
+	}
+
+	private Bucket bucket(int index, long count) {
+		return new Bucket(histogram.lowestEquivalentValue(index), histogram.highestEquivalentValue(index),
+			(int) Math.min(count, Integer.MAX_VALUE));
+	}
+}
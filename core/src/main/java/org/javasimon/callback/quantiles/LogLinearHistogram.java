@@ -0,0 +1,238 @@
+package org.javasimon.callback.quantiles;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear histogram of non-negative long values (typically nanoseconds) with a fixed relative error,
+ * organized like High Dynamic Range histogram. Values are sorted into groups by the power of two and each group
+ * is split linearly into sub-buckets, so that any value is recorded with the configured number of significant
+ * decimal digits. Values lower than the number of sub-buckets are recorded exactly.
+ * For instance with 2 significant digits and 1 hour range the relative error is under 1% and the histogram
+ * takes around 4600 counters (36 kB).
+ * <p/>
+ * Recording is O(1) and lock-free (counters are kept in {@link AtomicLongArray}). Negative values are recorded
+ * as 0, values over the highest trackable value are recorded as the highest trackable value. Histograms with
+ * the same configuration can be merged with {@link #add(LogLinearHistogram)}.
+ *
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ * @since 4.0
+ */
+public final class LogLinearHistogram {
+
+	private final int significantDigits;
+
+	private final long highestTrackableValue;
+
+	/** Number of bits representing a value within a power of two group, sub-bucket count is 2^magnitude. */
+	private final int subBucketCountMagnitude;
+
+	private final int subBucketHalfCountMagnitude;
+
+	private final int subBucketHalfCount;
+
+	private final long subBucketMask;
+
+	private final AtomicLongArray counts;
+
+	/**
+	 * Creates the histogram.
+	 *
+	 * @param significantDigits number of significant decimal digits, from 1 to 5
+	 * @param highestTrackableValue highest value that can be recorded, at least 2
+	 * @throws IllegalArgumentException if the arguments are out of allowed ranges
+	 */
+	public LogLinearHistogram(int significantDigits, long highestTrackableValue) {
+		if (significantDigits < 1 || significantDigits > 5) {
+			throw new IllegalArgumentException("Expected significant digits between 1 and 5: " + significantDigits);
+		}
+		if (highestTrackableValue < 2) {
+			throw new IllegalArgumentException("Expected highest trackable value at least 2: " + highestTrackableValue);
+		}
+		this.significantDigits = significantDigits;
+		this.highestTrackableValue = highestTrackableValue;
+
+		// values up to this one are recorded with unit resolution
+		long largestValueWithSingleUnitResolution = 2 * (long) Math.pow(10, significantDigits);
+		subBucketCountMagnitude = 64 - Long.numberOfLeadingZeros(largestValueWithSingleUnitResolution - 1);
+		subBucketHalfCountMagnitude = subBucketCountMagnitude - 1;
+		subBucketHalfCount = 1 << subBucketHalfCountMagnitude;
+		subBucketMask = (1L << subBucketCountMagnitude) - 1;
+		counts = new AtomicLongArray(countsIndex(highestTrackableValue) + 1);
+	}
+
+	/**
+	 * Creates the empty histogram with the same configuration as the provided histogram.
+	 *
+	 * @param histogram template histogram
+	 */
+	public LogLinearHistogram(LogLinearHistogram histogram) {
+		this(histogram.significantDigits, histogram.highestTrackableValue);
+	}
+
+	public int getSignificantDigits() {
+		return significantDigits;
+	}
+
+	public long getHighestTrackableValue() {
+		return highestTrackableValue;
+	}
+
+	/**
+	 * Returns the number of counters - each counter covers a range of equivalent values.
+	 *
+	 * @return number of counters
+	 */
+	public int getCountsLength() {
+		return counts.length();
+	}
+
+	/**
+	 * Records the value.
+	 *
+	 * @param value recorded value
+	 */
+	public void recordValue(long value) {
+		counts.incrementAndGet(countsIndex(value));
+	}
+
+	/**
+	 * Adds all the values recorded in the other histogram to this histogram.
+	 *
+	 * @param other histogram with the same configuration
+	 * @throws IllegalArgumentException if the other histogram is configured differently
+	 */
+	public void add(LogLinearHistogram other) {
+		if (other.significantDigits != significantDigits || other.highestTrackableValue != highestTrackableValue) {
+			throw new IllegalArgumentException("Histograms with different configuration can't be merged");
+		}
+		for (int i = 0; i < counts.length(); i++) {
+			long count = other.counts.get(i);
+			if (count != 0) {
+				counts.addAndGet(i, count);
+			}
+		}
+	}
+
+	/** Resets all counters. */
+	public void clear() {
+		for (int i = 0; i < counts.length(); i++) {
+			counts.set(i, 0);
+		}
+	}
+
+	/**
+	 * Returns the number of values recorded in the counter with the specified index.
+	 *
+	 * @param index index of the counter
+	 * @return number of values
+	 */
+	public long getCount(int index) {
+		return counts.get(index);
+	}
+
+	/**
+	 * Returns the total number of recorded values.
+	 *
+	 * @return total number of values
+	 */
+	public long getTotalCount() {
+		long totalCount = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			totalCount += counts.get(i);
+		}
+		return totalCount;
+	}
+
+	/**
+	 * Returns copy of all counters - quantiles computed from the copy are consistent.
+	 *
+	 * @return array of counters
+	 */
+	public long[] getCounts() {
+		long[] result = new long[counts.length()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = counts.get(i);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the lowest value recorded into the counter with the specified index.
+	 *
+	 * @param index index of the counter
+	 * @return lowest value of the counter
+	 */
+	public long lowestEquivalentValue(int index) {
+		int bucketIndex = (index >> subBucketHalfCountMagnitude) - 1;
+		long subBucketIndex = (index & (subBucketHalfCount - 1)) + subBucketHalfCount;
+		if (bucketIndex < 0) {
+			subBucketIndex -= subBucketHalfCount;
+			bucketIndex = 0;
+		}
+		return subBucketIndex << bucketIndex;
+	}
+
+	/**
+	 * Returns the highest value recorded into the counter with the specified index.
+	 *
+	 * @param index index of the counter
+	 * @return highest value of the counter
+	 */
+	public long highestEquivalentValue(int index) {
+		int bucketIndex = Math.max((index >> subBucketHalfCountMagnitude) - 1, 0);
+		return lowestEquivalentValue(index) + (1L << bucketIndex) - 1;
+	}
+
+	/**
+	 * Computes the quantile, the result is the middle of the range of the counter containing the quantile.
+	 *
+	 * @param ratio Nth quantile, 0.5 is median. Expects values between 0 and 1.
+	 * @return quantile or {@code null} if there are no values
+	 */
+	public Double getQuantile(double ratio) {
+		return getQuantile(getCounts(), ratio);
+	}
+
+	/**
+	 * Computes the quantile from the copy of counters obtained by {@link #getCounts()}.
+	 *
+	 * @param counts copy of counters
+	 * @param ratio Nth quantile, 0.5 is median. Expects values between 0 and 1.
+	 * @return quantile or {@code null} if there are no values
+	 */
+	public Double getQuantile(long[] counts, double ratio) {
+		if (ratio < 0D || ratio > 1D) {
+			throw new IllegalArgumentException("Expected ratio between 0 and 1: " + ratio);
+		}
+		long totalCount = 0;
+		for (long count : counts) {
+			totalCount += count;
+		}
+		if (totalCount == 0) {
+			return null;
+		}
+		long rank = Math.max((long) Math.ceil(ratio * totalCount), 1);
+		long cumulativeCount = 0;
+		int index = 0;
+		for (; index < counts.length - 1; index++) {
+			cumulativeCount += counts[index];
+			if (cumulativeCount >= rank) {
+				break;
+			}
+		}
+		return (lowestEquivalentValue(index) + highestEquivalentValue(index)) / 2D;
+	}
+
+	/**
+	 * Returns the index of the counter the value is recorded into.
+	 *
+	 * @param value value
+	 * @return index of the counter
+	 */
+	public int countsIndex(long value) {
+		value = Math.min(Math.max(value, 0), highestTrackableValue);
+		int bucketIndex = 64 - Long.numberOfLeadingZeros(value | subBucketMask) - subBucketCountMagnitude;
+		int subBucketIndex = (int) (value >>> bucketIndex);
+		return ((bucketIndex + 1) << subBucketHalfCountMagnitude) + subBucketIndex - subBucketHalfCount;
+	}
+}
@@ -0,0 +1,64 @@
+package org.javasimon.callback.quantiles;
+
+import org.javasimon.Stopwatch;
+import org.javasimon.clock.SimonClock;
+
+/**
+ * Callback which stores data in {@link LogLinearBuckets} to compute quantiles. No range has to be configured
+ * up-front and there is no warmup, all values from 0 to the highest trackable value (1 hour by default) are
+ * recorded with a fixed relative error - 2 significant digits (under 1 %) by default. This makes tail quantiles
+ * like 99 %, 99.9 % or 99.99 % reliable without any tuning:
+ * <pre>
+ * LogLinearBuckets buckets = (LogLinearBuckets) QuantilesCallback.getBuckets(stopwatch);
+ * Double[] quantiles = buckets.getQuantiles(0.5, 0.9, 0.99, 0.999, 0.9999);</pre>
+ *
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ * @since 4.0
+ */
+public class LogLinearQuantilesCallback extends QuantilesCallback {
+
+	/** Default number of significant digits. */
+	public static final int DEFAULT_SIGNIFICANT_DIGITS = 2;
+
+	/** Default highest trackable value - 1 hour in nanoseconds. */
+	public static final long DEFAULT_HIGHEST_TRACKABLE_VALUE = 3600 * SimonClock.NANOS_IN_MILLIS * 1000;
+
+	/** Empty histogram with the configuration used for all stopwatches. */
+	private final LogLinearHistogram template;
+
+	/** Constructor with default configuration. */
+	public LogLinearQuantilesCallback() {
+		this(DEFAULT_SIGNIFICANT_DIGITS, DEFAULT_HIGHEST_TRACKABLE_VALUE);
+	}
+
+	/**
+	 * Constructor with all configuration.
+	 *
+	 * @param significantDigits number of significant decimal digits, from 1 to 5
+	 * @param highestTrackableValue highest trackable value in nanoseconds
+	 */
+	public LogLinearQuantilesCallback(int significantDigits, long highestTrackableValue) {
+		template = new LogLinearHistogram(significantDigits, highestTrackableValue);
+	}
+
+	/**
+	 * Create log-linear buckets using callback attributes.
+	 *
+	 * @param stopwatch Target stopwatch
+	 * @return Created buckets
+	 */
+	@Override
+	protected Buckets createBuckets(Stopwatch stopwatch) {
+		Buckets buckets = new LogLinearBuckets(new LogLinearHistogram(template));
+		buckets.setLogTemplate(createLogTemplate(stopwatch));
+		return buckets;
+	}
+
+	public int getSignificantDigits() {
+		return template.getSignificantDigits();
+	}
+
+	public long getHighestTrackableValue() {
+		return template.getHighestTrackableValue();
+	}
+}
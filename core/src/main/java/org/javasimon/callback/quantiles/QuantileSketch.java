@@ -0,0 +1,312 @@
+package org.javasimon.callback.quantiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Mergeable quantile sketch of non-negative long values with a relative accuracy guarantee (DDSketch).
+ * Value {@code v} is counted in the bucket {@code ceil(log(v) / log(gamma))} where
+ * {@code gamma = (1 + accuracy) / (1 - accuracy)}, the bucket covers range {@code (gamma^(i-1), gamma^i]}
+ * and any quantile is returned with relative error at most the relative accuracy. Buckets cover the whole range
+ * of positive longs (about 2200 buckets for 1 % accuracy), zero and negative values are counted separately.
+ * Counters are allocated lazily in pages of {@value #PAGE_SIZE} buckets, so only the pages for the values actually
+ * recorded take memory - typically a few pages for a Stopwatch, as its splits rarely span more than a few orders.
+ * <p/>
+ * Sketches with the same relative accuracy can be merged with {@link #merge(QuantileSketch)} - this way quantiles
+ * for a subtree of Simons or for multiple JVMs can be computed. Sketches with different accuracy can be merged
+ * with {@link #mergeRebucketing(QuantileSketch)} at the cost of lower accuracy. Sketch can be transferred in a compact form
+ * created by {@link #toByteArray()} (only non-empty buckets are stored) and read by {@link #fromByteArray(byte[])}.
+ * <p/>
+ * Recording is O(1) and lock-free.
+ *
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ * @since 4.0
+ */
+public final class QuantileSketch {
+
+	/** Default relative accuracy - 1 %. */
+	public static final double DEFAULT_RELATIVE_ACCURACY = 0.01D;
+
+	/** Version of the serialized form. */
+	private static final byte SERIAL_VERSION = 1;
+
+	/** Number of buckets in one page of counters. */
+	static final int PAGE_SIZE = 64;
+
+	private static final int PAGE_SHIFT = 6;
+
+	private final double relativeAccuracy;
+
+	private final double gamma;
+
+	private final double logGamma;
+
+	private final AtomicLong zeroCount = new AtomicLong();
+
+	/** Number of buckets, covers the whole range of positive longs. */
+	private final int bucketCount;
+
+	/** Pages of bucket counters, page is {@code null} until the first value is recorded into it. */
+	private final AtomicReferenceArray<AtomicLongArray> pages;
+
+	/** Creates the sketch with the default relative accuracy. */
+	public QuantileSketch() {
+		this(DEFAULT_RELATIVE_ACCURACY);
+	}
+
+	/**
+	 * Creates the sketch.
+	 *
+	 * @param relativeAccuracy relative accuracy of quantiles, between 0.0001 (0.01 %) and 0.5 (50 %)
+	 * @throws IllegalArgumentException if the accuracy is out of allowed range
+	 */
+	public QuantileSketch(double relativeAccuracy) {
+		checkRelativeAccuracy(relativeAccuracy);
+		this.relativeAccuracy = relativeAccuracy;
+		gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+		logGamma = Math.log(gamma);
+		bucketCount = index(Long.MAX_VALUE) + 1;
+		pages = new AtomicReferenceArray<>((bucketCount + PAGE_SIZE - 1) >> PAGE_SHIFT);
+	}
+
+	static void checkRelativeAccuracy(double relativeAccuracy) {
+		if (!(relativeAccuracy >= 0.0001D && relativeAccuracy <= 0.5D)) {
+			throw new IllegalArgumentException("Expected relative accuracy between 0.0001 and 0.5: " + relativeAccuracy);
+		}
+	}
+
+	public double getRelativeAccuracy() {
+		return relativeAccuracy;
+	}
+
+	/**
+	 * Records the value.
+	 *
+	 * @param value recorded value
+	 */
+	public void recordValue(long value) {
+		if (value <= 0) {
+			zeroCount.incrementAndGet();
+		} else {
+			add(index(value), 1);
+		}
+	}
+
+	/** Adds the count to the bucket counter, creates the page if necessary. */
+	private void add(int index, long count) {
+		int pageIndex = index >> PAGE_SHIFT;
+		AtomicLongArray page = pages.get(pageIndex);
+		if (page == null) {
+			pages.compareAndSet(pageIndex, null, new AtomicLongArray(PAGE_SIZE));
+			page = pages.get(pageIndex);
+		}
+		page.addAndGet(index & (PAGE_SIZE - 1), count);
+	}
+
+	/** Returns the counter of the bucket, 0 for a bucket in a page that was not created. */
+	private long count(int index) {
+		AtomicLongArray page = pages.get(index >> PAGE_SHIFT);
+		return page != null ? page.get(index & (PAGE_SIZE - 1)) : 0;
+	}
+
+	/**
+	 * Adds all the values recorded in the other sketch to this sketch.
+	 *
+	 * @param other sketch with the same relative accuracy
+	 * @throws IllegalArgumentException if the other sketch has different relative accuracy
+	 */
+	public void merge(QuantileSketch other) {
+		if (other.relativeAccuracy != relativeAccuracy) {
+			throw new IllegalArgumentException("Sketches with different relative accuracy can't be merged: "
+				+ relativeAccuracy + "/" + other.relativeAccuracy);
+		}
+		zeroCount.addAndGet(other.zeroCount.get());
+		for (int i = 0; i < bucketCount; i++) {
+			long count = other.count(i);
+			if (count != 0) {
+				add(i, count);
+			}
+		}
+	}
+
+	/**
+	 * Adds all the values recorded in the other sketch to this sketch even if the other sketch has different
+	 * relative accuracy. Buckets of such sketch are re-bucketed - their representative values are recorded
+	 * into this sketch, relative error of these values is up to the sum of both accuracies.
+	 *
+	 * @param other sketch with any relative accuracy
+	 */
+	public void mergeRebucketing(QuantileSketch other) {
+		if (other.relativeAccuracy == relativeAccuracy) {
+			merge(other);
+			return;
+		}
+		zeroCount.addAndGet(other.zeroCount.get());
+		for (int i = 0; i < other.bucketCount; i++) {
+			long count = other.count(i);
+			if (count != 0) {
+				add(index(Math.max(1L, Math.round(Math.min(other.value(i), Long.MAX_VALUE)))), count);
+			}
+		}
+	}
+
+	/** Resets the sketch, pages of counters are released. */
+	public void clear() {
+		zeroCount.set(0);
+		for (int i = 0; i < pages.length(); i++) {
+			pages.set(i, null);
+		}
+	}
+
+	/**
+	 * Returns the number of recorded values.
+	 *
+	 * @return number of recorded values
+	 */
+	public long getCount() {
+		long count = zeroCount.get();
+		for (int i = 0; i < bucketCount; i++) {
+			count += count(i);
+		}
+		return count;
+	}
+
+	/**
+	 * Computes the quantile.
+	 *
+	 * @param ratio Nth quantile, 0.5 is median. Expects values between 0 and 1.
+	 * @return quantile or {@code null} if there are no values
+	 */
+	public Double getQuantile(double ratio) {
+		return getQuantiles(ratio)[0];
+	}
+
+	/**
+	 * Computes many quantiles from the same state of the sketch.
+	 *
+	 * @param ratios Nth quantiles, 0.5 is median. Expects values between 0 and 1.
+	 * @return quantiles, {@code null} values if there are no values
+	 */
+	public Double[] getQuantiles(double... ratios) {
+		long[] snapshot = new long[bucketCount];
+		long zeros = zeroCount.get();
+		long count = zeros;
+		for (int i = 0; i < snapshot.length; i++) {
+			snapshot[i] = count(i);
+			count += snapshot[i];
+		}
+		Double[] quantiles = new Double[ratios.length];
+		for (int r = 0; r < ratios.length; r++) {
+			double ratio = ratios[r];
+			if (ratio < 0D || ratio > 1D) {
+				throw new IllegalArgumentException("Expected ratio between 0 and 1: " + ratio);
+			}
+			if (count == 0) {
+				continue;
+			}
+			double rank = ratio * (count - 1);
+			long cumulativeCount = zeros;
+			if (cumulativeCount > rank) {
+				quantiles[r] = 0D;
+				continue;
+			}
+			for (int i = 0; i < snapshot.length; i++) {
+				cumulativeCount += snapshot[i];
+				if (cumulativeCount > rank) {
+					quantiles[r] = value(i);
+					break;
+				}
+			}
+		}
+		return quantiles;
+	}
+
+	/**
+	 * Serializes the sketch into a compact form containing only non-empty buckets.
+	 *
+	 * @return serialized sketch
+	 */
+	public byte[] toByteArray() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeByte(SERIAL_VERSION);
+			out.writeDouble(relativeAccuracy);
+			writeVarLong(out, zeroCount.get());
+			int lastIndex = -1;
+			for (int i = 0; i < bucketCount; i++) {
+				long count = count(i);
+				if (count > 0) {
+					writeVarLong(out, i - lastIndex);
+					writeVarLong(out, count);
+					lastIndex = i;
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e); // does not happen with byte array stream
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Reads the sketch serialized by {@link #toByteArray()}.
+	 *
+	 * @param bytes serialized sketch
+	 * @return sketch
+	 * @throws IllegalArgumentException if the bytes do not contain valid sketch
+	 */
+	public static QuantileSketch fromByteArray(byte[] bytes) {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+			if (in.readByte() != SERIAL_VERSION) {
+				throw new IllegalArgumentException("Unsupported version of serialized sketch");
+			}
+			QuantileSketch sketch = new QuantileSketch(in.readDouble());
+			sketch.zeroCount.set(readVarLong(in));
+			int index = -1;
+			while (in.available() > 0) {
+				index += (int) readVarLong(in);
+				if (index < 0 || index >= sketch.bucketCount) {
+					throw new IndexOutOfBoundsException("Bucket index out of range: " + index);
+				}
+				sketch.add(index, readVarLong(in));
+			}
+			return sketch;
+		} catch (IOException | IndexOutOfBoundsException e) {
+			throw new IllegalArgumentException("Invalid serialized sketch", e);
+		}
+	}
+
+	private int index(long value) {
+		return (int) Math.ceil(Math.log(value) / logGamma);
+	}
+
+	/** Value representing the bucket with the lowest relative error for any value in the bucket. */
+	private double value(int index) {
+		return 2 * Math.pow(gamma, index) / (gamma + 1);
+	}
+
+	private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	private static long readVarLong(DataInputStream in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = in.readByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Variable length long too long");
+	}
+}
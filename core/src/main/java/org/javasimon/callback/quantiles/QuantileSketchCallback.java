@@ -0,0 +1,155 @@
+package org.javasimon.callback.quantiles;
+
+import org.javasimon.Simon;
+import org.javasimon.SimonFilter;
+import org.javasimon.Split;
+import org.javasimon.Stopwatch;
+import org.javasimon.StopwatchSample;
+import org.javasimon.callback.CallbackSkeleton;
+
+/**
+ * Callback which records splits into {@link QuantileSketch} stored among Stopwatch attributes. Unlike
+ * {@link Buckets} sketches of different Stopwatches can be merged, so aggregate quantiles are available
+ * for a subtree of Simons via {@link #aggregateSketch(Simon)} or via JMX (also in the serialized form that
+ * can be merged with sketches from other JVMs).
+ * Sketch is created on the first split of the Stopwatch, so that Stopwatches without splits take no memory.
+ *
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ * @see QuantileSketch
+ * @since 4.0
+ */
+public class QuantileSketchCallback extends CallbackSkeleton {
+
+	/** Simon attribute name of the quantile sketch stored in Stopwatches. */
+	public static final String ATTR_NAME_SKETCH = "quantileSketch";
+
+	/** Relative accuracy of created sketches, all sketches have the same accuracy so they can be merged. */
+	private final double relativeAccuracy;
+
+	/** Creates the callback with the default relative accuracy of sketches. */
+	public QuantileSketchCallback() {
+		this(QuantileSketch.DEFAULT_RELATIVE_ACCURACY);
+	}
+
+	/**
+	 * Creates the callback.
+	 *
+	 * @param relativeAccuracy relative accuracy of sketches, between 0.0001 (0.01 %) and 0.5 (50 %)
+	 * @throws IllegalArgumentException if the accuracy is out of allowed range
+	 */
+	public QuantileSketchCallback(double relativeAccuracy) {
+		QuantileSketch.checkRelativeAccuracy(relativeAccuracy);
+		this.relativeAccuracy = relativeAccuracy;
+	}
+
+	public double getRelativeAccuracy() {
+		return relativeAccuracy;
+	}
+
+	/**
+	 * Returns the quantile sketch of the Stopwatch.
+	 *
+	 * @param stopwatch stopwatch
+	 * @return quantile sketch or null if the Stopwatch has none
+	 */
+	public static QuantileSketch getSketch(Stopwatch stopwatch) {
+		return (QuantileSketch) stopwatch.getAttribute(ATTR_NAME_SKETCH);
+	}
+
+	/**
+	 * Merges sketches of all Stopwatches in the hierarchy of Simons.
+	 *
+	 * @param simon root of the hierarchy of Simons
+	 * @return merged sketch or null if no Stopwatch in the hierarchy has any
+	 * @see #aggregateSketch(Simon, SimonFilter)
+	 */
+	public static QuantileSketch aggregateSketch(Simon simon) {
+		return aggregateSketch(simon, null);
+	}
+
+	/**
+	 * Merges sketches of Stopwatches in the hierarchy of Simons accepted by the filter. If a Simon is rejected
+	 * by the filter its children are not considered, like with
+	 * {@link org.javasimon.utils.SimonUtils#calculateStopwatchAggregate(Simon, SimonFilter)}. Sketches with
+	 * relative accuracy different from the first found sketch are re-bucketed.
+	 *
+	 * @param simon root of the hierarchy of Simons
+	 * @param filter filter to select subsets of Simons, null to accept all Simons
+	 * @return merged sketch or null if no accepted Stopwatch has any
+	 */
+	public static QuantileSketch aggregateSketch(Simon simon, SimonFilter filter) {
+		return aggregateSketch(null, simon, filter);
+	}
+
+	/**
+	 * Merges sketches of the provided Stopwatches, other Simons are ignored. Sketches with relative accuracy
+	 * different from the first found sketch are re-bucketed.
+	 *
+	 * @param simons Simons with sketches to merge
+	 * @return merged sketch or null if no Stopwatch has any
+	 */
+	public static QuantileSketch mergeSketches(Iterable<? extends Simon> simons) {
+		QuantileSketch merged = null;
+		for (Simon simon : simons) {
+			merged = merge(merged, simon);
+		}
+		return merged;
+	}
+
+	private static QuantileSketch aggregateSketch(QuantileSketch merged, Simon simon, SimonFilter filter) {
+		if (filter == null || filter.accept(simon)) {
+			merged = merge(merged, simon);
+			for (Simon child : simon.getChildren()) {
+				merged = aggregateSketch(merged, child, filter);
+			}
+		}
+		return merged;
+	}
+
+	private static QuantileSketch merge(QuantileSketch merged, Simon simon) {
+		QuantileSketch sketch = simon instanceof Stopwatch ? getSketch((Stopwatch) simon) : null;
+		if (sketch != null) {
+			if (merged == null) {
+				merged = new QuantileSketch(sketch.getRelativeAccuracy());
+			}
+			merged.mergeRebucketing(sketch);
+		}
+		return merged;
+	}
+
+	/** Returns the sketch attribute or creates it on the first split. */
+	@SuppressWarnings("SynchronizationOnLocalVariableOrMethodParameter")
+	private QuantileSketch getOrCreateSketch(Stopwatch stopwatch) {
+		QuantileSketch sketch = getSketch(stopwatch);
+		if (sketch == null) {
+			synchronized (stopwatch) {
+				sketch = getSketch(stopwatch);
+				if (sketch == null) {
+					sketch = new QuantileSketch(relativeAccuracy);
+					stopwatch.setAttribute(ATTR_NAME_SKETCH, sketch);
+				}
+			}
+		}
+		return sketch;
+	}
+
+	/**
+	 * Returns false - this callback does not use samples.
+	 *
+	 * @return false
+	 */
+	@Override
+	public boolean isSampleRequired() {
+		return false;
+	}
+
+	@Override
+	public void onStopwatchStop(Split split, StopwatchSample sample) {
+		getOrCreateSketch(split.getStopwatch()).recordValue(split.runningFor());
+	}
+
+	@Override
+	public void onStopwatchAdd(Stopwatch stopwatch, Split split, StopwatchSample sample) {
+		getOrCreateSketch(stopwatch).recordValue(split.runningFor());
+	}
+}
@@ -15,10 +15,13 @@ import org.javasimon.callback.logging.LogTemplate;
  * The {@link #createBuckets(org.javasimon.Stopwatch)} should be
  * implemented to configure the width and resolution of buckets.
  * Then {@link Buckets} are stored among Simon attributes.
- * There are 2 implementations:
+ * Implementations:
  * <ul>
  * <li>{@link AutoQuantilesCallback} tries to determine the best configuration for each Stopwatch.</li>
  * <li>{@link FixedQuantilesCallback} uses a fixed configuration for all Stopwatches.</li>
+ * <li>{@link PropertiesQuantilesCallback} reads the configuration for each Stopwatch from properties.</li>
+ * <li>{@link LogLinearQuantilesCallback} uses log-linear histogram with a fixed relative error, no configuration needed.</li>
+ * <li>{@link WindowedQuantilesCallback} uses log-linear histograms holding only the values from the last time window.</li>
  * </ul>
  *
  * @author gquintana
@@ -118,11 +121,15 @@ public abstract class QuantilesCallback extends CallbackSkeleton {
 	 */
 	protected abstract Buckets createBuckets(Stopwatch stopwatch);
 
-	/** Returns the buckets attribute or create it if it does not exist. */
+	/** Returns the buckets attribute or create it if it does not exist, lock is taken only to create it. */
 	@SuppressWarnings("SynchronizationOnLocalVariableOrMethodParameter")
 	protected final Buckets getOrCreateBuckets(Stopwatch stopwatch) {
+		Buckets buckets = getBuckets(stopwatch);
+		if (buckets != null) {
+			return buckets;
+		}
 		synchronized (stopwatch) {
-			Buckets buckets = getBuckets(stopwatch);
+			buckets = getBuckets(stopwatch);
 			if (buckets == null) {
 				buckets = createBuckets(stopwatch);
 				stopwatch.setAttribute(ATTR_NAME_BUCKETS, buckets);
@@ -150,6 +157,16 @@ public abstract class QuantilesCallback extends CallbackSkeleton {
 		}
 	}
 
+	/**
+	 * Returns false - this callback does not use samples.
+	 *
+	 * @return false
+	 */
+	@Override
+	public boolean isSampleRequired() {
+		return false;
+	}
+
 	/**
 	 * When a split is stopped, if buckets have been initialized, the value
 	 * is added to appropriate bucket.
@@ -162,6 +179,6 @@ public abstract class QuantilesCallback extends CallbackSkeleton {
 	/** When a split is added, if buckets have been initialized, the value is added to appropriate bucket. */
 	@Override
 	public void onStopwatchAdd(Stopwatch stopwatch, Split split, StopwatchSample sample) {
-		onStopwatchSplit(split.getStopwatch(), split);
+		onStopwatchSplit(stopwatch, split);
 	}
 }
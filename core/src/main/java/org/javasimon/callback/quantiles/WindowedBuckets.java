@@ -0,0 +1,210 @@
+package org.javasimon.callback.quantiles;
+
+import org.javasimon.clock.SimonClock;
+
+/**
+ * {@link LogLinearBuckets} holding only values recorded during the last time window, so that quantiles describe
+ * recent behavior and not the whole uptime. Window is split into a ring of slices of fixed duration, each slice
+ * has its own {@link LogLinearHistogram}. Values are recorded into the slice for the current time obtained
+ * from {@link SimonClock}, slice that is too old is cleared and reused when the time comes to it again.
+ * Recording is O(1) and lock-free except for the rotation which happens once per slice duration.
+ * <p/>
+ * All the methods inherited from {@link Buckets} work with the whole window, quantiles for the shorter window
+ * (rounded up to whole slices) can be obtained by {@link #getWindowQuantiles(long, double...)}
+ * or {@link #sampleWindow(long)}:
+ * <pre>
+ * WindowedBuckets buckets = (WindowedBuckets) QuantilesCallback.getBuckets(stopwatch);
+ * Double[] lastMinute = buckets.getWindowQuantiles(60000, 0.5, 0.9, 0.99);</pre>
+ *
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ * @since 4.0
+ */
+public class WindowedBuckets extends LogLinearBuckets {
+
+	private final Slice[] slices;
+
+	private final long sliceMillis;
+
+	private final SimonClock clock;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param sliceCount number of slices in the window
+	 * @param sliceMillis duration of one slice in milliseconds
+	 * @param significantDigits number of significant decimal digits, from 1 to 5
+	 * @param highestTrackableValue highest value that can be recorded
+	 * @param clock clock used to find out the current slice
+	 * @throws IllegalArgumentException if the arguments are out of allowed ranges
+	 */
+	public WindowedBuckets(int sliceCount, long sliceMillis, int significantDigits, long highestTrackableValue, SimonClock clock) {
+		super(significantDigits, highestTrackableValue);
+		if (sliceCount < 1) {
+			throw new IllegalArgumentException("Expected at least one slice: " + sliceCount);
+		}
+		if (sliceMillis < 1) {
+			throw new IllegalArgumentException("Expected positive slice duration: " + sliceMillis);
+		}
+		this.sliceMillis = sliceMillis;
+		this.clock = clock;
+		slices = new Slice[sliceCount];
+		// histogram of the base class is used only for the configuration, it serves as the first slice too
+		slices[0] = new Slice(super.getHistogram());
+		for (int i = 1; i < sliceCount; i++) {
+			slices[i] = new Slice(new LogLinearHistogram(super.getHistogram()));
+		}
+	}
+
+	public int getSliceCount() {
+		return slices.length;
+	}
+
+	public long getSliceMillis() {
+		return sliceMillis;
+	}
+
+	/**
+	 * Returns the duration of the whole window.
+	 *
+	 * @return window duration in milliseconds
+	 */
+	public long getWindowMillis() {
+		return slices.length * sliceMillis;
+	}
+
+	/**
+	 * Returns a new histogram with values from the whole window.
+	 *
+	 * @return copy of the histogram holding the values from the window
+	 */
+	@Override
+	public LogLinearHistogram getHistogram() {
+		LogLinearHistogram histogram = new LogLinearHistogram(super.getHistogram());
+		long current = currentSliceNumber();
+		for (Slice slice : slices) {
+			if (slice.isWithin(current, slices.length)) {
+				histogram.add(slice.histogram);
+			}
+		}
+		return histogram;
+	}
+
+	/**
+	 * Adds all the values from other buckets into the current slice.
+	 *
+	 * @param other buckets to merge into these buckets
+	 */
+	@Override
+	public void merge(LogLinearBuckets other) {
+		currentSlice().histogram.add(other.getHistogram());
+	}
+
+	@Override
+	public void addValue(long value) {
+		currentSlice().histogram.recordValue(value);
+	}
+
+	/** Counters summed over all the slices of the whole window. */
+	@Override
+	protected long[] getCounts() {
+		return getCounts(slices.length);
+	}
+
+	/** Counter summed over all the slices of the whole window. */
+	@Override
+	protected long getCount(int index) {
+		long count = 0;
+		long current = currentSliceNumber();
+		for (Slice slice : slices) {
+			if (slice.isWithin(current, slices.length)) {
+				count += slice.histogram.getCount(index);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Computes quantiles over the last part of the window.
+	 *
+	 * @param windowMillis window duration in milliseconds, rounded up to whole slices, at most the whole window
+	 * @param ratios Nth quantiles, 0.5 is median. Expects values between 0 and 1.
+	 * @return quantiles, {@code null} values if there are no values in the window
+	 */
+	public Double[] getWindowQuantiles(long windowMillis, double... ratios) {
+		return getQuantiles(getCounts(sliceCount(windowMillis)), ratios);
+	}
+
+	/**
+	 * Samples buckets and quantiles over the last part of the window.
+	 *
+	 * @param windowMillis window duration in milliseconds, rounded up to whole slices, at most the whole window
+	 * @return buckets sample
+	 */
+	public BucketsSample sampleWindow(long windowMillis) {
+		return sample(getCounts(sliceCount(windowMillis)));
+	}
+
+	@Override
+	public void clear() {
+		for (Slice slice : slices) {
+			slice.histogram.clear();
+		}
+	}
+
+	private int sliceCount(long windowMillis) {
+		long count = (windowMillis + sliceMillis - 1) / sliceMillis;
+		return (int) Math.max(1, Math.min(count, slices.length));
+	}
+
+	private long[] getCounts(int sliceCount) {
+		long[] counts = new long[getCountsLength()];
+		long current = currentSliceNumber();
+		for (Slice slice : slices) {
+			if (slice.isWithin(current, sliceCount)) {
+				LogLinearHistogram histogram = slice.histogram;
+				for (int i = 0; i < counts.length; i++) {
+					counts[i] += histogram.getCount(i);
+				}
+			}
+		}
+		return counts;
+	}
+
+	private int getCountsLength() {
+		return slices[0].histogram.getCountsLength();
+	}
+
+	private long currentSliceNumber() {
+		return clock.milliTime() / sliceMillis;
+	}
+
+	/** Returns the slice for the current time, rotates it if it holds values from the previous round. */
+	private Slice currentSlice() {
+		long number = currentSliceNumber();
+		Slice slice = slices[(int) (number % slices.length)];
+		if (slice.number < number) {
+			synchronized (slice) {
+				if (slice.number < number) {
+					slice.histogram.clear();
+					slice.number = number;
+				}
+			}
+		}
+		return slice;
+	}
+
+	/** One slice of the window - histogram and the number of the time slice it holds values for. */
+	private static final class Slice {
+		private final LogLinearHistogram histogram;
+
+		private volatile long number = -1;
+
+		private Slice(LogLinearHistogram histogram) {
+			this.histogram = histogram;
+		}
+
+		private boolean isWithin(long current, int sliceCount) {
+			return number <= current && number > current - sliceCount;
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package org.javasimon.callback.quantiles;
+
+import org.javasimon.Manager;
+import org.javasimon.Stopwatch;
+import org.javasimon.clock.SimonClock;
+
+/**
+ * Callback which stores data in {@link WindowedBuckets} to compute quantiles over the last time window only
+ * (5 minutes split into 10 slices of 30 seconds by default). Quantiles from the other callbacks accumulate
+ * since the stopwatch creation, which makes them useless to see what is happening right now. Time is taken
+ * from the {@link Manager} the callback is attached to, so that the manager clock can be replaced in tests.
+ * <pre>
+ * WindowedBuckets buckets = (WindowedBuckets) QuantilesCallback.getBuckets(stopwatch);
+ * Double[] lastMinute = buckets.getWindowQuantiles(60000, 0.5, 0.9, 0.99);
+ * BucketsSample lastFiveMinutes = buckets.sample();</pre>
+ * Each slice holds its own histogram, hence the default is just 1 significant digit (relative error under 10 %)
+ * to keep the memory per stopwatch reasonable.
+ *
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ * @since 4.0
+ */
+public class WindowedQuantilesCallback extends QuantilesCallback {
+
+	/** Default number of slices. */
+	public static final int DEFAULT_SLICE_COUNT = 10;
+
+	/** Default slice duration - 30 seconds. */
+	public static final long DEFAULT_SLICE_MILLIS = 30000;
+
+	/** Default number of significant digits. */
+	public static final int DEFAULT_SIGNIFICANT_DIGITS = 1;
+
+	private final int sliceCount;
+
+	private final long sliceMillis;
+
+	private final int significantDigits;
+
+	private final long highestTrackableValue;
+
+	private volatile SimonClock clock = SimonClock.SYSTEM;
+
+	/** Constructor with default configuration. */
+	public WindowedQuantilesCallback() {
+		this(DEFAULT_SLICE_COUNT, DEFAULT_SLICE_MILLIS);
+	}
+
+	/**
+	 * Constructor with window configuration.
+	 *
+	 * @param sliceCount number of slices in the window
+	 * @param sliceMillis duration of one slice in milliseconds
+	 */
+	public WindowedQuantilesCallback(int sliceCount, long sliceMillis) {
+		this(sliceCount, sliceMillis, DEFAULT_SIGNIFICANT_DIGITS, LogLinearQuantilesCallback.DEFAULT_HIGHEST_TRACKABLE_VALUE);
+	}
+
+	/**
+	 * Constructor with all configuration.
+	 *
+	 * @param sliceCount number of slices in the window
+	 * @param sliceMillis duration of one slice in milliseconds
+	 * @param significantDigits number of significant decimal digits, from 1 to 5
+	 * @param highestTrackableValue highest trackable value in nanoseconds
+	 */
+	public WindowedQuantilesCallback(int sliceCount, long sliceMillis, int significantDigits, long highestTrackableValue) {
+		// fail fast on wrong configuration
+		new WindowedBuckets(sliceCount, sliceMillis, significantDigits, highestTrackableValue, SimonClock.SYSTEM);
+		this.sliceCount = sliceCount;
+		this.sliceMillis = sliceMillis;
+		this.significantDigits = significantDigits;
+		this.highestTrackableValue = highestTrackableValue;
+	}
+
+	/** Uses the manager as the clock for window rotation. */
+	@Override
+	public void initialize(Manager manager) {
+		clock = manager;
+	}
+
+	/**
+	 * Create windowed buckets using callback attributes.
+	 *
+	 * @param stopwatch Target stopwatch
+	 * @return Created buckets
+	 */
+	@Override
+	protected Buckets createBuckets(Stopwatch stopwatch) {
+		Buckets buckets = new WindowedBuckets(sliceCount, sliceMillis, significantDigits, highestTrackableValue, clock);
+		buckets.setLogTemplate(createLogTemplate(stopwatch));
+		return buckets;
+	}
+
+	public int getSliceCount() {
+		return sliceCount;
+	}
+
+	public long getSliceMillis() {
+		return sliceMillis;
+	}
+
+	public int getSignificantDigits() {
+		return significantDigits;
+	}
+
+	public long getHighestTrackableValue() {
+		return highestTrackableValue;
+	}
+}
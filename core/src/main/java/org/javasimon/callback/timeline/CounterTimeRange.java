@@ -0,0 +1,216 @@
+package org.javasimon.callback.timeline;
+
+import org.javasimon.internal.Striped;
+
+/**
+ * Counter statistics gathered for a specific time range: sums of increments and decrements, last value
+ * and min/max of the counter value. Changes are accumulated in striped cells (see {@link Striped}),
+ * {@link #sample()} creates an immutable copy of the time range.
+ *
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ * @since 4.0
+ */
+public class CounterTimeRange extends TimeRange {
+
+	/** Cells accumulating the changes, {@code null} for a sample. */
+	private final Striped<ChangeCell> cells;
+
+	/** Merged changes of a sample, {@code null} for a live time range. */
+	private final ChangeCell sampled;
+
+	/** Main constructor. */
+	public CounterTimeRange(long startTimestamp, long endTimestamp) {
+		super(startTimestamp, endTimestamp);
+		cells = new Striped<ChangeCell>() {
+			@Override
+			protected ChangeCell newCell() {
+				return new ChangeCell();
+			}
+		};
+		sampled = null;
+	}
+
+	/** Sample constructor. */
+	private CounterTimeRange(CounterTimeRange timeRange) {
+		super(timeRange.getStartTimestamp(), timeRange.getEndTimestamp());
+		cells = null;
+		sampled = timeRange.changes();
+		lastTimestamp = timeRange.lastTimestamp;
+	}
+
+	/**
+	 * Adds increment of the counter.
+	 *
+	 * @param timestampInMs when the counter was increased, expressed in milliseconds
+	 * @param inc increment
+	 * @param value counter value after the increment
+	 */
+	public void addIncrement(long timestampInMs, long inc, long value) {
+		ChangeCell cell = claim();
+		try {
+			cell.increment += inc;
+			cell.value(timestampInMs, value);
+		} finally {
+			cell.release();
+		}
+		updateLastTimestamp(timestampInMs);
+	}
+
+	/**
+	 * Adds decrement of the counter.
+	 *
+	 * @param timestampInMs when the counter was decreased, expressed in milliseconds
+	 * @param dec decrement
+	 * @param value counter value after the decrement
+	 */
+	public void addDecrement(long timestampInMs, long dec, long value) {
+		ChangeCell cell = claim();
+		try {
+			cell.decrement += dec;
+			cell.value(timestampInMs, value);
+		} finally {
+			cell.release();
+		}
+		updateLastTimestamp(timestampInMs);
+	}
+
+	/**
+	 * Adds value set to the counter.
+	 *
+	 * @param timestampInMs when the counter was set, expressed in milliseconds
+	 * @param value new counter value
+	 */
+	public void addValue(long timestampInMs, long value) {
+		ChangeCell cell = claim();
+		try {
+			cell.value(timestampInMs, value);
+		} finally {
+			cell.release();
+		}
+		updateLastTimestamp(timestampInMs);
+	}
+
+	private ChangeCell claim() {
+		if (cells == null) {
+			throw new UnsupportedOperationException("Time range sample is immutable");
+		}
+		return cells.claim();
+	}
+
+	/**
+	 * Creates an immutable copy of this time range.
+	 *
+	 * @return time range sample
+	 */
+	public CounterTimeRange sample() {
+		return new CounterTimeRange(this);
+	}
+
+	/** Returns sampled changes or merges the cells of a live time range. */
+	private ChangeCell changes() {
+		if (sampled != null) {
+			return sampled;
+		}
+		final ChangeCell result = new ChangeCell();
+		cells.mergeInto(new Striped.Merger<ChangeCell>() {
+			@Override
+			public void merge(ChangeCell cell) {
+				result.merge(cell);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Returns sum of all increments.
+	 *
+	 * @return sum of increments
+	 */
+	public long getIncrement() {
+		return changes().increment;
+	}
+
+	/**
+	 * Returns sum of all decrements.
+	 *
+	 * @return sum of decrements
+	 */
+	public long getDecrement() {
+		return changes().decrement;
+	}
+
+	/**
+	 * Returns number of changes (increments, decrements and sets).
+	 *
+	 * @return number of changes
+	 */
+	public long getChanges() {
+		return changes().changes;
+	}
+
+	public long getLast() {
+		return changes().last;
+	}
+
+	public long getLastTimestamp() {
+		return lastTimestamp;
+	}
+
+	public long getMin() {
+		return changes().min;
+	}
+
+	public long getMax() {
+		return changes().max;
+	}
+
+	@Override
+	protected StringBuilder toStringBuilder(StringBuilder stringBuilder) {
+		ChangeCell changes = changes();
+		return super.toStringBuilder(stringBuilder)
+			.append(" changes=").append(changes.changes)
+			.append(" increment=").append(changes.increment)
+			.append(" decrement=").append(changes.decrement)
+			.append(" min=").append(changes.min)
+			.append(" last=").append(changes.last)
+			.append(" max=").append(changes.max);
+	}
+
+	/** Cell holding changes of one stripe, last value is taken from the cell with the latest change. */
+	private static final class ChangeCell extends Striped.Cell {
+		private long increment;
+		private long decrement;
+		private long changes;
+		private long min = Long.MAX_VALUE;
+		private long max = Long.MIN_VALUE;
+		private long last;
+		private long lastTimestamp = Long.MIN_VALUE;
+
+		void value(long timestampInMs, long value) {
+			changes++;
+			last = value;
+			lastTimestamp = timestampInMs;
+			if (value < min) {
+				min = value;
+			}
+			if (value > max) {
+				max = value;
+			}
+		}
+
+		void merge(ChangeCell cell) {
+			if (cell.changes == 0) {
+				return;
+			}
+			if (changes == 0 || cell.lastTimestamp >= lastTimestamp) {
+				last = cell.last;
+				lastTimestamp = cell.lastTimestamp;
+			}
+			increment += cell.increment;
+			decrement += cell.decrement;
+			changes += cell.changes;
+			min = Math.min(min, cell.min);
+			max = Math.max(max, cell.max);
+		}
+	}
+}
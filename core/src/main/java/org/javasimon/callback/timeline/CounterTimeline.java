@@ -0,0 +1,101 @@
+package org.javasimon.callback.timeline;
+
+import org.javasimon.Counter;
+import org.javasimon.clock.SimonClock;
+
+import java.util.List;
+
+/**
+ * Timeline for Counters, historicize {@link Counter} changes on a rolling period of time.
+ * Rate meter of the timeline measures the rate of increments.
+ *
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ * @since 4.0
+ */
+public final class CounterTimeline extends Timeline<CounterTimeRange> {
+
+	/**
+	 * Main constructor.
+	 *
+	 * @param capacity Number of time range.
+	 * @param timeRangeWidth Width of each time range
+	 */
+	public CounterTimeline(int capacity, long timeRangeWidth) {
+		super(capacity, timeRangeWidth);
+	}
+
+	/**
+	 * Constructor with clock.
+	 *
+	 * @param capacity Number of time range.
+	 * @param timeRangeWidth Width of each time range
+	 * @param clock Clock used for timestamps of changes and for the rate meter
+	 */
+	public CounterTimeline(int capacity, long timeRangeWidth, SimonClock clock) {
+		super(capacity, timeRangeWidth, clock);
+	}
+
+	@Override
+	protected CounterTimeRange createTimeRange(long startTimestamp, long endTimestamp) {
+		return new CounterTimeRange(startTimestamp, endTimestamp);
+	}
+
+	/**
+	 * Records increment of the counter and marks it in the rate meter.
+	 *
+	 * @param inc increment
+	 * @param value counter value after the increment
+	 */
+	public void addIncrement(long inc, long value) {
+		long timestamp = clock.milliTime();
+		CounterTimeRange timeRange = getOrCreateTimeRange(timestamp);
+		if (timeRange != null) {
+			timeRange.addIncrement(timestamp, inc, value);
+		}
+		getRateMeter().mark();
+	}
+
+	/**
+	 * Records decrement of the counter.
+	 *
+	 * @param dec decrement
+	 * @param value counter value after the decrement
+	 */
+	public void addDecrement(long dec, long value) {
+		long timestamp = clock.milliTime();
+		CounterTimeRange timeRange = getOrCreateTimeRange(timestamp);
+		if (timeRange != null) {
+			timeRange.addDecrement(timestamp, dec, value);
+		}
+	}
+
+	/**
+	 * Records value set to the counter.
+	 *
+	 * @param value new counter value
+	 */
+	public void addValue(long value) {
+		long timestamp = clock.milliTime();
+		CounterTimeRange timeRange = getOrCreateTimeRange(timestamp);
+		if (timeRange != null) {
+			timeRange.addValue(timestamp, value);
+		}
+	}
+
+	/**
+	 * Take a snapshot of the timeline, time ranges are copied.
+	 *
+	 * @return Timeline sample
+	 */
+	@Override
+	public TimelineSample<CounterTimeRange> sample() {
+		List<CounterTimeRange> timeRanges = getTimeRanges();
+		CounterTimeRange[] timeRangesCopy = new CounterTimeRange[timeRanges.size()];
+		for (int i = 0; i < timeRangesCopy.length; i++) {
+			timeRangesCopy[i] = timeRanges.get(i).sample();
+		}
+		RateMeter rateMeter = getRateMeter();
+		return new TimelineSample<>(getCapacity(), timeRangeWidth * SimonClock.NANOS_IN_MILLIS, timeRangesCopy,
+			rateMeter.getOneMinuteRate(), rateMeter.getFiveMinuteRate(), rateMeter.getFifteenMinuteRate());
+	}
+}
@@ -0,0 +1,155 @@
+package org.javasimon.callback.timeline;
+
+import org.javasimon.clock.SimonClock;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Meter of event rates (events per second) with exponentially weighted moving averages over 1, 5 and 15 minutes,
+ * like the load average of Unix systems. Events are counted in an atomic counter, averages are updated every
+ * 5 seconds by the first thread that finds out the interval is over (either marking or reading), so the update
+ * is lock-free and cheap.
+ *
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ * @since 4.0
+ */
+public final class RateMeter {
+
+	/** Interval of the average updates in milliseconds. */
+	static final long TICK_INTERVAL = 5000;
+
+	private final SimonClock clock;
+
+	/** Events not yet included in the averages. */
+	private final AtomicLong uncounted = new AtomicLong();
+
+	private final AtomicLong count = new AtomicLong();
+
+	/** Start of the current tick interval. */
+	private final AtomicLong lastTick;
+
+	private final MovingAverage oneMinute = new MovingAverage(1);
+
+	private final MovingAverage fiveMinutes = new MovingAverage(5);
+
+	private final MovingAverage fifteenMinutes = new MovingAverage(15);
+
+	/**
+	 * Creates the meter.
+	 *
+	 * @param clock clock used to find out when to update the averages
+	 */
+	public RateMeter(SimonClock clock) {
+		this.clock = clock;
+		lastTick = new AtomicLong(clock.milliTime());
+	}
+
+	/** Marks one event. */
+	public void mark() {
+		mark(1);
+	}
+
+	/**
+	 * Marks the number of events.
+	 *
+	 * @param events number of events
+	 */
+	public void mark(long events) {
+		tickIfNecessary();
+		uncounted.addAndGet(events);
+		count.addAndGet(events);
+	}
+
+	/**
+	 * Returns the number of all marked events.
+	 *
+	 * @return number of events
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * Returns one minute moving average rate.
+	 *
+	 * @return events per second
+	 */
+	public double getOneMinuteRate() {
+		tickIfNecessary();
+		return oneMinute.rate;
+	}
+
+	/**
+	 * Returns five minutes moving average rate.
+	 *
+	 * @return events per second
+	 */
+	public double getFiveMinuteRate() {
+		tickIfNecessary();
+		return fiveMinutes.rate;
+	}
+
+	/**
+	 * Returns fifteen minutes moving average rate.
+	 *
+	 * @return events per second
+	 */
+	public double getFifteenMinuteRate() {
+		tickIfNecessary();
+		return fifteenMinutes.rate;
+	}
+
+	private void tickIfNecessary() {
+		long oldTick = lastTick.get();
+		long age = clock.milliTime() - oldTick;
+		if (age >= TICK_INTERVAL) {
+			long ticks = age / TICK_INTERVAL;
+			// only the thread moving the tick updates the averages
+			if (lastTick.compareAndSet(oldTick, oldTick + ticks * TICK_INTERVAL)) {
+				long events = uncounted.getAndSet(0);
+				oneMinute.tick(events, ticks);
+				fiveMinutes.tick(events, ticks);
+				fifteenMinutes.tick(events, ticks);
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "RateMeter{count=" + count.get() +
+			", m1=" + getOneMinuteRate() +
+			", m5=" + getFiveMinuteRate() +
+			", m15=" + getFifteenMinuteRate() + '}';
+	}
+
+	/** Exponentially weighted moving average updated once per tick interval. */
+	private static final class MovingAverage {
+		private final double alpha;
+
+		private volatile double rate;
+
+		private boolean initialized;
+
+		private MovingAverage(int minutes) {
+			alpha = 1 - Math.exp(-TICK_INTERVAL / 60000D / minutes);
+		}
+
+		/**
+		 * Called by the thread that moved the tick, hence the lock is not contended. Events fall into the first
+		 * of the passed ticks, the following idle ticks only decay the rate - the decay is applied at once,
+		 * so the first event after a long idle period costs the same as a single tick.
+		 */
+		private synchronized void tick(long events, long ticks) {
+			double instantRate = events * 1000D / TICK_INTERVAL;
+			if (initialized) {
+				rate += alpha * (instantRate - rate);
+			} else {
+				rate = instantRate;
+				initialized = true;
+			}
+			if (ticks > 1) {
+				rate *= Math.pow(1 - alpha, ticks - 1);
+			}
+		}
+	}
+}
@@ -1,36 +1,96 @@
 package org.javasimon.callback.timeline;
 
+import org.javasimon.callback.quantiles.LogLinearHistogram;
+import org.javasimon.internal.Striped;
 import org.javasimon.utils.SimonUtils;
 
 /**
  * Stopwatch statistics gathered for a specific time range.
- * This class is not intended to be thread safe.
+ * Splits are accumulated in striped cells (see {@link Striped}), so concurrent splits don't block each other.
+ * {@link #sample()} creates an immutable copy of the time range, getters of the live time range merge the cells
+ * on each call.
+ * <p/>
+ * Each time range can also hold a {@link LogLinearHistogram} of split durations so that quantiles
+ * (e.g. {@link #getPercentile95()}) can be followed over time. Its configuration is chosen by the timeline
+ * (see {@link StopwatchTimeline}), without the histogram quantiles are not available. Sample keeps only
+ * non-empty counters of the histogram.
+ * Mean and variance are computed from mergeable moments (Welford/Chan) which don't overflow for long splits.
  *
  * @author gerald
  */
 public class StopwatchTimeRange extends TimeRange {
 
-	/** Last value. */
-	private long last;
+	/** Cells accumulating the splits, {@code null} for a sample. */
+	private final Striped<StatisticsCell> cells;
 
-	/** Minimum value. */
-	private long min = Long.MAX_VALUE;
+	/** Merged statistics of a sample, {@code null} for a live time range. */
+	private final StatisticsCell sampled;
 
-	/** Maximum value. */
-	private long max = Long.MIN_VALUE;
-
-	/** Total sum of all values. */
-	private long total;
+	/**
+	 * Histogram of split durations, {@code null} if quantiles are not tracked. Sample uses it only
+	 * for the layout of the counters.
+	 */
+	private final LogLinearHistogram histogram;
 
-	/** Sum of squares. */
-	private long squareTotal;
+	/** Indexes of non-empty histogram counters of a sample, {@code null} for a live time range. */
+	private final int[] sampledIndexes;
 
-	/** Counter - number of values. */
-	private long counter;
+	/** Values of non-empty histogram counters of a sample, {@code null} for a live time range. */
+	private final long[] sampledCounts;
 
-	/** Main constructor. */
+	/** Main constructor, time range with the default histogram for quantiles. */
 	public StopwatchTimeRange(long startTimestamp, long endTimestamp) {
+		this(startTimestamp, endTimestamp, new LogLinearHistogram(StopwatchTimeline.DEFAULT_QUANTILES_SIGNIFICANT_DIGITS,
+			StopwatchTimeline.DEFAULT_QUANTILES_HIGHEST_TRACKABLE_VALUE));
+	}
+
+	/**
+	 * Constructor with histogram for quantiles.
+	 *
+	 * @param startTimestamp Range beginning
+	 * @param endTimestamp Range ending
+	 * @param histogram empty histogram for split durations, {@code null} if quantiles are not tracked
+	 * @since 4.0
+	 */
+	public StopwatchTimeRange(long startTimestamp, long endTimestamp, LogLinearHistogram histogram) {
 		super(startTimestamp, endTimestamp);
+		cells = new Striped<StatisticsCell>() {
+			@Override
+			protected StatisticsCell newCell() {
+				return new StatisticsCell();
+			}
+		};
+		sampled = null;
+		this.histogram = histogram;
+		sampledIndexes = null;
+		sampledCounts = null;
+	}
+
+	/** Sample constructor. */
+	private StopwatchTimeRange(StopwatchTimeRange timeRange) {
+		super(timeRange.getStartTimestamp(), timeRange.getEndTimestamp());
+		cells = null;
+		sampled = timeRange.statistics();
+		lastTimestamp = timeRange.lastTimestamp;
+		histogram = timeRange.histogram;
+		int nonEmpty = 0;
+		if (histogram != null) {
+			for (int i = 0; i < histogram.getCountsLength(); i++) {
+				if (histogram.getCount(i) != 0) {
+					nonEmpty++;
+				}
+			}
+		}
+		// counters only grow, the second pass can't find fewer non-empty ones
+		sampledIndexes = new int[nonEmpty];
+		sampledCounts = new long[nonEmpty];
+		for (int i = 0, j = 0; j < nonEmpty; i++) {
+			long count = histogram.getCount(i);
+			if (count != 0) {
+				sampledIndexes[j] = i;
+				sampledCounts[j++] = count;
+			}
+		}
 	}
 
 	/**
@@ -38,44 +98,66 @@ public class StopwatchTimeRange extends TimeRange {
 	 *
 	 * @param timestampInMs when the split started, expressed in milliseconds
 	 * @param durationInNs how long the split was, expressed in nanoseconds
+	 * @throws UnsupportedOperationException if this time range is a sample
 	 */
 	public void addSplit(long timestampInMs, long durationInNs) {
-		last = durationInNs;
-		total += durationInNs;
-		squareTotal += durationInNs * durationInNs;
-		if (durationInNs > max) {
-			max = durationInNs;
+		if (cells == null) {
+			throw new UnsupportedOperationException("Time range sample is immutable");
 		}
-		if (durationInNs < min) {
-			min = durationInNs;
+		StatisticsCell cell = cells.claim();
+		try {
+			cell.add(timestampInMs, durationInNs);
+		} finally {
+			cell.release();
 		}
-		counter++;
-		lastTimestamp = timestampInMs;
+		if (histogram != null) {
+			histogram.recordValue(durationInNs);
+		}
+		updateLastTimestamp(timestampInMs);
+	}
+
+	/**
+	 * Creates an immutable copy of this time range.
+	 *
+	 * @return time range sample
+	 */
+	public StopwatchTimeRange sample() {
+		return new StopwatchTimeRange(this);
+	}
+
+	/** Returns sampled statistics or merges the cells of a live time range. */
+	private StatisticsCell statistics() {
+		if (sampled != null) {
+			return sampled;
+		}
+		final StatisticsCell result = new StatisticsCell();
+		cells.mergeInto(new Striped.Merger<StatisticsCell>() {
+			@Override
+			public void merge(StatisticsCell cell) {
+				result.merge(cell);
+			}
+		});
+		return result;
 	}
 
 	public long getLast() {
-		return last;
+		return statistics().last;
 	}
 
 	public long getMin() {
-		return min;
+		return statistics().min;
 	}
 
 	public long getMax() {
-		return max;
+		return statistics().max;
 	}
 
 	public long getTotal() {
-		return total;
+		return statistics().total;
 	}
 
 	public long getCounter() {
-		return counter;
-	}
-
-	/** Computes mean (average) using total and non-zero counter. */
-	private double computeMean() {
-		return ((double) total) / counter;
+		return statistics().counter;
 	}
 
 	/**
@@ -84,7 +166,7 @@ public class StopwatchTimeRange extends TimeRange {
 	 * @return mean (average) duration.
 	 */
 	public Double getMean() {
-		return counter == 0 ? Double.NaN : computeMean();
+		return statistics().mean();
 	}
 
 	/**
@@ -93,14 +175,7 @@ public class StopwatchTimeRange extends TimeRange {
 	 * @return variance
 	 */
 	public Double getVariance() {
-		if (counter == 0) {
-			return Double.NaN;
-		} else {
-			final double mean = computeMean();
-			final double meanSquare = mean * mean;
-			final double squareMean = ((double) squareTotal) / counter;
-			return squareMean - meanSquare;
-		}
+		return statistics().variance();
 	}
 
 	/**
@@ -112,15 +187,137 @@ public class StopwatchTimeRange extends TimeRange {
 		return Math.sqrt(getVariance());
 	}
 
+	/**
+	 * Computes quantile of split durations from the histogram, relative error depends on the configuration
+	 * of the histogram (under 10 % for the default one).
+	 *
+	 * @param ratio Nth quantile, 0.5 is median. Expects values between 0 and 1.
+	 * @return quantile or {@code null} if there are no splits or quantiles are not tracked
+	 */
+	public Double getQuantile(double ratio) {
+		if (histogram == null) {
+			return null;
+		}
+		if (sampledCounts == null) {
+			return histogram.getQuantile(ratio);
+		}
+		if (ratio < 0D || ratio > 1D) {
+			throw new IllegalArgumentException("Expected ratio between 0 and 1: " + ratio);
+		}
+		long totalCount = 0;
+		for (long count : sampledCounts) {
+			totalCount += count;
+		}
+		if (totalCount == 0) {
+			return null;
+		}
+		long rank = Math.max((long) Math.ceil(ratio * totalCount), 1);
+		long cumulativeCount = 0;
+		int i = 0;
+		for (; i < sampledCounts.length - 1; i++) {
+			cumulativeCount += sampledCounts[i];
+			if (cumulativeCount >= rank) {
+				break;
+			}
+		}
+		int index = sampledIndexes[i];
+		return (histogram.lowestEquivalentValue(index) + histogram.highestEquivalentValue(index)) / 2D;
+	}
+
+	public Double getPercentile50() {
+		return getQuantile(0.5D);
+	}
+
+	public Double getPercentile95() {
+		return getQuantile(0.95D);
+	}
+
+	public Double getPercentile99() {
+		return getQuantile(0.99D);
+	}
+
 	@Override
 	protected StringBuilder toStringBuilder(StringBuilder stringBuilder) {
+		StatisticsCell statistics = statistics();
+		Double percentile95 = getPercentile95();
 		return super.toStringBuilder(stringBuilder)
-			.append(" counter=").append(counter)
-			.append(" total=").append(SimonUtils.presentNanoTime(total))
-			.append(" min=").append(SimonUtils.presentNanoTime(min))
-			.append(" mean=").append(SimonUtils.presentNanoTime(getMean()))
-			.append(" last=").append(SimonUtils.presentNanoTime(getLast()))
-			.append(" max=").append(SimonUtils.presentNanoTime(max))
-			.append(" stddev=").append(SimonUtils.presentNanoTime(getStandardDeviation()));
+			.append(" counter=").append(statistics.counter)
+			.append(" total=").append(SimonUtils.presentNanoTime(statistics.total))
+			.append(" min=").append(SimonUtils.presentNanoTime(statistics.min))
+			.append(" mean=").append(SimonUtils.presentNanoTime(statistics.mean()))
+			.append(" last=").append(SimonUtils.presentNanoTime(statistics.last))
+			.append(" max=").append(SimonUtils.presentNanoTime(statistics.max))
+			.append(" stddev=").append(SimonUtils.presentNanoTime(Math.sqrt(statistics.variance())))
+			.append(" p95=").append(SimonUtils.presentNanoTime(percentile95 != null ? percentile95 : Double.NaN));
+	}
+
+	/** Cell holding statistics of one stripe, moments are mergeable (Chan et al. parallel variance). */
+	private static final class StatisticsCell extends Striped.Cell {
+		/** Last value. */
+		private long last;
+
+		/** Timestamp of the last value. */
+		private long lastTimestamp = Long.MIN_VALUE;
+
+		/** Minimum value. */
+		private long min = Long.MAX_VALUE;
+
+		/** Maximum value. */
+		private long max = Long.MIN_VALUE;
+
+		/** Total sum of all values. */
+		private long total;
+
+		/** Running mean. */
+		private double mean;
+
+		/** Sum of squared differences from the mean. */
+		private double mean2;
+
+		/** Counter - number of values. */
+		private long counter;
+
+		void add(long timestampInMs, long durationInNs) {
+			last = durationInNs;
+			lastTimestamp = timestampInMs;
+			total += durationInNs;
+			if (durationInNs > max) {
+				max = durationInNs;
+			}
+			if (durationInNs < min) {
+				min = durationInNs;
+			}
+			counter++;
+			double delta = durationInNs - mean;
+			mean = ((double) total) / counter;
+			mean2 += delta * (durationInNs - mean);
+		}
+
+		void merge(StatisticsCell cell) {
+			if (cell.counter == 0) {
+				return;
+			}
+			if (counter == 0 || cell.lastTimestamp >= lastTimestamp) {
+				last = cell.last;
+				lastTimestamp = cell.lastTimestamp;
+			}
+			min = Math.min(min, cell.min);
+			max = Math.max(max, cell.max);
+			double delta = cell.mean - mean;
+			long newCounter = counter + cell.counter;
+			mean2 += cell.mean2 + delta * delta * ((double) counter * cell.counter / newCounter);
+			counter = newCounter;
+			total += cell.total;
+			mean = ((double) total) / counter;
+		}
+
+		double mean() {
+			return counter == 0 ? Double.NaN : mean;
+		}
+
+		/** Population variance. */
+		double variance() {
+			return counter == 0 ? Double.NaN : mean2 / counter;
+		}
 	}
 }
@@ -2,15 +2,32 @@ package org.javasimon.callback.timeline;
 
 import org.javasimon.Split;
 import org.javasimon.Stopwatch;
+import org.javasimon.callback.quantiles.LogLinearHistogram;
+import org.javasimon.callback.quantiles.LogLinearQuantilesCallback;
 import org.javasimon.clock.SimonClock;
 
+import java.util.List;
+
 /**
  * Timeline for Stopwatches, historicize {@link Stopwatch} state on a rolling period of time.
+ * <p/>
+ * Each time range gets its own {@link LogLinearHistogram} for quantiles of split durations. By default
+ * the histogram has 1 significant digit and tracks durations up to 1 hour (around 600 counters), coarser
+ * or no histogram can be configured with {@link #StopwatchTimeline(int, long, SimonClock, int, long)}.
  *
  * @author gerald
  */
 public final class StopwatchTimeline extends Timeline<StopwatchTimeRange> {
 
+	/** Default number of significant digits of the histograms for quantiles. */
+	public static final int DEFAULT_QUANTILES_SIGNIFICANT_DIGITS = 1;
+
+	/** Default highest trackable value of the histograms for quantiles - 1 hour in nanoseconds. */
+	public static final long DEFAULT_QUANTILES_HIGHEST_TRACKABLE_VALUE = LogLinearQuantilesCallback.DEFAULT_HIGHEST_TRACKABLE_VALUE;
+
+	/** Empty histogram with the configuration used for all time ranges, {@code null} if quantiles are not tracked. */
+	private final LogLinearHistogram quantilesTemplate;
+
 	/**
 	 * Main constructor.
 	 *
@@ -18,7 +35,34 @@ public final class StopwatchTimeline extends Timeline<StopwatchTimeRange> {
 	 * @param timeRangeWidth Width of each time range
 	 */
 	public StopwatchTimeline(int capacity, long timeRangeWidth) {
-		super(capacity, timeRangeWidth);
+		this(capacity, timeRangeWidth, SimonClock.SYSTEM);
+	}
+
+	/**
+	 * Constructor with clock.
+	 *
+	 * @param capacity Number of time range.
+	 * @param timeRangeWidth Width of each time range
+	 * @param clock Clock used for the rate meter
+	 */
+	public StopwatchTimeline(int capacity, long timeRangeWidth, SimonClock clock) {
+		this(capacity, timeRangeWidth, clock, DEFAULT_QUANTILES_SIGNIFICANT_DIGITS, DEFAULT_QUANTILES_HIGHEST_TRACKABLE_VALUE);
+	}
+
+	/**
+	 * Constructor with clock and configuration of histograms for quantiles.
+	 *
+	 * @param capacity Number of time range.
+	 * @param timeRangeWidth Width of each time range
+	 * @param clock Clock used for the rate meter
+	 * @param quantilesSignificantDigits number of significant decimal digits from 1 to 5, 0 if quantiles are not tracked
+	 * @param quantilesHighestTrackableValue highest tracked split duration in nanoseconds, longer splits are counted as this value
+	 * @since 4.0
+	 */
+	public StopwatchTimeline(int capacity, long timeRangeWidth, SimonClock clock, int quantilesSignificantDigits, long quantilesHighestTrackableValue) {
+		super(capacity, timeRangeWidth, clock);
+		quantilesTemplate = quantilesSignificantDigits == 0 ? null
+			: new LogLinearHistogram(quantilesSignificantDigits, quantilesHighestTrackableValue);
 	}
 
 	/**
@@ -30,13 +74,15 @@ public final class StopwatchTimeline extends Timeline<StopwatchTimeRange> {
 	 */
 	@Override
 	protected StopwatchTimeRange createTimeRange(long startTimestamp, long endTimestamp) {
-		return new StopwatchTimeRange(startTimestamp, endTimestamp);
+		return new StopwatchTimeRange(startTimestamp, endTimestamp,
+			quantilesTemplate != null ? new LogLinearHistogram(quantilesTemplate) : null);
 	}
 
 	/**
 	 * Main method used to insert the split on the timeline: <ol>
 	 * <li>Split start is used to determine in which time-range it should be split. A new time range may be created if needed.</li>
 	 * <li>Split duration is added to time range statistics.
+	 * <li>Split is marked in the rate meter.
 	 * </ol>
 	 * The split might be drop if it's too old.
 	 *
@@ -44,30 +90,27 @@ public final class StopwatchTimeline extends Timeline<StopwatchTimeRange> {
 	 */
 	public void addSplit(Split split) {
 		final long timestamp = split.getStartMillis();
-		StopwatchTimeRange timeRange;
-		synchronized (this) {
-			timeRange = getOrCreateTimeRange(timestamp);
-		}
+		StopwatchTimeRange timeRange = getOrCreateTimeRange(timestamp);
 		if (timeRange != null) {
-			//noinspection SynchronizationOnLocalVariableOrMethodParameter
-			synchronized (timeRange) {
-				timeRange.addSplit(timestamp, split.runningFor());
-			}
+			timeRange.addSplit(timestamp, split.runningFor());
 		}
+		getRateMeter().mark();
 	}
 
 	/**
-	 * Take a snapshot of the timeline.
+	 * Take a snapshot of the timeline, time ranges are copied.
 	 *
 	 * @return Timeline sample
 	 */
 	@Override
 	public TimelineSample<StopwatchTimeRange> sample() {
-		StopwatchTimeRange[] timeRangesCopy;
-		synchronized (this) {
-			timeRangesCopy = timeRanges.toArray(new StopwatchTimeRange[timeRanges.size()]);
+		List<StopwatchTimeRange> timeRanges = getTimeRanges();
+		StopwatchTimeRange[] timeRangesCopy = new StopwatchTimeRange[timeRanges.size()];
+		for (int i = 0; i < timeRangesCopy.length; i++) {
+			timeRangesCopy[i] = timeRanges.get(i).sample();
 		}
-		// TODO sample each time-range by making a copy of it
-		return new TimelineSample<>(timeRanges.getCapacity(), timeRangeWidth * SimonClock.NANOS_IN_MILLIS, timeRangesCopy);
+		RateMeter rateMeter = getRateMeter();
+		return new TimelineSample<>(getCapacity(), timeRangeWidth * SimonClock.NANOS_IN_MILLIS, timeRangesCopy,
+			rateMeter.getOneMinuteRate(), rateMeter.getFiveMinuteRate(), rateMeter.getFifteenMinuteRate());
 	}
 }
@@ -2,12 +2,18 @@ package org.javasimon.callback.timeline;
 
 import org.javasimon.utils.SimonUtils;
 
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
 /**
  * Time range and associated data.
  *
  * @author gerald
  */
 public class TimeRange {
+
+	private static final AtomicLongFieldUpdater<TimeRange> LAST_TIMESTAMP =
+		AtomicLongFieldUpdater.newUpdater(TimeRange.class, "lastTimestamp");
+
 	/**
 	 * Beginning of the time range
 	 */
@@ -21,7 +27,7 @@ public class TimeRange {
 	/**
 	 * Timestamp of last change
 	 */
-	protected long lastTimestamp;
+	protected volatile long lastTimestamp;
 
 	/**
 	 * Main constructor.
@@ -42,6 +48,20 @@ public class TimeRange {
 		return endTimestamp;
 	}
 
+	/**
+	 * Moves timestamp of the last change forward, safe for concurrent updates.
+	 *
+	 * @param timestampInMs timestamp of the change expressed in milliseconds
+	 */
+	protected final void updateLastTimestamp(long timestampInMs) {
+		long current;
+		while (timestampInMs > (current = lastTimestamp)) {
+			if (LAST_TIMESTAMP.compareAndSet(this, current, timestampInMs)) {
+				return;
+			}
+		}
+	}
+
 	/**
 	 * Indicates whether this time range contains given timestamp.
 	 *
@@ -1,21 +1,41 @@
 package org.javasimon.callback.timeline;
 
-import org.javasimon.callback.lastsplits.CircularList;
+import org.javasimon.clock.SimonClock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Collection of values sorted on a time line.
+ * <p/>
+ * Time ranges are kept in a preallocated ring indexed directly by {@code (timestamp / width) % capacity}, so that
+ * finding the time range for any timestamp (even for a late split) is O(1). Time range is created lazily and
+ * replaces the older range in its slot with a single CAS, no lock is taken. Timestamps older than the first
+ * recorded time range or older than the range already occupying their slot are dropped.
+ * <p/>
+ * Timeline also holds a {@link RateMeter} with moving average rates of the recorded events.
  *
  * @author gerald
  */
 public abstract class Timeline<TR extends TimeRange> {
 
-	/** List of time ranges. */
-	protected final CircularList<TR> timeRanges;
+	/** Ring of time ranges indexed by the time range number. */
+	private final AtomicReferenceArray<TR> timeRanges;
 	/** Time range width in milliseconds. */
 	protected final long timeRangeWidth;
 
-	/** Last used time range. */
-	private TR lastTimeRange;
+	/** Number of the first time range, timeline starts there. */
+	private final AtomicLong firstRangeNumber = new AtomicLong(Long.MIN_VALUE);
+
+	/** Clock of the manager. */
+	protected final SimonClock clock;
+
+	/** Rates of the recorded events. */
+	private final RateMeter rateMeter;
 
 	/**
 	 * Main constructor.
@@ -24,8 +44,39 @@ public abstract class Timeline<TR extends TimeRange> {
 	 * @param timeRangeWidth Width of each time range
 	 */
 	protected Timeline(int capacity, long timeRangeWidth) {
-		this.timeRanges = new CircularList<>(capacity);
+		this(capacity, timeRangeWidth, SimonClock.SYSTEM);
+	}
+
+	/**
+	 * Constructor with clock.
+	 *
+	 * @param capacity Number of time ranges
+	 * @param timeRangeWidth Width of each time range
+	 * @param clock Clock used for the rate meter
+	 */
+	protected Timeline(int capacity, long timeRangeWidth, SimonClock clock) {
+		this.timeRanges = new AtomicReferenceArray<>(capacity);
 		this.timeRangeWidth = timeRangeWidth;
+		this.clock = clock;
+		this.rateMeter = new RateMeter(clock);
+	}
+
+	/**
+	 * Returns moving average rates of recorded events (splits, counter increases).
+	 *
+	 * @return rate meter
+	 */
+	public RateMeter getRateMeter() {
+		return rateMeter;
+	}
+
+	/**
+	 * Returns number of time ranges.
+	 *
+	 * @return capacity of the timeline
+	 */
+	public int getCapacity() {
+		return timeRanges.length();
 	}
 
 	/**
@@ -39,32 +90,70 @@ public abstract class Timeline<TR extends TimeRange> {
 
 	/**
 	 * Returns existing time range if it already exists or create a new one.
+	 *
+	 * @param timestamp Timestamp in milliseconds
+	 * @return time range containing the timestamp or {@code null} if the timestamp is too old
 	 */
 	protected final TR getOrCreateTimeRange(long timestamp) {
-		TR timeRange;
-		if (lastTimeRange == null || timestamp > lastTimeRange.getEndTimestamp()) {
-			// New time range
-			long roundedTimestamp = timestamp - timestamp % timeRangeWidth;
-			timeRange = createTimeRange(roundedTimestamp, roundedTimestamp + timeRangeWidth);
-			timeRanges.add(timeRange);
-			lastTimeRange = timeRange;
-		} else if (timestamp >= lastTimeRange.getStartTimestamp()) {
-			// Current time range
-			timeRange = lastTimeRange;
-		} else {
-			// Old time range
-			timeRange = null;
-			// Not very good from performance point of view
-			// iterating from end till start would be a better solution
-			for (TR oldTimeRange : timeRanges) {
-				if (oldTimeRange.containsTimestamp(timestamp)) {
-					timeRange = oldTimeRange;
-					break;
+		long rangeNumber = timestamp / timeRangeWidth;
+		long first = firstRangeNumber.get();
+		if (first == Long.MIN_VALUE) {
+			firstRangeNumber.compareAndSet(Long.MIN_VALUE, rangeNumber);
+			first = firstRangeNumber.get();
+		}
+		if (rangeNumber < first) {
+			return null;
+		}
+		int index = (int) (rangeNumber % timeRanges.length());
+		while (true) {
+			TR timeRange = timeRanges.get(index);
+			if (timeRange != null) {
+				long currentRangeNumber = timeRange.getStartTimestamp() / timeRangeWidth;
+				if (currentRangeNumber == rangeNumber) {
+					return timeRange;
+				}
+				if (currentRangeNumber > rangeNumber) {
+					// Old time range, already replaced
+					return null;
 				}
 			}
+			long startTimestamp = rangeNumber * timeRangeWidth;
+			TR newTimeRange = createTimeRange(startTimestamp, startTimestamp + timeRangeWidth);
+			if (timeRanges.compareAndSet(index, timeRange, newTimeRange)) {
+				return newTimeRange;
+			}
 		}
+	}
 
-		return timeRange;
+	/**
+	 * Returns time ranges of the last {@link #getCapacity()} widths up to the newest time range, sorted from
+	 * the oldest. Returned time ranges are live, they should be copied for a sample.
+	 *
+	 * @return sorted list of time ranges
+	 */
+	protected final List<TR> getTimeRanges() {
+		List<TR> result = new ArrayList<>(timeRanges.length());
+		long newestStart = Long.MIN_VALUE;
+		for (int i = 0; i < timeRanges.length(); i++) {
+			TR timeRange = timeRanges.get(i);
+			if (timeRange != null) {
+				result.add(timeRange);
+				newestStart = Math.max(newestStart, timeRange.getStartTimestamp());
+			}
+		}
+		long oldestStart = newestStart - timeRanges.length() * timeRangeWidth;
+		for (int i = result.size() - 1; i >= 0; i--) {
+			if (result.get(i).getStartTimestamp() <= oldestStart) {
+				result.remove(i);
+			}
+		}
+		Collections.sort(result, new Comparator<TimeRange>() {
+			@Override
+			public int compare(TimeRange timeRange1, TimeRange timeRange2) {
+				return Long.compare(timeRange1.getStartTimestamp(), timeRange2.getStartTimestamp());
+			}
+		});
+		return result;
 	}
 
 	public abstract TimelineSample<TR> sample();
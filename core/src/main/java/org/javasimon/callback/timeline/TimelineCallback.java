@@ -1,10 +1,14 @@
 package org.javasimon.callback.timeline;
 
+import org.javasimon.Counter;
+import org.javasimon.CounterSample;
+import org.javasimon.Manager;
 import org.javasimon.Simon;
 import org.javasimon.Split;
 import org.javasimon.Stopwatch;
 import org.javasimon.StopwatchSample;
 import org.javasimon.callback.CallbackSkeleton;
+import org.javasimon.clock.SimonClock;
 
 /**
  * Timeline callback aims at keeping simon data for the last N minutes.
@@ -13,6 +17,10 @@ import org.javasimon.callback.CallbackSkeleton;
  * <p/>
  * Example: a timeline containing 6 time ranges of 10 minutes each can be used to
  * see evolution for an hour.
+ * <p/>
+ * Stopwatches get {@link StopwatchTimeline}, Counters get {@link CounterTimeline}. Each timeline also measures
+ * moving average rates (1, 5 and 15 minutes) of splits or counter increments with its {@link RateMeter}.
+ * Timestamps are taken from the clock of the {@link Manager} the callback is attached to.
  *
  * @author gerald
  */
@@ -27,6 +35,12 @@ public class TimelineCallback extends CallbackSkeleton {
 	private final int timelineCapacity;
 	/** Width in milliseconds of the time ranges. */
 	private final long timeRangeWidth;
+	/** Significant digits of histograms for quantiles in Stopwatch time ranges, 0 if quantiles are not tracked. */
+	private final int quantilesSignificantDigits;
+	/** Highest trackable value of histograms for quantiles in Stopwatch time ranges. */
+	private final long quantilesHighestTrackableValue;
+	/** Clock of the manager. */
+	private volatile SimonClock clock = SimonClock.SYSTEM;
 
 	/**
 	 * Main constructor.
@@ -36,9 +50,27 @@ public class TimelineCallback extends CallbackSkeleton {
 	 * @param timeRangeWidth Time range width (in milliseconds)
 	 */
 	public TimelineCallback(String timelineAttributeName, int timelineCapacity, long timeRangeWidth) {
+		this(timelineAttributeName, timelineCapacity, timeRangeWidth,
+			StopwatchTimeline.DEFAULT_QUANTILES_SIGNIFICANT_DIGITS, StopwatchTimeline.DEFAULT_QUANTILES_HIGHEST_TRACKABLE_VALUE);
+	}
+
+	/**
+	 * Constructor with configuration of histograms for quantiles in Stopwatch time ranges.
+	 *
+	 * @param timelineAttributeName Simon attribute name used for storing Timeline
+	 * @param timelineCapacity Timeline capacity (number of time ranges)
+	 * @param timeRangeWidth Time range width (in milliseconds)
+	 * @param quantilesSignificantDigits number of significant decimal digits from 1 to 5, 0 if quantiles are not tracked
+	 * @param quantilesHighestTrackableValue highest tracked split duration in nanoseconds
+	 * @see StopwatchTimeline#StopwatchTimeline(int, long, SimonClock, int, long)
+	 * @since 4.0
+	 */
+	public TimelineCallback(String timelineAttributeName, int timelineCapacity, long timeRangeWidth, int quantilesSignificantDigits, long quantilesHighestTrackableValue) {
 		this.timelineAttributeName = timelineAttributeName;
 		this.timelineCapacity = timelineCapacity;
 		this.timeRangeWidth = timeRangeWidth;
+		this.quantilesSignificantDigits = quantilesSignificantDigits;
+		this.quantilesHighestTrackableValue = quantilesHighestTrackableValue;
 	}
 
 	/**
@@ -59,6 +91,28 @@ public class TimelineCallback extends CallbackSkeleton {
 		this(6, 1000L * 60L * 6L);
 	}
 
+	/**
+	 * Returns Simon attribute name used for storing timelines.
+	 *
+	 * @return timeline attribute name
+	 * @since 4.0
+	 */
+	public String getTimelineAttributeName() {
+		return timelineAttributeName;
+	}
+
+	/**
+	 * Returns timeline of the Simon maintained by this callback.
+	 *
+	 * @param simon Stopwatch or Counter
+	 * @return timeline or {@code null} if the Simon has no timeline of this callback
+	 * @since 4.0
+	 */
+	public Timeline<?> getTimeline(Simon simon) {
+		Object timeline = simon.getAttribute(timelineAttributeName);
+		return timeline instanceof Timeline ? (Timeline<?>) timeline : null;
+	}
+
 	/**
 	 * Returns timeline for given Stopwatch.
 	 *
@@ -70,14 +124,43 @@ public class TimelineCallback extends CallbackSkeleton {
 	}
 
 	/**
-	 * On simon creation a timeline attribute is added (for Stopwatches only).
+	 * Returns timeline for given Counter.
+	 *
+	 * @param counter Counter
+	 * @return Counter timeline
+	 */
+	private CounterTimeline getCounterTimeline(Counter counter) {
+		return (CounterTimeline) counter.getAttribute(timelineAttributeName);
+	}
+
+	/** Uses the manager as the clock for timelines. */
+	@Override
+	public void initialize(Manager manager) {
+		clock = manager;
+	}
+
+	/**
+	 * Returns false - this callback does not use samples.
+	 *
+	 * @return false
+	 */
+	@Override
+	public boolean isSampleRequired() {
+		return false;
+	}
+
+	/**
+	 * On simon creation a timeline attribute is added (for Stopwatches and Counters).
 	 *
 	 * @param simon created simon
 	 */
 	@Override
 	public void onSimonCreated(Simon simon) {
 		if (simon instanceof Stopwatch) {
-			simon.setAttribute(timelineAttributeName, new StopwatchTimeline(timelineCapacity, timeRangeWidth));
+			simon.setAttribute(timelineAttributeName, new StopwatchTimeline(timelineCapacity, timeRangeWidth, clock,
+				quantilesSignificantDigits, quantilesHighestTrackableValue));
+		} else if (simon instanceof Counter) {
+			simon.setAttribute(timelineAttributeName, new CounterTimeline(timelineCapacity, timeRangeWidth, clock));
 		}
 	}
 
@@ -96,4 +179,36 @@ public class TimelineCallback extends CallbackSkeleton {
 			timeline.addSplit(split);
 		}
 	}
+
+	@Override
+	public void onCounterIncrease(Counter counter, long inc, CounterSample sample) {
+		CounterTimeline timeline = getCounterTimeline(counter);
+		if (timeline != null) {
+			timeline.addIncrement(inc, counterValue(counter, sample));
+		}
+	}
+
+	@Override
+	public void onCounterDecrease(Counter counter, long dec, CounterSample sample) {
+		CounterTimeline timeline = getCounterTimeline(counter);
+		if (timeline != null) {
+			timeline.addDecrement(dec, counterValue(counter, sample));
+		}
+	}
+
+	/**
+	 * Returns the counter value after the change - from the sample if available, it is taken together with
+	 * the change, otherwise from the counter (value may already contain changes from other threads).
+	 */
+	private long counterValue(Counter counter, CounterSample sample) {
+		return sample != null ? sample.getCounter() : counter.getCounter();
+	}
+
+	@Override
+	public void onCounterSet(Counter counter, long val, CounterSample sample) {
+		CounterTimeline timeline = getCounterTimeline(counter);
+		if (timeline != null) {
+			timeline.addValue(val);
+		}
+	}
 }
@@ -1,7 +1,7 @@
 package org.javasimon.callback.timeline;
 
 /**
- * Snapshot of timeline state
+ * Snapshot of timeline state, time ranges are sorted from the oldest one.
  *
  * @author gerald
  */
@@ -9,11 +9,32 @@ public class TimelineSample<TR extends TimeRange> {
 	private final int capacity;
 	private final long width;
 	private final TR[] timeRanges;
+	private final double oneMinuteRate;
+	private final double fiveMinuteRate;
+	private final double fifteenMinuteRate;
 
 	public TimelineSample(int capacity, long width, TR[] timeRanges) {
+		this(capacity, width, timeRanges, Double.NaN, Double.NaN, Double.NaN);
+	}
+
+	/**
+	 * Constructor with rates of events per second.
+	 *
+	 * @param capacity Number of time ranges
+	 * @param width Width of each time range in nanoseconds
+	 * @param timeRanges Copies of time ranges
+	 * @param oneMinuteRate One minute moving average rate
+	 * @param fiveMinuteRate Five minutes moving average rate
+	 * @param fifteenMinuteRate Fifteen minutes moving average rate
+	 * @since 4.0
+	 */
+	public TimelineSample(int capacity, long width, TR[] timeRanges, double oneMinuteRate, double fiveMinuteRate, double fifteenMinuteRate) {
 		this.capacity = capacity;
 		this.width = width;
 		this.timeRanges = timeRanges;
+		this.oneMinuteRate = oneMinuteRate;
+		this.fiveMinuteRate = fiveMinuteRate;
+		this.fifteenMinuteRate = fifteenMinuteRate;
 	}
 
 	public int getCapacity() {
@@ -25,7 +46,19 @@ public class TimelineSample<TR extends TimeRange> {
 	}
 
 	public TR[] getTimeRanges() {
-		return timeRanges;
+		return timeRanges.clone();
+	}
+
+	public double getOneMinuteRate() {
+		return oneMinuteRate;
+	}
+
+	public double getFiveMinuteRate() {
+		return fiveMinuteRate;
+	}
+
+	public double getFifteenMinuteRate() {
+		return fifteenMinuteRate;
 	}
 
 }
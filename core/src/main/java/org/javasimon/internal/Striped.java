@@ -0,0 +1,173 @@
+package org.javasimon.internal;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Set of striped cells in the spirit of {@code LongAdder} with the difference that one cell can hold multiple
+ * related values (e.g. count, total, min, max and statistical moments) that must be updated together.
+ * Writer claims a cell with a single CAS and if the cell is busy it moves to another stripe instead of waiting,
+ * hence writers do not block each other. Only a single base cell exists until the first contention occurs,
+ * stripes are then created lazily up to the number of available processors.
+ * <p/>
+ * Readers claim every cell (spinning if necessary) and merge their values - reading is expected to be
+ * much less frequent than writing.
+ * <p/>
+ * Internal class, not part of the public API.
+ *
+ * @param <C> type of the cell
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ * @since 4.0
+ */
+public abstract class Striped<C extends Striped.Cell> {
+
+	/** Maximal number of stripes - power of two equal or greater than the number of processors. */
+	private static final int MAX_STRIPES = maxStripes();
+
+	/** Per-thread probe used to pick the stripe, shared by all striped instances. */
+	private static final ThreadLocal<int[]> PROBE = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			int seed = (int) Thread.currentThread().getId() * 0x9E3779B9;
+			return new int[] {seed == 0 ? 1 : seed};
+		}
+	};
+
+	private final C base;
+
+	private volatile Object[] cells;
+
+	protected Striped() {
+		base = newCell();
+	}
+
+	/**
+	 * Creates new empty cell.
+	 *
+	 * @return new cell
+	 */
+	protected abstract C newCell();
+
+	/**
+	 * Claims a cell for update - the cell must be released with {@link Cell#release()} after the update.
+	 * Never blocks as long as at least one stripe is free.
+	 *
+	 * @return claimed cell
+	 */
+	@SuppressWarnings("unchecked")
+	public final C claim() {
+		Object[] cs = cells;
+		if (cs == null) {
+			if (base.tryClaim()) {
+				return base;
+			}
+			cs = expand(null);
+		}
+		int[] probe = PROBE.get();
+		int h = probe[0];
+		for (int attempt = 1; ; attempt++) {
+			C cell = (C) cs[h & (cs.length - 1)];
+			if (cell.tryClaim()) {
+				return cell;
+			}
+			h ^= h << 13;
+			h ^= h >>> 17;
+			h ^= h << 5;
+			probe[0] = h;
+			if (attempt % cs.length == 0) {
+				if (cs.length < MAX_STRIPES) {
+					cs = expand(cs);
+				} else {
+					Thread.yield();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Merges all cells using provided {@link Merger}. Every cell is claimed while being merged.
+	 *
+	 * @param merger merger accumulating the values
+	 */
+	@SuppressWarnings("unchecked")
+	public final void mergeInto(Merger<C> merger) {
+		mergeCell(base, merger);
+		Object[] cs = cells;
+		if (cs != null) {
+			for (Object cell : cs) {
+				mergeCell((C) cell, merger);
+			}
+		}
+	}
+
+	private void mergeCell(C cell, Merger<C> merger) {
+		cell.claimSpinning();
+		try {
+			merger.merge(cell);
+		} finally {
+			cell.release();
+		}
+	}
+
+	private synchronized Object[] expand(Object[] expected) {
+		Object[] cs = cells;
+		if (cs != expected) {
+			return cs;
+		}
+		int length = cs == null ? 2 : cs.length << 1;
+		Object[] newCells = new Object[length];
+		int i = 0;
+		if (cs != null) {
+			System.arraycopy(cs, 0, newCells, 0, cs.length);
+			i = cs.length;
+		}
+		for (; i < length; i++) {
+			newCells[i] = newCell();
+		}
+		cells = newCells;
+		return newCells;
+	}
+
+	private static int maxStripes() {
+		int cpus = Runtime.getRuntime().availableProcessors();
+		int stripes = 2;
+		while (stripes < cpus) {
+			stripes <<= 1;
+		}
+		return stripes;
+	}
+
+	/**
+	 * Callback interface used to merge cells on read.
+	 *
+	 * @param <C> type of the cell
+	 */
+	public interface Merger<C> {
+		void merge(C cell);
+	}
+
+	/**
+	 * Base class for the cell - holds only the ownership flag, subclasses add the values. Values are accessed
+	 * only by the owner of the cell so they don't need to be volatile, claim and release provide
+	 * the necessary happens-before edges.
+	 */
+	public abstract static class Cell {
+
+		private static final AtomicIntegerFieldUpdater<Cell> OWNED = AtomicIntegerFieldUpdater.newUpdater(Cell.class, "owned");
+
+		private volatile int owned;
+
+		final boolean tryClaim() {
+			return owned == 0 && OWNED.compareAndSet(this, 0, 1);
+		}
+
+		final void claimSpinning() {
+			while (!tryClaim()) {
+				Thread.yield();
+			}
+		}
+
+		public final void release() {
+			owned = 0;
+		}
+	}
+}
@@ -0,0 +1,5 @@
+/**
+ * Internal helpers shared by Java Simon packages. Classes in this package are <b>not part of the public API</b>,
+ * they may change or disappear in any version without notice and should not be used outside of Java Simon.
+ */
+package org.javasimon.internal;
@@ -60,6 +60,16 @@ public class JmxRegisterCallback extends CallbackSkeleton {
 		this.domain = domain;
 	}
 
+	/**
+	 * Returns false - this callback does not use samples.
+	 *
+	 * @return false
+	 */
+	@Override
+	public boolean isSampleRequired() {
+		return false;
+	}
+
 	@Override
 	public synchronized void initialize(Manager manager) {
 		if (this.manager != null) {
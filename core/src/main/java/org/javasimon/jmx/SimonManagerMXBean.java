@@ -225,4 +225,84 @@ public interface SimonManagerMXBean extends Serializable {
 	 * @see #getIncrementStopwatchSample(String, String)
 	 */
 	List<org.javasimon.jmx.StopwatchSample> getIncrementStopwatchSamples(String key);
+
+	/**
+	 * Returns maximal number of Simons held by the Manager, 0 means no limit.
+	 *
+	 * @return maximal number of Simons or 0 for unlimited
+	 * @see org.javasimon.ManagerConfiguration#getMaxSimons()
+	 * @since 4.0
+	 */
+	int getMaxSimons();
+
+	/**
+	 * Sets maximal number of Simons held by the Manager, 0 means no limit.
+	 *
+	 * @param maxSimons maximal number of Simons or 0 for unlimited
+	 * @see org.javasimon.ManagerConfiguration#setMaxSimons(int)
+	 * @since 4.0
+	 */
+	void setMaxSimons(int maxSimons);
+
+	/**
+	 * Returns name of the policy applied when the limit of Simons is reached.
+	 *
+	 * @return overflow policy name ({@code EVICT_IDLE} or {@code OVERFLOW_SIMON})
+	 * @see org.javasimon.ManagerConfiguration#getOverflowPolicy()
+	 * @since 4.0
+	 */
+	String getOverflowPolicy();
+
+	/**
+	 * Sets the policy applied when the limit of Simons is reached.
+	 *
+	 * @param overflowPolicy overflow policy name ({@code EVICT_IDLE} or {@code OVERFLOW_SIMON})
+	 * @see org.javasimon.ManagerConfiguration#setOverflowPolicy(org.javasimon.ManagerConfiguration.OverflowPolicy)
+	 * @since 4.0
+	 */
+	void setOverflowPolicy(String overflowPolicy);
+
+	/**
+	 * Returns quantile sketch merged from sketches of all Stopwatches whose name matches given pattern.
+	 * Sketches are recorded by {@link org.javasimon.callback.quantiles.QuantileSketchCallback}. Serialized
+	 * sketches from more JVMs can be merged to obtain quantiles for the whole cluster.
+	 *
+	 * @param namePattern name pattern ({@link org.javasimon.SimonPattern}), {@code null} means all Stopwatches
+	 * @return serialized sketch ({@link org.javasimon.callback.quantiles.QuantileSketch#fromByteArray(byte[])})
+	 * or {@code null} if no matching Stopwatch has a sketch
+	 * @since 4.0
+	 */
+	byte[] getQuantileSketch(String namePattern);
+
+	/**
+	 * Returns quantiles computed from sketches of all Stopwatches whose name matches given pattern.
+	 *
+	 * @param namePattern name pattern ({@link org.javasimon.SimonPattern}), {@code null} means all Stopwatches
+	 * @param ratios Nth quantiles, 0.5 is median. Expects values between 0 and 1.
+	 * @return quantiles in nanoseconds, {@code null} values if no matching Stopwatch has a sketch with values
+	 * @see #getQuantileSketch(String)
+	 * @since 4.0
+	 */
+	Double[] getAggregateQuantiles(String namePattern, double[] ratios);
+
+	/**
+	 * Returns moving average rates of splits (for Stopwatch) or increments (for Counter) per second.
+	 * Rates are measured by the timeline of {@link org.javasimon.callback.timeline.TimelineCallback}.
+	 *
+	 * @param name name of the Simon
+	 * @return 1, 5 and 15 minutes rates or {@code null} if the Simon has no timeline
+	 * @since 4.0
+	 */
+	double[] getTimelineRates(String name);
+
+	/**
+	 * Returns call tree aggregated for given root Stopwatch in the collapsed stack format used by flame graph tools.
+	 * Call trees are aggregated by {@link org.javasimon.callback.calltree.CallTreeCallback} in aggregate mode.
+	 *
+	 * @param name name of the root Stopwatch
+	 * @return collapsed stacks or {@code null} if the Stopwatch has no aggregate call tree
+	 * @see org.javasimon.callback.calltree.AggregateCallTree
+	 * @since 4.0
+	 */
+	String getCollapsedCallStacks(String name);
 }
@@ -1,6 +1,16 @@
 package org.javasimon.jmx;
 
 import org.javasimon.*;
+import org.javasimon.callback.Callback;
+import org.javasimon.callback.CompositeCallback;
+import org.javasimon.callback.calltree.AggregateCallTree;
+import org.javasimon.callback.calltree.CallTreeCallback;
+import org.javasimon.callback.quantiles.QuantileSketch;
+import org.javasimon.callback.quantiles.QuantileSketchCallback;
+import org.javasimon.callback.timeline.RateMeter;
+import org.javasimon.callback.timeline.Timeline;
+import org.javasimon.callback.timeline.TimelineCallback;
+import org.javasimon.proxy.Delegating;
 import org.javasimon.utils.SimonUtils;
 
 import java.util.ArrayList;
@@ -235,6 +245,82 @@ public class SimonManagerMXBeanImpl implements SimonManagerMXBean {
 		return getIncrementStopwatchSamples(null, key);
 	}
 
+	@Override
+	public int getMaxSimons() {
+		return manager.configuration().getMaxSimons();
+	}
+
+	@Override
+	public void setMaxSimons(int maxSimons) {
+		manager.configuration().setMaxSimons(maxSimons);
+	}
+
+	@Override
+	public String getOverflowPolicy() {
+		return manager.configuration().getOverflowPolicy().name();
+	}
+
+	@Override
+	public void setOverflowPolicy(String overflowPolicy) {
+		manager.configuration().setOverflowPolicy(ManagerConfiguration.OverflowPolicy.valueOf(overflowPolicy));
+	}
+
+	@Override
+	public byte[] getQuantileSketch(String namePattern) {
+		QuantileSketch sketch = mergeQuantileSketches(namePattern);
+		return sketch != null ? sketch.toByteArray() : null;
+	}
+
+	@Override
+	public Double[] getAggregateQuantiles(String namePattern, double[] ratios) {
+		QuantileSketch sketch = mergeQuantileSketches(namePattern);
+		return sketch != null ? sketch.getQuantiles(ratios) : new Double[ratios.length];
+	}
+
+	private QuantileSketch mergeQuantileSketches(String namePattern) {
+		return QuantileSketchCallback.mergeSketches(manager.getSimons(SimonPattern.createForStopwatch(namePattern)));
+	}
+
+	@Override
+	public double[] getTimelineRates(String name) {
+		Simon simon = manager.getSimon(name);
+		Timeline<?> timeline = simon != null ? findTimeline(manager.callback(), simon) : null;
+		if (timeline == null) {
+			return null;
+		}
+		RateMeter rateMeter = timeline.getRateMeter();
+		return new double[] {rateMeter.getOneMinuteRate(), rateMeter.getFiveMinuteRate(), rateMeter.getFifteenMinuteRate()};
+	}
+
+	/** Finds the timeline of the Simon in registered {@link TimelineCallback}s, including nested and wrapped ones. */
+	private Timeline<?> findTimeline(Callback callback, Simon simon) {
+		if (callback instanceof TimelineCallback) {
+			return ((TimelineCallback) callback).getTimeline(simon);
+		}
+		if (callback instanceof Delegating && ((Delegating<?>) callback).getDelegate() instanceof Callback) {
+			return findTimeline((Callback) ((Delegating<?>) callback).getDelegate(), simon);
+		}
+		if (callback instanceof CompositeCallback) {
+			for (Callback child : ((CompositeCallback) callback).callbacks()) {
+				Timeline<?> timeline = findTimeline(child, simon);
+				if (timeline != null) {
+					return timeline;
+				}
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public String getCollapsedCallStacks(String name) {
+		Simon simon = manager.getSimon(name);
+		if (!(simon instanceof Stopwatch)) {
+			return null;
+		}
+		AggregateCallTree callTree = CallTreeCallback.getAggregateCallTree((Stopwatch) simon);
+		return callTree != null ? callTree.getCollapsedStacks() : null;
+	}
+
 	@Override
 	public final void printSimonTree() {
 		System.out.println(SimonUtils.simonTreeString(manager.getRootSimon()));
@@ -67,6 +67,15 @@ public final class SimonUtils {
 	/** Regex pattern for Simon names. */
 	public static final Pattern NAME_PATTERN = Pattern.compile("[" + NAME_PATTERN_CHAR_CLASS_CONTENT + "]+");
 
+	/** Characters allowed by {@link #NAME_PATTERN} indexed by the character, used by {@link #checkName(String)}. */
+	private static final boolean[] NAME_CHARS = new boolean[128];
+
+	static {
+		for (char c = 0; c < NAME_CHARS.length; c++) {
+			NAME_CHARS[c] = NAME_PATTERN.matcher(String.valueOf(c)).matches();
+		}
+	}
+
 	/**
 	 * Allowed Simon name characters.
 	 *
@@ -266,13 +275,24 @@ public final class SimonUtils {
 
 	/**
 	 * Checks if the input string is correct Simon name. Simon name is checked against
-	 * public {@link #NAME_PATTERN}.
+	 * public {@link #NAME_PATTERN}. Characters are checked against a table derived from the pattern,
+	 * so the regex is not executed for every new Simon.
 	 *
 	 * @param name checked string
 	 * @return true if the string is proper Simon name
 	 */
 	public static boolean checkName(String name) {
-		return NAME_PATTERN.matcher(name).matches();
+		int length = name.length();
+		if (length == 0) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			char c = name.charAt(i);
+			if (c >= NAME_CHARS.length || !NAME_CHARS[c]) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	/**
@@ -5,6 +5,8 @@ import org.javasimon.callback.CallbackSkeleton;
 import org.javasimon.callback.CompositeCallback;
 import org.javasimon.callback.CompositeFilterCallback;
 import org.javasimon.callback.FilterRule;
+import org.javasimon.callback.SamplingCallback;
+import org.javasimon.callback.SamplingRule;
 import org.javasimon.clock.SimonClock;
 import org.javasimon.utils.LoggingCallback;
 import org.javasimon.utils.SystemDebugCallback;
@@ -52,6 +54,31 @@ public final class ConfigurationTest extends SimonUnitTest {
 		Assert.assertTrue(manager.configuration().getConfig("org.javasimon.test.debug").getState().equals(SimonState.DISABLED));
 	}
 
+	@Test
+	public void testConfigLastMatchWins() throws IOException {
+		Manager manager = new EnabledManager();
+		manager.configuration().readConfig(new StringReader("<simon-configuration>\n" +
+			"  <simon pattern='org.javasimon.*' state='disabled'/>\n" +
+			"  <simon pattern='*.debug' state='enabled'/>\n" +
+			"  <simon pattern='org.javasimon.test.*.debug' state='disabled'/>\n" +
+			"  <simon pattern='org.javasimon.test.*' state='enabled'/>\n" +
+			"  <simon pattern='*sql*' state='disabled'/>\n" +
+			"  <simon pattern='org.javasimon.test.exact' state='disabled'/>\n" +
+			"  <simon pattern='org.javasimon.test.nostate'/>\n" +
+			"</simon-configuration>"));
+		ManagerConfiguration configuration = manager.configuration();
+		Assert.assertNull(configuration.getConfig("com.other").getState());
+		Assert.assertEquals(configuration.getConfig("org.javasimon.bubu").getState(), SimonState.DISABLED);
+		Assert.assertEquals(configuration.getConfig("org.javasimon.debug").getState(), SimonState.ENABLED);
+		Assert.assertEquals(configuration.getConfig("org.javasimon.test.debug").getState(), SimonState.ENABLED);
+		Assert.assertEquals(configuration.getConfig("org.javasimon.test.sql.debug").getState(), SimonState.DISABLED);
+		Assert.assertEquals(configuration.getConfig("org.javasimon.test.exact").getState(), SimonState.DISABLED);
+		Assert.assertEquals(configuration.getConfig("org.javasimon.test.nostate").getState(), SimonState.ENABLED);
+
+		configuration.clear();
+		Assert.assertNull(configuration.getConfig("org.javasimon.bubu").getState());
+	}
+
 	@Test
 	public void testConditions() throws ScriptException {
 		Split split = new EnabledManager().getStopwatch(null).start();
@@ -72,6 +99,83 @@ public final class ConfigurationTest extends SimonUnitTest {
 		Assert.assertTrue(new FilterRule(null, "value == 1", null).checkCondition(split.getStopwatch(), 1L));
 	}
 
+	@Test
+	public void testCompiledConditions() throws ScriptException {
+		Counter counter = new EnabledManager().getCounter("counter");
+		counter.set(150);
+		Assert.assertTrue(new FilterRule(null, "counter gt 100 and not (max lt 100)", null).checkCondition(counter));
+		Assert.assertTrue(new FilterRule(null, "COUNTER == 100 + 50 or value > 1", null).checkCondition(counter));
+		Assert.assertTrue(new FilterRule(null, "value * 2 >= 3 && counter - value == 148", null).checkCondition(counter, 2L));
+		Assert.assertFalse(new FilterRule(null, "split > 0 || active > 0", null).checkCondition(counter));
+		// condition is not applied for events without Simon
+		Assert.assertTrue(new FilterRule(null, "counter < 0", null).checkCondition(null));
+	}
+
+	@Test
+	public void testConditionDivisionIsNotTruncated() throws ScriptException {
+		Counter counter = new EnabledManager().getCounter("counter");
+		Assert.assertTrue(new FilterRule(null, "value / 2 * 2 == 3", null).checkCondition(counter, 3L));
+		Assert.assertTrue(new FilterRule(null, "value / 2 > 1", null).checkCondition(counter, 3L));
+	}
+
+	@Test(expectedExceptions = SimonException.class, expectedExceptionsMessageRegExp = "Invalid condition.*division by zero.*")
+	public void testConditionDivisionByLiteralZero() {
+		new FilterRule(null, "split / 0 > 1", null);
+	}
+
+	@Test(expectedExceptions = ScriptException.class, expectedExceptionsMessageRegExp = ".*division by zero.*")
+	public void testConditionDivisionByZeroValue() throws ScriptException {
+		new FilterRule(null, "counter / value > 1", null).checkCondition(new EnabledManager().getCounter("counter"), 0L);
+	}
+
+	@Test(expectedExceptions = SimonException.class)
+	public void testConditionNotBoolean() {
+		new FilterRule(null, "split + 5", null);
+	}
+
+	@Test(expectedExceptions = SimonException.class, expectedExceptionsMessageRegExp = "Invalid condition.*unknown variable.*")
+	public void testConditionUnknownVariable() {
+		new FilterRule(null, "splits > 5ms", null);
+	}
+
+	@Test(expectedExceptions = SimonException.class, expectedExceptionsMessageRegExp = "Invalid condition.*number out of range.*")
+	public void testConditionNumberOutOfRange() {
+		new FilterRule(null, "split > 99999999999999999999", null);
+	}
+
+	@Test(expectedExceptions = SimonException.class, expectedExceptionsMessageRegExp = "Invalid condition.*number out of range.*")
+	public void testConditionUnitOverflow() {
+		new FilterRule(null, "split > 9999999999s", null);
+	}
+
+	@Test
+	public void testConditionLargestNumberInUnits() throws ScriptException {
+		Assert.assertTrue(new FilterRule(null, "value == 9223372036s", null)
+			.checkCondition(new EnabledManager().getStopwatch(null), 9223372036000000000L));
+	}
+
+	@Test
+	public void testSamplingCallbackConfig() throws IOException {
+		Manager manager = new EnabledManager();
+		manager.configuration().readConfig(new StringReader("<simon-configuration>\n" +
+			"  <sampling-callback>\n" +
+			"    <sample pattern='org.javasimon.*' one-in='10'/>\n" +
+			"    <sample pattern='*.sql' probability='0.25' max-per-second='100'/>\n" +
+			"    <callback class='org.javasimon.utils.SystemDebugCallback'/>\n" +
+			"  </sampling-callback>\n" +
+			"</simon-configuration>"));
+		SamplingCallback callback = (SamplingCallback) manager.callback().callbacks().get(0);
+		Assert.assertEquals(callback.callbacks().get(0).getClass(), SystemDebugCallback.class);
+		Assert.assertEquals(callback.getRules().size(), 2);
+		SamplingRule rule = callback.getRules().get(0);
+		Assert.assertEquals(rule.getPattern(), SimonPattern.create("org.javasimon.*"));
+		Assert.assertEquals(rule.getOneIn(), 10);
+		rule = callback.getRules().get(1);
+		Assert.assertEquals(rule.getOneIn(), 1);
+		Assert.assertEquals(rule.getProbability(), 0.25);
+		Assert.assertEquals(rule.getMaxPerSecond(), 100d);
+	}
+
 	// Callback helper class that does sets trigger on start/stop events
 	class MyCallback extends CallbackSkeleton {
 		private boolean triggered;
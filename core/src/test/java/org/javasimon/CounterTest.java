@@ -156,6 +156,28 @@ public final class CounterTest extends SimonUnitTest {
 		Assert.assertFalse(counter.stopIncrementalSampling("nonexistent"));
 	}
 
+	@Test
+	public void incrementalSamplingAfterSet() {
+		Counter counter = SimonManager.getCounter(null);
+		counter.increase(10);
+		counter.sampleIncrement("");
+		counter.increase(2);
+		Assert.assertEquals(counter.sampleIncrement("").getCounter(), 2);
+
+		// set makes the incremental value absolute, like the value of the Counter
+		counter.set(5);
+		counter.increase();
+		CounterSample sample = counter.sampleIncrement("");
+		Assert.assertEquals(sample.getCounter(), 6);
+		Assert.assertEquals(sample.getMax(), 6);
+		Assert.assertEquals(sample.getMin(), 5);
+		Assert.assertEquals(sample.getIncrementSum(), 1);
+
+		// without set the increment is relative again
+		counter.increase();
+		Assert.assertEquals(counter.sampleIncrement("").getCounter(), 1);
+	}
+
 	private void assertIncrementalSampleAfterIncrease(CounterSample sampleIncrement) {
 		Assert.assertEquals(sampleIncrement.getCounter(), 1);
 		Assert.assertEquals(sampleIncrement.getMax(), 1);
@@ -6,8 +6,15 @@ import org.javasimon.utils.SimonUtils;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
 
 /**
  * Tests SimonManager behavior.
@@ -114,6 +121,219 @@ public final class ManagerTest extends SimonUnitTest {
 		Assert.assertTrue(SimonManager.getStopwatch(ORG_JAVASIMON_TEST_COUNTER).getChildren().contains(child));
 	}
 
+	@Test
+	public void testWideParent() {
+		String parentName = "org.javasimon.wide";
+		for (int i = 0; i < 100000; i++) {
+			SimonManager.getCounter(parentName + ".child" + i);
+		}
+		Simon parent = SimonManager.getSimon(parentName);
+		List<Simon> children = parent.getChildren();
+		Assert.assertEquals(children.size(), 100000);
+		Assert.assertEquals(children.get(0).getName(), parentName + ".child0");
+		// the same snapshot is returned until the children change
+		Assert.assertSame(parent.getChildren(), children);
+
+		SimonManager.destroySimon(parentName + ".child0");
+		Assert.assertEquals(children.size(), 100000);
+		Assert.assertEquals(parent.getChildren().size(), 99999);
+		Assert.assertEquals(parent.getChildren().get(0).getName(), parentName + ".child1");
+	}
+
+	@Test
+	public void testConcurrentCreation() throws Exception {
+		final int threadCount = 8;
+		final int simonCount = 1000;
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Simon> created = Collections.synchronizedList(new ArrayList<Simon>());
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < threadCount; t++) {
+			final int threadNumber = t;
+			Thread thread = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int i = 0; i < simonCount; i++) {
+						// odd threads replace Unknown parents created by even threads and vice versa
+						int index = (i + threadNumber) % simonCount;
+						created.add(SimonManager.getStopwatch("org.javasimon.concurrent.p" + index % 10 + ".sw" + index));
+						created.add(SimonManager.getStopwatch("org.javasimon.concurrent.p" + index % 10));
+					}
+				}
+			};
+			thread.start();
+			threads.add(thread);
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		Assert.assertEquals(created.size(), threadCount * simonCount * 2);
+		for (Simon simon : created) {
+			Assert.assertSame(SimonManager.getSimon(simon.getName()), simon);
+		}
+		Simon concurrent = SimonManager.getSimon("org.javasimon.concurrent");
+		Assert.assertEquals(concurrent.getChildren().size(), 10);
+		for (Simon parent : concurrent.getChildren()) {
+			Assert.assertTrue(parent instanceof Stopwatch);
+			Assert.assertEquals(parent.getChildren().size(), simonCount / 10);
+			for (Simon child : parent.getChildren()) {
+				Assert.assertSame(child.getParent(), parent);
+			}
+		}
+		// concurrent + 10 parents + their children
+		Assert.assertEquals(SimonManager.getSimons(SimonPattern.create("org.javasimon.concurrent*")).size(), 1 + 10 + simonCount);
+	}
+
+	@Test
+	public void testGetSimonsByPattern() {
+		SimonManager.getStopwatch("org.javasimon.sql.select");
+		SimonManager.getStopwatch("org.javasimon.sql.update");
+		SimonManager.getCounter("org.javasimon.sql.select.count");
+		SimonManager.getStopwatch("org.javasimonx.select");
+		Assert.assertEquals(names(SimonManager.getSimons(SimonPattern.create("org.javasimon.sql.select"))),
+			"[org.javasimon.sql.select]");
+		Assert.assertEquals(names(SimonManager.getSimons(SimonPattern.create("org.javasimon.sql.*"))),
+			"[org.javasimon.sql.select, org.javasimon.sql.select.count, org.javasimon.sql.update]");
+		Assert.assertEquals(names(SimonManager.getSimons(SimonPattern.createForStopwatch("org.javasimon.sql.*"))),
+			"[org.javasimon.sql.select, org.javasimon.sql.update]");
+		Assert.assertEquals(names(SimonManager.getSimons(SimonPattern.create("*.select"))),
+			"[org.javasimon.sql.select, org.javasimonx.select]");
+		Assert.assertEquals(names(SimonManager.getSimons(SimonPattern.create("org.javasimon.*select"))),
+			"[org.javasimon.sql.select]");
+		Assert.assertEquals(SimonManager.getSimons(SimonPattern.create("org.javasimon.nonexistent")).size(), 0);
+
+		SimonManager.destroySimon("org.javasimon.sql.update");
+		Assert.assertEquals(names(SimonManager.getSimons(SimonPattern.create("*update"))), "[]");
+	}
+
+	private String names(Collection<Simon> simons) {
+		List<String> names = new ArrayList<>();
+		for (Simon simon : simons) {
+			names.add(simon.getName());
+		}
+		return names.toString();
+	}
+
+	@Test
+	public void testEvictIdleSimons() {
+		TestClock testClock = new TestClock();
+		EnabledManager enabledManager = new EnabledManager(testClock);
+		enabledManager.configuration().setMaxSimons(6);
+		final List<String> destroyed = new ArrayList<>();
+		enabledManager.callback().addCallback(new CallbackSkeleton() {
+			@Override
+			public void onSimonDestroyed(Simon simon) {
+				destroyed.add(simon.getName());
+			}
+		});
+
+		// root, unknown "a" and 4 Stopwatches under it
+		for (int i = 1; i <= 4; i++) {
+			testClock.setMillisNanosFollow(i);
+			enabledManager.getStopwatch("a.sw" + i).start().stop();
+		}
+		Split activeSplit = enabledManager.getStopwatch("a.sw1").start();
+		enabledManager.getStopwatch("b.sw");
+
+		// a.sw1 is active, a.sw2 is the least recently used
+		Assert.assertEquals(destroyed, Collections.singletonList("a.sw2"));
+		Assert.assertEquals(enabledManager.getSimonNames().size(), 7);
+		Assert.assertNull(enabledManager.getSimon("a.sw2"));
+		activeSplit.stop();
+
+		// whole subtree of unknown Simon is evicted
+		enabledManager.configuration().setMaxSimons(3);
+		enabledManager.getCounter("c");
+		Assert.assertTrue(destroyed.contains("a"));
+		Assert.assertNotNull(enabledManager.getSimon("c"));
+	}
+
+	/** Sub-stopwatches created (and evicting their siblings) on stop must not deadlock with state propagation. */
+	@Test
+	public void testEvictionOnSubStopwatchStopWithStateChange() throws Exception {
+		final EnabledManager enabledManager = new EnabledManager();
+		enabledManager.configuration().setMaxSimons(20);
+		final Stopwatch parent = enabledManager.getStopwatch("p");
+		final int threadCount = 4;
+		final int iterations = 20000;
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < threadCount; t++) {
+			final int threadNumber = t;
+			Thread thread = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					Stopwatch stopwatch = enabledManager.getStopwatch("p.x" + threadNumber);
+					for (int i = 0; i < iterations; i++) {
+						// idle leaves under the same parent are evicted by new sub-stopwatches
+						enabledManager.getStopwatch("p.y" + (i + threadNumber) % 50).start().stop();
+						stopwatch.start().stop("s" + i % 50);
+					}
+				}
+			};
+			thread.setDaemon(true);
+			threads.add(thread);
+		}
+		Thread stateChanger = new Thread() {
+			@Override
+			public void run() {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				for (int i = 0; i < iterations; i++) {
+					// propagation locks the parent and then each child
+					parent.setState(SimonState.ENABLED, false);
+				}
+			}
+		};
+		stateChanger.setDaemon(true);
+		threads.add(stateChanger);
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join(60000);
+			Assert.assertFalse(thread.isAlive(), "deadlock");
+		}
+	}
+
+	@Test
+	public void testOverflowSimon() throws IOException {
+		EnabledManager enabledManager = new EnabledManager();
+		enabledManager.configuration().readConfig(new StringReader("<simon-configuration>" +
+			"<cardinality max=\"3\" overflow=\"overflow-simon\" overflow-simon=\"org.javasimon.other\"/>" +
+			"</simon-configuration>"));
+		Assert.assertEquals(enabledManager.configuration().getMaxSimons(), 3);
+
+		Stopwatch stopwatch = enabledManager.getStopwatch("sw1");
+		enabledManager.getStopwatch("sw2");
+		Stopwatch overflow = enabledManager.getStopwatch("sw3");
+		Assert.assertEquals(overflow.getName(), "org.javasimon.other.Stopwatch");
+		Assert.assertSame(enabledManager.getStopwatch("sw4"), overflow);
+		Assert.assertEquals(enabledManager.getCounter("counter").getName(), "org.javasimon.other.Counter");
+		Assert.assertSame(enabledManager.getStopwatch("sw1"), stopwatch);
+	}
+
+	@Test(expectedExceptions = UnsupportedOperationException.class)
+	public void testChildrenUnmodifiable() {
+		SimonManager.getCounter(ORG_JAVASIMON_TEST_COUNTER);
+		SimonManager.getSimon(ORG_JAVASIMON_TEST_COUNTER).getParent().getChildren().clear();
+	}
+
 	@Test
 	public void testGeneratedNames() {
 		Assert.assertEquals(SimonUtils.generateNameForClassAndMethod("-stopwatch"), getClass().getName() + ".testGeneratedNames-stopwatch");
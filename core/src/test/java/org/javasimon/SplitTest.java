@@ -142,4 +142,17 @@ public final class SplitTest extends SimonUnitTest {
 		Assert.assertEquals(stopwatch.getCounter(), 0);
 		Assert.assertEquals(effectiveStopwatch.getCounter(), 0);
 	}
+
+	@Test
+	public void attributesWithoutAnyAttributeSet() {
+		Split split = Split.start();
+		Assert.assertNull(split.getAttribute("any"));
+		Assert.assertFalse(split.getAttributeNames().hasNext());
+		Assert.assertTrue(split.getCopyAsSortedMap().isEmpty());
+		split.removeAttribute("any");
+
+		split.setAttribute("attr", 1);
+		Assert.assertEquals(split.getAttribute("attr", Integer.class), Integer.valueOf(1));
+		Assert.assertEquals(split.getCopyAsSortedMap().size(), 1);
+	}
 }
@@ -1,9 +1,13 @@
 package org.javasimon;
 
+import org.javasimon.callback.CallbackSkeleton;
 import org.javasimon.clock.TestClock;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Tests for {@link Stopwatch}.
  *
@@ -99,6 +103,126 @@ public final class StopwatchTest extends SimonUnitTest {
 		Assert.assertFalse(stopwatch.stopIncrementalSampling("nonexistent"));
 	}
 
+	@Test
+	public void samplingWithMoreKeys() {
+		Stopwatch stopwatch = SimonManager.getStopwatch(null);
+		stopwatch.addSplit(Split.create(100));
+		stopwatch.sampleIncrement("often");
+		stopwatch.sampleIncrement("rarely");
+
+		stopwatch.addSplit(Split.create(30));
+		stopwatch.addSplit(Split.create(10));
+		StopwatchSample often = stopwatch.sampleIncrement("often");
+		Assert.assertEquals(often.getCounter(), 2);
+		Assert.assertEquals(often.getMax(), 30);
+		Assert.assertEquals(often.getMin(), 10);
+		Assert.assertEquals(often.getMean(), 20d);
+		Assert.assertEquals(often.getVariance(), 200d, 0.0001);
+
+		stopwatch.addSplit(Split.create(20));
+		often = stopwatch.sampleIncrement("often");
+		Assert.assertEquals(often.getCounter(), 1);
+		Assert.assertEquals(often.getMax(), 20);
+		Assert.assertEquals(often.getMin(), 20);
+		Assert.assertEquals(often.getLast(), 20);
+
+		// extremes of all the intervals since the last sampling of the key are merged
+		StopwatchSample rarely = stopwatch.sampleIncrement("rarely");
+		Assert.assertEquals(rarely.getCounter(), 3);
+		Assert.assertEquals(rarely.getTotal(), 60);
+		Assert.assertEquals(rarely.getMax(), 30);
+		Assert.assertEquals(rarely.getMin(), 10);
+		Assert.assertEquals(rarely.getMean(), 20d);
+		Assert.assertEquals(rarely.getVariance(), 100d, 0.0001);
+		Assert.assertEquals(rarely.getName(), stopwatch.getName());
+	}
+
+	@Test
+	public void primitiveStartStop() {
+		TestClock clock = new TestClock();
+		clock.setMillisNanosFollow(10);
+		EnabledManager manager = new EnabledManager(clock);
+		Stopwatch stopwatch = manager.getStopwatch(null);
+
+		long token = stopwatch.startNanos();
+		Assert.assertEquals(stopwatch.getActive(), 1);
+		clock.setMillisNanosFollow(15);
+		Assert.assertEquals(stopwatch.stopNanos(token), 5000000);
+		Assert.assertEquals(stopwatch.getActive(), 0);
+		Assert.assertEquals(stopwatch.getCounter(), 1);
+		Assert.assertEquals(stopwatch.getTotal(), 5000000);
+		Assert.assertEquals(stopwatch.getLastUsage(), 15);
+		assertStopwatchAndSampleAreEqual(stopwatch);
+	}
+
+	@Test
+	public void startAtZeroNanoTime() {
+		TestClock clock = new TestClock();
+		EnabledManager manager = new EnabledManager(clock);
+		final List<Split> splits = new ArrayList<>();
+		manager.callback().addCallback(new CallbackSkeleton() {
+			@Override
+			public void onStopwatchStop(Split split, StopwatchSample sample) {
+				splits.add(split);
+			}
+		});
+		Stopwatch stopwatch = manager.getStopwatch(null);
+
+		// nano-time 0 is a valid start, not a disabled token
+		long token = stopwatch.startNanos();
+		Assert.assertEquals(token, 0);
+		Split split = stopwatch.start();
+		Assert.assertTrue(split.isEnabled());
+		Assert.assertEquals(split.getStart(), 0);
+		clock.setMillisNanosFollow(5);
+		Assert.assertEquals(stopwatch.stopNanos(token), 5000000);
+		Assert.assertEquals(split.stop().runningFor(), 5000000);
+
+		Assert.assertEquals(stopwatch.getCounter(), 2);
+		Assert.assertEquals(stopwatch.getActive(), 0);
+		Assert.assertEquals(stopwatch.getTotal(), 10000000);
+		Assert.assertEquals(splits.size(), 2);
+		Assert.assertEquals(splits.get(0).getStart(), 0);
+	}
+
+	@Test
+	public void primitiveStartStopWithCallback() {
+		final List<Split> splits = new ArrayList<>();
+		SimonManager.callback().addCallback(new CallbackSkeleton() {
+			@Override
+			public void onStopwatchStart(Split split) {
+				splits.add(split);
+			}
+
+			@Override
+			public void onStopwatchStop(Split split, StopwatchSample sample) {
+				splits.add(split);
+				Assert.assertEquals(sample.getCounter(), 1);
+			}
+		});
+		Stopwatch stopwatch = SimonManager.getStopwatch(null);
+		long splitNs = stopwatch.stopNanos(stopwatch.startNanos());
+
+		Assert.assertEquals(splits.size(), 2);
+		Assert.assertTrue(splits.get(0).isRunning());
+		Assert.assertFalse(splits.get(1).isRunning());
+		Assert.assertSame(splits.get(1).getStopwatch(), stopwatch);
+		Assert.assertEquals(splits.get(1).runningFor(), splitNs);
+		Assert.assertEquals(stopwatch.getTotal(), splitNs);
+	}
+
+	@Test
+	public void primitiveStartOnDisabledStopwatch() {
+		Stopwatch stopwatch = SimonManager.getStopwatch(null);
+		stopwatch.setState(SimonState.DISABLED, false);
+		long token = stopwatch.startNanos();
+		Assert.assertEquals(token, Stopwatch.DISABLED_NANOS);
+		stopwatch.setState(SimonState.ENABLED, false);
+		Assert.assertEquals(stopwatch.stopNanos(token), 0);
+		Assert.assertEquals(stopwatch.getCounter(), 0);
+		Assert.assertEquals(stopwatch.getActive(), 0);
+	}
+
 	private void assertIncrementalSampleAfterIncrease(StopwatchSample sample) {
 		Assert.assertEquals(sample.getTotal(), 10);
 		Assert.assertEquals(sample.getCounter(), 1);
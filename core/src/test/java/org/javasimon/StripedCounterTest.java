@@ -0,0 +1,131 @@
+package org.javasimon;
+
+import org.javasimon.clock.TestClock;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Tests for {@link StripedCounterImpl}.
+ *
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ */
+public final class StripedCounterTest {
+
+	private static final int THREADS = 8;
+	private static final int CHANGES_PER_THREAD = 10000;
+
+	private TestClock clock;
+	private EnabledManager manager;
+
+	@BeforeMethod
+	public void setUp() {
+		clock = new TestClock();
+		manager = new EnabledManager(clock);
+		manager.setStripedCounters(true);
+	}
+
+	@Test
+	public void managerCreatesStripedCounter() {
+		Assert.assertTrue(manager.getCounter("org.javasimon.striped") instanceof StripedCounterImpl);
+		manager.setStripedCounters(false);
+		Assert.assertTrue(manager.getCounter("org.javasimon.plain") instanceof CounterImpl);
+	}
+
+	@Test
+	public void sameValuesAsSynchronizedCounter() {
+		Counter striped = manager.getCounter(null);
+		Counter plain = new EnabledManager(clock).getCounter(null);
+		assertCountersEqual(striped, plain);
+
+		clock.setMillisNanosFollow(10);
+		striped.set(5);
+		plain.set(5);
+		assertCountersEqual(striped, plain);
+
+		clock.setMillisNanosFollow(20);
+		striped.increase(3).decrease().decrease(10);
+		plain.increase(3).decrease().decrease(10);
+		assertCountersEqual(striped, plain);
+
+		clock.setMillisNanosFollow(30);
+		striped.increase(-4).decrease(-2).increase();
+		plain.increase(-4).decrease(-2).increase();
+		assertCountersEqual(striped, plain);
+	}
+
+	@Test
+	public void incrementalSamplesAsSynchronizedCounter() {
+		Counter striped = manager.getCounter(null);
+		Counter plain = new EnabledManager(clock).getCounter(null);
+		for (Counter counter : new Counter[] {striped, plain}) {
+			counter.increase(10);
+			counter.sampleIncrement("key");
+			counter.set(5);
+			counter.increase(3);
+		}
+		CounterSample stripedSample = striped.sampleIncrement("key");
+		CounterSample plainSample = plain.sampleIncrement("key");
+		Assert.assertEquals(stripedSample.getCounter(), plainSample.getCounter());
+		Assert.assertEquals(stripedSample.getMax(), plainSample.getMax());
+		Assert.assertEquals(stripedSample.getMin(), plainSample.getMin());
+		Assert.assertEquals(stripedSample.getIncrementSum(), plainSample.getIncrementSum());
+		Assert.assertEquals(stripedSample.getCounter(), 8);
+	}
+
+	@Test
+	public void concurrentChanges() throws InterruptedException {
+		final Counter counter = manager.getCounter("org.javasimon.concurrent");
+		final CountDownLatch startLatch = new CountDownLatch(1);
+		final CountDownLatch endLatch = new CountDownLatch(THREADS);
+		for (int t = 0; t < THREADS; t++) {
+			new Thread() {
+				@Override
+				public void run() {
+					try {
+						startLatch.await();
+						for (int i = 0; i < CHANGES_PER_THREAD; i++) {
+							counter.increase();
+							counter.increase(2);
+							counter.decrease();
+						}
+					} catch (InterruptedException e) {
+						// ends the thread
+					} finally {
+						endLatch.countDown();
+					}
+				}
+			}.start();
+		}
+		startLatch.countDown();
+		endLatch.await();
+
+		CounterSample sample = counter.sample();
+		Assert.assertEquals(sample.getCounter(), 2L * THREADS * CHANGES_PER_THREAD);
+		Assert.assertEquals(sample.getIncrementSum(), 3L * THREADS * CHANGES_PER_THREAD);
+		Assert.assertEquals(sample.getDecrementSum(), (long) THREADS * CHANGES_PER_THREAD);
+		Assert.assertTrue(sample.getMax() >= sample.getCounter());
+		Assert.assertTrue(sample.getMin() >= 0);
+	}
+
+	private void assertCountersEqual(Counter striped, Counter plain) {
+		Assert.assertEquals(striped.getCounter(), plain.getCounter());
+		Assert.assertEquals(striped.getIncrementSum(), plain.getIncrementSum());
+		Assert.assertEquals(striped.getDecrementSum(), plain.getDecrementSum());
+		Assert.assertEquals(striped.getMax(), plain.getMax());
+		Assert.assertEquals(striped.getMaxTimestamp(), plain.getMaxTimestamp());
+		Assert.assertEquals(striped.getMin(), plain.getMin());
+		Assert.assertEquals(striped.getMinTimestamp(), plain.getMinTimestamp());
+		Assert.assertEquals(striped.getFirstUsage(), plain.getFirstUsage());
+		Assert.assertEquals(striped.getLastUsage(), plain.getLastUsage());
+
+		CounterSample sample = striped.sample();
+		Assert.assertEquals(sample.getCounter(), striped.getCounter());
+		Assert.assertEquals(sample.getIncrementSum(), striped.getIncrementSum());
+		Assert.assertEquals(sample.getDecrementSum(), striped.getDecrementSum());
+		Assert.assertEquals(sample.getMax(), striped.getMax());
+		Assert.assertEquals(sample.getMin(), striped.getMin());
+	}
+}
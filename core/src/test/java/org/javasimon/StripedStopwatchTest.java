@@ -0,0 +1,221 @@
+package org.javasimon;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for {@link StripedStopwatchImpl}.
+ *
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ */
+public final class StripedStopwatchTest {
+
+	private static final int THREADS = 8;
+	private static final int SPLITS_PER_THREAD = 10000;
+
+	private EnabledManager manager;
+
+	@BeforeMethod
+	public void setUp() {
+		manager = new EnabledManager();
+		manager.setStripedStopwatches(true);
+	}
+
+	@Test
+	public void managerCreatesStripedStopwatch() {
+		Assert.assertTrue(manager.getStopwatch("org.javasimon.striped") instanceof StripedStopwatchImpl);
+		manager.setStripedStopwatches(false);
+		Assert.assertTrue(manager.getStopwatch("org.javasimon.plain") instanceof StopwatchImpl);
+		// existing Stopwatch is returned regardless of the current setting
+		Assert.assertTrue(manager.getStopwatch("org.javasimon.striped") instanceof StripedStopwatchImpl);
+	}
+
+	@Test
+	public void sameStatisticsAsSynchronizedStopwatch() {
+		Stopwatch striped = manager.getStopwatch(null);
+		Stopwatch plain = new EnabledManager().getStopwatch(null);
+		for (long value : new long[] {10, 30, 20, 50, 40}) {
+			striped.addSplit(Split.create(value));
+			plain.addSplit(Split.create(value));
+		}
+
+		Assert.assertEquals(striped.getTotal(), plain.getTotal());
+		Assert.assertEquals(striped.getCounter(), plain.getCounter());
+		Assert.assertEquals(striped.getMin(), plain.getMin());
+		Assert.assertEquals(striped.getMax(), plain.getMax());
+		Assert.assertEquals(striped.getLast(), plain.getLast());
+		Assert.assertEquals(striped.getMean(), plain.getMean());
+		Assert.assertEquals(striped.getVariance(), plain.getVariance(), 0.0001);
+		Assert.assertEquals(striped.getVarianceN(), plain.getVarianceN(), 0.0001);
+		assertStopwatchAndSampleAreEqual(striped);
+	}
+
+	@Test
+	public void emptyStopwatch() {
+		Stopwatch stopwatch = manager.getStopwatch(null);
+		Assert.assertEquals(stopwatch.getCounter(), 0);
+		Assert.assertEquals(stopwatch.getMin(), Long.MAX_VALUE);
+		Assert.assertEquals(stopwatch.getMax(), 0);
+		Assert.assertTrue(Double.isNaN(stopwatch.getVariance()));
+		assertStopwatchAndSampleAreEqual(stopwatch);
+	}
+
+	@Test
+	public void concurrentSplits() throws InterruptedException {
+		final Stopwatch stopwatch = manager.getStopwatch("org.javasimon.concurrent");
+		final CountDownLatch startLatch = new CountDownLatch(1);
+		final CountDownLatch endLatch = new CountDownLatch(THREADS);
+		for (int t = 0; t < THREADS; t++) {
+			new Thread() {
+				@Override
+				public void run() {
+					try {
+						startLatch.await();
+						for (int i = 1; i <= SPLITS_PER_THREAD; i++) {
+							stopwatch.addSplit(Split.create(i));
+							stopwatch.start().stop();
+						}
+					} catch (InterruptedException e) {
+						// ends the thread
+					} finally {
+						endLatch.countDown();
+					}
+				}
+			}.start();
+		}
+		startLatch.countDown();
+		endLatch.await();
+
+		StopwatchSample sample = stopwatch.sample();
+		Assert.assertEquals(sample.getCounter(), 2L * THREADS * SPLITS_PER_THREAD);
+		Assert.assertEquals(sample.getActive(), 0);
+		Assert.assertTrue(sample.getMaxActive() >= 1);
+		Assert.assertTrue(sample.getMax() >= SPLITS_PER_THREAD);
+		Assert.assertTrue(sample.getTotal() >= (long) THREADS * SPLITS_PER_THREAD * (SPLITS_PER_THREAD + 1) / 2);
+		assertStopwatchAndSampleAreEqual(stopwatch);
+	}
+
+	@Test
+	public void incrementalSampling() {
+		Stopwatch stopwatch = manager.getStopwatch(null);
+		stopwatch.addSplit(Split.create(10));
+		Assert.assertEquals(stopwatch.sampleIncrement("key").getCounter(), 1);
+		stopwatch.addSplit(Split.create(20));
+		StopwatchSample increment = stopwatch.sampleIncrement("key");
+		Assert.assertEquals(increment.getCounter(), 1);
+		Assert.assertEquals(increment.getTotal(), 20);
+		Assert.assertTrue(stopwatch.stopIncrementalSampling("key"));
+	}
+
+	/**
+	 * Incremental samples are taken continuously while the threads add splits. Every round uses higher split values
+	 * than the previous one and ends with an extra sample, so the increments of the round must report exactly
+	 * the extremes of the round - extremes of splits racing with the interval rollover must not be lost.
+	 */
+	@Test
+	public void incrementExtremesAcrossIntervalRollover() throws Exception {
+		final int rounds = 5000;
+		final Stopwatch stopwatch = manager.getStopwatch(null);
+		final IncrementTracker tracker = new IncrementTracker(stopwatch);
+		final AtomicInteger round = new AtomicInteger();
+		final AtomicInteger failures = new AtomicInteger();
+		final CyclicBarrier roundStart = new CyclicBarrier(THREADS);
+		final CyclicBarrier roundEnd = new CyclicBarrier(THREADS, new Runnable() {
+			@Override
+			public void run() {
+				tracker.sample();
+				long expectedMin = round.get() * 100L + 1;
+				if (tracker.max != expectedMin + THREADS - 1 || tracker.min != expectedMin) {
+					failures.incrementAndGet();
+				}
+				tracker.reset();
+				round.incrementAndGet();
+			}
+		});
+
+		Thread sampler = new Thread() {
+			@Override
+			public void run() {
+				while (!isInterrupted()) {
+					tracker.sample();
+				}
+			}
+		};
+		Thread[] threads = new Thread[THREADS];
+		for (int t = 0; t < THREADS; t++) {
+			final int offset = t + 1;
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int r = 0; r < rounds; r++) {
+							roundStart.await();
+							stopwatch.addSplit(Split.create(r * 100L + offset));
+							roundEnd.await();
+						}
+					} catch (InterruptedException | BrokenBarrierException e) {
+						failures.incrementAndGet();
+					}
+				}
+			};
+		}
+
+		tracker.sample(); // first sampling of the key starts the increment intervals
+		sampler.start();
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		sampler.interrupt();
+		sampler.join();
+
+		Assert.assertEquals(round.get(), rounds);
+		Assert.assertEquals(failures.get(), 0);
+	}
+
+	/** Folds extremes of the incremental samples taken since the last reset. */
+	private static final class IncrementTracker {
+		private final Stopwatch stopwatch;
+		private long max;
+		private long min = Long.MAX_VALUE;
+
+		IncrementTracker(Stopwatch stopwatch) {
+			this.stopwatch = stopwatch;
+		}
+
+		synchronized void sample() {
+			StopwatchSample increment = stopwatch.sampleIncrement(this);
+			max = Math.max(max, increment.getMax());
+			min = Math.min(min, increment.getMin());
+		}
+
+		synchronized void reset() {
+			max = 0;
+			min = Long.MAX_VALUE;
+		}
+	}
+
+	private void assertStopwatchAndSampleAreEqual(Stopwatch stopwatch) {
+		StopwatchSample sample = stopwatch.sample();
+		Assert.assertEquals(sample.getTotal(), stopwatch.getTotal());
+		Assert.assertEquals(sample.getCounter(), stopwatch.getCounter());
+		Assert.assertEquals(sample.getMax(), stopwatch.getMax());
+		Assert.assertEquals(sample.getMin(), stopwatch.getMin());
+		Assert.assertEquals(sample.getMaxTimestamp(), stopwatch.getMaxTimestamp());
+		Assert.assertEquals(sample.getMinTimestamp(), stopwatch.getMinTimestamp());
+		Assert.assertEquals(sample.getActive(), stopwatch.getActive());
+		Assert.assertEquals(sample.getMaxActive(), stopwatch.getMaxActive());
+		Assert.assertEquals(sample.getLast(), stopwatch.getLast());
+		Assert.assertEquals(sample.getMean(), stopwatch.getMean());
+		Assert.assertEquals(sample.getVariance(), stopwatch.getVariance());
+		Assert.assertEquals(sample.getVarianceN(), stopwatch.getVarianceN());
+	}
+}
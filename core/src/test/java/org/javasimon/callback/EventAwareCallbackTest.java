@@ -0,0 +1,89 @@
+package org.javasimon.callback;
+
+import org.javasimon.EnabledManager;
+import org.javasimon.Manager;
+import org.javasimon.Simon;
+import org.javasimon.Split;
+import org.javasimon.StopwatchSample;
+import org.javasimon.callback.async.AsyncCallbackProxyFactory;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests that events are dispatched only to subscribed callbacks.
+ *
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ */
+public final class EventAwareCallbackTest {
+
+	private Manager manager;
+
+	@BeforeMethod
+	public void setUp() {
+		manager = new EnabledManager();
+	}
+
+	@Test
+	public void skeletonSubscribedToOverriddenMethods() {
+		StopCallback callback = new StopCallback();
+		Assert.assertTrue(callback.isSubscribed(Callback.Event.STOPWATCH_STOP));
+		Assert.assertFalse(callback.isSubscribed(Callback.Event.STOPWATCH_START));
+		Assert.assertFalse(callback.isSubscribed(Callback.Event.CREATED));
+
+		CallbackSkeleton anonymous = new StopCallback() {
+			@Override
+			public void onSimonCreated(Simon simon) {
+			}
+		};
+		Assert.assertTrue(anonymous.isSubscribed(Callback.Event.STOPWATCH_STOP));
+		Assert.assertTrue(anonymous.isSubscribed(Callback.Event.CREATED));
+		Assert.assertFalse(new CallbackSkeleton().isSubscribed(Callback.Event.WARNING));
+	}
+
+	@Test
+	public void eventsDispatchedToSubscribers() {
+		Assert.assertFalse(manager.callback().isSubscribed(Callback.Event.STOPWATCH_STOP));
+		StopCallback callback = new StopCallback();
+		manager.callback().addCallback(callback);
+		Assert.assertTrue(manager.callback().isSubscribed(Callback.Event.STOPWATCH_STOP));
+		Assert.assertFalse(manager.callback().isSubscribed(Callback.Event.STOPWATCH_START));
+
+		manager.getStopwatch("sw").start().stop();
+		manager.getStopwatch("sw").stopNanos(manager.getStopwatch("sw").startNanos());
+		Assert.assertEquals(callback.splits.size(), 2);
+
+		manager.callback().removeCallback(callback);
+		Assert.assertFalse(manager.callback().isSubscribed(Callback.Event.STOPWATCH_STOP));
+	}
+
+	@Test
+	public void compositeAndUnawareCallbacksSubscribedToAll() {
+		CompositeFilterCallback filterCallback = new CompositeFilterCallback();
+		filterCallback.addRule(FilterRule.Type.SUFFICE, null, "*");
+		manager.callback().addCallback(filterCallback);
+		Assert.assertTrue(manager.callback().isSubscribed(Callback.Event.STOPWATCH_START));
+
+		// callback added to the nested composite later still gets the events
+		StopCallback callback = new StopCallback();
+		filterCallback.addCallback(callback);
+		manager.getStopwatch("sw").start().stop();
+		Assert.assertEquals(callback.splits.size(), 1);
+
+		manager.callback().removeAllCallbacks();
+		manager.callback().addCallback(new AsyncCallbackProxyFactory(new StopCallback()).newProxy());
+		Assert.assertTrue(manager.callback().isSubscribed(Callback.Event.MESSAGE));
+	}
+
+	private static class StopCallback extends CallbackSkeleton {
+		private final List<Split> splits = new ArrayList<>();
+
+		@Override
+		public void onStopwatchStop(Split split, StopwatchSample sample) {
+			splits.add(split);
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package org.javasimon.callback;
+
+import org.javasimon.Counter;
+import org.javasimon.CounterSample;
+import org.javasimon.EnabledManager;
+import org.javasimon.Manager;
+import org.javasimon.Split;
+import org.javasimon.Stopwatch;
+import org.javasimon.StopwatchSample;
+import org.javasimon.callback.async.AsyncCallbackProxyFactory;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests that samples are provided to callbacks only when required.
+ *
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ */
+public final class SampleAwareCallbackTest {
+
+	private Manager manager;
+
+	@BeforeMethod
+	public void setUp() {
+		manager = new EnabledManager();
+	}
+
+	@Test
+	public void noSampleWhenNotRequired() {
+		SampleRecordingCallback callback = new SampleRecordingCallback(false);
+		manager.callback().addCallback(callback);
+		Assert.assertFalse(manager.callback().isSampleRequired());
+
+		manager.getStopwatch("sw").start().stop();
+		manager.getCounter("cnt").increase();
+
+		Assert.assertEquals(callback.samples.size(), 2);
+		Assert.assertNull(callback.samples.get(0));
+		Assert.assertNull(callback.samples.get(1));
+	}
+
+	@Test
+	public void requirementResolvedWhenChildrenChange() {
+		manager.callback().addCallback(new SampleRecordingCallback(false));
+		SampleRecordingCallback requiring = new SampleRecordingCallback(true);
+		manager.callback().addCallback(requiring);
+		Assert.assertTrue(manager.callback().isSampleRequired());
+
+		manager.callback().removeCallback(requiring);
+		Assert.assertFalse(manager.callback().isSampleRequired());
+	}
+
+	@Test
+	public void sampleProvidedWhenAnyCallbackRequiresIt() {
+		SampleRecordingCallback notRequiring = new SampleRecordingCallback(false);
+		manager.callback().addCallback(notRequiring);
+		CompositeFilterCallback filterCallback = new CompositeFilterCallback();
+		filterCallback.addRule(FilterRule.Type.SUFFICE, null, "*");
+		manager.callback().addCallback(filterCallback);
+		Assert.assertFalse(manager.callback().isSampleRequired());
+
+		// nested callback changes the requirement of the whole tree
+		filterCallback.addCallback(new SampleRecordingCallback(true));
+		Assert.assertTrue(manager.callback().isSampleRequired());
+
+		manager.getStopwatch("sw").start().stop();
+		Assert.assertNotNull(notRequiring.samples.get(0));
+	}
+
+	@Test
+	public void callbackNotAwareOfSamplesRequiresThem() {
+		// proxy implements only Callback interface
+		Callback proxy = new AsyncCallbackProxyFactory(new SampleRecordingCallback(false)).newProxy();
+		manager.callback().addCallback(proxy);
+		Assert.assertTrue(manager.callback().isSampleRequired());
+	}
+
+	private static class SampleRecordingCallback extends CallbackSkeleton {
+		private final boolean sampleRequired;
+		private final List<Object> samples = new ArrayList<>();
+
+		SampleRecordingCallback(boolean sampleRequired) {
+			this.sampleRequired = sampleRequired;
+		}
+
+		@Override
+		public boolean isSampleRequired() {
+			return sampleRequired;
+		}
+
+		@Override
+		public void onStopwatchStop(Split split, StopwatchSample sample) {
+			samples.add(sample);
+		}
+
+		@Override
+		public void onCounterIncrease(Counter counter, long inc, CounterSample sample) {
+			samples.add(sample);
+		}
+	}
+}
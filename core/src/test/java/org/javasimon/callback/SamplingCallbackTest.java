@@ -0,0 +1,172 @@
+package org.javasimon.callback;
+
+import org.javasimon.EnabledManager;
+import org.javasimon.Manager;
+import org.javasimon.Split;
+import org.javasimon.Stopwatch;
+import org.javasimon.StopwatchSample;
+import org.javasimon.clock.TestClock;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link SamplingCallback} and {@link SamplingRule}.
+ *
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ */
+public final class SamplingCallbackTest {
+
+	private Manager manager;
+
+	@BeforeMethod
+	public void setUp() {
+		manager = new EnabledManager();
+	}
+
+	@Test
+	public void oneInN() {
+		SamplingCallback samplingCallback = new SamplingCallback();
+		samplingCallback.addRule("sampled.*", 10, 1, 0);
+		RecordingCallback recording = new RecordingCallback();
+		samplingCallback.addCallback(recording);
+		manager.callback().addCallback(samplingCallback);
+
+		Stopwatch sampled = manager.getStopwatch("sampled.sw");
+		for (int i = 0; i < 100; i++) {
+			sampled.start().stop();
+		}
+		manager.getStopwatch("other").start().stop();
+
+		// statistics stay exact, children get every tenth split and all splits of unmatched Simons
+		Assert.assertEquals(sampled.getCounter(), 100);
+		Assert.assertEquals(recording.starts.size(), 11);
+		Assert.assertEquals(recording.stops, recording.starts);
+	}
+
+	@Test
+	public void stopSampledWithStart() {
+		SamplingCallback samplingCallback = new SamplingCallback();
+		samplingCallback.addRule(null, 1, 0.5, 0);
+		RecordingCallback recording = new RecordingCallback();
+		samplingCallback.addCallback(recording);
+		manager.callback().addCallback(samplingCallback);
+
+		for (int i = 0; i < 1000; i++) {
+			manager.getStopwatch("sw").start().stop();
+		}
+		Assert.assertTrue(recording.starts.size() > 0 && recording.starts.size() < 1000);
+		Assert.assertEquals(recording.stops, recording.starts);
+	}
+
+	@Test
+	public void lastMatchingRuleApplies() {
+		SamplingCallback samplingCallback = new SamplingCallback();
+		samplingCallback.addRule("org.*", 1, 0, 0);
+		samplingCallback.addRule("org.app.*", 1, 1, 0);
+		RecordingCallback recording = new RecordingCallback();
+		samplingCallback.addCallback(recording);
+		manager.callback().addCallback(samplingCallback);
+
+		manager.getStopwatch("org.other").start().stop();
+		manager.getStopwatch("org.app.sw").start().stop();
+		Assert.assertEquals(recording.stops.size(), 1);
+		Assert.assertEquals(recording.stops.get(0).getStopwatch().getName(), "org.app.sw");
+	}
+
+	@Test
+	public void removeRule() {
+		SamplingCallback samplingCallback = new SamplingCallback();
+		samplingCallback.addRule("org.*", 1, 0, 0);
+		RecordingCallback recording = new RecordingCallback();
+		samplingCallback.addCallback(recording);
+		manager.callback().addCallback(samplingCallback);
+
+		Stopwatch stopwatch = manager.getStopwatch("org.sw");
+		stopwatch.start().stop();
+		Assert.assertTrue(recording.stops.isEmpty());
+
+		SamplingRule rule = samplingCallback.getRules().get(0);
+		try {
+			samplingCallback.getRules().remove(rule);
+			Assert.fail("rules must be changed via the callback");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		Assert.assertTrue(samplingCallback.removeRule(rule));
+		Assert.assertFalse(samplingCallback.removeRule(rule));
+		Assert.assertTrue(samplingCallback.getRules().isEmpty());
+
+		// resolved rule is forgotten, events are propagated again
+		stopwatch.start().stop();
+		Assert.assertEquals(recording.stops.size(), 1);
+	}
+
+	@Test
+	public void tokenBucket() {
+		SamplingRule rule = new SamplingRule(null, 1, 1, 10);
+		long now = 0;
+		int sampled = 0;
+		for (int i = 0; i < 100; i++) {
+			if (rule.sample(now)) {
+				sampled++;
+			}
+		}
+		Assert.assertEquals(sampled, 10); // full bucket
+		Assert.assertFalse(rule.sample(now + 50000000L));
+		Assert.assertTrue(rule.sample(now + 100000000L)); // one token refilled after 100 ms
+		Assert.assertFalse(rule.sample(now + 100000000L));
+
+		sampled = 0;
+		for (int i = 0; i < 100; i++) {
+			if (rule.sample(now + 10000000000L)) {
+				sampled++;
+			}
+		}
+		Assert.assertEquals(sampled, 10); // refilled only up to the capacity
+	}
+
+	@Test
+	public void tokenBucketUsesManagerClock() {
+		TestClock clock = new TestClock();
+		manager = new EnabledManager(clock);
+		SamplingCallback samplingCallback = new SamplingCallback();
+		samplingCallback.addRule(null, 1, 1, 10);
+		RecordingCallback recording = new RecordingCallback();
+		samplingCallback.addCallback(recording);
+		manager.callback().addCallback(samplingCallback);
+
+		Stopwatch stopwatch = manager.getStopwatch("sw");
+		for (int i = 0; i < 100; i++) {
+			stopwatch.start().stop();
+		}
+		Assert.assertEquals(recording.starts.size(), 10); // full bucket, time does not move
+		clock.setMillisNanosFollow(100);
+		stopwatch.start().stop();
+		stopwatch.start().stop();
+		Assert.assertEquals(recording.starts.size(), 11); // one token refilled after 100 ms of the manager clock
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void invalidProbability() {
+		new SamplingRule(null, 1, 1.5, 0);
+	}
+
+	private static class RecordingCallback extends CallbackSkeleton {
+		private final List<Split> starts = new ArrayList<>();
+		private final List<Split> stops = new ArrayList<>();
+
+		@Override
+		public void onStopwatchStart(Split split) {
+			starts.add(split);
+		}
+
+		@Override
+		public void onStopwatchStop(Split split, StopwatchSample sample) {
+			stops.add(split);
+		}
+	}
+}
@@ -0,0 +1,227 @@
+package org.javasimon.callback.async;
+
+import org.javasimon.EnabledManager;
+import org.javasimon.Manager;
+import org.javasimon.Split;
+import org.javasimon.StopwatchSample;
+import org.javasimon.callback.Callback;
+import org.javasimon.callback.CallbackSkeleton;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Tests for {@link AsyncCallback}.
+ *
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ */
+public final class AsyncCallbackTest {
+
+	@Test
+	public void eventsDispatchedToDelegate() {
+		Manager manager = new EnabledManager();
+		RecordingCallback recording = new RecordingCallback();
+		AsyncCallback callback = new AsyncCallback(recording);
+		manager.callback().addCallback(callback);
+		Assert.assertSame(callback.getDelegate(), recording);
+		Assert.assertTrue(callback.isSubscribed(Callback.Event.STOPWATCH_STOP));
+		Assert.assertFalse(callback.isSubscribed(Callback.Event.STOPWATCH_START));
+
+		for (int i = 0; i < 100; i++) {
+			manager.getStopwatch("sw").start().stop();
+		}
+		manager.message("done");
+		manager.callback().removeCallback(callback);
+
+		Assert.assertEquals(recording.events.size(), 101);
+		Assert.assertEquals(recording.events.peek(), "stop");
+		Assert.assertEquals(callback.getQueuedCount(), 101);
+		Assert.assertEquals(callback.getDroppedCount(), 0);
+		Assert.assertEquals(callback.getQueueSize(), 0);
+	}
+
+	@Test
+	public void dropWhenFull() {
+		RecordingCallback recording = new RecordingCallback();
+		AsyncCallback callback = new AsyncCallback(recording, 3, 1, 2);
+		Assert.assertEquals(callback.getCapacity(), 4);
+		// not initialized yet, nobody consumes
+		for (int i = 0; i < 10; i++) {
+			callback.onManagerMessage("message" + i);
+		}
+		Assert.assertEquals(callback.getQueuedCount(), 4);
+		Assert.assertEquals(callback.getDroppedCount(), 6);
+		Assert.assertEquals(callback.getQueueSize(), 4);
+
+		callback.initialize(new EnabledManager());
+		callback.cleanup();
+		Assert.assertEquals(recording.events.size(), 4);
+		Assert.assertEquals(recording.events.peek(), "message0");
+	}
+
+	@Test
+	public void sampleWhenAlmostFull() {
+		AsyncCallback callback = new AsyncCallback(new RecordingCallback(), 16, 1, 2);
+		callback.setOverflowPolicy(AsyncCallback.OverflowPolicy.SAMPLE);
+		callback.setSampleRate(2);
+		for (int i = 0; i < 30; i++) {
+			callback.onManagerMessage("message" + i);
+		}
+		// 12 events fit below three quarters, then every other event until the buffer is full
+		Assert.assertEquals(callback.getQueuedCount(), 16);
+		Assert.assertEquals(callback.getDroppedCount(), 14);
+	}
+
+	@Test
+	public void blockWhenFull() throws Exception {
+		final RecordingCallback recording = new RecordingCallback();
+		final AsyncCallback callback = new AsyncCallback(recording, 2, 2, 1);
+		callback.setOverflowPolicy(AsyncCallback.OverflowPolicy.BLOCK);
+		callback.initialize(new EnabledManager());
+
+		Thread[] producers = new Thread[4];
+		for (int t = 0; t < producers.length; t++) {
+			producers[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 1000; i++) {
+						callback.onManagerMessage("message");
+					}
+				}
+			};
+			producers[t].start();
+		}
+		for (Thread producer : producers) {
+			producer.join();
+		}
+		callback.cleanup();
+
+		Assert.assertEquals(recording.events.size(), 4000);
+		Assert.assertEquals(callback.getDroppedCount(), 0);
+	}
+
+	@Test
+	public void idleConsumerParkedAndUnparked() throws Exception {
+		RecordingCallback recording = new RecordingCallback();
+		AsyncCallback callback = new AsyncCallback(recording);
+		callback.initialize(new EnabledManager());
+		try {
+			Thread consumer = waitForParkedConsumer(callback);
+			Assert.assertNotNull(consumer, "idle consumer not parked");
+
+			callback.onManagerMessage("wake up");
+			for (int i = 0; i < 500 && recording.events.isEmpty(); i++) {
+				Thread.sleep(10);
+			}
+			Assert.assertEquals(recording.events.peek(), "wake up");
+			Assert.assertNotNull(waitForParkedConsumer(callback), "consumer not parked again");
+		} finally {
+			callback.cleanup();
+		}
+	}
+
+	@Test
+	public void delegateFailureReportedAsWarning() {
+		final Queue<String> warnings = new ConcurrentLinkedQueue<>();
+		AsyncCallback callback = new AsyncCallback(new CallbackSkeleton() {
+			@Override
+			public void onManagerMessage(String message) {
+				throw new IllegalStateException(message);
+			}
+
+			@Override
+			public void onManagerWarning(String warning, Exception cause) {
+				warnings.add(cause.getMessage());
+				throw new IllegalStateException("warning failed");
+			}
+		});
+		callback.initialize(new EnabledManager());
+		callback.onManagerMessage("failed");
+		callback.onManagerWarning("warning", new Exception("direct"));
+		callback.cleanup();
+
+		// failure while handling the warning itself is not reported again
+		Assert.assertEquals(warnings.size(), 2);
+		Assert.assertTrue(warnings.contains("failed"));
+		Assert.assertTrue(warnings.contains("direct"));
+	}
+
+	@Test
+	public void errorOfDelegateReportedAsWarning() {
+		final Queue<Exception> warnings = new ConcurrentLinkedQueue<>();
+		AsyncCallback callback = new AsyncCallback(new CallbackSkeleton() {
+			@Override
+			public void onManagerMessage(String message) {
+				throw new AssertionError(message);
+			}
+
+			@Override
+			public void onManagerWarning(String warning, Exception cause) {
+				warnings.add(cause);
+			}
+		});
+		callback.initialize(new EnabledManager());
+		callback.onManagerMessage("error");
+		callback.onManagerMessage("error again");
+		callback.cleanup();
+
+		// consumer survived the first error
+		Assert.assertEquals(warnings.size(), 2);
+		Exception cause = warnings.peek();
+		Assert.assertTrue(cause instanceof ExecutionException);
+		Assert.assertTrue(cause.getCause() instanceof AssertionError);
+	}
+
+	@Test
+	public void runningCallbackNotInitializedAgain() {
+		final AtomicInteger initializations = new AtomicInteger();
+		AsyncCallback callback = new AsyncCallback(new CallbackSkeleton() {
+			@Override
+			public void initialize(Manager manager) {
+				initializations.incrementAndGet();
+			}
+		});
+		Manager manager = new EnabledManager();
+		callback.initialize(manager);
+		callback.initialize(manager);
+		Assert.assertEquals(initializations.get(), 1);
+		callback.cleanup();
+
+		callback.initialize(manager);
+		Assert.assertEquals(initializations.get(), 2);
+		callback.cleanup();
+	}
+
+	// consumer parked in the callback (no timeout) is in WAITING state
+	private Thread waitForParkedConsumer(AsyncCallback callback) throws InterruptedException {
+		for (int i = 0; i < 500; i++) {
+			for (Thread thread : Thread.getAllStackTraces().keySet()) {
+				boolean consumer = thread.getName().startsWith("javasimon-async-callback-");
+				if (consumer && thread.getState() == Thread.State.WAITING && LockSupport.getBlocker(thread) == callback) {
+					return thread;
+				}
+			}
+			Thread.sleep(10);
+		}
+		return null;
+	}
+
+	private static class RecordingCallback extends CallbackSkeleton {
+		private final Queue<String> events = new ConcurrentLinkedQueue<>();
+
+		@Override
+		public void onStopwatchStop(Split split, StopwatchSample sample) {
+			events.add("stop");
+		}
+
+		@Override
+		public void onManagerMessage(String message) {
+			events.add(message);
+		}
+	}
+}
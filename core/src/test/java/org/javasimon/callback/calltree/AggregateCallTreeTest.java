@@ -0,0 +1,157 @@
+package org.javasimon.callback.calltree;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.javasimon.EnabledManager;
+import org.javasimon.SimonUnitTest;
+import org.javasimon.Split;
+import org.javasimon.Stopwatch;
+import org.javasimon.clock.TestClock;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link AggregateCallTree} and aggregate mode of {@link CallTreeCallback}.
+ *
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ */
+public class AggregateCallTreeTest extends SimonUnitTest {
+
+	private static final String NAME_PREFIX = "org.javasimon.test.";
+	private static final long MS = 1000000L;
+
+	private TestClock clock;
+	private EnabledManager manager;
+
+	@BeforeMethod
+	public void resetManager() {
+		clock = new TestClock();
+		manager = new EnabledManager(clock);
+	}
+
+	private Split start(String name) {
+		return manager.getStopwatch(NAME_PREFIX + name).start();
+	}
+
+	private void stopAt(Split split, long millis) {
+		clock.setMillisNanosFollow(1000 + millis);
+		split.stop();
+	}
+
+	/** Root 10 ms: child 6 ms (leaf 4 ms), other 1 ms, shifted by given start. */
+	private void call(long start) {
+		clock.setMillisNanosFollow(1000 + start);
+		Split root = start("root");
+		Split child = start("child");
+		clock.setMillisNanosFollow(1000 + start + 1);
+		Split leaf = start("leaf");
+		stopAt(leaf, start + 5);
+		stopAt(child, start + 6);
+		Split other = start("other");
+		stopAt(other, start + 7);
+		stopAt(root, start + 10);
+	}
+
+	@Test
+	public void testAggregate() {
+		CallTreeCallback callback = new CallTreeCallback();
+		callback.setAggregate(true);
+		manager.callback().addCallback(callback);
+		call(0);
+		call(100);
+		// longer second call of the leaf
+		clock.setMillisNanosFollow(1200);
+		Split root = start("root");
+		Split child = start("child");
+		Split leaf = start("leaf");
+		stopAt(leaf, 220);
+		stopAt(child, 220);
+		stopAt(root, 220);
+
+		Stopwatch rootStopwatch = manager.getStopwatch(NAME_PREFIX + "root");
+		AggregateCallTree callTree = CallTreeCallback.getAggregateCallTree(rootStopwatch);
+		AggregateCallTreeNode rootNode = callTree.getRootNode();
+		assertEquals(rootNode.getCount(), 3);
+		assertEquals(rootNode.getTotal(), 40 * MS);
+		assertEquals(rootNode.getSelf(), 6 * MS);
+		assertEquals(rootNode.getMax(), 20 * MS);
+		assertEquals(rootNode.getChildren().size(), 2);
+
+		AggregateCallTreeNode childNode = rootNode.getChild(NAME_PREFIX + "child");
+		assertEquals(childNode.getCount(), 3);
+		assertEquals(childNode.getTotal(), 32 * MS);
+		assertEquals(childNode.getSelf(), 4 * MS);
+		AggregateCallTreeNode leafNode = childNode.getChild(NAME_PREFIX + "leaf");
+		assertEquals(leafNode.getCount(), 3);
+		assertEquals(leafNode.getTotal(), 28 * MS);
+		assertEquals(leafNode.getMax(), 20 * MS);
+		assertEquals(leafNode.getParent(), childNode);
+		assertEquals(rootNode.getChild(NAME_PREFIX + "other").getTotal(), 2 * MS);
+
+		// nested stopwatches have no aggregate tree, only roots
+		assertNull(CallTreeCallback.getAggregateCallTree(manager.getStopwatch(NAME_PREFIX + "child")));
+	}
+
+	@Test
+	public void testMergeNullRootName() {
+		AggregateCallTree callTree = new AggregateCallTree(null);
+		CallTreeNode rootNode = new CallTreeNode(null);
+		rootNode.addSplit(MS);
+		callTree.merge(rootNode);
+		assertEquals(callTree.getRootNode().getCount(), 1);
+		assertEquals(callTree.getRootNode().getTotal(), MS);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testMergeDifferentRootName() {
+		new AggregateCallTree(null).merge(new CallTreeNode("root"));
+	}
+
+	@Test
+	public void testCollapsedStacks() {
+		CallTreeCallback callback = new CallTreeCallback();
+		callback.setAggregate(true);
+		manager.callback().addCallback(callback);
+		call(0);
+		call(100);
+
+		String collapsedStacks = CallTreeCallback.getAggregateCallTree(manager.getStopwatch(NAME_PREFIX + "root")).getCollapsedStacks();
+		Set<String> lines = new HashSet<>(Arrays.asList(collapsedStacks.split("\n")));
+		String root = NAME_PREFIX + "root";
+		String child = root + ';' + NAME_PREFIX + "child";
+		assertEquals(lines, new HashSet<>(Arrays.asList(
+			root + ' ' + 6 * MS,
+			child + ' ' + 4 * MS,
+			child + ';' + NAME_PREFIX + "leaf " + 8 * MS,
+			root + ';' + NAME_PREFIX + "other " + 2 * MS)));
+	}
+
+	@Test
+	public void testAggregateOff() {
+		CallTreeCallback callback = new CallTreeCallback();
+		manager.callback().addCallback(callback);
+		call(0);
+		assertNull(CallTreeCallback.getAggregateCallTree(manager.getStopwatch(NAME_PREFIX + "root")));
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testMergeDifferentRoot() {
+		AggregateCallTree callTree = new AggregateCallTree("a");
+		callTree.merge(new CallTreeNode("b"));
+	}
+
+	@Test
+	public void testToString() {
+		AggregateCallTree callTree = new AggregateCallTree("a");
+		CallTreeNode node = new CallTreeNode("a");
+		node.addChild("b");
+		callTree.merge(node);
+		assertTrue(callTree.toString().contains("\tb "));
+	}
+}
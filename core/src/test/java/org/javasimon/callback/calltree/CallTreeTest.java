@@ -1,6 +1,8 @@
 package org.javasimon.callback.calltree;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
 
 import org.javasimon.SimonManager;
 import org.javasimon.SimonUnitTest;
@@ -80,4 +82,62 @@ public class CallTreeTest extends SimonUnitTest {
 		assertEquals(child21Node.getSplitCount(), 2);
 		LOGGER.debug(rootTreeNode.toString());
 	}
+
+	/** Splits are aggregated, not kept, and the call stack grows for deep trees. */
+	@Test
+	public void testLoopAndDeepStack() {
+		CallTreeNode node = new CallTreeNode("loop");
+		for (int i = 1; i <= 100000; i++) {
+			node.addSplit(i % 100);
+		}
+		assertEquals(node.getSplitCount(), 100000);
+		assertEquals(node.getTotal(), 1000L * 4950);
+		assertEquals(node.getMax(), 99);
+
+		SimonManager.clear();
+		Split[] splits = new Split[40];
+		for (int i = 0; i < splits.length; i++) {
+			splits[i] = startStopwatch("deep" + i % 3);
+		}
+		for (int i = splits.length - 1; i >= 0; i--) {
+			stopStopwatch(splits[i]);
+		}
+		CallTreeNode deepNode = rootTreeNode;
+		for (int i = 1; i < splits.length; i++) {
+			assertEquals(deepNode.getChildren().size(), 1);
+			CallTreeNode child = deepNode.getChild(NAME_PREFIX + "deep" + i % 3);
+			assertSame(child.getParent(), deepNode);
+			deepNode = child;
+		}
+		assertEquals(deepNode.getSplitCount(), 1);
+		assertEquals(deepNode.getChildren().size(), 0);
+		assertNull(deepNode.getChild(NAME_PREFIX + "deep0"));
+	}
+
+	/** Many children are found by name (also when the name is not the same instance) and keep their order. */
+	@Test
+	public void testManyChildren() {
+		CallTreeNode node = new CallTreeNode("parent");
+		for (int i = 0; i < 20; i++) {
+			node.addChild("child" + i).addSplit(i);
+		}
+		for (int i = 19; i >= 0; i--) {
+			assertEquals(node.getChild(new String("child" + i)).getTotal(), i);
+		}
+		assertNull(node.getChild("child20"));
+		assertSame(node.getOrAddChild("child20"), node.getChild("child20"));
+
+		int i = 0;
+		for (CallTreeNode child : node.getChildren()) {
+			assertEquals(child.getName(), "child" + i++);
+		}
+		assertEquals(i, 21);
+	}
+
+	@Test(expectedExceptions = UnsupportedOperationException.class)
+	public void testChildrenUnmodifiable() {
+		CallTreeNode node = new CallTreeNode("parent");
+		node.addChild("child");
+		node.getChildren().clear();
+	}
 }
@@ -1,6 +1,7 @@
 package org.javasimon.callback.lastsplits;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
 import org.javasimon.EnabledManager;
@@ -16,11 +17,11 @@ import org.testng.annotations.Test;
  */
 public class LastSplitsCallbackTest extends SimonUnitTest {
 
-	private Manager manager = new EnabledManager();
+	private Manager manager;
 
 	@BeforeMethod
 	public void resetManager() {
-		manager.clear();
+		manager = new EnabledManager();
 		manager.callback().addCallback(new LastSplitsCallback(5));
 	}
 
@@ -51,6 +52,51 @@ public class LastSplitsCallbackTest extends SimonUnitTest {
 		assertTrue(lastSplits.getTrend() < 0, "Negative trend");
 	}
 
+	@Test
+	public void testCapacityAndClear() {
+		for (long length = 1; length <= 7; length++) {
+			addSplit(length * 100);
+		}
+		LastSplits lastSplits = getLastSplits();
+		assertEquals(lastSplits.getCount(), 5);
+		assertEquals(lastSplits.getMin().longValue(), 300L);
+		assertEquals(lastSplits.getMax().longValue(), 700L);
+		assertTrue(lastSplits.toString().startsWith("LastSplits[size=5,values=[300 ns,400 ns,500 ns,600 ns,700 ns]"),
+			lastSplits.toString());
+
+		lastSplits.clear();
+		assertEquals(lastSplits.getCount(), 0);
+		assertNull(lastSplits.getMean());
+		assertEquals(lastSplits.toString(), "LastSplits[size=0]");
+		addSplit(50L);
+		assertEquals(lastSplits.getCount(), 1);
+		assertEquals(lastSplits.getMax().longValue(), 50L);
+	}
+
+	@Test
+	public void testConcurrentAdd() throws InterruptedException {
+		final LastSplits lastSplits = new LastSplits(16);
+		Thread[] writers = new Thread[4];
+		for (int t = 0; t < writers.length; t++) {
+			final long start = t * 1000000L;
+			writers[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 100000; i++) {
+						lastSplits.add(start + i % 1000, start + i % 1000);
+					}
+				}
+			};
+			writers[t].start();
+		}
+		for (Thread writer : writers) {
+			writer.join();
+		}
+		assertEquals(lastSplits.getCount(), 16);
+		assertTrue(lastSplits.getMin() >= 0 && lastSplits.getMax() < 4000000L);
+		assertTrue(lastSplits.getMean() >= lastSplits.getMin() && lastSplits.getMean() <= lastSplits.getMax());
+	}
+
 	private Stopwatch getStopwatch() {
 		return manager.getStopwatch(getClass().getName() + ".stopwatch");
 	}
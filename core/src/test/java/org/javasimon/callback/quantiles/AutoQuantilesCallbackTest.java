@@ -0,0 +1,122 @@
+package org.javasimon.callback.quantiles;
+
+import org.javasimon.EnabledManager;
+import org.javasimon.Manager;
+import org.javasimon.SimonUnitTest;
+import org.javasimon.Split;
+import org.javasimon.Stopwatch;
+import org.javasimon.clock.SimonClock;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests for {@link AutoQuantilesCallback}.
+ *
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ */
+public class AutoQuantilesCallbackTest extends SimonUnitTest {
+
+	private static final long MS = SimonClock.NANOS_IN_MILLIS;
+
+	@Test
+	public void testWarmup() {
+		Manager manager = new EnabledManager();
+		manager.callback().addCallback(new AutoQuantilesCallback(10, 5));
+		Stopwatch stopwatch = manager.getStopwatch("org.javasimon.test.sw");
+		for (int i = 1; i < 10; i++) {
+			stopwatch.addSplit(Split.create(i * MS));
+		}
+		assertNull(QuantilesCallback.getBuckets(stopwatch));
+		@SuppressWarnings("unchecked")
+		List<Long> values = (List<Long>) stopwatch.getAttribute(AutoQuantilesCallback.ATTR_NAME_BUCKETS_VALUES);
+		assertEquals(values.size(), 9);
+		assertEquals(values.subList(0, 3), Arrays.asList(MS, 2 * MS, 3 * MS));
+
+		stopwatch.addSplit(Split.create(10 * MS));
+		Buckets buckets = QuantilesCallback.getBuckets(stopwatch);
+		assertEquals(buckets.getMin(), 0);
+		assertEquals(buckets.getMax(), 12 * MS);
+		assertEquals(buckets.sample().getTotalCount().intValue(), 10);
+		assertNull(stopwatch.getAttribute(AutoQuantilesCallback.ATTR_NAME_BUCKETS_VALUES));
+
+		stopwatch.addSplit(Split.create(5 * MS));
+		assertEquals(buckets.sample().getTotalCount().intValue(), 11);
+	}
+
+	@Test
+	public void testConcurrentWarmup() throws InterruptedException {
+		final Manager manager = new EnabledManager();
+		manager.callback().addCallback(new AutoQuantilesCallback(1000, 10));
+		final Stopwatch stopwatch = manager.getStopwatch("org.javasimon.test.sw");
+		final int threads = 4;
+		final int splitsPerThread = 5000;
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			workers[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int i = 0; i < splitsPerThread; i++) {
+						stopwatch.addSplit(Split.create((i % 100 + 1) * MS));
+					}
+				}
+			};
+			workers[t].start();
+		}
+		start.countDown();
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		// no value is lost during warmup nor while the buckets are created
+		assertEquals(QuantilesCallback.sampleBuckets(stopwatch).getTotalCount().intValue(), threads * splitsPerThread);
+	}
+
+	@Test
+	public void testRebucket() {
+		Manager manager = new EnabledManager();
+		AutoQuantilesCallback callback = new AutoQuantilesCallback(10, 5);
+		manager.callback().addCallback(callback);
+		Stopwatch stopwatch = manager.getStopwatch("org.javasimon.test.sw");
+		for (int i = 1; i <= 20; i++) {
+			stopwatch.addSplit(Split.create(i % 10 * MS));
+		}
+		Buckets buckets = QuantilesCallback.getBuckets(stopwatch);
+		callback.rebucket();
+		assertSame(QuantilesCallback.getBuckets(stopwatch), buckets);
+
+		// workload shift - all new values are in the overflow bucket
+		for (int i = 1; i <= 10; i++) {
+			stopwatch.addSplit(Split.create(100 * i * MS));
+		}
+		assertTrue(callback.rebucket(stopwatch));
+		assertFalse(callback.rebucket(stopwatch), "warmup in progress");
+		for (int i = 1; i < 10; i++) {
+			stopwatch.addSplit(Split.create(100 * i * MS));
+		}
+		// old buckets still used during the new warmup
+		assertSame(QuantilesCallback.getBuckets(stopwatch), buckets);
+		stopwatch.addSplit(Split.create(1000 * MS));
+
+		Buckets newBuckets = QuantilesCallback.getBuckets(stopwatch);
+		assertNotSame(newBuckets, buckets);
+		assertEquals(newBuckets.getMin(), 90 * MS);
+		assertEquals(newBuckets.getMax(), 1101 * MS);
+		assertEquals(newBuckets.sample().getTotalCount().intValue(), 10);
+		assertEquals(newBuckets.getBuckets().get(0).getCount(), 0);
+	}
+}
@@ -1,11 +1,13 @@
 package org.javasimon.callback.quantiles;
 
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
 import org.javasimon.SimonUnitTest;
 import org.testng.annotations.Test;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
 
 /**
  * @author gquintana
@@ -70,4 +72,81 @@ public class LinearBucketsTest extends SimonUnitTest {
 		buckets.addValue(300);
 		assertEquals(200D, buckets.getQuantile(0.9D), 0.1D);// End of second bucket
 	}
+
+	@Test
+	public void testBucketIndexMatchesSearch() {
+		Buckets[] bucketsArray = {new LinearBuckets(100L, 600L, 5), new LinearBuckets(0L, 1000L, 7),
+			new ExponentialBuckets(1L, 10000L, 4), new ExponentialBuckets(3L, 5000L, 9)};
+		for (Buckets buckets : bucketsArray) {
+			List<Bucket> bucketList = buckets.getBuckets();
+			for (long value = -10; value <= 11000; value++) {
+				Bucket bucket = buckets.getBucketForValue(value);
+				assertEquals(bucket.contains(value), true, buckets + " value " + value);
+				// for linear buckets shared bound belongs to the lower bucket (first bucket containing the value)
+				if (buckets instanceof LinearBuckets) {
+					assertSame(bucket, firstContaining(bucketList, value), buckets + " value " + value);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testBoundaries() {
+		Buckets buckets = new LinearBuckets(100L, 600L, 5);
+		List<Bucket> bucketList = buckets.getBuckets();
+		assertSame(buckets.getBucketForValue(100L), bucketList.get(0));
+		assertSame(buckets.getBucketForValue(101L), bucketList.get(1));
+		assertSame(buckets.getBucketForValue(200L), bucketList.get(1));
+		assertSame(buckets.getBucketForValue(201L), bucketList.get(2));
+		assertSame(buckets.getBucketForValue(600L), bucketList.get(5));
+		assertSame(buckets.getBucketForValue(601L), bucketList.get(6));
+	}
+
+	private Bucket firstContaining(List<Bucket> bucketList, long value) {
+		for (Bucket bucket : bucketList) {
+			if (bucket.contains(value)) {
+				return bucket;
+			}
+		}
+		return null;
+	}
+
+	@Test
+	public void testConcurrentAdd() throws InterruptedException {
+		final Buckets buckets = new LinearBuckets(0L, 1000L, 10);
+		final int threads = 4;
+		final int values = 10000;
+		final CountDownLatch latch = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < values; i++) {
+						buckets.addValue(i % 1200);
+					}
+					latch.countDown();
+				}
+			}.start();
+		}
+		latch.await();
+		int total = 0;
+		for (Bucket bucket : buckets.getBuckets()) {
+			total += bucket.getCount();
+		}
+		assertEquals(total, threads * values);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Expected range max-min at least the number of buckets.*")
+	public void testRangeNarrowerThanBuckets() {
+		new LinearBuckets(0L, 4L, 5);
+	}
+
+	@Test
+	public void testRangeEqualToBuckets() {
+		Buckets buckets = new LinearBuckets(0L, 5L, 5);
+		for (long value = 0; value < 5; value++) {
+			buckets.addValue(value);
+		}
+		assertEquals(buckets.sample().getTotalCount().intValue(), 5);
+	}
 }
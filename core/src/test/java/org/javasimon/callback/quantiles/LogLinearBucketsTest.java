@@ -0,0 +1,94 @@
+package org.javasimon.callback.quantiles;
+
+import org.javasimon.EnabledManager;
+import org.javasimon.Manager;
+import org.javasimon.SimonUnitTest;
+import org.javasimon.Split;
+import org.javasimon.Stopwatch;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests for {@link LogLinearHistogram}, {@link LogLinearBuckets} and {@link LogLinearQuantilesCallback}.
+ *
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ */
+public class LogLinearBucketsTest extends SimonUnitTest {
+
+	@Test
+	public void testCounterRanges() {
+		LogLinearHistogram histogram = new LogLinearHistogram(2, LogLinearQuantilesCallback.DEFAULT_HIGHEST_TRACKABLE_VALUE);
+		long expectedMin = 0;
+		for (int i = 0; i < histogram.getCountsLength(); i++) {
+			long min = histogram.lowestEquivalentValue(i);
+			long max = histogram.highestEquivalentValue(i);
+			assertEquals(min, expectedMin, "counter " + i);
+			assertEquals(histogram.countsIndex(min), i);
+			assertEquals(histogram.countsIndex(max), i);
+			// relative error under 1 %
+			assertTrue(min < 256 || (max - min) / (double) min < 0.01D, "counter " + i);
+			expectedMin = max + 1;
+		}
+		assertTrue(expectedMin > LogLinearQuantilesCallback.DEFAULT_HIGHEST_TRACKABLE_VALUE);
+	}
+
+	@Test
+	public void testQuantiles() {
+		LogLinearBuckets buckets = new LogLinearBuckets(3, 100000000000L);
+		for (long value = 1; value <= 10000; value++) {
+			buckets.addValue(value * 1000);
+		}
+		Double[] quantiles = buckets.getQuantiles(0.5, 0.9, 0.99, 0.999, 0.9999);
+		double[] expected = {5000000, 9000000, 9900000, 9990000, 9999000};
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(quantiles[i], expected[i], expected[i] * 0.001D);
+		}
+		assertEquals(buckets.getMedian(), 5000000D, 5000D);
+
+		buckets.addValue(-5);
+		buckets.addValue(Long.MAX_VALUE);
+		assertEquals(buckets.getHistogram().getTotalCount(), 10002);
+
+		buckets.clear();
+		assertNull(buckets.getQuantiles(0.5)[0]);
+		assertTrue(buckets.getBuckets().isEmpty());
+	}
+
+	@Test
+	public void testMerge() {
+		LogLinearBuckets buckets1 = new LogLinearBuckets(2, 1000000L);
+		LogLinearBuckets buckets2 = new LogLinearBuckets(2, 1000000L);
+		for (int i = 0; i < 90; i++) {
+			buckets1.addValue(100);
+		}
+		for (int i = 0; i < 10; i++) {
+			buckets2.addValue(500000);
+		}
+		buckets1.merge(buckets2);
+		assertEquals(buckets1.getQuantile(0.9), 100D);
+		assertEquals(buckets1.getQuantile(0.95), 500000D, 5000D);
+		assertEquals(buckets1.getBuckets().size(), 2);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testMergeDifferentConfiguration() {
+		new LogLinearBuckets(2, 1000000L).merge(new LogLinearBuckets(3, 1000000L));
+	}
+
+	@Test
+	public void testCallback() {
+		Manager manager = new EnabledManager();
+		manager.callback().addCallback(new LogLinearQuantilesCallback());
+		Stopwatch stopwatch = manager.getStopwatch("org.javasimon.test.sw");
+		for (int i = 1; i <= 100; i++) {
+			stopwatch.addSplit(Split.create(i * 1000000L));
+		}
+		BucketsSample sample = QuantilesCallback.sampleBuckets(stopwatch);
+		assertEquals(sample.getTotalCount().intValue(), 100);
+		assertEquals(sample.getMedian(), 50000000D, 500000D);
+		assertEquals(sample.getPercentile90(), 90000000D, 900000D);
+	}
+}
@@ -0,0 +1,159 @@
+package org.javasimon.callback.quantiles;
+
+import org.javasimon.EnabledManager;
+import org.javasimon.Manager;
+import org.javasimon.Simon;
+import org.javasimon.SimonFilter;
+import org.javasimon.SimonUnitTest;
+import org.javasimon.Split;
+import org.javasimon.Stopwatch;
+import org.javasimon.jmx.SimonManagerMXBeanImpl;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests for {@link QuantileSketch} and {@link QuantileSketchCallback}.
+ *
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ */
+public class QuantileSketchTest extends SimonUnitTest {
+
+	@Test
+	public void testRelativeAccuracy() {
+		QuantileSketch sketch = new QuantileSketch(0.01);
+		for (long value = 1; value <= 100000; value++) {
+			sketch.recordValue(value * 997);
+		}
+		double[] ratios = {0.01, 0.5, 0.9, 0.99, 0.999, 0.9999};
+		Double[] quantiles = sketch.getQuantiles(ratios);
+		for (int i = 0; i < ratios.length; i++) {
+			double expected = Math.floor(ratios[i] * 99999 + 1) * 997;
+			assertTrue(Math.abs(quantiles[i] - expected) <= expected * 0.01, ratios[i] + ": " + quantiles[i]);
+		}
+		assertEquals(sketch.getCount(), 100000);
+	}
+
+	@Test
+	public void testZeroAndEmpty() {
+		QuantileSketch sketch = new QuantileSketch();
+		assertNull(sketch.getQuantile(0.5));
+		sketch.recordValue(0);
+		sketch.recordValue(-1);
+		sketch.recordValue(1000);
+		assertEquals(sketch.getQuantile(0.5), 0D);
+		assertEquals(sketch.getQuantile(1), 1000D, 10D);
+		sketch.clear();
+		assertEquals(sketch.getCount(), 0);
+	}
+
+	@Test
+	public void testMergeAndSerialization() {
+		QuantileSketch sketch1 = new QuantileSketch(0.02);
+		QuantileSketch sketch2 = new QuantileSketch(0.02);
+		for (int i = 0; i < 900; i++) {
+			sketch1.recordValue(1000);
+		}
+		for (int i = 0; i < 100; i++) {
+			sketch2.recordValue(Long.MAX_VALUE / (i + 1));
+		}
+		sketch2.recordValue(0);
+
+		byte[] bytes = sketch2.toByteArray();
+		assertTrue(bytes.length < 500, "serialized length " + bytes.length);
+		QuantileSketch copy = QuantileSketch.fromByteArray(bytes);
+		assertEquals(copy.getRelativeAccuracy(), 0.02);
+		assertEquals(copy.getCount(), 101);
+		assertEquals(copy.getQuantiles(0, 0.5, 1), sketch2.getQuantiles(0, 0.5, 1));
+
+		sketch1.merge(copy);
+		assertEquals(sketch1.getCount(), 1001);
+		assertEquals(sketch1.getQuantile(0.5), 1000D, 20D);
+		assertTrue(sketch1.getQuantile(0.99) > 1e16);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testMergeDifferentAccuracy() {
+		new QuantileSketch(0.01).merge(new QuantileSketch(0.02));
+	}
+
+	@Test
+	public void testMergeRebucketing() {
+		QuantileSketch sketch1 = new QuantileSketch(0.01);
+		QuantileSketch sketch2 = new QuantileSketch(0.05);
+		for (int i = 1; i <= 1000; i++) {
+			sketch1.recordValue(i * 1000L);
+			sketch2.recordValue(i * 1000L);
+		}
+		sketch2.recordValue(0);
+		sketch1.mergeRebucketing(sketch2);
+		assertEquals(sketch1.getCount(), 2001);
+		assertEquals(sketch1.getQuantile(0.5), 500000D, 500000D * 0.06);
+		assertEquals(sketch1.getQuantile(1), 1000000D, 1000000D * 0.06);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testInvalidSerializedForm() {
+		QuantileSketch.fromByteArray(new byte[] {7, 1, 2});
+	}
+
+	@Test
+	public void testAggregateQuantiles() {
+		Manager manager = new EnabledManager();
+		manager.callback().addCallback(new QuantileSketchCallback());
+		for (int i = 1; i <= 100; i++) {
+			manager.getStopwatch("org.javasimon.web.a").addSplit(Split.create(i * 1000000L));
+			manager.getStopwatch("org.javasimon.web.b").addSplit(Split.create((i + 100) * 1000000L));
+			manager.getStopwatch("org.javasimon.db").addSplit(Split.create(1000L));
+		}
+
+		QuantileSketch aggregate = QuantileSketchCallback.aggregateSketch(manager.getSimon("org.javasimon.web"));
+		assertEquals(aggregate.getCount(), 200);
+		assertEquals(aggregate.getQuantile(0.5), 100000000D, 1000000D);
+		assertEquals(aggregate.getQuantile(0.99), 198000000D, 1980000D);
+		assertNull(QuantileSketchCallback.aggregateSketch(manager.getSimon("org.javasimon.web"), new SimonFilter() {
+			@Override
+			public boolean accept(Simon simon) {
+				return !simon.getName().equals("org.javasimon.web");
+			}
+		}));
+
+		SimonManagerMXBeanImpl mxBean = new SimonManagerMXBeanImpl(manager);
+		Double[] quantiles = mxBean.getAggregateQuantiles("org.javasimon.web.*", new double[] {0.5, 0.99});
+		assertEquals(quantiles[0], aggregate.getQuantile(0.5));
+		assertEquals(quantiles[1], aggregate.getQuantile(0.99));
+		assertEquals(QuantileSketch.fromByteArray(mxBean.getQuantileSketch(null)).getCount(), 300);
+		assertNull(mxBean.getQuantileSketch("other.*"));
+	}
+
+	@Test
+	public void testLazySketchAndMixedAccuracy() {
+		Manager manager = new EnabledManager();
+		QuantileSketchCallback callback = new QuantileSketchCallback(0.05);
+		assertEquals(callback.getRelativeAccuracy(), 0.05);
+		manager.callback().addCallback(callback);
+		Stopwatch stopwatch = manager.getStopwatch("org.javasimon.web.a");
+		assertNull(QuantileSketchCallback.getSketch(stopwatch));
+		stopwatch.addSplit(Split.create(1000000L));
+		assertEquals(QuantileSketchCallback.getSketch(stopwatch).getRelativeAccuracy(), 0.05);
+
+		// sketch with other accuracy, e.g. from another callback, must not break the aggregation
+		Stopwatch other = manager.getStopwatch("org.javasimon.web.b");
+		QuantileSketch otherSketch = new QuantileSketch(0.01);
+		otherSketch.recordValue(3000000L);
+		other.setAttribute(QuantileSketchCallback.ATTR_NAME_SKETCH, otherSketch);
+
+		QuantileSketch aggregate = QuantileSketchCallback.aggregateSketch(manager.getSimon("org.javasimon.web"));
+		assertEquals(aggregate.getCount(), 2);
+		assertEquals(aggregate.getQuantile(1), 3000000D, 3000000D * 0.06);
+		SimonManagerMXBeanImpl mxBean = new SimonManagerMXBeanImpl(manager);
+		assertEquals(QuantileSketch.fromByteArray(mxBean.getQuantileSketch("org.javasimon.web.*")).getCount(), 2);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testInvalidCallbackAccuracy() {
+		new QuantileSketchCallback(0.9);
+	}
+}
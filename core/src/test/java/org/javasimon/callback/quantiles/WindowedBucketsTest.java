@@ -0,0 +1,75 @@
+package org.javasimon.callback.quantiles;
+
+import org.javasimon.EnabledManager;
+import org.javasimon.SimonUnitTest;
+import org.javasimon.Split;
+import org.javasimon.Stopwatch;
+import org.javasimon.clock.TestClock;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests for {@link WindowedBuckets} and {@link WindowedQuantilesCallback}.
+ *
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ */
+public class WindowedBucketsTest extends SimonUnitTest {
+
+	@Test
+	public void testWindowRotation() {
+		TestClock clock = new TestClock();
+		WindowedBuckets buckets = new WindowedBuckets(5, 1000, 2, 1000000L, clock);
+		assertEquals(buckets.getWindowMillis(), 5000);
+
+		clock.setMillisNanosFollow(500);
+		for (int i = 0; i < 100; i++) {
+			buckets.addValue(100000);
+		}
+		clock.setMillisNanosFollow(3200);
+		for (int i = 0; i < 100; i++) {
+			buckets.addValue(100);
+		}
+		assertEquals(buckets.getQuantiles(0.25)[0], 100D);
+		assertEquals(buckets.getQuantiles(0.75)[0], 100000D, 1000D);
+		assertEquals(buckets.getWindowQuantiles(1000, 0.75)[0], 100D);
+		assertEquals(buckets.sampleWindow(1000).getTotalCount().intValue(), 100);
+		assertEquals(buckets.getHistogram().getTotalCount(), 200);
+		assertEquals(buckets.getBucketForValue(100).getCount(), 100);
+
+		// first slice falls out of the window
+		clock.setMillisNanosFollow(5000);
+		assertEquals(buckets.sample().getTotalCount().intValue(), 100);
+		assertEquals(buckets.getQuantile(0.99), 100D);
+		assertEquals(buckets.getBucketForValue(100000).getCount(), 0);
+
+		// slot of the first slice is reused and cleared
+		clock.setMillisNanosFollow(5100);
+		buckets.addValue(200);
+		assertEquals(buckets.getHistogram().getTotalCount(), 101);
+		assertEquals(buckets.getWindowQuantiles(500, 0.5)[0], 200D);
+
+		clock.setMillisNanosFollow(20000);
+		assertNull(buckets.getWindowQuantiles(5000, 0.5)[0]);
+		assertTrue(buckets.getBuckets().isEmpty());
+	}
+
+	@Test
+	public void testCallbackUsesManagerClock() {
+		TestClock clock = new TestClock();
+		EnabledManager manager = new EnabledManager(clock);
+		manager.callback().addCallback(new WindowedQuantilesCallback(10, 6000));
+		Stopwatch stopwatch = manager.getStopwatch("org.javasimon.test.sw");
+		for (int i = 1; i <= 100; i++) {
+			stopwatch.addSplit(Split.create(i * 1000000L));
+		}
+		WindowedBuckets buckets = (WindowedBuckets) QuantilesCallback.getBuckets(stopwatch);
+		assertEquals(QuantilesCallback.sampleBuckets(stopwatch).getTotalCount().intValue(), 100);
+		assertEquals(buckets.getWindowQuantiles(60000, 0.5)[0], 50000000D, 5000000D);
+
+		clock.setMillisNanosFollow(60000);
+		assertNull(buckets.getWindowQuantiles(60000, 0.5)[0]);
+	}
+}
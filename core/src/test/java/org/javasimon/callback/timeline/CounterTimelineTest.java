@@ -0,0 +1,138 @@
+package org.javasimon.callback.timeline;
+
+import org.javasimon.Counter;
+import org.javasimon.CounterSample;
+import org.javasimon.EnabledManager;
+import org.javasimon.SimonUnitTest;
+import org.javasimon.clock.TestClock;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit test for {@link CounterTimeline} and {@link RateMeter}.
+ *
+ * @author <a href="mailto:virgo47@gmail.com">Richard "Virgo" Richter</a>
+ */
+public class CounterTimelineTest extends SimonUnitTest {
+
+	@Test
+	public void testCounterTimeRanges() {
+		TestClock clock = new TestClock();
+		EnabledManager manager = new EnabledManager(clock);
+		manager.callback().addCallback(new TimelineCallback(5, 1000));
+		Counter counter = manager.getCounter("org.javasimon.test.counter");
+
+		clock.setMillisNanosFollow(100);
+		counter.increase(5);
+		counter.decrease(2);
+		counter.increase(10);
+		clock.setMillisNanosFollow(1500);
+		counter.set(4);
+		counter.decrease(7);
+
+		CounterTimeline timeline = (CounterTimeline) counter.getAttribute(TimelineCallback.TIMELINE_ATTRIBUTE_NAME);
+		CounterTimeRange[] timeRanges = timeline.sample().getTimeRanges();
+		assertEquals(timeRanges.length, 2);
+
+		CounterTimeRange first = timeRanges[0];
+		assertEquals(first.getStartTimestamp(), 0);
+		assertEquals(first.getIncrement(), 15);
+		assertEquals(first.getDecrement(), 2);
+		assertEquals(first.getChanges(), 3);
+		assertEquals(first.getMin(), 3);
+		assertEquals(first.getMax(), 13);
+		assertEquals(first.getLast(), 13);
+		assertEquals(first.getLastTimestamp(), 100);
+
+		CounterTimeRange second = timeRanges[1];
+		assertEquals(second.getIncrement(), 0);
+		assertEquals(second.getDecrement(), 7);
+		assertEquals(second.getMin(), -3);
+		assertEquals(second.getMax(), 4);
+		assertEquals(second.getLast(), -3);
+		assertEquals(second.getLastTimestamp(), 1500);
+	}
+
+	@Test
+	public void testCounterValueFromSample() {
+		TestClock clock = new TestClock();
+		clock.setMillisNanosFollow(100);
+		EnabledManager manager = new EnabledManager(clock);
+		TimelineCallback callback = new TimelineCallback(5, 1000);
+		manager.callback().addCallback(callback);
+		Counter counter = manager.getCounter("org.javasimon.test.counter");
+		counter.increase(100);
+
+		// sample carries the value right after the change, counter itself may be changed meanwhile
+		CounterSample sample = new CounterSample();
+		sample.setCounter(7);
+		callback.onCounterIncrease(counter, 7, sample);
+		sample.setCounter(5);
+		callback.onCounterDecrease(counter, 2, sample);
+
+		CounterTimeline timeline = (CounterTimeline) counter.getAttribute(TimelineCallback.TIMELINE_ATTRIBUTE_NAME);
+		CounterTimeRange timeRange = timeline.sample().getTimeRanges()[0];
+		assertEquals(timeRange.getLast(), 5);
+		assertEquals(timeRange.getMin(), 5);
+		assertEquals(timeRange.getMax(), 100);
+	}
+
+	@Test(expectedExceptions = UnsupportedOperationException.class)
+	public void testSampleIsImmutable() {
+		CounterTimeline timeline = new CounterTimeline(5, 1000, new TestClock());
+		timeline.addIncrement(1, 1);
+		timeline.sample().getTimeRanges()[0].addIncrement(0, 1, 2);
+	}
+
+	@Test
+	public void testRateMeter() {
+		TestClock clock = new TestClock();
+		RateMeter rateMeter = new RateMeter(clock);
+		assertEquals(rateMeter.getOneMinuteRate(), 0D);
+
+		// 10 events per second for 2 minutes
+		for (int ms = 0; ms < 120000; ms += 100) {
+			clock.setMillisNanosFollow(ms);
+			rateMeter.mark();
+		}
+		clock.setMillisNanosFollow(120000);
+		assertEquals(rateMeter.getCount(), 1200);
+		assertEquals(rateMeter.getOneMinuteRate(), 10D, 0.01);
+		assertEquals(rateMeter.getFiveMinuteRate(), 10D, 0.01);
+		assertEquals(rateMeter.getFifteenMinuteRate(), 10D, 0.01);
+
+		// one idle minute, one minute rate decays faster
+		clock.setMillisNanosFollow(180000);
+		double oneMinuteRate = rateMeter.getOneMinuteRate();
+		double fiveMinuteRate = rateMeter.getFiveMinuteRate();
+		assertEquals(oneMinuteRate, 10D / Math.E, 0.01);
+		assertTrue(oneMinuteRate < fiveMinuteRate);
+		assertTrue(fiveMinuteRate < rateMeter.getFifteenMinuteRate());
+
+		// one idle hour more is decayed at once, events are counted in the first tick
+		clock.setMillisNanosFollow(180000 + 3600000);
+		rateMeter.mark(50);
+		assertEquals(rateMeter.getFifteenMinuteRate(), 10D * Math.exp(-61D / 15), 0.0001);
+		clock.setMillisNanosFollow(180000 + 3600000 + 5000);
+		assertEquals(rateMeter.getOneMinuteRate(), 10D * (1 - Math.exp(-1D / 12)), 0.0001);
+	}
+
+	@Test
+	public void testTimelineSampleRates() {
+		TestClock clock = new TestClock();
+		EnabledManager manager = new EnabledManager(clock);
+		manager.callback().addCallback(new TimelineCallback(5, 1000));
+		Counter counter = manager.getCounter("org.javasimon.test.counter");
+		for (int ms = 0; ms < 10000; ms += 50) {
+			clock.setMillisNanosFollow(ms);
+			counter.increase();
+		}
+		clock.setMillisNanosFollow(10000);
+		CounterTimeline timeline = (CounterTimeline) counter.getAttribute(TimelineCallback.TIMELINE_ATTRIBUTE_NAME);
+		TimelineSample<CounterTimeRange> sample = timeline.sample();
+		assertEquals(sample.getOneMinuteRate(), 20D, 0.01);
+		assertEquals(sample.getFifteenMinuteRate(), 20D, 0.01);
+	}
+}
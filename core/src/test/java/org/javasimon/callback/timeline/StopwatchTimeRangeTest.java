@@ -4,6 +4,7 @@ import static org.javasimon.callback.timeline.TimeUtil.addSplit;
 import static org.javasimon.callback.timeline.TimeUtil.createTimestamp;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
 import org.javasimon.SimonUnitTest;
@@ -48,6 +49,35 @@ public class StopwatchTimeRangeTest extends SimonUnitTest {
 		assertEquals(timeRange.getMin(), 100);
 		assertEquals(timeRange.getMax(), 300);
 		assertEquals(timeRange.getLast(), 300);
+		assertEquals(timeRange.lastTimestamp, createTimestamp(2012, 7, 12, 21, 13, 0));
+		assertEquals(timeRange.sample().lastTimestamp, timeRange.lastTimestamp);
 		assertEquals(timeRange.getStandardDeviation(), 81.65d, 0.01d);
+		assertEquals(timeRange.getPercentile50(), 200d, 20d);
+		assertEquals(timeRange.getPercentile99(), 300d, 30d);
+	}
+
+	/**
+	 * Test quantiles from the histogram and variance of long splits
+	 */
+	@Test
+	public void testQuantilesAndLongSplits() {
+		StopwatchTimeRange timeRange = createStopwatchTimeRange();
+		long timestamp = createTimestamp(2012, 7, 12, 21, 6, 0);
+		assertNull(timeRange.getPercentile95());
+		for (int i = 1; i <= 100; i++) {
+			// 10 s + i ms, square of the value overflows long
+			timeRange.addSplit(timestamp, 10000000000L + i * 1000000L);
+		}
+		assertEquals(timeRange.getMean(), 10050500000d, 1d);
+		// standard deviation of 1..100 ms
+		assertEquals(timeRange.getStandardDeviation(), 28866070d, 1d);
+		assertEquals(timeRange.getPercentile50(), 10050000000d, 10050000000d * 0.1d);
+		assertEquals(timeRange.getPercentile95(), 10095000000d, 10095000000d * 0.1d);
+
+		StopwatchTimeRange sample = timeRange.sample();
+		timeRange.addSplit(timestamp, 1000);
+		assertEquals(sample.getCounter(), 100);
+		assertEquals(sample.getPercentile99(), timeRange.getPercentile99());
+		assertEquals(sample.getStandardDeviation(), 28866070d, 1d);
 	}
 }
@@ -4,6 +4,7 @@ import org.javasimon.EnabledManager;
 import org.javasimon.Manager;
 import org.javasimon.SimonUnitTest;
 import org.javasimon.Stopwatch;
+import org.javasimon.clock.SimonClock;
 
 import org.testng.Assert;
 import org.testng.annotations.Test;
@@ -51,6 +52,97 @@ public class StopwatchTimelineTest extends SimonUnitTest {
 		assertEquals(timeRanges[2].getCounter(), 3);
 	}
 
+	@Test
+	public void testRingAndSample() {
+		// 3 ranges of 1 minute
+		StopwatchTimeline timeline = new StopwatchTimeline(3, 60 * 1000);
+		timeline.addSplit(createSplit(createTimestamp(2012, 7, 12, 21, 0, 10), 100));
+		timeline.addSplit(createSplit(createTimestamp(2012, 7, 12, 21, 2, 10), 300));
+		// late split into a range never created before
+		timeline.addSplit(createSplit(createTimestamp(2012, 7, 12, 21, 1, 10), 200));
+		TimelineSample<StopwatchTimeRange> sample = timeline.sample();
+		StopwatchTimeRange[] timeRanges = sample.getTimeRanges();
+		assertEquals(timeRanges.length, 3);
+		assertEquals(timeRanges[1].getStartTimestamp(), createTimestamp(2012, 7, 12, 21, 1, 0));
+		assertEquals(timeRanges[1].getLast(), 200);
+
+		// 21:03 replaces 21:00 in the ring, splits for 21:00 are dropped since then
+		timeline.addSplit(createSplit(createTimestamp(2012, 7, 12, 21, 3, 10), 400));
+		timeline.addSplit(createSplit(createTimestamp(2012, 7, 12, 21, 0, 20), 500));
+		timeRanges = timeline.sample().getTimeRanges();
+		assertEquals(timeRanges.length, 3);
+		assertEquals(timeRanges[0].getStartTimestamp(), createTimestamp(2012, 7, 12, 21, 1, 0));
+		assertEquals(timeRanges[2].getMax(), 400);
+
+		// old sample is not affected by new splits
+		timeline.addSplit(createSplit(createTimestamp(2012, 7, 12, 21, 2, 30), 600));
+		assertEquals(sample.getTimeRanges()[2].getCounter(), 1);
+		assertEquals(timeline.sample().getTimeRanges()[1].getCounter(), 2);
+	}
+
+	@Test
+	public void testQuantiles() {
+		StopwatchTimeline timeline = new StopwatchTimeline(3, 60 * 1000);
+		long timestamp = createTimestamp(2012, 7, 12, 21, 0, 10);
+		for (int i = 1; i <= 100; i++) {
+			timeline.addSplit(createSplit(timestamp, i * 1000));
+		}
+		StopwatchTimeRange live = timeline.getTimeRanges().get(0);
+		StopwatchTimeRange sample = live.sample();
+		for (double ratio : new double[] {0, 0.5, 0.95, 0.99, 1}) {
+			assertEquals(sample.getQuantile(ratio), live.getQuantile(ratio));
+		}
+		assertEquals(sample.getPercentile50(), 50000D, 5000D);
+
+		timeline.addSplit(createSplit(timestamp, 10000000));
+		Assert.assertTrue(live.getQuantile(1) > 1000000D);
+		assertEquals(sample.getQuantile(1), 100000D, 10000D);
+	}
+
+	@Test
+	public void testQuantilesNotTracked() {
+		StopwatchTimeline timeline = new StopwatchTimeline(3, 60 * 1000, SimonClock.SYSTEM, 0, 0);
+		timeline.addSplit(createSplit(createTimestamp(2012, 7, 12, 21, 0, 10), 100));
+		StopwatchTimeRange timeRange = timeline.sample().getTimeRanges()[0];
+		assertEquals(timeRange.getCounter(), 1);
+		Assert.assertNull(timeRange.getPercentile95());
+		Assert.assertNull(timeline.getTimeRanges().get(0).getQuantile(0.5));
+	}
+
+	@Test(expectedExceptions = UnsupportedOperationException.class)
+	public void testSampleIsImmutable() {
+		StopwatchTimeline timeline = new StopwatchTimeline(3, 60 * 1000);
+		timeline.addSplit(createSplit(createTimestamp(2012, 7, 12, 21, 0, 10), 100));
+		timeline.sample().getTimeRanges()[0].addSplit(createTimestamp(2012, 7, 12, 21, 0, 20), 100);
+	}
+
+	@Test
+	public void testConcurrentAddSplit() throws InterruptedException {
+		final StopwatchTimeline timeline = new StopwatchTimeline(10, 60 * 1000);
+		final long timestamp = createTimestamp(2012, 7, 12, 21, 0, 10);
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 10000; i++) {
+						timeline.addSplit(createSplit(timestamp + i % 3 * 60 * 1000, 100));
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		long counter = 0;
+		for (StopwatchTimeRange timeRange : timeline.sample().getTimeRanges()) {
+			counter += timeRange.getCounter();
+			assertEquals(timeRange.getTotal(), timeRange.getCounter() * 100);
+		}
+		assertEquals(counter, 40000);
+	}
+
 	@Test
 	public void issue113() {
 		Manager manager = new EnabledManager();
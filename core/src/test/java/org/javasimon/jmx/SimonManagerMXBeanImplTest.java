@@ -5,6 +5,7 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
 
 import org.javasimon.Counter;
 import org.javasimon.Manager;
@@ -13,6 +14,14 @@ import org.javasimon.SimonException;
 import org.javasimon.SimonPattern;
 import org.javasimon.SimonState;
 import org.javasimon.Stopwatch;
+import org.javasimon.callback.CompositeCallback;
+import org.javasimon.callback.CompositeCallbackImpl;
+import org.javasimon.callback.calltree.AggregateCallTree;
+import org.javasimon.callback.calltree.CallTreeCallback;
+import org.javasimon.callback.calltree.CallTreeNode;
+import org.javasimon.callback.timeline.CounterTimeline;
+import org.javasimon.callback.timeline.TimelineCallback;
+import org.javasimon.clock.TestClock;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -271,4 +280,39 @@ public class SimonManagerMXBeanImplTest {
 	public void getIncrementStopwatchSampleForWrongType() {
 		managerMXBean.getIncrementStopwatchSample("base.counter.aaa", "key");
 	}
+
+	@Test
+	public void getTimelineRates() {
+		TestClock clock = new TestClock();
+		CounterTimeline timeline = new CounterTimeline(5, 1000, clock);
+		for (int i = 0; i < 50; i++) {
+			timeline.addIncrement(1, i);
+		}
+		clock.setMillisNanosFollow(5000);
+		// timeline registered under a custom attribute name in a nested composite callback
+		CompositeCallback callbacks = new CompositeCallbackImpl();
+		CompositeCallback nested = new CompositeCallbackImpl();
+		nested.addCallback(new TimelineCallback("customTimeline", 5, 1000));
+		callbacks.addCallback(nested);
+		when(manager.callback()).thenReturn(callbacks);
+		when(counterA.getAttribute("customTimeline")).thenReturn(timeline);
+		when(counterB.getAttribute("customTimeline")).thenReturn("not a timeline");
+
+		double[] rates = managerMXBean.getTimelineRates("base.counter.aaa");
+		assertEquals(rates.length, 3);
+		assertEquals(rates[0], 10D);
+		assertNull(managerMXBean.getTimelineRates("base.counter.bbb"));
+		assertNull(managerMXBean.getTimelineRates("non.existing"));
+	}
+
+	@Test
+	public void getCollapsedCallStacks() {
+		AggregateCallTree callTree = new AggregateCallTree("base.stopwatch.aaa");
+		callTree.merge(new CallTreeNode("base.stopwatch.aaa"));
+		when(stopwatchA.getAttribute(CallTreeCallback.ATTR_NAME_AGGREGATE)).thenReturn(callTree);
+
+		assertEquals(managerMXBean.getCollapsedCallStacks("base.stopwatch.aaa"), "");
+		assertNull(managerMXBean.getCollapsedCallStacks("base.stopwatch.bbb"));
+		assertNull(managerMXBean.getCollapsedCallStacks("base.counter.aaa"));
+	}
 }
\ No newline at end of file
@@ -44,4 +44,14 @@ public final class SimonUtilsTest extends SimonUnitTest {
 		Assert.assertEquals(SimonUtils.compact("asdfadfasd;a 345tw", 18), "asdfadfasd;a 345tw");
 		Assert.assertEquals(SimonUtils.compact("asdfadfasd;a 345tw", 30), "asdfadfasd;a 345tw");
 	}
+
+	@Test
+	public void testCheckNameMatchesNamePattern() {
+		for (char c = 0; c < 512; c++) {
+			String name = "a" + c + "b";
+			Assert.assertEquals(SimonUtils.checkName(name), SimonUtils.NAME_PATTERN.matcher(name).matches(), "char " + (int) c);
+		}
+		Assert.assertFalse(SimonUtils.checkName(""));
+		Assert.assertTrue(SimonUtils.checkName(SimonUtils.ALLOWED_CHARS));
+	}
 }